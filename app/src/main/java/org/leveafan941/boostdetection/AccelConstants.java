@@ -40,5 +40,35 @@ public final class AccelConstants {
 
     public static final int INVALID_BOOST_VALUE = -1;
 
+    /**
+     * Max sensor report latency used by the service, the sensor batches samples in its FIFO
+     * for up to this time before waking up the application processor.
+     */
+    public static final int DEFAULT_MAX_REPORT_LATENCY_US = 1000000;
+
+    /**
+     * Exceed episode ends when the boost falls below the limit by this fraction of it.
+     */
+    public static final float DEFAULT_BOOST_HYSTERESIS = 0.2f;
+    /**
+     * Boost must stay above the limit for this time to be reported, it filters out spikes.
+     * When samples come further apart than this, a single sample above the limit is reported.
+     */
+    public static final long DEFAULT_MIN_DWELL_NS = 20000000L;
+    /**
+     * No exceed is reported during this time after the end of the previous one.
+     */
+    public static final long DEFAULT_REFRACTORY_NS = 1000000000L;
+
+    /**
+     * Number of raw samples before an exceed event written to the journal with it, about half
+     * a second at the fastest rate of a 200 Hz sensor.
+     */
+    public static final int DEFAULT_JOURNAL_PRE_TRIGGER_SAMPLES = 100;
+    /**
+     * Number of raw samples after an exceed event written to the journal with it.
+     */
+    public static final int DEFAULT_JOURNAL_POST_TRIGGER_SAMPLES = 100;
+
     private AccelConstants() { }
 }
@@ -33,48 +33,96 @@ package org.leveafan941.boostdetection.accelerometer;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.SystemClock;
+
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.leveafan941.boostdetection.detection.DetectionConfig;
+import org.leveafan941.boostdetection.detection.SampleRingBuffer;
+import org.leveafan941.boostdetection.detection.VehicleFrame;
+import org.leveafan941.boostdetection.detection.stats.RollingStatsSnapshot;
 
 /**
+ * Adapts sensor events to the {@link BoostLimitDetector}. Gravity and rotation vector events
+ * update the {@link VehicleFrame} if it is set.
+ *
  * @author Alexey Kuzin (amkuzink@gmail.com).
  */
 class AccelerometerListener implements SensorEventListener {
 
-//    private static final String TAG = AccelerometerListener.class.getSimpleName();
+    private final BoostLimitDetector mDetector;
+    private volatile PipelineInstrumentation mInstrumentation;
+    private final float[] mRotationMatrix = new float[9];
 
-    private volatile float mBoostLimit;
-    private boolean mIsLimitExceed = false;
-    private final AccelerometerEventQueue mEventQueue;
-
-    AccelerometerListener(AccelerometerEventQueue handler, float boostLimit) {
-        mBoostLimit = boostLimit;
-        mEventQueue = handler;
+    /**
+     * @param sampleBuffer buffer which receives every raw sample, null if they are not captured.
+     */
+    AccelerometerListener(AccelerometerEventQueue handler, DetectionConfig config,
+                          SampleRingBuffer sampleBuffer) {
+        mDetector = new BoostLimitDetector(handler, config, sampleBuffer);
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (event.sensor.getType() != Sensor.TYPE_LINEAR_ACCELERATION) {
+            onOrientationChanged(event);
             return;
         }
 
-        final float boostModule = calcDeviceBoost(event.values[0], event.values[1],
-                event.values[2]);
-//        Log.d(TAG, "Boost module = " + boostModule);
-        if (boostModule > mBoostLimit) {
-            if (!mIsLimitExceed) {
-                mEventQueue.queueBoostLimitExceed(boostModule);
-                mIsLimitExceed = true;
-            }
-        } else {
-            mIsLimitExceed = false;
+        final PipelineInstrumentation instrumentation = mInstrumentation;
+        final long startNs = instrumentation == null ? 0 : SystemClock.elapsedRealtimeNanos();
+
+        final float[] values = event.values;
+        mDetector.onSample(event.timestamp, values[0], values[1], values[2]);
+
+        if (instrumentation != null) {
+            instrumentation.onSensorCallback(event.timestamp, startNs,
+                    SystemClock.elapsedRealtimeNanos());
         }
     }
 
-    void setBoostLimit(float boostLimit) {
-        mBoostLimit = boostLimit;
+    private void onOrientationChanged(SensorEvent event) {
+        final VehicleFrame vehicleFrame = mDetector.getConfig().getVehicleFrame();
+        if (vehicleFrame == null) {
+            return;
+        }
+
+        final float[] values = event.values;
+        switch (event.sensor.getType()) {
+            case Sensor.TYPE_GRAVITY:
+                vehicleFrame.onGravity(values[0], values[1], values[2]);
+                break;
+            case Sensor.TYPE_ROTATION_VECTOR:
+                // The last row of the device to world rotation is the world up in the device
+                // axes, the direction of the gravity sensor values.
+                SensorManager.getRotationMatrixFromVector(mRotationMatrix, values);
+                vehicleFrame.onGravity(mRotationMatrix[6], mRotationMatrix[7],
+                        mRotationMatrix[8]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @param instrumentation null disables the instrumentation, it costs a volatile read
+     *                        per sample then.
+     */
+    void setInstrumentation(PipelineInstrumentation instrumentation) {
+        mInstrumentation = instrumentation;
+    }
+
+    /**
+     * Applies the whole configuration from the next sample. The stages of the configuration
+     * are kept by the manager and must not change while the listener is registered.
+     */
+    void setConfig(DetectionConfig config) {
+        mDetector.setConfig(config);
     }
 
-    private static float calcDeviceBoost(float xBoost, float yBoost, float zBoost) {
-        return (float) Math.sqrt(xBoost * xBoost + yBoost * yBoost + zBoost * zBoost);
+    RollingStatsSnapshot getVibrationStats() {
+        return mDetector.getVibrationStats();
     }
 
     @Override
@@ -35,10 +35,29 @@ import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.os.Handler;
 import android.os.HandlerThread;
-import android.os.Message;
+import android.os.Looper;
 import android.util.Log;
 
+import org.leveafan941.boostdetection.AccelConstants;
 import org.leveafan941.boostdetection.R;
+import org.leveafan941.boostdetection.detection.AxisTriggerSettings;
+import org.leveafan941.boostdetection.detection.CaptureWindow;
+import org.leveafan941.boostdetection.detection.DetectionConfig;
+import org.leveafan941.boostdetection.detection.EpisodeSummary;
+import org.leveafan941.boostdetection.detection.RawSampleConsumer;
+import org.leveafan941.boostdetection.detection.SampleRateMonitor;
+import org.leveafan941.boostdetection.detection.SampleRateStats;
+import org.leveafan941.boostdetection.detection.SampleRingBuffer;
+import org.leveafan941.boostdetection.detection.SamplingRateController;
+import org.leveafan941.boostdetection.detection.ThresholdIndex;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+import org.leveafan941.boostdetection.detection.VehicleFrame;
+import org.leveafan941.boostdetection.detection.VibrationSettings;
+import org.leveafan941.boostdetection.detection.WindowCapture;
+import org.leveafan941.boostdetection.detection.filter.SampleFilter;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumAnalyzer;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumBand;
+import org.leveafan941.boostdetection.detection.stats.RollingStatsSnapshot;
 
 /**
  * @author Alexey Kuzin (amkuzink@gmail.com).
@@ -47,50 +66,188 @@ public final class AccelerometerManager {
 
     private static final String TAG = AccelerometerManager.class.getSimpleName();
 
+    /**
+     * Max report latency which disables sensor batching: every sample is delivered as soon
+     * as it is available.
+     */
+    public static final int NO_BATCHING_LATENCY_US = 0;
+
+    // Max number of exceed events waiting for the listener, it is enough for a FIFO burst.
+    private static final int EXCEED_EVENT_QUEUE_CAPACITY = 256;
+    // Max number of capture windows being filled or waiting for the listener, a power of two.
+    private static final int CAPTURE_WINDOW_POOL_SIZE = 4;
+    // Max number of episode summaries waiting for the listener, a power of two.
+    private static final int EPISODE_SUMMARY_QUEUE_CAPACITY = 16;
+    // About 8 seconds of samples at the fastest sensor rate.
+    private static final int RAW_SAMPLE_BUFFER_CAPACITY = 4096;
+
+    // Adaptive sampling switches to the fast rate at a half of the limit and back to the slow
+    // one after the boost stays below 30% of it for 5 seconds.
+    private static final float FAST_SAMPLING_APPROACH_FRACTION = 0.5f;
+    private static final float FAST_SAMPLING_RELEASE_FRACTION = 0.3f;
+    private static final long FAST_SAMPLING_HOLD_NS = 5000000000L;
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    // Orientation changes slowly, about 15 Hz is enough to follow the device in a holder.
+    private static final int ORIENTATION_SENSOR_DELAY = SensorManager.SENSOR_DELAY_UI;
+
     private final SensorManager mSensorMgr;
     private final Sensor mSensor;
-    private final Handler.Callback mSensorHandlerCallback = new BoostLimitHandlerCallback();
+    private final ExceedDispatcher mExceedDispatcher =
+            new ExceedDispatcher(EXCEED_EVENT_QUEUE_CAPACITY, CAPTURE_WINDOW_POOL_SIZE,
+                    EPISODE_SUMMARY_QUEUE_CAPACITY);
+    private final SampleRateMonitor mSampleRateMonitor = new SampleRateMonitor();
 
     private AccelerometerListener mAccelerometerListener;
-    private BoostLimitListener mBoostLimitListener;
+    private RawSampleConsumer mRawSampleConsumer;
+    private SampleRingBuffer mRawSampleBuffer;
+    private SampleCaptureThread mSampleCaptureThread;
+    private CaptureWindowListener mWindowListener;
+    private int mPreTriggerSamples;
+    private int mPostTriggerSamples;
+    private WindowCapture mWindowCapture;
+    private volatile PipelineInstrumentation mInstrumentation;
+    private int mSpectrumWindowSize;
+    private SpectrumBand[] mSpectrumBands;
+    private Sensor mOrientationSensor;
+    // Guarded by mConfigLock.
+    private boolean mIsFusedMode = false;
     private Handler mSensorChangedHandler;
 
+    private final Object mRegistrationLock = new Object();
+    private boolean mIsListenerRegistered = false;
+    private int mMaxReportLatencyUs;
+    private boolean mIsAdaptiveSampling = false;
+    private SamplingRateController mRateController;
+
+    private final Object mThresholdLock = new Object();
+    private ThresholdIndex mThresholdIndex =
+            ThresholdIndex.empty(AccelConstants.DEFAULT_BOOST_HYSTERESIS);
+    private int mNextThresholdId = 0;
+
+    // Taken after mThresholdLock when both are needed.
+    private final Object mConfigLock = new Object();
+    // Settings and stages of the detection, the listener is always given the whole snapshot.
+    private DetectionConfig mConfig = new DetectionConfig.Builder(
+            TriggerSettings.forLimit(AccelConstants.DEFAULT_BOOST_VALUE))
+            .setThresholdCrossingQueue(mExceedDispatcher)
+            .setVibrationAlertQueue(mExceedDispatcher)
+            .build();
+
+    /**
+     * Called on the dispatch thread, not on the main one.
+     */
     public interface BoostLimitListener {
-        void onBoostLimitExceed(float value);
+        /**
+         * @param timestamp sensor timestamp of the sample which exceeded the limit, in nanoseconds.
+         * @param value boost module of the sample.
+         */
+        void onBoostLimitExceed(long timestamp, float value);
     }
 
-    public class NoAccelerometerHardwareException extends RuntimeException {
-        NoAccelerometerHardwareException(String message) {
-            super(message);
-        }
+    /**
+     * Called on the dispatch thread, not on the main one.
+     */
+    public interface CaptureWindowListener {
+        /**
+         * @param window raw samples around an exceed. It is reused after the call returns,
+         *               so the samples must be copied if they are needed later.
+         */
+        void onCaptureWindow(CaptureWindow window);
     }
 
-    private class BoostLimitHandlerCallback implements Handler.Callback {
+    /**
+     * Called on the dispatch thread, not on the main one.
+     */
+    public interface EpisodeSummaryListener {
+        /**
+         * @param summary peak, duration and energy of an ended exceed episode. It is reused
+         *                after the call returns.
+         */
+        void onEpisodeSummary(EpisodeSummary summary);
+    }
 
-        @Override
-        public boolean handleMessage(Message msg) {
-            if (msg.what == AccelerometerHandler.BOOST_LIMIT_MSG_ID) {
-                mBoostLimitListener.onBoostLimitExceed((Float) msg.obj);
-                return true;
-            }
+    /**
+     * Called on the dispatch thread, not on the main one.
+     */
+    public interface VibrationListener {
+        /**
+         * @param timestamp sensor timestamp the window which exceeded the limit ends at,
+         *                  in nanoseconds.
+         * @param value statistic of the window, in m/s2.
+         */
+        void onSustainedVibration(long timestamp, float value);
+    }
 
-            return false;
-        }
+    /**
+     * Called on the dispatch thread, not on the main one.
+     */
+    public interface BandEnergyListener {
+        /**
+         * @param band position of the band passed to {@link #setBandEnergyListener}.
+         * @param timestamp sensor timestamp of the last sample of the analyzed window,
+         *                  in nanoseconds.
+         * @param rmsBoost RMS boost of the vibration within the band, in m/s2.
+         */
+        void onBandEnergyExceed(int band, long timestamp, float rmsBoost);
+    }
+
+    /**
+     * Called on the dispatch thread, not on the main one.
+     */
+    public interface AxisExceedListener {
+        /**
+         * @param axis {@link VehicleFrame#AXIS_LONGITUDINAL}, {@link VehicleFrame#AXIS_LATERAL}
+         *             or {@link VehicleFrame#AXIS_VERTICAL}.
+         * @param timestamp sensor timestamp of the sample which exceeded the axis limit,
+         *                  in nanoseconds.
+         * @param value absolute boost along the axis.
+         */
+        void onAxisExceed(int axis, long timestamp, float value);
     }
 
-    private static class AccelerometerHandler implements AccelerometerEventQueue {
+    /**
+     * Called on the dispatch thread, not on the main one.
+     */
+    public interface DegradedExceedListener {
+        /**
+         * Called after {@link BoostLimitListener#onBoostLimitExceed} for the exceeds detected
+         * while the samples were late or missing, their timestamp and value are less certain.
+         */
+        void onDegradedExceed(long timestamp, float value);
+    }
 
-        static final int BOOST_LIMIT_MSG_ID = 1;
+    public class NoAccelerometerHardwareException extends RuntimeException {
+        NoAccelerometerHardwareException(String message) {
+            super(message);
+        }
+    }
 
-        private final Handler mHandler;
+    /**
+     * Re-registers the sensor listener with the rate chosen by the controller. The controller
+     * calls it from the sensor callback, so the registration is posted to run after it.
+     */
+    private class SamplingRateHandler implements SamplingRateController.Listener, Runnable {
 
-        AccelerometerHandler(Handler handler) {
-            mHandler = handler;
+        @Override
+        public void onSamplingRateChange(int rate) {
+            mSensorChangedHandler.post(this);
         }
 
         @Override
-        public void queueBoostLimitExceed(float boostValue) {
-            Message.obtain(mHandler, BOOST_LIMIT_MSG_ID, boostValue).sendToTarget();
+        public void run() {
+            synchronized (mRegistrationLock) {
+                if (!mIsListenerRegistered) {
+                    return;
+                }
+
+                final int rate = mRateController.getRate();
+                Log.d(TAG, "Switch sampling rate to " + rate);
+                // The orientation sensor is registered with the same listener and stays.
+                mSensorMgr.unregisterListener(mAccelerometerListener, mSensor);
+                registerAccelerometerListener(toSensorDelay(rate));
+            }
         }
     }
 
@@ -106,40 +263,543 @@ public final class AccelerometerManager {
         Log.d(TAG, "Sensor name = " + mSensor.getName());
         Log.d(TAG, "Resolution = " + mSensor.getResolution() + ", max range = "
                 + mSensor.getMaximumRange());
+        Log.d(TAG, "FIFO size = " + mSensor.getFifoMaxEventCount() + ", reserved = "
+                + mSensor.getFifoReservedEventCount());
+    }
+
+    /**
+     * @return true if the sensor has a hardware FIFO, so its events can be batched.
+     */
+    public boolean isBatchingSupported() {
+        return mSensor.getFifoMaxEventCount() > 0;
     }
 
     public void start(BoostLimitListener limitListener, float boostLimit) {
-        Log.d(TAG, "Start");
+        start(limitListener, TriggerSettings.forLimit(boostLimit), NO_BATCHING_LATENCY_US);
+    }
+
+    /**
+     * Starts tracking with sensor batching. Samples are collected in the sensor FIFO and
+     * delivered in bursts at most {@code maxReportLatencyUs} late, so the application processor
+     * is not woken up for every sample. Batching is not used when the sensor has no FIFO.
+     *
+     * @param triggerSettings limit and debouncing of the exceed events.
+     * @param maxReportLatencyUs max delay between a sample and its delivery, in microseconds.
+     *                           {@link #NO_BATCHING_LATENCY_US} disables batching.
+     */
+    public void start(BoostLimitListener limitListener, TriggerSettings triggerSettings,
+                      int maxReportLatencyUs) {
+        Log.d(TAG, "Start, " + triggerSettings + ", max report latency = "
+                + maxReportLatencyUs + " us");
 
-        mBoostLimitListener = limitListener;
+        mExceedDispatcher.addListener(limitListener);
 
         HandlerThread handlerThread = new HandlerThread("SensorChangedThread");
         handlerThread.start();
         mSensorChangedHandler = new Handler(handlerThread.getLooper());
 
-        mAccelerometerListener = new AccelerometerListener(
-                new AccelerometerHandler(new Handler(mSensorHandlerCallback)),
-                boostLimit);
+        // Without a consumer nothing would drain the buffer, so neither is created.
+        if (mRawSampleConsumer != null) {
+            mRawSampleBuffer = new SampleRingBuffer(RAW_SAMPLE_BUFFER_CAPACITY);
+            mSampleCaptureThread = new SampleCaptureThread(mRawSampleBuffer, mRawSampleConsumer);
+            mSampleCaptureThread.start();
+        } else {
+            mRawSampleBuffer = null;
+        }
+        mWindowCapture = mWindowListener != null ? new WindowCapture(mPreTriggerSamples,
+                mPostTriggerSamples, CAPTURE_WINDOW_POOL_SIZE, mExceedDispatcher) : null;
+        mRateController = mIsAdaptiveSampling ? new SamplingRateController(
+                FAST_SAMPLING_APPROACH_FRACTION, FAST_SAMPLING_RELEASE_FRACTION,
+                FAST_SAMPLING_HOLD_NS, new SamplingRateHandler()) : null;
+
+        final VehicleFrame vehicleFrame;
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder()
+                    .setTriggerSettings(triggerSettings)
+                    .setWindowCapture(mWindowCapture)
+                    .setSpectrumAnalyzer(mSpectrumBands != null ? new SpectrumAnalyzer(
+                            mSpectrumWindowSize, AccelConstants.DEFAULT_BOOST_HYSTERESIS,
+                            mExceedDispatcher, mSpectrumBands) : null)
+                    .setVehicleFrame(mIsFusedMode ? new VehicleFrame(mExceedDispatcher) : null)
+                    .setSampleRateMonitor(mSampleRateMonitor)
+                    .setSamplingRateController(mRateController)
+                    .build();
+            // Created with the lock held, so a change made meanwhile is published to it.
+            mAccelerometerListener = new AccelerometerListener(mExceedDispatcher, mConfig,
+                    mRawSampleBuffer);
+            vehicleFrame = mConfig.getVehicleFrame();
+        }
+        mAccelerometerListener.setInstrumentation(mInstrumentation);
+
+        synchronized (mRegistrationLock) {
+            mMaxReportLatencyUs = maxReportLatencyUs;
+            registerAccelerometerListener(toSensorDelay(SamplingRateController.RATE_SLOW));
+            if (vehicleFrame != null) {
+                // Batched like the samples, the orientation is not worth waking up for.
+                mSensorMgr.registerListener(mAccelerometerListener, mOrientationSensor,
+                        ORIENTATION_SENSOR_DELAY, mMaxReportLatencyUs, mSensorChangedHandler);
+            }
+        }
+    }
+
+    /**
+     * May be called from any thread.
+     *
+     * @return configuration the samples are checked with, the trigger settings passed to
+     * {@link #start} are in it since the start.
+     */
+    public DetectionConfig getDetectionConfig() {
+        synchronized (mConfigLock) {
+            return mConfig;
+        }
+    }
+
+    /**
+     * Replaces the trigger settings, the filter, the vibration and the axis settings with the
+     * ones of the configuration at once, no sample is checked with a part of them changed.
+     * The stages, the queues and the thresholds are owned by the manager and are kept, so
+     * a configuration fetched earlier or built from scratch never removes them. The axis
+     * settings are taken only in the fused mode. The trigger settings replace the ones passed
+     * to {@link #start}. A filter must not be shared, it keeps the state of the sample stream.
+     */
+    public void setDetectionConfig(DetectionConfig config) {
+        Log.d(TAG, "Set " + config);
 
-        mSensorMgr.registerListener(mAccelerometerListener, mSensor,
-                SensorManager.SENSOR_DELAY_NORMAL, mSensorChangedHandler);
+        synchronized (mConfigLock) {
+            final DetectionConfig.Builder builder = mConfig.toBuilder()
+                    .setTriggerSettings(config.getTriggerSettings())
+                    .setSampleFilter(config.getSampleFilter())
+                    .setVibrationSettings(config.getVibrationSettings());
+            if (mIsFusedMode) {
+                builder.setAxisTriggerSettings(config.getAxisTriggerSettings());
+            }
+            publishConfig(builder.build());
+        }
     }
 
     public void setBoostLimit(float boostLimit) {
         Log.d(TAG, "Set boost limit to " + boostLimit);
 
-        if (mAccelerometerListener != null) {
-            mAccelerometerListener.setBoostLimit(boostLimit);
+        synchronized (mConfigLock) {
+            publishConfig(mConfig.withBoostLimit(boostLimit));
+        }
+    }
+
+    public void setTriggerSettings(TriggerSettings triggerSettings) {
+        Log.d(TAG, "Set " + triggerSettings);
+
+        synchronized (mConfigLock) {
+            publishConfig(mConfig.withTriggerSettings(triggerSettings));
+        }
+    }
+
+    /**
+     * Sets the filter applied to the samples ahead of the limit detection, null disables
+     * filtering. The filter must not be shared, it keeps the state of the sample stream.
+     */
+    public void setSampleFilter(SampleFilter filter) {
+        Log.d(TAG, "Set sample filter " + filter);
+
+        synchronized (mConfigLock) {
+            publishConfig(mConfig.withSampleFilter(filter));
+        }
+    }
+
+    /**
+     * Enables the sampling at the slow rate while the boost stays far below the limit and at
+     * the fastest one when it approaches the limit. Must be called before {@link #start}.
+     */
+    public void setAdaptiveSampling(boolean isEnabled) {
+        mIsAdaptiveSampling = isEnabled;
+    }
+
+    /**
+     * @param rate {@link SamplingRateController#RATE_SLOW} or
+     *             {@link SamplingRateController#RATE_FAST}.
+     * @return time spent at the rate since the start, in nanoseconds. All the time is spent
+     * at the slow rate when the adaptive sampling is disabled.
+     */
+    public long getTimeAtSamplingRateNs(int rate) {
+        return mRateController == null ? 0 : mRateController.getTimeAtRateNs(rate);
+    }
+
+    /**
+     * Sets the consumer which receives every raw sample on a separate capture thread.
+     * The samples are passed in batches, when a quarter of the buffer is filled, on an exceed
+     * and on {@link #stop}. Must be called before {@link #start}, null disables the capture.
+     */
+    public void setRawSampleConsumer(RawSampleConsumer consumer) {
+        mRawSampleConsumer = consumer;
+    }
+
+    /**
+     * Sets the listener which receives the raw samples around every exceed, null disables
+     * the capture. Must be called before {@link #start}.
+     *
+     * @param preTriggerSamples number of samples captured before the one which triggered
+     *                          the exceed.
+     * @param postTriggerSamples number of samples captured after it.
+     */
+    public void setCaptureWindowListener(CaptureWindowListener listener, int preTriggerSamples,
+                                         int postTriggerSamples) {
+        mWindowListener = listener;
+        mPreTriggerSamples = preTriggerSamples;
+        mPostTriggerSamples = postTriggerSamples;
+        mExceedDispatcher.setCaptureWindowListener(listener);
+    }
+
+    /**
+     * Sets the listener called when the vibration within a frequency band exceeds the band
+     * limit, null disables the spectrum analysis. Must be called before {@link #start}.
+     *
+     * @param windowSize number of samples in the analyzed windows, a power of two. Frequencies
+     *                   are resolved to the sample rate divided by it.
+     */
+    public void setBandEnergyListener(BandEnergyListener listener, int windowSize,
+                                      SpectrumBand... bands) {
+        mSpectrumWindowSize = windowSize;
+        mSpectrumBands = listener != null ? bands.clone() : null;
+        mExceedDispatcher.setBandEnergyListener(listener);
+    }
+
+    /**
+     * Enables the fused mode: the gravity sensor, or the rotation vector one if there is no
+     * gravity sensor, orients the samples, so the boost along the vehicle axes is checked
+     * against the axis limits. Braking, cornering and bumps are reported to the listener with
+     * their axis. Null listener disables the mode. Must be called before {@link #start}.
+     *
+     * @return false if the device has no sensor to orient the samples, the mode is disabled
+     * then.
+     */
+    public boolean setAxisExceedListener(AxisExceedListener listener,
+                                         AxisTriggerSettings settings) {
+        mOrientationSensor = mSensorMgr.getDefaultSensor(Sensor.TYPE_GRAVITY);
+        if (mOrientationSensor == null) {
+            mOrientationSensor = mSensorMgr.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+        }
+        if (listener != null && mOrientationSensor == null) {
+            Log.w(TAG, "No gravity or rotation vector sensor, axis limits are not checked");
+            listener = null;
+        }
+
+        final boolean isFusedMode = listener != null;
+        mExceedDispatcher.setAxisExceedListener(listener);
+        synchronized (mConfigLock) {
+            mIsFusedMode = isFusedMode;
+            publishConfig(mConfig.withAxisTriggerSettings(isFusedMode ? settings : null));
+        }
+        return isFusedMode;
+    }
+
+    /**
+     * Changes the axis limits of the fused mode enabled by {@link #setAxisExceedListener}.
+     */
+    public void setAxisTriggerSettings(AxisTriggerSettings settings) {
+        Log.d(TAG, "Set " + settings);
+
+        synchronized (mConfigLock) {
+            if (mIsFusedMode) {
+                publishConfig(mConfig.withAxisTriggerSettings(settings));
+            }
+        }
+    }
+
+    /**
+     * Sets the listener which receives the summary of every exceed episode when the boost
+     * falls back below the limit, null disables the summaries. Must be called before
+     * {@link #start}.
+     */
+    public void setEpisodeSummaryListener(EpisodeSummaryListener listener) {
+        mExceedDispatcher.setEpisodeSummaryListener(listener);
+        synchronized (mConfigLock) {
+            publishConfig(mConfig.toBuilder()
+                    .setEpisodeSummaryQueue(listener != null ? mExceedDispatcher : null)
+                    .build());
+        }
+    }
+
+    /**
+     * Sets the listener which is told about the exceeds detected during degraded sampling,
+     * within a second after a gap in the samples or while they come much slower than
+     * requested. Null listener disables it. Must be called before {@link #start}.
+     */
+    public void setDegradedExceedListener(DegradedExceedListener listener) {
+        mExceedDispatcher.setDegradedExceedListener(listener);
+        synchronized (mConfigLock) {
+            publishConfig(mConfig.toBuilder()
+                    .setDegradedExceedQueue(listener != null ? mExceedDispatcher : null)
+                    .build());
+        }
+    }
+
+    /**
+     * May be called from any thread.
+     *
+     * @return effective rate, jitter and dropped samples of the sensor, counted since
+     * the manager was created.
+     */
+    public SampleRateStats getSampleRateStats() {
+        return mSampleRateMonitor.getStats();
+    }
+
+    /**
+     * Sets the listener of the sustained vibration alerts of {@link #setVibrationSettings},
+     * null if only the statistics are needed. May be called at any time.
+     */
+    public void setVibrationListener(VibrationListener listener) {
+        mExceedDispatcher.setVibrationListener(listener);
+    }
+
+    /**
+     * Keeps statistics of the boost module over a sliding window and alerts the vibration
+     * listener when the statistic of the settings exceeds their limit, for example on a rough
+     * road. Null settings disable the statistics. May be called at any time, the statistics
+     * start anew when the window changes.
+     */
+    public void setVibrationSettings(VibrationSettings settings) {
+        Log.d(TAG, "Set " + settings);
+
+        synchronized (mConfigLock) {
+            publishConfig(mConfig.withVibrationSettings(settings));
+        }
+    }
+
+    /**
+     * @return statistics of the latest complete window, null if they are disabled or no window
+     * has ended yet.
+     */
+    public RollingStatsSnapshot getVibrationStats() {
+        return mAccelerometerListener == null ? null : mAccelerometerListener.getVibrationStats();
+    }
+
+    /**
+     * @return memory preallocated for the capture windows and the sample history, in bytes.
+     */
+    public long getCaptureWindowMemoryBytes() {
+        return mWindowCapture == null ? 0 : mWindowCapture.getMemoryBytes();
+    }
+
+    /**
+     * @return number of exceeds not captured because the window listener did not keep up.
+     */
+    public long getDroppedCaptureWindowCount() {
+        return mWindowCapture == null ? 0 : mWindowCapture.getDroppedCount();
+    }
+
+    /**
+     * @return number of raw samples dropped because the consumer did not keep up.
+     */
+    public long getRawSampleOverflowCount() {
+        return mRawSampleBuffer == null ? 0 : mRawSampleBuffer.getOverflowCount();
+    }
+
+    /**
+     * Registers one more listener of the exceed events. Listeners are called one after another
+     * on a single dispatch thread, a slow listener delays the others.
+     */
+    public void addBoostLimitListener(BoostLimitListener listener) {
+        mExceedDispatcher.addListener(listener);
+    }
+
+    public void removeBoostLimitListener(BoostLimitListener listener) {
+        mExceedDispatcher.removeListener(listener);
+    }
+
+    /**
+     * Registers a listener called when the boost crosses the threshold, for example one of
+     * the alert tiers. The threshold is re-armed when the boost falls below it by the default
+     * hysteresis. It does not use the dwell time and the refractory period of the limit.
+     * A listener may be registered with several thresholds. May be called at any time,
+     * the sensor thread is never blocked by the registration.
+     *
+     * @param threshold boost module in m/s2.
+     */
+    public void addThresholdListener(float threshold, BoostLimitListener listener) {
+        Log.d(TAG, "Add threshold " + threshold);
+
+        synchronized (mThresholdLock) {
+            final int id = mNextThresholdId++;
+            // The listener is put first, so its crossings are never missed by the dispatch.
+            mExceedDispatcher.putThresholdListener(id, listener);
+            mThresholdIndex = mThresholdIndex.withThreshold(id, threshold);
+            publishThresholdIndex();
+        }
+    }
+
+    /**
+     * Removes all thresholds of the listener.
+     */
+    public void removeThresholdListener(BoostLimitListener listener) {
+        synchronized (mThresholdLock) {
+            for (int id : mExceedDispatcher.removeThresholdListener(listener)) {
+                mThresholdIndex = mThresholdIndex.withoutId(id);
+            }
+            publishThresholdIndex();
+        }
+    }
+
+    /**
+     * @return number of exceed events dropped because the listeners did not keep up.
+     */
+    public long getDroppedEventCount() {
+        return mExceedDispatcher.getDroppedEventCount();
+    }
+
+    /**
+     * @return number of exceed events waiting for the dispatch to the listeners.
+     */
+    public int getExceedQueueDepth() {
+        return mExceedDispatcher.getQueueDepth();
+    }
+
+    public long getMaxExceedQueueDepth() {
+        return mExceedDispatcher.getMaxQueueDepth();
+    }
+
+    /**
+     * @return mean time between queuing an exceed event and its dispatch, in nanoseconds.
+     */
+    public long getMeanDispatchLatencyNs() {
+        return mExceedDispatcher.getMeanDispatchLatencyNs();
+    }
+
+    public long getMaxDispatchLatencyNs() {
+        return mExceedDispatcher.getMaxDispatchLatencyNs();
+    }
+
+    /**
+     * Enables or disables the latency histograms of the sensor pipeline stages, may be called
+     * at any time. Enabling starts new histograms. The disabled instrumentation costs
+     * a volatile read per sample and per dispatched batch.
+     */
+    public void setInstrumentationEnabled(boolean isEnabled) {
+        Log.d(TAG, "Set instrumentation enabled = " + isEnabled);
+
+        final PipelineInstrumentation instrumentation =
+                isEnabled ? new PipelineInstrumentation() : null;
+        mInstrumentation = instrumentation;
+        mExceedDispatcher.setInstrumentation(instrumentation);
+        final AccelerometerListener listener = mAccelerometerListener;
+        if (listener != null) {
+            listener.setInstrumentation(instrumentation);
         }
     }
 
+    /**
+     * @return snapshot of the pipeline histograms, null if the instrumentation is disabled.
+     */
+    public PipelineStats getPipelineStats() {
+        final PipelineInstrumentation instrumentation = mInstrumentation;
+        return instrumentation == null ? null : instrumentation.snapshot();
+    }
+
+    /**
+     * Stops the sensor. The capture windows still waiting for their post-trigger samples are
+     * cut short, and they are dispatched with the events queued before the stop on the calling
+     * thread before it returns, so no exceed is lost.
+     */
     public void stop() {
-        Log.d(TAG, "Stop");
+        Log.d(TAG, "Stop, dropped exceed events = " + getDroppedEventCount()
+                + ", max queue depth = " + getMaxExceedQueueDepth()
+                + ", mean dispatch latency = " + getMeanDispatchLatencyNs()
+                + " ns, max = " + getMaxDispatchLatencyNs() + " ns");
+
+        Log.d(TAG, "Sampling " + getSampleRateStats());
+
+        final PipelineStats pipelineStats = getPipelineStats();
+        if (pipelineStats != null) {
+            Log.d(TAG, "Pipeline " + pipelineStats);
+        }
+
+        if (mWindowCapture != null) {
+            Log.d(TAG, "Capture windows = " + mWindowCapture.getCapturedCount()
+                    + ", dropped = " + mWindowCapture.getDroppedCount()
+                    + ", memory = " + mWindowCapture.getMemoryBytes() + " bytes");
+        }
+
+        synchronized (mRegistrationLock) {
+            mSensorMgr.unregisterListener(mAccelerometerListener);
+            mIsListenerRegistered = false;
+        }
 
         if (mSensorChangedHandler != null) {
-            mSensorChangedHandler.getLooper().quit();
+            final WindowCapture windowCapture = mWindowCapture;
+            if (windowCapture != null) {
+                // Runs after the samples delivered before the unregistration.
+                mSensorChangedHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        windowCapture.flush();
+                    }
+                });
+            }
+            final Looper looper = mSensorChangedHandler.getLooper();
+            looper.quitSafely();
+            try {
+                looper.getThread().join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Nothing is queued anymore, the last exceeds and windows are dispatched right away.
+        mExceedDispatcher.flush();
+
+        if (mRateController != null) {
+            Log.d(TAG, "Time at slow rate = "
+                    + getTimeAtSamplingRateNs(SamplingRateController.RATE_SLOW)
+                    + " ns, at fast rate = "
+                    + getTimeAtSamplingRateNs(SamplingRateController.RATE_FAST)
+                    + " ns, switches = " + mRateController.getSwitchCount());
+        }
+
+        if (mSampleCaptureThread != null) {
+            Log.d(TAG, "Raw samples written = " + mRawSampleBuffer.getWrittenCount()
+                    + ", overflowed = " + mRawSampleBuffer.getOverflowCount());
+            mSampleCaptureThread.interrupt();
+            mSampleCaptureThread = null;
         }
+    }
+
+    // Must be called with mThresholdLock held.
+    private void publishThresholdIndex() {
+        synchronized (mConfigLock) {
+            publishConfig(mConfig.withThresholdIndex(
+                    mThresholdIndex.size() == 0 ? null : mThresholdIndex));
+        }
+    }
+
+    // Must be called with mConfigLock held.
+    private void publishConfig(DetectionConfig config) {
+        mConfig = config;
+        if (mAccelerometerListener != null) {
+            mAccelerometerListener.setConfig(config);
+        }
+    }
+
+    // Must be called with mRegistrationLock held.
+    private void registerAccelerometerListener(int sensorDelay) {
+        mIsListenerRegistered = true;
+        // Only the fastest rate is known, the others are hints which the system may exceed.
+        mSampleRateMonitor.setNominalIntervalNs(sensorDelay == SensorManager.SENSOR_DELAY_FASTEST
+                ? mSensor.getMinDelay() * NANOS_PER_MICRO : 0);
+
+        if (mMaxReportLatencyUs > NO_BATCHING_LATENCY_US) {
+            if (!isBatchingSupported()) {
+                Log.d(TAG, "Sensor has no FIFO, batching is not used");
+            } else if (mSensorMgr.registerListener(mAccelerometerListener, mSensor, sensorDelay,
+                    mMaxReportLatencyUs, mSensorChangedHandler)) {
+                return;
+            } else {
+                Log.w(TAG, "Failed to register batched listener, batching is not used");
+            }
+        }
+
+        mSensorMgr.registerListener(mAccelerometerListener, mSensor, sensorDelay,
+                mSensorChangedHandler);
+    }
 
-        mSensorMgr.unregisterListener(mAccelerometerListener);
+    private static int toSensorDelay(int samplingRate) {
+        return samplingRate == SamplingRateController.RATE_FAST
+                ? SensorManager.SENSOR_DELAY_FASTEST : SensorManager.SENSOR_DELAY_NORMAL;
     }
 }
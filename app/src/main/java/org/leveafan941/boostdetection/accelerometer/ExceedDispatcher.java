@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.accelerometer;
+
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.AxisExceedQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitEventRing;
+import org.leveafan941.boostdetection.detection.CaptureWindow;
+import org.leveafan941.boostdetection.detection.CaptureWindowQueue;
+import org.leveafan941.boostdetection.detection.CaptureWindowRing;
+import org.leveafan941.boostdetection.detection.DegradedExceedQueue;
+import org.leveafan941.boostdetection.detection.EpisodeSummary;
+import org.leveafan941.boostdetection.detection.EpisodeSummaryQueue;
+import org.leveafan941.boostdetection.detection.EpisodeSummaryRing;
+import org.leveafan941.boostdetection.detection.ThresholdCrossingQueue;
+import org.leveafan941.boostdetection.detection.VehicleFrame;
+import org.leveafan941.boostdetection.detection.VibrationAlertQueue;
+import org.leveafan941.boostdetection.detection.spectrum.BandEnergyQueue;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans exceed events out to the registered listeners on a background executor. Events wait
+ * in a preallocated ring and only one drain task is pending at a time, so a burst of events
+ * costs a single task. The sensor thread never blocks: when the listeners lag and the ring is
+ * full, new events are dropped and counted.
+ *
+ * <p>Crossings of the {@code ThresholdIndex} thresholds share the ring with the limit exceeds,
+ * tagged with the threshold id, and go to the listener registered with the id. Sustained
+ * vibration alerts, band energy events, vehicle axis exceeds and exceeds detected during
+ * degraded sampling share the ring too and go to their listeners.
+ * Capture windows
+ * go through their own ring and are released once the window listener returns. Episode
+ * summaries go through their own ring too.
+ *
+ * <p>Dispatch latency is measured from queuing the first event of a drained batch to the start
+ * of its dispatch, so it is the worst latency within the batch. When a
+ * {@link PipelineInstrumentation} is set, the latency and the time the listeners take for every
+ * event are recorded into its histograms too.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+final class ExceedDispatcher implements AccelerometerEventQueue, ThresholdCrossingQueue,
+        CaptureWindowQueue, EpisodeSummaryQueue, VibrationAlertQueue, BandEnergyQueue,
+        AxisExceedQueue, DegradedExceedQueue, Runnable {
+
+    private static final String THREAD_NAME = "ExceedDispatchThread";
+    // The dispatch thread exits when there are no events for this time.
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private static final AccelerometerManager.BoostLimitListener[] NO_LISTENERS =
+            new AccelerometerManager.BoostLimitListener[0];
+
+    // Tag of the limit exceed events, threshold ids are not negative.
+    private static final int LIMIT_EXCEED_TAG = -1;
+    private static final int VIBRATION_ALERT_TAG = -2;
+    private static final int DEGRADED_EXCEED_TAG = -3;
+    // Tags of the axis exceeds, the axis is counted down from it.
+    private static final int FIRST_AXIS_TAG = -4;
+    // Tags from this one down are band energy events, the band is counted down from it.
+    private static final int FIRST_BAND_TAG = FIRST_AXIS_TAG - VehicleFrame.AXIS_COUNT;
+
+    /**
+     * Threshold listeners sorted by id, both arrays are published at once.
+     */
+    private static final class ThresholdListeners {
+
+        final int[] mIds;
+        final AccelerometerManager.BoostLimitListener[] mListeners;
+
+        ThresholdListeners(int[] ids, AccelerometerManager.BoostLimitListener[] listeners) {
+            mIds = ids;
+            mListeners = listeners;
+        }
+    }
+
+    private final BoostLimitEventRing mEventRing;
+    private final CaptureWindowRing mWindowRing;
+    private final EpisodeSummaryRing mSummaryRing;
+    private final Executor mExecutor;
+    private final AtomicBoolean mIsDrainScheduled = new AtomicBoolean(false);
+    // Held while the rings are drained, so a flush never drains them next to the dispatch.
+    private final Object mDrainLock = new Object();
+    private volatile long mBatchQueuedNs;
+
+    private final Object mListenersLock = new Object();
+    // Copied on write, so the dispatch loop does not allocate an iterator.
+    private volatile AccelerometerManager.BoostLimitListener[] mListeners = NO_LISTENERS;
+    private volatile ThresholdListeners mThresholdListeners =
+            new ThresholdListeners(new int[0], NO_LISTENERS);
+
+    private volatile PipelineInstrumentation mInstrumentation;
+    // Instrumentation of the batch being drained, used by the dispatch thread only.
+    private PipelineInstrumentation mBatchInstrumentation;
+
+    private final ThresholdCrossingQueue mFanOut = new ThresholdCrossingQueue() {
+        @Override
+        public void queueThresholdCrossing(int tag, long timestamp, float boostValue) {
+            final PipelineInstrumentation instrumentation = mBatchInstrumentation;
+            if (instrumentation == null) {
+                fanOut(tag, timestamp, boostValue);
+                return;
+            }
+
+            final long startNs = System.nanoTime();
+            fanOut(tag, timestamp, boostValue);
+            instrumentation.onDispatch(System.nanoTime() - startNs);
+        }
+
+        private void fanOut(int tag, long timestamp, float boostValue) {
+            if (tag == LIMIT_EXCEED_TAG) {
+                for (AccelerometerManager.BoostLimitListener listener : mListeners) {
+                    listener.onBoostLimitExceed(timestamp, boostValue);
+                }
+                return;
+            }
+            if (tag == VIBRATION_ALERT_TAG) {
+                final AccelerometerManager.VibrationListener listener = mVibrationListener;
+                if (listener != null) {
+                    listener.onSustainedVibration(timestamp, boostValue);
+                }
+                return;
+            }
+            if (tag == DEGRADED_EXCEED_TAG) {
+                final AccelerometerManager.DegradedExceedListener listener = mDegradedListener;
+                if (listener != null) {
+                    listener.onDegradedExceed(timestamp, boostValue);
+                }
+                return;
+            }
+            if (tag <= FIRST_BAND_TAG) {
+                final AccelerometerManager.BandEnergyListener listener = mBandListener;
+                if (listener != null) {
+                    listener.onBandEnergyExceed(FIRST_BAND_TAG - tag, timestamp, boostValue);
+                }
+                return;
+            }
+            if (tag <= FIRST_AXIS_TAG) {
+                final AccelerometerManager.AxisExceedListener listener = mAxisListener;
+                if (listener != null) {
+                    listener.onAxisExceed(FIRST_AXIS_TAG - tag, timestamp, boostValue);
+                }
+                return;
+            }
+
+            final ThresholdListeners thresholdListeners = mThresholdListeners;
+            final int position = Arrays.binarySearch(thresholdListeners.mIds, tag);
+            // The listener may be removed while its crossing waits in the ring.
+            if (position >= 0) {
+                thresholdListeners.mListeners[position].onBoostLimitExceed(timestamp,
+                        boostValue);
+            }
+        }
+    };
+
+    private volatile AccelerometerManager.VibrationListener mVibrationListener;
+    private volatile AccelerometerManager.BandEnergyListener mBandListener;
+    private volatile AccelerometerManager.AxisExceedListener mAxisListener;
+    private volatile AccelerometerManager.DegradedExceedListener mDegradedListener;
+
+    private volatile AccelerometerManager.CaptureWindowListener mWindowListener;
+
+    private final CaptureWindowQueue mWindowFanOut = new CaptureWindowQueue() {
+        @Override
+        public void queueCaptureWindow(CaptureWindow window) {
+            final AccelerometerManager.CaptureWindowListener listener = mWindowListener;
+            try {
+                if (listener != null) {
+                    listener.onCaptureWindow(window);
+                }
+            } finally {
+                window.release();
+            }
+        }
+    };
+
+    private volatile AccelerometerManager.EpisodeSummaryListener mSummaryListener;
+
+    private final EpisodeSummaryQueue mSummaryFanOut = new EpisodeSummaryQueue() {
+        @Override
+        public void queueEpisodeSummary(EpisodeSummary summary) {
+            final AccelerometerManager.EpisodeSummaryListener listener = mSummaryListener;
+            if (listener != null) {
+                listener.onEpisodeSummary(summary);
+            }
+        }
+    };
+
+    // Written by the dispatch thread only.
+    private final AtomicLong mBatchCount = new AtomicLong();
+    private final AtomicLong mTotalLatencyNs = new AtomicLong();
+    private final AtomicLong mMaxLatencyNs = new AtomicLong();
+    private final AtomicLong mMaxQueueDepth = new AtomicLong();
+
+    /**
+     * @param capacity max number of not dispatched events, must be a power of two.
+     * @param windowCapacity max number of not dispatched capture windows, must be a power
+     *                       of two.
+     * @param summaryCapacity max number of not dispatched episode summaries, must be a power
+     *                        of two.
+     */
+    ExceedDispatcher(int capacity, int windowCapacity, int summaryCapacity) {
+        this(capacity, windowCapacity, summaryCapacity, createExecutor());
+    }
+
+    ExceedDispatcher(int capacity, int windowCapacity, int summaryCapacity, Executor executor) {
+        mEventRing = new BoostLimitEventRing(capacity);
+        mWindowRing = new CaptureWindowRing(windowCapacity);
+        mSummaryRing = new EpisodeSummaryRing(summaryCapacity);
+        mExecutor = executor;
+    }
+
+    /**
+     * @param instrumentation null disables the instrumentation.
+     */
+    void setInstrumentation(PipelineInstrumentation instrumentation) {
+        mInstrumentation = instrumentation;
+    }
+
+    void setEpisodeSummaryListener(AccelerometerManager.EpisodeSummaryListener listener) {
+        mSummaryListener = listener;
+    }
+
+    void setVibrationListener(AccelerometerManager.VibrationListener listener) {
+        mVibrationListener = listener;
+    }
+
+    void setBandEnergyListener(AccelerometerManager.BandEnergyListener listener) {
+        mBandListener = listener;
+    }
+
+    void setAxisExceedListener(AccelerometerManager.AxisExceedListener listener) {
+        mAxisListener = listener;
+    }
+
+    void setDegradedExceedListener(AccelerometerManager.DegradedExceedListener listener) {
+        mDegradedListener = listener;
+    }
+
+    void setCaptureWindowListener(AccelerometerManager.CaptureWindowListener listener) {
+        mWindowListener = listener;
+    }
+
+    void addListener(AccelerometerManager.BoostLimitListener listener) {
+        synchronized (mListenersLock) {
+            final AccelerometerManager.BoostLimitListener[] listeners = mListeners;
+            for (AccelerometerManager.BoostLimitListener registered : listeners) {
+                if (registered == listener) {
+                    return;
+                }
+            }
+
+            final AccelerometerManager.BoostLimitListener[] updated =
+                    Arrays.copyOf(listeners, listeners.length + 1);
+            updated[listeners.length] = listener;
+            mListeners = updated;
+        }
+    }
+
+    void removeListener(AccelerometerManager.BoostLimitListener listener) {
+        synchronized (mListenersLock) {
+            final AccelerometerManager.BoostLimitListener[] listeners = mListeners;
+            for (int i = 0; i < listeners.length; ++i) {
+                if (listeners[i] != listener) {
+                    continue;
+                }
+
+                final AccelerometerManager.BoostLimitListener[] updated =
+                        new AccelerometerManager.BoostLimitListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                mListeners = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param id must be greater than the ids already put.
+     */
+    void putThresholdListener(int id, AccelerometerManager.BoostLimitListener listener) {
+        synchronized (mListenersLock) {
+            final ThresholdListeners current = mThresholdListeners;
+            final int size = current.mIds.length;
+            final int[] ids = Arrays.copyOf(current.mIds, size + 1);
+            final AccelerometerManager.BoostLimitListener[] listeners =
+                    Arrays.copyOf(current.mListeners, size + 1);
+            ids[size] = id;
+            listeners[size] = listener;
+            mThresholdListeners = new ThresholdListeners(ids, listeners);
+        }
+    }
+
+    /**
+     * @return ids the listener was put with.
+     */
+    int[] removeThresholdListener(AccelerometerManager.BoostLimitListener listener) {
+        synchronized (mListenersLock) {
+            final ThresholdListeners current = mThresholdListeners;
+            final int size = current.mIds.length;
+            final int[] ids = new int[size];
+            final AccelerometerManager.BoostLimitListener[] listeners =
+                    new AccelerometerManager.BoostLimitListener[size];
+            final int[] removedIds = new int[size];
+            int keptCount = 0;
+            int removedCount = 0;
+
+            for (int i = 0; i < size; ++i) {
+                if (current.mListeners[i] == listener) {
+                    removedIds[removedCount++] = current.mIds[i];
+                } else {
+                    ids[keptCount] = current.mIds[i];
+                    listeners[keptCount] = current.mListeners[i];
+                    ++keptCount;
+                }
+            }
+
+            mThresholdListeners = new ThresholdListeners(Arrays.copyOf(ids, keptCount),
+                    Arrays.copyOf(listeners, keptCount));
+            return Arrays.copyOf(removedIds, removedCount);
+        }
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueBoostLimitExceed(long timestamp, float boostValue) {
+        queue(LIMIT_EXCEED_TAG, timestamp, boostValue);
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueThresholdCrossing(int thresholdId, long timestamp, float boostValue) {
+        queue(thresholdId, timestamp, boostValue);
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueVibrationAlert(long timestamp, float value) {
+        queue(VIBRATION_ALERT_TAG, timestamp, value);
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueBandEnergyExceed(int band, long timestamp, float rmsBoost) {
+        queue(FIRST_BAND_TAG - band, timestamp, rmsBoost);
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueAxisExceed(int axis, long timestamp, float boostValue) {
+        queue(FIRST_AXIS_TAG - axis, timestamp, boostValue);
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueDegradedExceed(long timestamp, float boostValue) {
+        queue(DEGRADED_EXCEED_TAG, timestamp, boostValue);
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueCaptureWindow(CaptureWindow window) {
+        if (mWindowRing.offer(window)) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Called by the sensor thread.
+     */
+    @Override
+    public void queueEpisodeSummary(EpisodeSummary summary) {
+        if (mSummaryRing.offer(summary)) {
+            scheduleDrain();
+        }
+    }
+
+    private void queue(int tag, long timestamp, float boostValue) {
+        if (mEventRing.offer(timestamp, boostValue, tag)) {
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (mIsDrainScheduled.compareAndSet(false, true)) {
+            mBatchQueuedNs = System.nanoTime();
+            mExecutor.execute(this);
+        }
+    }
+
+    /**
+     * Drains the ring on the dispatch thread.
+     */
+    @Override
+    public void run() {
+        final long latencyNs = System.nanoTime() - mBatchQueuedNs;
+        // Reset the flag before draining, so an event queued meanwhile schedules a new drain.
+        mIsDrainScheduled.set(false);
+
+        final int depth = mEventRing.size();
+        if (depth > mMaxQueueDepth.get()) {
+            mMaxQueueDepth.lazySet(depth);
+        }
+        mBatchCount.lazySet(mBatchCount.get() + 1);
+        mTotalLatencyNs.lazySet(mTotalLatencyNs.get() + latencyNs);
+        if (latencyNs > mMaxLatencyNs.get()) {
+            mMaxLatencyNs.lazySet(latencyNs);
+        }
+
+        final PipelineInstrumentation instrumentation = mInstrumentation;
+        if (instrumentation != null) {
+            instrumentation.onHandOff(latencyNs);
+        }
+        synchronized (mDrainLock) {
+            mBatchInstrumentation = instrumentation;
+            drainRings();
+        }
+    }
+
+    /**
+     * Dispatches everything queued on the calling thread. Called once the sensor thread has
+     * stopped, so the last events and capture windows reach the listeners before the stop
+     * returns. The listeners are called on the calling thread then.
+     */
+    void flush() {
+        synchronized (mDrainLock) {
+            mBatchInstrumentation = null;
+            drainRings();
+        }
+    }
+
+    // Must be called with mDrainLock held.
+    private void drainRings() {
+        mEventRing.drainTagged(mFanOut);
+        mWindowRing.drain(mWindowFanOut);
+        mSummaryRing.drain(mSummaryFanOut);
+    }
+
+    /**
+     * @return number of events waiting for the dispatch.
+     */
+    int getQueueDepth() {
+        return mEventRing.size();
+    }
+
+    /**
+     * @return max number of events found waiting by a dispatch.
+     */
+    long getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    long getMeanDispatchLatencyNs() {
+        final long count = mBatchCount.get();
+        return count == 0 ? 0 : mTotalLatencyNs.get() / count;
+    }
+
+    long getMaxDispatchLatencyNs() {
+        return mMaxLatencyNs.get();
+    }
+
+    long getDroppedEventCount() {
+        return mEventRing.getDroppedCount();
+    }
+
+    private static Executor createExecutor() {
+        // A single thread and a single queued drain are enough, the ring holds the events.
+        return new ThreadPoolExecutor(0, 1,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(1),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        final Thread thread = new Thread(runnable, THREAD_NAME);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+}
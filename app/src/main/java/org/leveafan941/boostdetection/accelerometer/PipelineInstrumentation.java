@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.accelerometer;
+
+import android.os.SystemClock;
+
+import org.leveafan941.boostdetection.detection.stats.LatencyHistogram;
+
+/**
+ * Histograms of the sensor pipeline stages. Each histogram is recorded by the thread of its
+ * stage only: the sensor callback ones by the sensor thread and the dispatch ones by
+ * the dispatch thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+final class PipelineInstrumentation {
+
+    private final long mStartNs = System.nanoTime();
+
+    private final LatencyHistogram mCallbackLatency = new LatencyHistogram();
+    private final LatencyHistogram mCallbackDuration = new LatencyHistogram();
+    private final LatencyHistogram mHandOffLatency = new LatencyHistogram();
+    private final LatencyHistogram mDispatchDuration = new LatencyHistogram();
+
+    /**
+     * Called by the sensor thread for every sample.
+     *
+     * @param eventTimestamp sensor timestamp of the sample.
+     * @param startNs {@link SystemClock#elapsedRealtimeNanos()} at the start of the callback.
+     * @param endNs {@link SystemClock#elapsedRealtimeNanos()} at its end.
+     */
+    void onSensorCallback(long eventTimestamp, long startNs, long endNs) {
+        mCallbackLatency.record(startNs - eventTimestamp);
+        mCallbackDuration.record(endNs - startNs);
+    }
+
+    /**
+     * Called by the dispatch thread for every drained batch.
+     */
+    void onHandOff(long latencyNs) {
+        mHandOffLatency.record(latencyNs);
+    }
+
+    /**
+     * Called by the dispatch thread for every dispatched exceed event.
+     */
+    void onDispatch(long durationNs) {
+        mDispatchDuration.record(durationNs);
+    }
+
+    PipelineStats snapshot() {
+        return new PipelineStats(System.nanoTime() - mStartNs,
+                mCallbackLatency.snapshot(), mCallbackDuration.snapshot(),
+                mHandOffLatency.snapshot(), mDispatchDuration.snapshot());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.accelerometer;
+
+import org.leveafan941.boostdetection.detection.stats.HistogramSnapshot;
+
+/**
+ * Snapshot of the sensor pipeline instrumentation since it was enabled, all times are
+ * in nanoseconds.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+public final class PipelineStats {
+
+    private static final double NANOS_IN_SECOND = 1e9;
+
+    private final long mElapsedNs;
+    private final HistogramSnapshot mCallbackLatency;
+    private final HistogramSnapshot mCallbackDuration;
+    private final HistogramSnapshot mHandOffLatency;
+    private final HistogramSnapshot mDispatchDuration;
+
+    PipelineStats(long elapsedNs, HistogramSnapshot callbackLatency,
+                  HistogramSnapshot callbackDuration, HistogramSnapshot handOffLatency,
+                  HistogramSnapshot dispatchDuration) {
+        mElapsedNs = elapsedNs;
+        mCallbackLatency = callbackLatency;
+        mCallbackDuration = callbackDuration;
+        mHandOffLatency = handOffLatency;
+        mDispatchDuration = dispatchDuration;
+    }
+
+    /**
+     * @return time since the instrumentation was enabled.
+     */
+    public long getElapsedNs() {
+        return mElapsedNs;
+    }
+
+    public double getSamplesPerSecond() {
+        return mElapsedNs == 0 ? 0 : mCallbackLatency.getCount() * NANOS_IN_SECOND / mElapsedNs;
+    }
+
+    /**
+     * @return time from the sensor timestamp of a sample to the start of its callback. With
+     * batching it includes the time the sample waited in the hardware FIFO.
+     */
+    public HistogramSnapshot getCallbackLatency() {
+        return mCallbackLatency;
+    }
+
+    /**
+     * @return execution time of the sensor callback.
+     */
+    public HistogramSnapshot getCallbackDuration() {
+        return mCallbackDuration;
+    }
+
+    /**
+     * @return time from queuing the first exceed event of a batch to the start of its dispatch.
+     */
+    public HistogramSnapshot getHandOffLatency() {
+        return mHandOffLatency;
+    }
+
+    /**
+     * @return time the listeners took to handle an exceed event.
+     */
+    public HistogramSnapshot getDispatchDuration() {
+        return mDispatchDuration;
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineStats{samplesPerSecond=" + (long) getSamplesPerSecond()
+                + ", callbackLatency=" + mCallbackLatency
+                + ", callbackDuration=" + mCallbackDuration
+                + ", handOffLatency=" + mHandOffLatency
+                + ", dispatchDuration=" + mDispatchDuration + "}";
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.accelerometer;
+
+import org.leveafan941.boostdetection.detection.RawSampleConsumer;
+import org.leveafan941.boostdetection.detection.SampleRingBuffer;
+
+/**
+ * Drains the raw sample buffer to the consumer until interrupted. Between the drains it is
+ * parked until a quarter of the buffer is filled or an exceed is detected, so at the fastest
+ * sensor rate it wakes up every few seconds and not for every few samples.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+final class SampleCaptureThread extends Thread {
+
+    // The rest of the buffer takes the samples collected while the thread wakes up.
+    private static final int WAKE_UP_FILL_DIVISOR = 4;
+
+    private final SampleRingBuffer mSampleBuffer;
+    private final RawSampleConsumer mConsumer;
+
+    SampleCaptureThread(SampleRingBuffer sampleBuffer, RawSampleConsumer consumer) {
+        super("SampleCaptureThread");
+        mSampleBuffer = sampleBuffer;
+        mConsumer = consumer;
+    }
+
+    @Override
+    public void run() {
+        final int wakeUpCount = mSampleBuffer.getCapacity() / WAKE_UP_FILL_DIVISOR;
+        while (!isInterrupted()) {
+            mSampleBuffer.drain(mConsumer);
+            mSampleBuffer.awaitSamples(wakeUpCount);
+        }
+
+        mSampleBuffer.drain(mConsumer);
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.journal;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import org.leveafan941.boostdetection.accelerometer.AccelerometerManager;
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitEventRing;
+import org.leveafan941.boostdetection.detection.CaptureWindow;
+import org.leveafan941.boostdetection.detection.journal.EventJournal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes every exceed event with the raw samples around it to an {@link EventJournal}.
+ * <p>
+ * It is registered both as an exceed listener and as the capture window listener. Every exceed
+ * event is written, with the samples of its window when the window arrives and without them
+ * when the window was dropped. The dispatch thread only offers the events to a preallocated
+ * ring and copies the windows, the journal is opened, written and committed on a writer
+ * thread of its own. Records are committed in groups, at the latest 200 ms after the first
+ * one.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+public final class ExceedJournalRecorder implements AccelerometerManager.BoostLimitListener,
+        AccelerometerManager.CaptureWindowListener, Closeable {
+
+    private static final String TAG = ExceedJournalRecorder.class.getSimpleName();
+    private static final String THREAD_NAME = "ExceedJournalThread";
+
+    private static final long MAX_SEGMENT_BYTES = 1024 * 1024;
+    private static final int MAX_SEGMENT_COUNT = 8;
+    // A record of the largest window must fit the group commit buffer.
+    private static final int GROUP_COMMIT_BYTES = 64 * 1024;
+    private static final long GROUP_COMMIT_INTERVAL_MS = 200;
+
+    // Power of two, it holds the events of a burst waiting for the writer thread.
+    private static final int EVENT_RING_CAPACITY = 64;
+    // More than the capture pool of the manager, so the copies run out only when the writer
+    // thread lags behind.
+    private static final int WINDOW_COPY_COUNT = 8;
+    // Longer than the post-trigger samples take at the slowest sensor rate.
+    private static final long MAX_WINDOW_WAIT_NS = TimeUnit.SECONDS.toNanos(30);
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private final File mDirectory;
+    private final HandlerThread mWriterThread;
+    private final Handler mWriterHandler;
+
+    private final BoostLimitEventRing mEventRing = new BoostLimitEventRing(EVENT_RING_CAPACITY);
+    private final AtomicBoolean mIsWritePosted = new AtomicBoolean(false);
+    private final AtomicLong mDroppedWindowCount = new AtomicLong();
+
+    private final Object mWindowLock = new Object();
+    // Both guarded by mWindowLock.
+    private final ArrayDeque<JournalWindow> mFreeWindows =
+            new ArrayDeque<>(WINDOW_COPY_COUNT);
+    private final ArrayDeque<JournalWindow> mCopiedWindows =
+            new ArrayDeque<>(WINDOW_COPY_COUNT);
+
+    // Used by the writer thread only.
+    private final ExceedRecordQueue mRecords = new ExceedRecordQueue(EVENT_RING_CAPACITY,
+            WINDOW_COPY_COUNT, MAX_WINDOW_WAIT_NS);
+    private EventJournal mJournal;
+    private boolean mIsCommitPosted = false;
+    private long mDrainNs;
+
+    private final ExceedRecordQueue.RecordWriter mRecordWriter =
+            new ExceedRecordQueue.RecordWriter() {
+                @Override
+                public void writeRecord(long timestamp, float boostValue,
+                                        JournalWindow window) {
+                    append(timestamp, boostValue, window);
+                }
+            };
+
+    private final AccelerometerEventQueue mEventTarget = new AccelerometerEventQueue() {
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            mRecords.addEvent(timestamp, boostValue, mDrainNs, mRecordWriter);
+        }
+    };
+
+    private final Runnable mOpenTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                mJournal = new EventJournal(mDirectory, MAX_SEGMENT_BYTES, MAX_SEGMENT_COUNT,
+                        GROUP_COMMIT_BYTES,
+                        TimeUnit.MILLISECONDS.toNanos(GROUP_COMMIT_INTERVAL_MS));
+                Log.d(TAG, "Opened journal, recovered = " + mJournal.getRecoveredCount()
+                        + ", truncated = " + mJournal.getTruncatedBytes() + " bytes");
+            } catch (IOException e) {
+                onJournalFailed(e);
+            }
+        }
+    };
+
+    private final Runnable mWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            // Reset before draining, so an event offered meanwhile posts a new write.
+            mIsWritePosted.set(false);
+            writePending(false);
+        }
+    };
+
+    // Writes the events which waited too long for their windows.
+    private final Runnable mWindowWaitTask = new Runnable() {
+        @Override
+        public void run() {
+            writePending(false);
+        }
+    };
+
+    private final Runnable mCommitTask = new Runnable() {
+        @Override
+        public void run() {
+            mIsCommitPosted = false;
+            if (mJournal == null) {
+                return;
+            }
+
+            try {
+                mJournal.commit();
+            } catch (IOException e) {
+                onJournalFailed(e);
+            }
+        }
+    };
+
+    private final Runnable mCloseTask = new Runnable() {
+        @Override
+        public void run() {
+            writePending(true);
+            if (mJournal == null) {
+                return;
+            }
+
+            try {
+                Log.d(TAG, "Close, appended = " + mJournal.getAppendedCount() + ", commits = "
+                        + mJournal.getCommitCount() + ", dropped events = "
+                        + mEventRing.getDroppedCount() + ", dropped windows = "
+                        + mDroppedWindowCount.get());
+                mJournal.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close the journal", e);
+            }
+            mJournal = null;
+        }
+    };
+
+    /**
+     * Starts the writer thread, which opens the journal and recovers its last segment before
+     * the first exceed.
+     *
+     * @param directory directory of the journal segments.
+     * @param preTriggerSamples number of the capture window samples before the event one.
+     * @param postTriggerSamples number of the capture window samples after the event one.
+     */
+    public ExceedJournalRecorder(File directory, int preTriggerSamples,
+                                 int postTriggerSamples) {
+        mDirectory = directory;
+        for (int i = 0; i < WINDOW_COPY_COUNT; ++i) {
+            mFreeWindows.add(new JournalWindow(preTriggerSamples + 1 + postTriggerSamples));
+        }
+
+        mWriterThread = new HandlerThread(THREAD_NAME);
+        mWriterThread.start();
+        mWriterHandler = new Handler(mWriterThread.getLooper());
+        mWriterHandler.post(mOpenTask);
+    }
+
+    /**
+     * Called on the dispatch thread.
+     */
+    @Override
+    public void onBoostLimitExceed(long timestamp, float value) {
+        mEventRing.offer(timestamp, value);
+        postWrite();
+    }
+
+    /**
+     * Called on the dispatch thread, before the windows of the later events.
+     */
+    @Override
+    public void onCaptureWindow(CaptureWindow window) {
+        final JournalWindow copy;
+        synchronized (mWindowLock) {
+            copy = mFreeWindows.poll();
+        }
+        if (copy == null) {
+            // The event is written without samples.
+            mDroppedWindowCount.incrementAndGet();
+            return;
+        }
+
+        copy.copyFrom(window);
+        synchronized (mWindowLock) {
+            mCopiedWindows.add(copy);
+        }
+        postWrite();
+    }
+
+    /**
+     * @return number of exceed events not written because the writer thread did not keep up.
+     */
+    public long getDroppedEventCount() {
+        return mEventRing.getDroppedCount();
+    }
+
+    /**
+     * Writes the waiting events, without samples if their windows have not arrived, commits
+     * and closes the journal. Waits a while for the writer thread to finish.
+     */
+    @Override
+    public void close() {
+        mWriterHandler.post(mCloseTask);
+        mWriterThread.quitSafely();
+        try {
+            mWriterThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void postWrite() {
+        if (mIsWritePosted.compareAndSet(false, true)) {
+            mWriterHandler.post(mWriteTask);
+        }
+    }
+
+    // Called on the writer thread.
+    private void writePending(boolean isFlushing) {
+        // Windows are taken before the events, so the event of every taken window, offered
+        // before it, is drained too.
+        synchronized (mWindowLock) {
+            JournalWindow window;
+            while ((window = mCopiedWindows.poll()) != null) {
+                mRecords.addWindow(window);
+            }
+        }
+        mDrainNs = System.nanoTime();
+        mEventRing.drain(mEventTarget);
+        mRecords.write(mRecordWriter, mDrainNs, isFlushing);
+
+        mWriterHandler.removeCallbacks(mWindowWaitTask);
+        final long waitLeftNs = mRecords.getWindowWaitLeftNs(mDrainNs);
+        if (waitLeftNs >= 0) {
+            mWriterHandler.postDelayed(mWindowWaitTask,
+                    TimeUnit.NANOSECONDS.toMillis(waitLeftNs) + 1);
+        }
+    }
+
+    // Called on the writer thread.
+    private void append(long timestamp, float boostValue, JournalWindow window) {
+        if (mJournal != null) {
+            try {
+                if (window == null) {
+                    mJournal.append(timestamp, boostValue, null, null, null, null, 0, 0);
+                } else {
+                    mJournal.append(timestamp, boostValue, window.mTimestamps,
+                            window.mXBoosts, window.mYBoosts, window.mZBoosts, 0,
+                            window.mSampleCount);
+                }
+                if (!mIsCommitPosted) {
+                    mIsCommitPosted = true;
+                    mWriterHandler.postDelayed(mCommitTask, GROUP_COMMIT_INTERVAL_MS);
+                }
+            } catch (IOException e) {
+                onJournalFailed(e);
+            }
+        }
+
+        if (window != null) {
+            synchronized (mWindowLock) {
+                mFreeWindows.add(window);
+            }
+        }
+    }
+
+    // Called on the writer thread.
+    private void onJournalFailed(IOException e) {
+        Log.e(TAG, "Journal failed, exceed events are not recorded anymore", e);
+        if (mJournal != null) {
+            try {
+                mJournal.close();
+            } catch (IOException closeException) {
+                Log.w(TAG, "Failed to close the journal", closeException);
+            }
+            mJournal = null;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.journal;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pairs the exceed events with their capture windows, so every event is written once and with
+ * its samples when they are available. Used by the journal writer thread only.
+ * <p>
+ * Windows are delivered in the event order and after their events. So a window older than
+ * the first waiting event lost its event and is written on its own, and a newer one means
+ * the window of that event was dropped, the event is written without samples. An event waits
+ * for its window at most the given time, so a dropped window delays its record only so long.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+final class ExceedRecordQueue {
+
+    interface RecordWriter {
+        /**
+         * @param window samples of the event, null if there are none. The writer takes it over.
+         */
+        void writeRecord(long timestamp, float boostValue, JournalWindow window);
+    }
+
+    private final long mMaxWindowWaitNs;
+
+    private final long[] mEventTimestamps;
+    private final float[] mEventValues;
+    private final long[] mEventQueuedNs;
+    private int mEventHead = 0;
+    private int mEventCount = 0;
+
+    private final ArrayDeque<JournalWindow> mWindows;
+
+    /**
+     * @param eventCapacity max number of events waiting for their windows, the oldest one is
+     *                      written without samples when it is exceeded.
+     * @param windowCapacity max number of windows, it is never exceeded by the window copies.
+     * @param maxWindowWaitNs time an event waits for its window, in nanoseconds.
+     */
+    ExceedRecordQueue(int eventCapacity, int windowCapacity, long maxWindowWaitNs) {
+        mEventTimestamps = new long[eventCapacity];
+        mEventValues = new float[eventCapacity];
+        mEventQueuedNs = new long[eventCapacity];
+        mWindows = new ArrayDeque<>(windowCapacity);
+        mMaxWindowWaitNs = maxWindowWaitNs;
+    }
+
+    /**
+     * @param nowNs {@link System#nanoTime()} when the event is added.
+     */
+    void addEvent(long timestamp, float boostValue, long nowNs, RecordWriter writer) {
+        if (mEventCount == mEventTimestamps.length) {
+            writeFirstEvent(writer, null);
+        }
+
+        final int index = (mEventHead + mEventCount) % mEventTimestamps.length;
+        mEventTimestamps[index] = timestamp;
+        mEventValues[index] = boostValue;
+        mEventQueuedNs[index] = nowNs;
+        ++mEventCount;
+    }
+
+    /**
+     * Windows must be added after the events which were queued before them.
+     */
+    void addWindow(JournalWindow window) {
+        mWindows.add(window);
+    }
+
+    /**
+     * Writes the events whose windows have arrived or are known to be lost, the windows
+     * without events and the events which waited too long.
+     *
+     * @param isFlushing true to write everything, the remaining events without samples.
+     */
+    void write(RecordWriter writer, long nowNs, boolean isFlushing) {
+        while (true) {
+            final JournalWindow window = mWindows.peek();
+            if (mEventCount > 0) {
+                final long timestamp = mEventTimestamps[mEventHead];
+                if (window != null && window.mEventTimestamp == timestamp) {
+                    writeFirstEvent(writer, mWindows.poll());
+                } else if (window != null && window.mEventTimestamp < timestamp) {
+                    writeWindow(writer, mWindows.poll());
+                } else if (window != null || isFlushing
+                        || nowNs - mEventQueuedNs[mEventHead] >= mMaxWindowWaitNs) {
+                    writeFirstEvent(writer, null);
+                } else {
+                    break;
+                }
+            } else if (window != null) {
+                writeWindow(writer, mWindows.poll());
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return time until the first waiting event is written without its window, in
+     * nanoseconds, or -1 if no event is waiting.
+     */
+    long getWindowWaitLeftNs(long nowNs) {
+        return mEventCount == 0 ? -1
+                : Math.max(0, mEventQueuedNs[mEventHead] + mMaxWindowWaitNs - nowNs);
+    }
+
+    private void writeFirstEvent(RecordWriter writer, JournalWindow window) {
+        final long timestamp = mEventTimestamps[mEventHead];
+        final float boostValue = mEventValues[mEventHead];
+        mEventHead = (mEventHead + 1) % mEventTimestamps.length;
+        --mEventCount;
+        writer.writeRecord(timestamp, boostValue, window);
+    }
+
+    private static void writeWindow(RecordWriter writer, JournalWindow window) {
+        writer.writeRecord(window.mEventTimestamp, window.mBoostValue, window);
+    }
+}
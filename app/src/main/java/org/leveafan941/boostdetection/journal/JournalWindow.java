@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.journal;
+
+import org.leveafan941.boostdetection.detection.CaptureWindow;
+
+/**
+ * Copy of a {@link CaptureWindow} kept until its record is written, the capture window is
+ * returned to its pool as soon as the listener returns. Copies are preallocated and reused.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+final class JournalWindow {
+
+    final long[] mTimestamps;
+    final float[] mXBoosts;
+    final float[] mYBoosts;
+    final float[] mZBoosts;
+    int mSampleCount;
+    long mEventTimestamp;
+    float mBoostValue;
+
+    JournalWindow(int capacity) {
+        mTimestamps = new long[capacity];
+        mXBoosts = new float[capacity];
+        mYBoosts = new float[capacity];
+        mZBoosts = new float[capacity];
+    }
+
+    /**
+     * Copies the samples which fit, a larger window is truncated.
+     */
+    void copyFrom(CaptureWindow window) {
+        final int count = Math.min(window.getSampleCount(), mTimestamps.length);
+        System.arraycopy(window.getTimestamps(), 0, mTimestamps, 0, count);
+        System.arraycopy(window.getXBoosts(), 0, mXBoosts, 0, count);
+        System.arraycopy(window.getYBoosts(), 0, mYBoosts, 0, count);
+        System.arraycopy(window.getZBoosts(), 0, mZBoosts, 0, count);
+        mSampleCount = count;
+        mEventTimestamp = window.getEventTimestamp();
+        mBoostValue = window.getBoostValue();
+    }
+}
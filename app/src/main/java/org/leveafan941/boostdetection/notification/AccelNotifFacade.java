@@ -35,9 +35,9 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.media.Ringtone;
-import android.media.RingtoneManager;
-import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 
@@ -46,6 +46,11 @@ import org.leveafan941.boostdetection.gui.MainActivity;
 import org.leveafan941.boostdetection.service.AccelServiceIntents;
 
 /**
+ * Shows the exceed notification and plays its sound through an {@link AudioAlertEngine}.
+ * Updates of the exceed number are coalesced and rate limited, the notification always ends up
+ * showing the latest number. Must be used from the main thread, except
+ * {@link #playBoostLimitExceedAudioNotification()} which can be called from any thread.
+ *
  * @author Alexey Kuzin (amkuzink@gmail.com).
  */
 public class AccelNotifFacade {
@@ -54,37 +59,106 @@ public class AccelNotifFacade {
 
     private static final int BOOST_LIMIT_EXCEED_NOTIF_ID = 143;
 
+    private static final long DEFAULT_COALESCE_WINDOW_MS = 250;
+    private static final int DEFAULT_MAX_UPDATES_PER_SECOND = 2;
+
     private final Context mContext;
     private final NotificationManager mNotificationMgr;
-    private Ringtone mBoostLimitexceedRingtone;
+    private final AudioAlertEngine mAudioAlertEngine;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mPostExceedNotification = new Runnable() {
+        @Override
+        public void run() {
+            postBoostLimitExceedNotification();
+        }
+    };
+    private final NotificationThrottle mThrottle;
+    private NotificationCompat.Builder mExceedNotifBuilder;
+    private int mPendingExceedNumber;
 
     public AccelNotifFacade(Context context) {
+        this(context, DEFAULT_COALESCE_WINDOW_MS, DEFAULT_MAX_UPDATES_PER_SECOND);
+    }
+
+    /**
+     * @param coalesceWindowMs time an update waits for the following ones to be merged.
+     * @param maxUpdatesPerSecond max number of notification posts within any second.
+     */
+    public AccelNotifFacade(Context context, long coalesceWindowMs, int maxUpdatesPerSecond) {
         mContext = context;
 
         mNotificationMgr = (NotificationManager)
                 context.getSystemService(Context.NOTIFICATION_SERVICE);
+        mThrottle = new NotificationThrottle(coalesceWindowMs, maxUpdatesPerSecond);
+        mAudioAlertEngine = new AudioAlertEngine(context, AlertOverlapPolicy.EXTEND);
+    }
+
+    /**
+     * Releases the audio resources, the facade can't play sounds afterwards.
+     */
+    public void release() {
+        mHandler.removeCallbacks(mPostExceedNotification);
+        mAudioAlertEngine.release();
     }
 
     public void showBoostLimitExceedNotification(int exceedNumber) {
-        Log.d(TAG, "showBoostLimitExceedNotification with " + exceedNumber);
-
-        final Notification notif = new NotificationCompat.Builder(mContext)
-                .setSmallIcon(R.mipmap.ic_launcher)
-                .setContentTitle(mContext.getString(R.string.exceed_notification_content_title))
-                .setContentText(String.valueOf(exceedNumber))
-                .setContentIntent(createBoostLimitExceedContentIntent())
-                .setDeleteIntent(createBoostLimitExceedDeleteIntent())
-                .build();
+        mPendingExceedNumber = exceedNumber;
 
-        mNotificationMgr.notify(BOOST_LIMIT_EXCEED_NOTIF_ID, notif);
+        final long delayMs = mThrottle.onUpdate(SystemClock.uptimeMillis());
+        if (delayMs != NotificationThrottle.UPDATE_COALESCED) {
+            mHandler.postDelayed(mPostExceedNotification, delayMs);
+        }
     }
 
     public void hideBoostLimitExceedNotification() {
         Log.d(TAG, "hideBoostLimitExceedNotification");
 
+        mHandler.removeCallbacks(mPostExceedNotification);
+        mThrottle.onCancelled();
         mNotificationMgr.cancel(BOOST_LIMIT_EXCEED_NOTIF_ID);
     }
 
+    /**
+     * @return number of notification updates posted to the system.
+     */
+    public long getPostedUpdateCount() {
+        return mThrottle.getPostedCount();
+    }
+
+    /**
+     * @return number of notification updates merged into other ones.
+     */
+    public long getCoalescedUpdateCount() {
+        return mThrottle.getCoalescedCount();
+    }
+
+    private void postBoostLimitExceedNotification() {
+        Log.d(TAG, "postBoostLimitExceedNotification with " + mPendingExceedNumber
+                + ", coalesced = " + mThrottle.getCoalescedCount());
+
+        mThrottle.onPosted(SystemClock.uptimeMillis());
+
+        final Notification notif = getExceedNotificationBuilder()
+                .setContentText(String.valueOf(mPendingExceedNumber))
+                .build();
+        mNotificationMgr.notify(BOOST_LIMIT_EXCEED_NOTIF_ID, notif);
+    }
+
+    private NotificationCompat.Builder getExceedNotificationBuilder() {
+        if (mExceedNotifBuilder == null) {
+            mExceedNotifBuilder = new NotificationCompat.Builder(mContext)
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setContentTitle(mContext.getString(
+                            R.string.exceed_notification_content_title))
+                    .setContentIntent(createBoostLimitExceedContentIntent())
+                    .setDeleteIntent(createBoostLimitExceedDeleteIntent())
+                    .setOnlyAlertOnce(true);
+        }
+
+        return mExceedNotifBuilder;
+    }
+
     private PendingIntent createBoostLimitExceedContentIntent() {
         final Intent notifyIntent = new Intent(mContext, MainActivity.class);
         notifyIntent.setAction(AccelfNotifications.EXCEED_NOTIF_CLICK_ACTION);
@@ -107,11 +181,10 @@ public class AccelNotifFacade {
     }
 
     public void playBoostLimitExceedAudioNotification() {
-        if (mBoostLimitexceedRingtone == null) {
-            final Uri notification = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
-            mBoostLimitexceedRingtone = RingtoneManager.getRingtone(mContext, notification);
-        }
+        mAudioAlertEngine.alert();
+    }
 
-        mBoostLimitexceedRingtone.play();
+    public AlertLatencyStats getAudioAlertLatencyStats() {
+        return mAudioAlertEngine.getLatencyStats();
     }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.notification;
+
+/**
+ * Interleaved 16 bit PCM samples of an alert sound.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+final class AlertClip {
+
+    private static final long NANOS_IN_SECOND = 1000000000L;
+    /**
+     * Duration of the tone fades, they avoid clicks at the clip edges.
+     */
+    static final int FADE_DURATION_MS = 10;
+
+    private final short[] mSamples;
+    private final int mSampleRate;
+    private final int mChannelCount;
+
+    AlertClip(short[] samples, int sampleRate, int channelCount) {
+        mSamples = samples;
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+    }
+
+    /**
+     * Synthesizes a mono sine tone with linear fades at its edges.
+     */
+    static AlertClip synthesizeTone(int sampleRate, int frequencyHz, int durationMs,
+                                    float amplitude) {
+        final int frameCount = sampleRate * durationMs / 1000;
+        final short[] samples = new short[frameCount];
+
+        for (int i = 0; i < frameCount; ++i) {
+            final double phase = 2 * Math.PI * frequencyHz * i / sampleRate;
+            samples[i] = (short) (Math.sin(phase) * amplitude * Short.MAX_VALUE);
+        }
+
+        final AlertClip clip = new AlertClip(samples, sampleRate, 1);
+        clip.fadeIn(FADE_DURATION_MS);
+        clip.fadeOut(FADE_DURATION_MS);
+        return clip;
+    }
+
+    short[] getSamples() {
+        return mSamples;
+    }
+
+    int getSampleRate() {
+        return mSampleRate;
+    }
+
+    int getChannelCount() {
+        return mChannelCount;
+    }
+
+    int getFrameCount() {
+        return mSamples.length / mChannelCount;
+    }
+
+    long getDurationNs() {
+        return getFrameCount() * NANOS_IN_SECOND / mSampleRate;
+    }
+
+    void fadeIn(int durationMs) {
+        final int fadeFrames = getFadeFrames(durationMs);
+        for (int frame = 0; frame < fadeFrames; ++frame) {
+            scaleFrame(frame, frame / (float) fadeFrames);
+        }
+    }
+
+    void fadeOut(int durationMs) {
+        final int frameCount = getFrameCount();
+        final int fadeFrames = getFadeFrames(durationMs);
+        for (int i = 0; i < fadeFrames; ++i) {
+            scaleFrame(frameCount - 1 - i, i / (float) fadeFrames);
+        }
+    }
+
+    private int getFadeFrames(int durationMs) {
+        return Math.min(getFrameCount() / 2, mSampleRate * durationMs / 1000);
+    }
+
+    private void scaleFrame(int frame, float gain) {
+        final int start = frame * mChannelCount;
+        for (int i = start; i < start + mChannelCount; ++i) {
+            mSamples[i] = (short) (mSamples[i] * gain);
+        }
+    }
+}
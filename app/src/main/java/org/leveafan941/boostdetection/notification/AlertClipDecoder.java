@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.notification;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes the beginning of a sound into an {@link AlertClip} with {@link MediaExtractor} and
+ * {@link MediaCodec}. Sounds longer than the max duration are cut and faded out.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+final class AlertClipDecoder {
+
+    private static final String TAG = AlertClipDecoder.class.getSimpleName();
+
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+    /**
+     * Decoding is abandoned when the codec produces nothing for this number of attempts.
+     */
+    private static final int MAX_IDLE_DEQUEUES = 100;
+    private static final int MAX_CHANNEL_COUNT = 2;
+
+    private AlertClipDecoder() {
+    }
+
+    /**
+     * @return decoded clip or null if the sound can't be decoded.
+     */
+    static AlertClip decode(Context context, Uri uri, int maxDurationMs) {
+        final MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(context, uri, null);
+            final MediaFormat format = selectAudioTrack(extractor);
+            if (format == null) {
+                Log.w(TAG, "No audio track in " + uri);
+                return null;
+            }
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            return decode(extractor, codec, format, maxDurationMs);
+        } catch (IOException | RuntimeException e) {
+            // MediaCodec reports its errors as IllegalStateException.
+            Log.w(TAG, "Failed to decode " + uri, e);
+            return null;
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); ++i) {
+            final MediaFormat format = extractor.getTrackFormat(i);
+            if (format.getString(MediaFormat.KEY_MIME).startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static AlertClip decode(MediaExtractor extractor, MediaCodec codec,
+                                    MediaFormat format, int maxDurationMs) {
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        final ByteBuffer[] inputBuffers = codec.getInputBuffers();
+        ByteBuffer[] outputBuffers = codec.getOutputBuffers();
+        final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+        short[] samples = new short[sampleRate * channelCount * maxDurationMs / 1000];
+        int size = 0;
+        boolean isInputDone = false;
+        boolean isOutputDone = false;
+        boolean isCut = false;
+        int idleDequeues = 0;
+
+        while (!isOutputDone) {
+            if (!isInputDone) {
+                final int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                if (index >= 0) {
+                    final int sampleSize = extractor.readSampleData(inputBuffers[index], 0);
+                    if (sampleSize < 0) {
+                        codec.queueInputBuffer(index, 0, 0, 0,
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        isInputDone = true;
+                    } else {
+                        codec.queueInputBuffer(index, 0, sampleSize, extractor.getSampleTime(),
+                                0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            final int index = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+            if (index >= 0) {
+                idleDequeues = 0;
+                final ByteBuffer output = outputBuffers[index];
+                output.position(info.offset);
+                output.limit(info.offset + info.size);
+                final ShortBuffer pcm = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                final int count = Math.min(pcm.remaining(), samples.length - size);
+                pcm.get(samples, size, count);
+                size += count;
+                codec.releaseOutputBuffer(index, false);
+
+                isCut = size == samples.length;
+                isOutputDone = isCut
+                        || (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+            } else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                outputBuffers = codec.getOutputBuffers();
+            } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                // Decoders report the actual output format before the first samples.
+                final MediaFormat outputFormat = codec.getOutputFormat();
+                sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                samples = new short[sampleRate * channelCount * maxDurationMs / 1000];
+                size = 0;
+            } else if (++idleDequeues > MAX_IDLE_DEQUEUES) {
+                throw new IllegalStateException("Decoder stalled");
+            }
+        }
+
+        if (channelCount > MAX_CHANNEL_COUNT) {
+            Log.w(TAG, "Unsupported channel count " + channelCount);
+            return null;
+        }
+        size -= size % channelCount;
+        if (size == 0) {
+            Log.w(TAG, "Decoded sound is empty");
+            return null;
+        }
+
+        final short[] clipSamples = new short[size];
+        System.arraycopy(samples, 0, clipSamples, 0, size);
+        final AlertClip clip = new AlertClip(clipSamples, sampleRate, channelCount);
+        if (isCut) {
+            clip.fadeOut(AlertClip.FADE_DURATION_MS);
+        }
+        return clip;
+    }
+}
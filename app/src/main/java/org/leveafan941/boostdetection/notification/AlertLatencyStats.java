@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.notification;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency between an alert request and the start of its sound. Written by the audio thread
+ * only, may be read from any thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+public final class AlertLatencyStats {
+
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNs = new AtomicLong();
+    private final AtomicLong mMaxNs = new AtomicLong();
+    private final AtomicLong mLastNs = new AtomicLong();
+
+    void record(long latencyNs) {
+        mCount.lazySet(mCount.get() + 1);
+        mTotalNs.lazySet(mTotalNs.get() + latencyNs);
+        mLastNs.lazySet(latencyNs);
+        if (latencyNs > mMaxNs.get()) {
+            mMaxNs.lazySet(latencyNs);
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMeanNs() {
+        final long count = mCount.get();
+        return count == 0 ? 0 : mTotalNs.get() / count;
+    }
+
+    public long getMaxNs() {
+        return mMaxNs.get();
+    }
+
+    public long getLastNs() {
+        return mLastNs.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AlertLatencyStats{count=" + getCount() + ", meanNs=" + getMeanNs()
+                + ", maxNs=" + getMaxNs() + ", lastNs=" + getLastNs() + "}";
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.notification;
+
+/**
+ * Applies the {@link AlertOverlapPolicy} to the stream of alerts. Playback end is derived from
+ * the clip duration, so no callbacks of the audio output are needed. Times are in nanoseconds
+ * of a monotonic clock. Must be used from a single thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+final class AlertSequencer {
+
+    static final int ACTION_DROP = 0;
+    static final int ACTION_PLAY = 1;
+    static final int ACTION_QUEUE = 2;
+    /**
+     * The clip will be played once more right after the current playback.
+     */
+    static final int ACTION_EXTEND = 3;
+    /**
+     * The alert is covered by the continuation requested by a previous one.
+     */
+    static final int ACTION_MERGE = 4;
+
+    private final AlertOverlapPolicy mPolicy;
+    private final long mClipDurationNs;
+    private final int mMaxQueuedAlerts;
+
+    private long mPlaybackEndNs = Long.MIN_VALUE;
+    private int mQueuedAlerts = 0;
+    private boolean mIsExtended = false;
+    private long mDroppedAlerts = 0;
+
+    /**
+     * @param maxQueuedAlerts max number of alerts waiting with {@link AlertOverlapPolicy#QUEUE}.
+     */
+    AlertSequencer(AlertOverlapPolicy policy, long clipDurationNs, int maxQueuedAlerts) {
+        mPolicy = policy;
+        mClipDurationNs = clipDurationNs;
+        mMaxQueuedAlerts = maxQueuedAlerts;
+    }
+
+    /**
+     * @return one of the {@code ACTION_*} constants.
+     */
+    int onAlert(long nowNs) {
+        if (!isPlaying(nowNs)) {
+            mPlaybackEndNs = nowNs + mClipDurationNs;
+            return ACTION_PLAY;
+        }
+
+        switch (mPolicy) {
+            case EXTEND:
+                if (mIsExtended) {
+                    return ACTION_MERGE;
+                }
+                mIsExtended = true;
+                return ACTION_EXTEND;
+
+            case QUEUE:
+                if (mQueuedAlerts < mMaxQueuedAlerts) {
+                    ++mQueuedAlerts;
+                    return ACTION_QUEUE;
+                }
+                ++mDroppedAlerts;
+                return ACTION_DROP;
+
+            case DROP:
+            default:
+                ++mDroppedAlerts;
+                return ACTION_DROP;
+        }
+    }
+
+    /**
+     * Called once the playback end time has passed.
+     *
+     * @return true if a queued alert or a continuation must be played now.
+     */
+    boolean onPlaybackEnd(long nowNs) {
+        if (isPlaying(nowNs)) {
+            return false;
+        }
+        if (mIsExtended) {
+            mIsExtended = false;
+        } else if (mQueuedAlerts > 0) {
+            --mQueuedAlerts;
+        } else {
+            return false;
+        }
+
+        mPlaybackEndNs = nowNs + mClipDurationNs;
+        return true;
+    }
+
+    boolean isPlaying(long nowNs) {
+        return nowNs < mPlaybackEndNs;
+    }
+
+    /**
+     * @return time when the current playback ends.
+     */
+    long getPlaybackEndNs() {
+        return mPlaybackEndNs;
+    }
+
+    long getDroppedAlerts() {
+        return mDroppedAlerts;
+    }
+}
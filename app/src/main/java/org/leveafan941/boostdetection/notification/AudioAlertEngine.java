@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.notification;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.media.Ringtone;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Plays the exceed alert without blocking the caller. The default notification sound is
+ * decoded once into a static {@link AudioTrack}, so an alert only starts the track on
+ * a dedicated thread with the audio priority. A short tone is synthesized instead if the sound
+ * can't be decoded, and the {@link Ringtone} of the sound is played if the track can't be
+ * created. Overlapping alerts are handled by an {@link AlertOverlapPolicy}.
+ *
+ * <p>Latency is measured from {@link #alert()} to the output of the first clip frame as
+ * reported by {@link AudioTrack#getTimestamp(AudioTimestamp)}. If the timestamp is not
+ * available, the time when {@link AudioTrack#play()} or {@link Ringtone#play()} returned is
+ * used instead.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com).
+ */
+public final class AudioAlertEngine implements Handler.Callback {
+
+    private static final String TAG = AudioAlertEngine.class.getSimpleName();
+
+    /**
+     * Longer notification sounds are cut, an alert must not keep the track busy.
+     */
+    private static final int MAX_CLIP_DURATION_MS = 1000;
+    private static final int TONE_SAMPLE_RATE_HZ = 44100;
+    private static final int TONE_FREQUENCY_HZ = 880;
+    private static final int TONE_DURATION_MS = 150;
+    private static final float TONE_AMPLITUDE = 0.6f;
+    private static final int MAX_QUEUED_ALERTS = 3;
+
+    private static final long NANOS_IN_MILLI = 1000000L;
+    private static final long NANOS_IN_SECOND = 1000000000L;
+
+    private static final int MSG_ALERT = 1;
+    private static final int MSG_PLAYBACK_END = 2;
+    private static final int MSG_LATENCY_PROBE = 3;
+    private static final int MSG_RELEASE = 4;
+
+    private final Context mContext;
+    private final AlertOverlapPolicy mPolicy;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final AlertLatencyStats mLatencyStats = new AlertLatencyStats();
+    private final AudioTimestamp mTimestamp = new AudioTimestamp();
+
+    // Used by the audio thread only.
+    private AlertSequencer mSequencer;
+    private AudioTrack mTrack;
+    private Ringtone mRingtone;
+    private int mClipSampleRate;
+    /**
+     * Delay after which the output timestamp is requested, the clip must still be playing.
+     */
+    private long mLatencyProbeDelayMs;
+    private long mPlayingRequestNs;
+    private long mPlayReturnedNs;
+    private final long[] mQueuedRequestNs = new long[MAX_QUEUED_ALERTS];
+    private int mQueuedHead = 0;
+    private int mQueuedCount = 0;
+    private long mExtendRequestNs;
+
+    public AudioAlertEngine(Context context, AlertOverlapPolicy policy) {
+        mContext = context.getApplicationContext();
+        mPolicy = policy;
+
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_URGENT_AUDIO);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper(), this);
+        // Alerts are handled after this task, on the same thread.
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                prepareSound();
+            }
+        });
+    }
+
+    /**
+     * Requests the alert sound, returns immediately. Can be called from any thread.
+     */
+    public void alert() {
+        final long requestNs = System.nanoTime();
+        mHandler.obtainMessage(MSG_ALERT, (int) (requestNs >>> 32), (int) requestNs)
+                .sendToTarget();
+    }
+
+    public AlertLatencyStats getLatencyStats() {
+        return mLatencyStats;
+    }
+
+    /**
+     * Stops the sound and the audio thread, the engine can't be used afterwards.
+     */
+    public void release() {
+        mHandler.sendEmptyMessage(MSG_RELEASE);
+        mThread.quitSafely();
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_ALERT:
+                handleAlert(((long) msg.arg1 << 32) | (msg.arg2 & 0xFFFFFFFFL));
+                return true;
+
+            case MSG_PLAYBACK_END:
+                if (mSequencer.onPlaybackEnd(System.nanoTime())) {
+                    if (mQueuedCount > 0) {
+                        final long requestNs = mQueuedRequestNs[mQueuedHead];
+                        mQueuedHead = (mQueuedHead + 1) % MAX_QUEUED_ALERTS;
+                        --mQueuedCount;
+                        startClip(requestNs);
+                    } else {
+                        startClip(mExtendRequestNs);
+                    }
+                }
+                return true;
+
+            case MSG_LATENCY_PROBE:
+                recordLatency();
+                return true;
+
+            case MSG_RELEASE:
+                mHandler.removeCallbacksAndMessages(null);
+                if (mTrack != null) {
+                    mTrack.release();
+                    mTrack = null;
+                }
+                if (mRingtone != null) {
+                    mRingtone.stop();
+                    mRingtone = null;
+                }
+                Log.d(TAG, "Released, " + mLatencyStats + ", dropped = "
+                        + mSequencer.getDroppedAlerts());
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private void prepareSound() {
+        final Uri soundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
+        AlertClip clip = AlertClipDecoder.decode(mContext, soundUri, MAX_CLIP_DURATION_MS);
+        if (clip == null) {
+            clip = AlertClip.synthesizeTone(TONE_SAMPLE_RATE_HZ, TONE_FREQUENCY_HZ,
+                    TONE_DURATION_MS, TONE_AMPLITUDE);
+        }
+
+        mSequencer = new AlertSequencer(mPolicy, clip.getDurationNs(), MAX_QUEUED_ALERTS);
+        mClipSampleRate = clip.getSampleRate();
+        mLatencyProbeDelayMs = clip.getDurationNs() / NANOS_IN_MILLI / 2;
+
+        mTrack = createTrack(clip);
+        if (mTrack == null) {
+            // Slower and its duration is unknown, but the alert is still heard.
+            mRingtone = RingtoneManager.getRingtone(mContext, soundUri);
+            if (mRingtone == null) {
+                Log.e(TAG, "No ringtone for " + soundUri + ", alerts are silent");
+                return;
+            }
+            mRingtone.setStreamType(AudioManager.STREAM_NOTIFICATION);
+        }
+    }
+
+    private void handleAlert(long requestNs) {
+        if (mTrack == null && mRingtone == null) {
+            return;
+        }
+
+        switch (mSequencer.onAlert(System.nanoTime())) {
+            case AlertSequencer.ACTION_PLAY:
+                startClip(requestNs);
+                break;
+
+            case AlertSequencer.ACTION_EXTEND:
+                // Latency of the continuation is counted from the first alert it covers.
+                mExtendRequestNs = requestNs;
+                break;
+
+            case AlertSequencer.ACTION_QUEUE:
+                mQueuedRequestNs[(mQueuedHead + mQueuedCount) % MAX_QUEUED_ALERTS] = requestNs;
+                ++mQueuedCount;
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void startClip(long requestNs) {
+        if (mTrack != null) {
+            // The previous clip has ended, but a static track stays at its end position after
+            // playback, so it is rewound first.
+            mTrack.stop();
+            mTrack.reloadStaticData();
+            mTrack.play();
+        } else {
+            mRingtone.stop();
+            mRingtone.play();
+        }
+
+        mPlayingRequestNs = requestNs;
+        mPlayReturnedNs = System.nanoTime();
+
+        mHandler.removeMessages(MSG_LATENCY_PROBE);
+        mHandler.sendEmptyMessageDelayed(MSG_LATENCY_PROBE, mLatencyProbeDelayMs);
+
+        final long untilEndMs = (mSequencer.getPlaybackEndNs() - mPlayReturnedNs)
+                / NANOS_IN_MILLI;
+        mHandler.removeMessages(MSG_PLAYBACK_END);
+        mHandler.sendEmptyMessageDelayed(MSG_PLAYBACK_END, Math.max(0, untilEndMs) + 1);
+    }
+
+    private void recordLatency() {
+        long soundStartNs = mPlayReturnedNs;
+        if (mTrack != null && mTrack.getTimestamp(mTimestamp)) {
+            soundStartNs = mTimestamp.nanoTime
+                    - mTimestamp.framePosition * NANOS_IN_SECOND / mClipSampleRate;
+        }
+
+        mLatencyStats.record(Math.max(0, soundStartNs - mPlayingRequestNs));
+    }
+
+    private static AudioTrack createTrack(AlertClip clip) {
+        final short[] samples = clip.getSamples();
+        final AudioTrack track;
+        try {
+            track = new AudioTrack(AudioManager.STREAM_NOTIFICATION,
+                    clip.getSampleRate(),
+                    clip.getChannelCount() == 1
+                            ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO,
+                    AudioFormat.ENCODING_PCM_16BIT,
+                    samples.length * 2,
+                    AudioTrack.MODE_STATIC);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Unsupported alert clip format", e);
+            return null;
+        }
+        if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+            Log.e(TAG, "Failed to initialize the alert track");
+            track.release();
+            return null;
+        }
+        track.write(samples, 0, samples.length);
+
+        return track;
+    }
+}
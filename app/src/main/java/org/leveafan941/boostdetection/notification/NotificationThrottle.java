@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.notification;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a notification update is posted. Updates within the coalescing window are
+ * merged into one, and no more than the max number of updates is posted within any second.
+ * Times are in milliseconds of a monotonic clock.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+final class NotificationThrottle {
+
+    /**
+     * Returned by {@link #onUpdate} when the update is merged into an already scheduled one.
+     */
+    static final long UPDATE_COALESCED = -1;
+
+    private static final long RATE_PERIOD_MS = 1000;
+
+    private final long mCoalesceWindowMs;
+    // Times of the last posts, the oldest one limits the next post.
+    private final long[] mPostTimesMs;
+    private int mOldestPostIndex = 0;
+
+    private boolean mIsPostScheduled = false;
+    private long mPostedCount = 0;
+    private long mCoalescedCount = 0;
+
+    /**
+     * @param coalesceWindowMs time an update waits for the following ones to be merged.
+     * @param maxUpdatesPerSecond max number of posts within any second.
+     */
+    NotificationThrottle(long coalesceWindowMs, int maxUpdatesPerSecond) {
+        if (coalesceWindowMs < 0) {
+            throw new IllegalArgumentException("Invalid coalesce window: " + coalesceWindowMs);
+        }
+        if (maxUpdatesPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid max updates: " + maxUpdatesPerSecond);
+        }
+
+        mCoalesceWindowMs = coalesceWindowMs;
+        mPostTimesMs = new long[maxUpdatesPerSecond];
+        // No posts yet, so none of them limits the next one.
+        Arrays.fill(mPostTimesMs, Long.MIN_VALUE / 2);
+    }
+
+    /**
+     * @return delay of the post for the update, or {@link #UPDATE_COALESCED} if a post is
+     * already scheduled and will carry the update.
+     */
+    long onUpdate(long nowMs) {
+        if (mIsPostScheduled) {
+            ++mCoalescedCount;
+            return UPDATE_COALESCED;
+        }
+
+        mIsPostScheduled = true;
+        final long allowedMs = mPostTimesMs[mOldestPostIndex] + RATE_PERIOD_MS;
+        return Math.max(mCoalesceWindowMs, allowedMs - nowMs);
+    }
+
+    /**
+     * Called when the scheduled post is done.
+     */
+    void onPosted(long nowMs) {
+        mIsPostScheduled = false;
+        mPostTimesMs[mOldestPostIndex] = nowMs;
+        mOldestPostIndex = (mOldestPostIndex + 1) % mPostTimesMs.length;
+        ++mPostedCount;
+    }
+
+    /**
+     * Called when the scheduled post is cancelled.
+     */
+    void onCancelled() {
+        mIsPostScheduled = false;
+    }
+
+    long getPostedCount() {
+        return mPostedCount;
+    }
+
+    long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+}
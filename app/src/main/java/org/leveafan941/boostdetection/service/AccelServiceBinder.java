@@ -30,9 +30,50 @@
 
 package org.leveafan941.boostdetection.service;
 
+import org.leveafan941.boostdetection.accelerometer.PipelineStats;
+import org.leveafan941.boostdetection.detection.DetectionConfig;
+import org.leveafan941.boostdetection.detection.SampleRateStats;
+import org.leveafan941.boostdetection.detection.stats.RollingStatsSnapshot;
+
 /**
  * @author Alexey Kuzin (amkuzink@gmail.com).
  */
 public interface AccelServiceBinder {
     void setBoostLimit(float boostLimit);
+
+    /**
+     * @return configuration the samples are checked with, the base of the next change.
+     */
+    DetectionConfig getDetectionConfig();
+
+    /**
+     * Replaces the trigger settings, the filter, the vibration and the axis settings at once,
+     * so the sensor thread never sees a part of them changed. The rest of the configuration
+     * is owned by the service and is kept.
+     *
+     * @param config source of the settings, a filter in it must not be shared.
+     */
+    void setDetectionConfig(DetectionConfig config);
+
+    /**
+     * @return statistics of the latest complete vibration window, null if they are disabled
+     * or no window has ended yet.
+     */
+    RollingStatsSnapshot getVibrationStats();
+
+    /**
+     * @return effective rate, jitter and dropped samples of the sensor.
+     */
+    SampleRateStats getSampleRateStats();
+
+    /**
+     * Enables or disables the latency histograms of the sensor pipeline, they are started
+     * anew when enabled.
+     */
+    void setInstrumentationEnabled(boolean isEnabled);
+
+    /**
+     * @return snapshot of the pipeline histograms, null if the instrumentation is disabled.
+     */
+    PipelineStats getPipelineStats();
 }
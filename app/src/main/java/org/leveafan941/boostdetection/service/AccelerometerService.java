@@ -33,7 +33,9 @@ package org.leveafan941.boostdetection.service;
 import android.app.Service;
 import android.content.Intent;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.support.annotation.Nullable;
 import android.util.Log;
 import android.widget.Toast;
@@ -41,9 +43,20 @@ import android.widget.Toast;
 import org.leveafan941.boostdetection.AccelConstants;
 import org.leveafan941.boostdetection.R;
 import org.leveafan941.boostdetection.accelerometer.AccelerometerManager;
+import org.leveafan941.boostdetection.accelerometer.PipelineStats;
+import org.leveafan941.boostdetection.detection.DetectionConfig;
+import org.leveafan941.boostdetection.detection.EpisodeSummary;
+import org.leveafan941.boostdetection.detection.SampleRateStats;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+import org.leveafan941.boostdetection.detection.stats.RollingStatsSnapshot;
+import org.leveafan941.boostdetection.journal.ExceedJournalRecorder;
 import org.leveafan941.boostdetection.notification.AccelNotifFacade;
 import org.leveafan941.boostdetection.notification.AccelfNotifications;
 
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * @author Alexey Kuzin (amkuzink@gmail.com).
  */
@@ -51,30 +64,98 @@ public class AccelerometerService extends Service {
 
     private static final String TAG = AccelerometerService.class.getSimpleName();
 
+    private static final String EXCEED_JOURNAL_DIR = "exceed_journal";
+
     private AccelerometerManager mAccelMgr;
     private AccelNotifFacade mNotifMgr;
+    private ExceedJournalRecorder mJournalRecorder;
 
     private AccelerometerLimitListener mBoostLimitListener;
 
     private AccelerometerBinder mBinder;
 
 
-    private class AccelerometerLimitListener implements AccelerometerManager.BoostLimitListener {
+    /**
+     * Plays the alert right on the dispatch thread and posts only the notification update to
+     * the main thread. The toast shows the peak of the episode once it ends, the value
+     * crossing the limit is usually far below it. A burst of exceeds or episodes costs a single
+     * main thread update showing the latest number or peak. Sustained vibration alerts are
+     * shown in a toast too, exceeds detected during degraded sampling are only logged.
+     */
+    private class AccelerometerLimitListener implements AccelerometerManager.BoostLimitListener,
+            AccelerometerManager.EpisodeSummaryListener, AccelerometerManager.VibrationListener,
+            AccelerometerManager.DegradedExceedListener, Runnable {
 
-        private int mLimitExceedNumber = 0;
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+        private final AtomicBoolean mIsUiUpdatePosted = new AtomicBoolean(false);
+        private final AtomicInteger mLimitExceedNumber = new AtomicInteger(0);
 
-        @Override
-        public void onBoostLimitExceed(float value) {
-            Toast.makeText(AccelerometerService.this,
-                    getString(R.string.boost_limit_exceed_message, value),
-                    Toast.LENGTH_SHORT).show();
+        private final AtomicBoolean mIsPeakToastPosted = new AtomicBoolean(false);
+        private volatile float mLastPeakBoost;
+        private final Runnable mShowPeakToast = new Runnable() {
+            @Override
+            public void run() {
+                mIsPeakToastPosted.set(false);
 
-            mNotifMgr.showBoostLimitExceedNotification(++mLimitExceedNumber);
+                Toast.makeText(AccelerometerService.this,
+                        getString(R.string.boost_limit_exceed_message, mLastPeakBoost),
+                        Toast.LENGTH_SHORT).show();
+            }
+        };
+
+        private volatile float mLastVibrationValue;
+        private final Runnable mShowVibrationToast = new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(AccelerometerService.this,
+                        getString(R.string.sustained_vibration_message, mLastVibrationValue),
+                        Toast.LENGTH_SHORT).show();
+            }
+        };
+
+        @Override
+        public void onBoostLimitExceed(long timestamp, float value) {
             mNotifMgr.playBoostLimitExceedAudioNotification();
+
+            mLimitExceedNumber.incrementAndGet();
+            if (mIsUiUpdatePosted.compareAndSet(false, true)) {
+                mMainHandler.post(this);
+            }
+        }
+
+        @Override
+        public void onEpisodeSummary(EpisodeSummary summary) {
+            Log.d(TAG, "Exceed episode ended: " + summary);
+
+            mLastPeakBoost = summary.getPeakBoost();
+            if (mIsPeakToastPosted.compareAndSet(false, true)) {
+                mMainHandler.post(mShowPeakToast);
+            }
+        }
+
+        @Override
+        public void onSustainedVibration(long timestamp, float value) {
+            Log.d(TAG, "Sustained vibration: " + value);
+
+            // The alert is re-armed only when the vibration calms down, so they are rare.
+            mLastVibrationValue = value;
+            mMainHandler.post(mShowVibrationToast);
+        }
+
+        @Override
+        public void onDegradedExceed(long timestamp, float value) {
+            Log.d(TAG, "Exceed during degraded sampling: " + value + " at " + timestamp);
+        }
+
+        @Override
+        public void run() {
+            mIsUiUpdatePosted.set(false);
+
+            mNotifMgr.showBoostLimitExceedNotification(mLimitExceedNumber.get());
         }
 
         void resetCounter() {
-            mLimitExceedNumber = 0;
+            mLimitExceedNumber.set(0);
         }
     }
 
@@ -85,6 +166,38 @@ public class AccelerometerService extends Service {
             mAccelMgr.setBoostLimit(boostLimit > AccelConstants.MINIMUM_BOOST_VALUE
                     ? boostLimit : AccelConstants.MINIMUM_BOOST_VALUE);
         }
+
+        @Override
+        public DetectionConfig getDetectionConfig() {
+            return mAccelMgr.getDetectionConfig();
+        }
+
+        @Override
+        public void setDetectionConfig(DetectionConfig config) {
+            final float minLimit = AccelConstants.MINIMUM_BOOST_VALUE;
+            mAccelMgr.setDetectionConfig(config.getTriggerSettings().getBoostLimit() > minLimit
+                    ? config : config.withBoostLimit(minLimit));
+        }
+
+        @Override
+        public RollingStatsSnapshot getVibrationStats() {
+            return mAccelMgr.getVibrationStats();
+        }
+
+        @Override
+        public SampleRateStats getSampleRateStats() {
+            return mAccelMgr.getSampleRateStats();
+        }
+
+        @Override
+        public void setInstrumentationEnabled(boolean isEnabled) {
+            mAccelMgr.setInstrumentationEnabled(isEnabled);
+        }
+
+        @Override
+        public PipelineStats getPipelineStats() {
+            return mAccelMgr.getPipelineStats();
+        }
     }
 
 
@@ -94,12 +207,27 @@ public class AccelerometerService extends Service {
 
         try {
             mAccelMgr = new AccelerometerManager(this);
+            mAccelMgr.setAdaptiveSampling(true);
+
+            mJournalRecorder = new ExceedJournalRecorder(
+                    new File(getFilesDir(), EXCEED_JOURNAL_DIR),
+                    AccelConstants.DEFAULT_JOURNAL_PRE_TRIGGER_SAMPLES,
+                    AccelConstants.DEFAULT_JOURNAL_POST_TRIGGER_SAMPLES);
+            mAccelMgr.addBoostLimitListener(mJournalRecorder);
+            mAccelMgr.setCaptureWindowListener(mJournalRecorder,
+                    AccelConstants.DEFAULT_JOURNAL_PRE_TRIGGER_SAMPLES,
+                    AccelConstants.DEFAULT_JOURNAL_POST_TRIGGER_SAMPLES);
         } catch (AccelerometerManager.NoAccelerometerHardwareException e) {
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
             stopSelf();
         }
 
         mBoostLimitListener = new AccelerometerLimitListener();
+        if (mAccelMgr != null) {
+            mAccelMgr.setEpisodeSummaryListener(mBoostLimitListener);
+            mAccelMgr.setDegradedExceedListener(mBoostLimitListener);
+            mAccelMgr.setVibrationListener(mBoostLimitListener);
+        }
         mNotifMgr = new AccelNotifFacade(this);
         mBinder = new AccelerometerBinder();
     }
@@ -111,6 +239,10 @@ public class AccelerometerService extends Service {
         if (mAccelMgr != null) {
             mAccelMgr.stop();
         }
+        if (mJournalRecorder != null) {
+            mJournalRecorder.close();
+        }
+        mNotifMgr.release();
     }
 
     @Override
@@ -141,7 +273,11 @@ public class AccelerometerService extends Service {
     }
 
     private void startAccelerationTracking(float boostLimit) {
-        mAccelMgr.start(mBoostLimitListener, boostLimit);
+        final TriggerSettings triggerSettings = new TriggerSettings(boostLimit,
+                AccelConstants.DEFAULT_BOOST_HYSTERESIS, AccelConstants.DEFAULT_MIN_DWELL_NS,
+                AccelConstants.DEFAULT_REFRACTORY_NS);
+        mAccelMgr.start(mBoostLimitListener, triggerSettings,
+                AccelConstants.DEFAULT_MAX_REPORT_LATENCY_US);
     }
 
     private void handleNotificationRemoved() {
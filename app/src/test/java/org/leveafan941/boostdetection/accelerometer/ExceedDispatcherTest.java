@@ -0,0 +1,298 @@
+package org.leveafan941.boostdetection.accelerometer;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.leveafan941.boostdetection.detection.CaptureWindow;
+import org.leveafan941.boostdetection.detection.WindowCapture;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the fan-out, drain scheduling and backpressure of the exceed dispatch.
+ */
+public class ExceedDispatcherTest {
+
+    private static class ManualExecutor implements Executor {
+
+        final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    private static class CountingListener implements AccelerometerManager.BoostLimitListener,
+            AccelerometerManager.AxisExceedListener, AccelerometerManager.CaptureWindowListener {
+
+        long mCount;
+
+        @Override
+        public void onBoostLimitExceed(long timestamp, float value) {
+            ++mCount;
+        }
+
+        @Override
+        public void onAxisExceed(int axis, long timestamp, float value) {
+            ++mCount;
+        }
+
+        @Override
+        public void onCaptureWindow(CaptureWindow window) {
+            ++mCount;
+        }
+    }
+
+    private static class RecordingListener implements AccelerometerManager.BoostLimitListener {
+
+        final List<Long> mTimestamps = new ArrayList<>();
+
+        @Override
+        public void onBoostLimitExceed(long timestamp, float value) {
+            mTimestamps.add(timestamp);
+        }
+    }
+
+    @Test
+    public void burst_singleDrainScheduled() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4, executor);
+        final RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener);
+
+        for (long ts = 1; ts <= 5; ++ts) {
+            dispatcher.queueBoostLimitExceed(ts, 10f);
+        }
+        assertEquals(1, executor.mTasks.size());
+        assertEquals(5, dispatcher.getQueueDepth());
+
+        executor.runAll();
+        assertEquals(5, listener.mTimestamps.size());
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(5, dispatcher.getMaxQueueDepth());
+
+        dispatcher.queueBoostLimitExceed(6, 10f);
+        assertEquals(1, executor.mTasks.size());
+    }
+
+    @Test
+    public void flush_dispatchesOnCallingThread() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4, executor);
+        final RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener);
+
+        dispatcher.queueBoostLimitExceed(1, 10f);
+        dispatcher.queueBoostLimitExceed(2, 10f);
+        dispatcher.flush();
+
+        assertEquals(Arrays.asList(1L, 2L), listener.mTimestamps);
+        executor.runAll();
+        assertEquals(2, listener.mTimestamps.size());
+    }
+
+    @Test
+    public void listeners_allReceiveEventsInOrder() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4, executor);
+        final RecordingListener first = new RecordingListener();
+        final RecordingListener second = new RecordingListener();
+        dispatcher.addListener(first);
+        dispatcher.addListener(second);
+        dispatcher.addListener(first);
+
+        dispatcher.queueBoostLimitExceed(1, 10f);
+        dispatcher.queueBoostLimitExceed(2, 10f);
+        executor.runAll();
+
+        assertEquals(2, first.mTimestamps.size());
+        assertEquals(first.mTimestamps, second.mTimestamps);
+
+        dispatcher.removeListener(first);
+        dispatcher.queueBoostLimitExceed(3, 10f);
+        executor.runAll();
+
+        assertEquals(2, first.mTimestamps.size());
+        assertEquals(Long.valueOf(3), second.mTimestamps.get(2));
+    }
+
+    @Test
+    public void instrumentation_recordsHandOffAndDispatch() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4, executor);
+        dispatcher.addListener(new RecordingListener());
+        final PipelineInstrumentation instrumentation = new PipelineInstrumentation();
+        dispatcher.setInstrumentation(instrumentation);
+
+        dispatcher.queueBoostLimitExceed(1, 10f);
+        dispatcher.queueBoostLimitExceed(2, 10f);
+        executor.runAll();
+
+        final PipelineStats stats = instrumentation.snapshot();
+        assertEquals(1, stats.getHandOffLatency().getCount());
+        assertEquals(2, stats.getDispatchDuration().getCount());
+        assertEquals(0, stats.getCallbackLatency().getCount());
+
+        dispatcher.setInstrumentation(null);
+        dispatcher.queueBoostLimitExceed(3, 10f);
+        executor.runAll();
+        assertEquals(2, instrumentation.snapshot().getDispatchDuration().getCount());
+    }
+
+    @Test
+    public void thresholdCrossings_routedById() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4, executor);
+        final RecordingListener limitListener = new RecordingListener();
+        final RecordingListener warningListener = new RecordingListener();
+        final RecordingListener crashListener = new RecordingListener();
+        dispatcher.addListener(limitListener);
+        dispatcher.putThresholdListener(0, warningListener);
+        dispatcher.putThresholdListener(1, crashListener);
+
+        dispatcher.queueThresholdCrossing(0, 1, 10f);
+        dispatcher.queueBoostLimitExceed(2, 10f);
+        dispatcher.queueThresholdCrossing(1, 3, 10f);
+        executor.runAll();
+
+        assertEquals(Long.valueOf(1), warningListener.mTimestamps.get(0));
+        assertEquals(Long.valueOf(2), limitListener.mTimestamps.get(0));
+        assertEquals(Long.valueOf(3), crashListener.mTimestamps.get(0));
+
+        assertArrayEquals(new int[] {1}, dispatcher.removeThresholdListener(crashListener));
+        dispatcher.queueThresholdCrossing(1, 4, 10f);
+        executor.runAll();
+        assertEquals(1, crashListener.mTimestamps.size());
+    }
+
+    @Test
+    public void captureWindow_releasedAfterListener() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4, executor);
+        final List<Long> eventTimestamps = new ArrayList<>();
+        dispatcher.setCaptureWindowListener(new AccelerometerManager.CaptureWindowListener() {
+            @Override
+            public void onCaptureWindow(CaptureWindow window) {
+                eventTimestamps.add(window.getEventTimestamp());
+            }
+        });
+        final WindowCapture capture = new WindowCapture(1, 0, 1, dispatcher);
+
+        capture.onSample(1, 0f, 0f, 0f);
+        capture.onTrigger(1, 10f);
+        executor.runAll();
+        capture.onSample(2, 0f, 0f, 0f);
+        capture.onTrigger(2, 10f);
+        executor.runAll();
+
+        assertEquals(Arrays.asList(1L, 2L), eventTimestamps);
+        assertEquals(0, capture.getDroppedCount());
+    }
+
+    @Test
+    public void laggingListener_newEventsDropped() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(4, 4, 4, executor);
+        final RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener);
+
+        for (long ts = 1; ts <= 6; ++ts) {
+            dispatcher.queueBoostLimitExceed(ts, 10f);
+        }
+        executor.runAll();
+
+        assertEquals(2, dispatcher.getDroppedEventCount());
+        assertEquals(4, listener.mTimestamps.size());
+        assertEquals(Long.valueOf(4), listener.mTimestamps.get(3));
+    }
+
+    @Test
+    public void steadyStateDispatch_allocatesNothing() throws Exception {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocBean =
+                (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(allocBean.isThreadAllocatedMemorySupported());
+        allocBean.setThreadAllocatedMemoryEnabled(true);
+
+        final ManualExecutor executor = new ManualExecutor();
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4, executor);
+        final CountingListener listener = new CountingListener();
+        dispatcher.addListener(listener);
+        dispatcher.putThresholdListener(0, listener);
+        dispatcher.setAxisExceedListener(listener);
+        dispatcher.setCaptureWindowListener(listener);
+        final WindowCapture capture = new WindowCapture(4, 4, 2, dispatcher);
+        final long threadId = Thread.currentThread().getId();
+
+        // Warm up, so class loading and compilation are not counted.
+        runDispatch(dispatcher, capture, executor, 0, 100000);
+
+        final long countBefore = listener.mCount;
+        final long allocatedBefore = allocBean.getThreadAllocatedBytes(threadId);
+        runDispatch(dispatcher, capture, executor, 100000, 1000000);
+        final long allocatedAfter = allocBean.getThreadAllocatedBytes(threadId);
+
+        // Every batch delivers three events and a capture window.
+        assertEquals(4 * 1000000 / 10, listener.mCount - countBefore);
+        assertEquals(0, dispatcher.getDroppedEventCount());
+        assertEquals(0, capture.getDroppedCount());
+        assertEquals(0, allocatedAfter - allocatedBefore);
+    }
+
+    @Test
+    public void defaultExecutor_dispatchesOnBackgroundThread() throws Exception {
+        final ExceedDispatcher dispatcher = new ExceedDispatcher(8, 4, 4);
+        final CountDownLatch latch = new CountDownLatch(3);
+        final Thread callerThread = Thread.currentThread();
+        dispatcher.addListener(new AccelerometerManager.BoostLimitListener() {
+            @Override
+            public void onBoostLimitExceed(long timestamp, float value) {
+                assertNotSame(callerThread, Thread.currentThread());
+                latch.countDown();
+            }
+        });
+
+        for (long ts = 1; ts <= 3; ++ts) {
+            dispatcher.queueBoostLimitExceed(ts, 10f);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.getMaxDispatchLatencyNs() >= dispatcher.getMeanDispatchLatencyNs());
+    }
+
+    /**
+     * Queues an exceed, a threshold crossing, an axis exceed and a capture window every ten
+     * samples and drains them like the dispatch thread does.
+     */
+    private static void runDispatch(ExceedDispatcher dispatcher, WindowCapture capture,
+                                    ManualExecutor executor, long firstTimestamp,
+                                    int sampleCount) {
+        for (int i = 0; i < sampleCount; ++i) {
+            final long timestamp = firstTimestamp + i;
+            capture.onSample(timestamp, 1f, 2f, 3f);
+            if (i % 10 == 0) {
+                dispatcher.queueBoostLimitExceed(timestamp, 10f);
+                dispatcher.queueThresholdCrossing(0, timestamp, 10f);
+                dispatcher.queueAxisExceed(0, timestamp, 10f);
+                capture.onTrigger(timestamp, 10f);
+            }
+            executor.runAll();
+        }
+    }
+}
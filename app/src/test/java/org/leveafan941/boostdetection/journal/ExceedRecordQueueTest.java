@@ -0,0 +1,90 @@
+package org.leveafan941.boostdetection.journal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every exceed event is written once, with its window when it arrives.
+ */
+public class ExceedRecordQueueTest {
+
+    private static final long WAIT_NS = 1000;
+
+    private static class RecordingWriter implements ExceedRecordQueue.RecordWriter {
+
+        final List<String> mRecords = new ArrayList<>();
+
+        @Override
+        public void writeRecord(long timestamp, float boostValue, JournalWindow window) {
+            mRecords.add(timestamp + (window == null ? "" : " window " + window.mEventTimestamp));
+        }
+    }
+
+    private final ExceedRecordQueue mQueue = new ExceedRecordQueue(4, 4, WAIT_NS);
+    private final RecordingWriter mWriter = new RecordingWriter();
+
+    @Test
+    public void windowArrived_writtenWithEvent() throws Exception {
+        mQueue.addEvent(10, 5f, 0, mWriter);
+        mQueue.write(mWriter, 0, false);
+        assertTrue(mWriter.mRecords.isEmpty());
+        assertEquals(WAIT_NS, mQueue.getWindowWaitLeftNs(0));
+
+        mQueue.addWindow(window(10));
+        mQueue.write(mWriter, 1, false);
+
+        assertEquals(Arrays.asList("10 window 10"), mWriter.mRecords);
+        assertEquals(-1, mQueue.getWindowWaitLeftNs(1));
+    }
+
+    @Test
+    public void windowDropped_eventWrittenWithoutSamples() throws Exception {
+        mQueue.addEvent(10, 5f, 0, mWriter);
+        mQueue.addEvent(20, 5f, 0, mWriter);
+        mQueue.addWindow(window(20));
+        mQueue.write(mWriter, 0, false);
+
+        assertEquals(Arrays.asList("10", "20 window 20"), mWriter.mRecords);
+    }
+
+    @Test
+    public void eventDropped_windowWrittenAlone() throws Exception {
+        mQueue.addWindow(window(10));
+        mQueue.addEvent(20, 5f, 0, mWriter);
+        mQueue.write(mWriter, 0, false);
+
+        assertEquals(Arrays.asList("10 window 10"), mWriter.mRecords);
+    }
+
+    @Test
+    public void windowLate_eventWrittenAfterWait() throws Exception {
+        mQueue.addEvent(10, 5f, 0, mWriter);
+        mQueue.write(mWriter, WAIT_NS - 1, false);
+        assertTrue(mWriter.mRecords.isEmpty());
+
+        mQueue.write(mWriter, WAIT_NS, false);
+        assertEquals(Arrays.asList("10"), mWriter.mRecords);
+    }
+
+    @Test
+    public void flushOrOverflow_noEventLost() throws Exception {
+        for (long ts = 1; ts <= 5; ++ts) {
+            mQueue.addEvent(ts, 5f, 0, mWriter);
+        }
+        assertEquals(Arrays.asList("1"), mWriter.mRecords);
+
+        mQueue.write(mWriter, 0, true);
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5"), mWriter.mRecords);
+    }
+
+    private static JournalWindow window(long eventTimestamp) {
+        final JournalWindow window = new JournalWindow(3);
+        window.mEventTimestamp = eventTimestamp;
+        return window;
+    }
+}
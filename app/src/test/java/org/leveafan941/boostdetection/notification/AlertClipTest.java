@@ -0,0 +1,40 @@
+package org.leveafan941.boostdetection.notification;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks clip duration and fades of synthesized and decoded clips.
+ */
+public class AlertClipTest {
+
+    @Test
+    public void synthesizedTone_durationAndSilentEdges() throws Exception {
+        final AlertClip clip = AlertClip.synthesizeTone(44100, 880, 150, 0.6f);
+
+        assertEquals(1, clip.getChannelCount());
+        assertEquals(6615, clip.getFrameCount());
+        assertEquals(150000000L, clip.getDurationNs());
+        final short[] samples = clip.getSamples();
+        assertEquals(0, samples[0]);
+        assertEquals(0, samples[samples.length - 1]);
+    }
+
+    @Test
+    public void fadeOut_scalesEveryChannelOfTrailingFrames() throws Exception {
+        final short[] samples = new short[2 * 1000];
+        Arrays.fill(samples, (short) 1000);
+        final AlertClip clip = new AlertClip(samples, 1000, 2);
+
+        clip.fadeOut(10);
+
+        assertEquals(1000, clip.getFrameCount());
+        assertEquals(1000, samples[2 * 989]);
+        assertEquals(0, samples[2 * 999]);
+        assertEquals(0, samples[2 * 999 + 1]);
+        assertEquals(500, samples[2 * 994 + 1]);
+    }
+}
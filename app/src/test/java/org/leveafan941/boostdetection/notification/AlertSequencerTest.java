@@ -0,0 +1,88 @@
+package org.leveafan941.boostdetection.notification;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks overlap policies against a fake clock.
+ */
+public class AlertSequencerTest {
+
+    private static final long CLIP_NS = 150;
+    private static final int MAX_QUEUED = 2;
+
+    @Test
+    public void alertAfterPlayback_played() throws Exception {
+        final AlertSequencer sequencer = new AlertSequencer(AlertOverlapPolicy.DROP, CLIP_NS,
+                MAX_QUEUED);
+
+        assertEquals(AlertSequencer.ACTION_PLAY, sequencer.onAlert(0));
+        assertEquals(AlertSequencer.ACTION_PLAY, sequencer.onAlert(CLIP_NS));
+        assertEquals(0, sequencer.getDroppedAlerts());
+    }
+
+    @Test
+    public void dropPolicy_overlappingAlertDropped() throws Exception {
+        final AlertSequencer sequencer = new AlertSequencer(AlertOverlapPolicy.DROP, CLIP_NS,
+                MAX_QUEUED);
+
+        sequencer.onAlert(0);
+        assertEquals(AlertSequencer.ACTION_DROP, sequencer.onAlert(10));
+        assertEquals(CLIP_NS, sequencer.getPlaybackEndNs());
+        assertFalse(sequencer.onPlaybackEnd(CLIP_NS));
+        assertEquals(1, sequencer.getDroppedAlerts());
+    }
+
+    @Test
+    public void extendPolicy_clipPlayedOnceMoreAfterCurrent() throws Exception {
+        final AlertSequencer sequencer = new AlertSequencer(AlertOverlapPolicy.EXTEND, CLIP_NS,
+                MAX_QUEUED);
+
+        sequencer.onAlert(0);
+        assertEquals(AlertSequencer.ACTION_EXTEND, sequencer.onAlert(100));
+        assertEquals(AlertSequencer.ACTION_MERGE, sequencer.onAlert(120));
+        // The current clip is not restarted.
+        assertEquals(CLIP_NS, sequencer.getPlaybackEndNs());
+
+        assertFalse(sequencer.onPlaybackEnd(CLIP_NS - 1));
+        assertTrue(sequencer.onPlaybackEnd(CLIP_NS));
+        assertEquals(2 * CLIP_NS, sequencer.getPlaybackEndNs());
+        assertFalse(sequencer.onPlaybackEnd(2 * CLIP_NS));
+        assertEquals(0, sequencer.getDroppedAlerts());
+    }
+
+    @Test
+    public void queuePolicy_queuedAlertsPlayedInTurn() throws Exception {
+        final AlertSequencer sequencer = new AlertSequencer(AlertOverlapPolicy.QUEUE, CLIP_NS,
+                MAX_QUEUED);
+
+        sequencer.onAlert(0);
+        assertEquals(AlertSequencer.ACTION_QUEUE, sequencer.onAlert(10));
+        assertEquals(AlertSequencer.ACTION_QUEUE, sequencer.onAlert(20));
+        assertEquals(AlertSequencer.ACTION_DROP, sequencer.onAlert(30));
+
+        assertFalse(sequencer.onPlaybackEnd(CLIP_NS - 1));
+        assertTrue(sequencer.onPlaybackEnd(CLIP_NS));
+        assertEquals(AlertSequencer.ACTION_QUEUE, sequencer.onAlert(CLIP_NS + 10));
+        assertTrue(sequencer.onPlaybackEnd(2 * CLIP_NS));
+        assertTrue(sequencer.onPlaybackEnd(3 * CLIP_NS));
+        assertFalse(sequencer.onPlaybackEnd(4 * CLIP_NS));
+        assertEquals(1, sequencer.getDroppedAlerts());
+    }
+
+    @Test
+    public void latencyStats_meanAndMax() throws Exception {
+        final AlertLatencyStats stats = new AlertLatencyStats();
+        assertEquals(0, stats.getMeanNs());
+
+        stats.record(10);
+        stats.record(30);
+        stats.record(20);
+
+        assertEquals(3, stats.getCount());
+        assertEquals(20, stats.getMeanNs());
+        assertEquals(30, stats.getMaxNs());
+        assertEquals(20, stats.getLastNs());
+    }
+}
@@ -0,0 +1,78 @@
+package org.leveafan941.boostdetection.notification;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Simulates bursts of notification updates against a fake clock.
+ */
+public class NotificationThrottleTest {
+
+    private static final long WINDOW_MS = 250;
+    private static final int MAX_UPDATES_PER_SECOND = 2;
+
+    @Test
+    public void firstUpdate_delayedByWindow() throws Exception {
+        final NotificationThrottle throttle = new NotificationThrottle(WINDOW_MS,
+                MAX_UPDATES_PER_SECOND);
+
+        assertEquals(WINDOW_MS, throttle.onUpdate(0));
+    }
+
+    @Test
+    public void updatesWithinWindow_coalesced() throws Exception {
+        final NotificationThrottle throttle = new NotificationThrottle(WINDOW_MS,
+                MAX_UPDATES_PER_SECOND);
+
+        throttle.onUpdate(0);
+        assertEquals(NotificationThrottle.UPDATE_COALESCED, throttle.onUpdate(10));
+        assertEquals(NotificationThrottle.UPDATE_COALESCED, throttle.onUpdate(20));
+        throttle.onPosted(WINDOW_MS);
+
+        assertEquals(1, throttle.getPostedCount());
+        assertEquals(2, throttle.getCoalescedCount());
+    }
+
+    @Test
+    public void burst_postsLimitedPerSecond() throws Exception {
+        final NotificationThrottle throttle = new NotificationThrottle(WINDOW_MS,
+                MAX_UPDATES_PER_SECOND);
+        final long[] postTimes = new long[20];
+        int postCount = 0;
+        int scheduleCount = 0;
+
+        // An update every 10 ms for 10 seconds, a post is done as soon as it is due.
+        long scheduledPostMs = -1;
+        for (long now = 0; now < 10000; now += 10) {
+            if (scheduledPostMs >= 0 && now >= scheduledPostMs) {
+                throttle.onPosted(now);
+                postTimes[postCount++] = now;
+                scheduledPostMs = -1;
+            }
+
+            final long delay = throttle.onUpdate(now);
+            if (delay != NotificationThrottle.UPDATE_COALESCED) {
+                scheduledPostMs = now + delay;
+                ++scheduleCount;
+            }
+        }
+
+        assertTrue(postCount <= 10 * MAX_UPDATES_PER_SECOND);
+        for (int i = MAX_UPDATES_PER_SECOND; i < postCount; ++i) {
+            assertTrue(postTimes[i] - postTimes[i - MAX_UPDATES_PER_SECOND] >= 1000);
+        }
+        assertEquals(1000 - scheduleCount, throttle.getCoalescedCount());
+    }
+
+    @Test
+    public void cancelled_nextUpdateScheduled() throws Exception {
+        final NotificationThrottle throttle = new NotificationThrottle(WINDOW_MS,
+                MAX_UPDATES_PER_SECOND);
+
+        throttle.onUpdate(0);
+        throttle.onCancelled();
+
+        assertEquals(WINDOW_MS, throttle.onUpdate(10));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.leveafan941.boostdetection.detection.BoostLimitEventRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of the detection path behind {@code AccelerometerListener.onSensorChanged}.
+ * Each invocation processes the next sample of the synthetic profile.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectionBenchmark {
+
+    // Power of two, so the sample index wraps with a mask.
+    private static final int SAMPLE_COUNT = 1 << 16;
+    private static final int EVENT_RING_CAPACITY = 256;
+
+    @Param({"STEADY", "NOISY", "BURSTY"})
+    public SyntheticSamples.Profile profile;
+
+    private SyntheticSamples mSamples;
+    private int mIndex;
+
+    private BoostLimitDetector mDetector;
+    private BoostLimitDetector mHandOffDetector;
+    private BoostLimitEventRing mEventRing;
+    private AccelerometerEventQueue mConsumerQueue;
+
+    private static class BlackholeQueue implements AccelerometerEventQueue {
+
+        private final Blackhole mBlackhole;
+
+        BlackholeQueue(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            mBlackhole.consume(timestamp);
+            mBlackhole.consume(boostValue);
+        }
+    }
+
+    private static class RingQueue implements AccelerometerEventQueue {
+
+        private final BoostLimitEventRing mEventRing;
+
+        RingQueue(BoostLimitEventRing eventRing) {
+            mEventRing = eventRing;
+        }
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            mEventRing.offer(timestamp, boostValue);
+        }
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        mSamples = SyntheticSamples.generate(profile, SAMPLE_COUNT, 42);
+        mIndex = 0;
+
+        mConsumerQueue = new BlackholeQueue(blackhole);
+        mDetector = new BoostLimitDetector(mConsumerQueue, SyntheticSamples.BOOST_LIMIT);
+
+        mEventRing = new BoostLimitEventRing(EVENT_RING_CAPACITY);
+        mHandOffDetector = new BoostLimitDetector(new RingQueue(mEventRing),
+                SyntheticSamples.BOOST_LIMIT);
+    }
+
+    @Benchmark
+    public float calcDeviceBoost() {
+        final int i = nextIndex();
+        return BoostLimitDetector.calcDeviceBoost(mSamples.xBoosts[i], mSamples.yBoosts[i],
+                mSamples.zBoosts[i]);
+    }
+
+    @Benchmark
+    public void onSample() {
+        final int i = nextIndex();
+        mDetector.onSample(mSamples.timestamps[i], mSamples.xBoosts[i], mSamples.yBoosts[i],
+                mSamples.zBoosts[i]);
+    }
+
+    /**
+     * Detection plus the hand-off of the crossings through the event ring, drained on
+     * the same thread.
+     */
+    @Benchmark
+    public int onSampleWithHandOff() {
+        final int i = nextIndex();
+        mHandOffDetector.onSample(mSamples.timestamps[i], mSamples.xBoosts[i],
+                mSamples.yBoosts[i], mSamples.zBoosts[i]);
+        return mEventRing.drain(mConsumerQueue);
+    }
+
+    private int nextIndex() {
+        final int i = mIndex;
+        mIndex = (i + 1) & (SAMPLE_COUNT - 1);
+        return i;
+    }
+}
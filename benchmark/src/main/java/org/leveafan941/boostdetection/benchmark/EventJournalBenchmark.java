@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.journal.EventJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exceed events appended per second to the journal in a temporary directory, with and without
+ * the group commit.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventJournalBenchmark {
+
+    private static final int SAMPLE_COUNT = 1 << 12;
+    private static final long MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_SEGMENT_COUNT = 4;
+    private static final int GROUP_COMMIT_BYTES = 64 * 1024;
+
+    /**
+     * Samples written with each event, 200 is a second at the fastest sensor rate.
+     */
+    @Param({"0", "200"})
+    public int windowSamples;
+
+    /**
+     * 0 syncs every event.
+     */
+    @Param({"0", "200"})
+    public long groupCommitIntervalMs;
+
+    private SyntheticSamples mSamples;
+    private File mDirectory;
+    private EventJournal mJournal;
+    private int mIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mSamples = SyntheticSamples.generate(SyntheticSamples.Profile.BURSTY, SAMPLE_COUNT, 42);
+        mDirectory = File.createTempFile("journal", "");
+        if (!mDirectory.delete() || !mDirectory.mkdir()) {
+            throw new IOException("Failed to create " + mDirectory);
+        }
+        mJournal = new EventJournal(mDirectory, MAX_SEGMENT_BYTES, MAX_SEGMENT_COUNT,
+                GROUP_COMMIT_BYTES, TimeUnit.MILLISECONDS.toNanos(groupCommitIntervalMs));
+        mIndex = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mJournal.close();
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        final int offset = mIndex;
+        mIndex = (offset + windowSamples) % (SAMPLE_COUNT - windowSamples);
+        mJournal.append(mSamples.timestamps[offset], SyntheticSamples.BOOST_LIMIT,
+                mSamples.timestamps, mSamples.xBoosts, mSamples.yBoosts, mSamples.zBoosts,
+                offset, windowSamples);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.filter.BiquadFilter;
+import org.leveafan941.boostdetection.detection.filter.ExponentialFilter;
+import org.leveafan941.boostdetection.detection.filter.FilterPipeline;
+import org.leveafan941.boostdetection.detection.filter.MedianFilter;
+import org.leveafan941.boostdetection.detection.filter.SampleFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of every filter stage and of a typical pipeline.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    private static final int SAMPLE_COUNT = 1 << 16;
+    private static final float SAMPLE_RATE_HZ =
+            (float) (TimeUnit.SECONDS.toNanos(1) / SyntheticSamples.SAMPLE_PERIOD_NS);
+
+    public enum Stage {
+        EXPONENTIAL,
+        BIQUAD_LOW_PASS,
+        BIQUAD_HIGH_PASS,
+        MEDIAN_5,
+        MEDIAN_15,
+        PIPELINE
+    }
+
+    @Param({"EXPONENTIAL", "BIQUAD_LOW_PASS", "BIQUAD_HIGH_PASS", "MEDIAN_5", "MEDIAN_15",
+            "PIPELINE"})
+    public Stage stage;
+
+    @Param({"NOISY"})
+    public SyntheticSamples.Profile profile;
+
+    private SyntheticSamples mSamples;
+    private SampleFilter mFilter;
+    private final float[] mValues = new float[SampleFilter.AXIS_COUNT];
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mSamples = SyntheticSamples.generate(profile, SAMPLE_COUNT, 42);
+        mFilter = createFilter(stage);
+        mIndex = 0;
+    }
+
+    @Benchmark
+    public float filter() {
+        final int i = mIndex;
+        mIndex = (i + 1) & (SAMPLE_COUNT - 1);
+
+        final float[] values = mValues;
+        values[0] = mSamples.xBoosts[i];
+        values[1] = mSamples.yBoosts[i];
+        values[2] = mSamples.zBoosts[i];
+        mFilter.filter(values);
+        return values[0] + values[1] + values[2];
+    }
+
+    private static SampleFilter createFilter(Stage stage) {
+        switch (stage) {
+            case EXPONENTIAL:
+                return new ExponentialFilter(0.2f);
+            case BIQUAD_LOW_PASS:
+                return BiquadFilter.lowPass(SAMPLE_RATE_HZ, 20f, BiquadFilter.BUTTERWORTH_Q);
+            case BIQUAD_HIGH_PASS:
+                return BiquadFilter.highPass(SAMPLE_RATE_HZ, 0.5f, BiquadFilter.BUTTERWORTH_Q);
+            case MEDIAN_5:
+                return new MedianFilter(5);
+            case MEDIAN_15:
+                return new MedianFilter(15);
+            case PIPELINE:
+                return new FilterPipeline(new MedianFilter(5),
+                        BiquadFilter.highPass(SAMPLE_RATE_HZ, 0.5f, BiquadFilter.BUTTERWORTH_Q),
+                        BiquadFilter.lowPass(SAMPLE_RATE_HZ, 20f, BiquadFilter.BUTTERWORTH_Q));
+            default:
+                throw new IllegalArgumentException("Unknown stage: " + stage);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.RawSampleConsumer;
+import org.leveafan941.boostdetection.detection.SampleRingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the raw sample buffer. The fastest sensor rate is a few hundred samples
+ * per second, so the producer must stay many orders of magnitude above it.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SampleRingBufferBenchmark {
+
+    private static final int CAPACITY = 4096;
+
+    private SampleRingBuffer mBuffer;
+    private long mTimestamp;
+
+    private static class BlackholeConsumer implements RawSampleConsumer {
+
+        private final Blackhole mBlackhole;
+
+        BlackholeConsumer(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void onRawSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+            mBlackhole.consume(timestamp);
+            mBlackhole.consume(xBoost + yBoost + zBoost);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConsumerState {
+
+        BlackholeConsumer mConsumer;
+
+        @Setup
+        public void setUp(Blackhole blackhole) {
+            mConsumer = new BlackholeConsumer(blackhole);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mBuffer = new SampleRingBuffer(CAPACITY);
+        mTimestamp = 0;
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean offer() {
+        final long timestamp = ++mTimestamp;
+        return mBuffer.offer(timestamp, 0.1f, 0.2f, 0.3f);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public int drain(ConsumerState state) {
+        return mBuffer.drain(state.mConsumer);
+    }
+
+    @Benchmark
+    @Group("offerDrainSameThread")
+    public int offerDrainSameThread(ConsumerState state) {
+        final long timestamp = ++mTimestamp;
+        mBuffer.offer(timestamp, 0.1f, 0.2f, 0.3f);
+        return mBuffer.drain(state.mConsumer);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.spectrum.BandEnergyQueue;
+import org.leveafan941.boostdetection.detection.spectrum.Fft;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumAnalyzer;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumBand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single FFT and the per-sample cost of the spectrum analysis, which includes
+ * two FFTs every half window.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpectrumBenchmark {
+
+    private static final int SAMPLE_COUNT = 1 << 16;
+
+    @Param({"256", "512", "1024"})
+    public int windowSize;
+
+    private SyntheticSamples mSamples;
+    private SpectrumAnalyzer mAnalyzer;
+    private Fft mFft;
+    private float[] mRe;
+    private float[] mIm;
+    private int mIndex;
+    private long mEventCount;
+
+    @Setup
+    public void setUp() {
+        mSamples = SyntheticSamples.generate(SyntheticSamples.Profile.NOISY, SAMPLE_COUNT, 42);
+        mAnalyzer = new SpectrumAnalyzer(windowSize, 0.2f, new BandEnergyQueue() {
+            @Override
+            public void queueBandEnergyExceed(int band, long timestamp, float rmsBoost) {
+                ++mEventCount;
+            }
+        }, new SpectrumBand(0.5f, 5f, 1f), new SpectrumBand(5f, 20f, 1f),
+                new SpectrumBand(20f, 50f, 1f));
+        mIndex = 0;
+
+        mFft = new Fft(windowSize);
+        mRe = new float[windowSize];
+        mIm = new float[windowSize];
+    }
+
+    /**
+     * Includes copying a window of samples into the buffers, the transform is in place.
+     */
+    @Benchmark
+    public float transform() {
+        System.arraycopy(mSamples.xBoosts, 0, mRe, 0, windowSize);
+        System.arraycopy(mSamples.yBoosts, 0, mIm, 0, windowSize);
+        mFft.transform(mRe, mIm);
+        return mRe[1];
+    }
+
+    @Benchmark
+    public long analyzeSample() {
+        final int i = mIndex;
+        mIndex = (i + 1) & (SAMPLE_COUNT - 1);
+
+        mAnalyzer.onSample(mSamples.timestamps[i], mSamples.xBoosts[i], mSamples.yBoosts[i],
+                mSamples.zBoosts[i]);
+        return mEventCount;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of the squared module comparison, single and batched, against the square
+ * root comparison it replaced.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SquaredModuleBenchmark {
+
+    private static final int SAMPLE_COUNT = 1 << 12;
+
+    @Param({"STEADY", "NOISY", "BURSTY"})
+    public SyntheticSamples.Profile profile;
+
+    private SyntheticSamples mSamples;
+    private BoostLimitDetector mDetector;
+    private SqrtDetector mSqrtDetector;
+
+    /**
+     * The detection as it was before the squared comparison, kept as the baseline.
+     */
+    private static final class SqrtDetector {
+
+        private volatile float mBoostLimit;
+        private boolean mIsLimitExceed = false;
+        private final AccelerometerEventQueue mEventQueue;
+
+        SqrtDetector(AccelerometerEventQueue eventQueue, float boostLimit) {
+            mEventQueue = eventQueue;
+            mBoostLimit = boostLimit;
+        }
+
+        void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+            final float boostModule = (float) Math.sqrt(xBoost * xBoost + yBoost * yBoost
+                    + zBoost * zBoost);
+            if (boostModule > mBoostLimit) {
+                if (!mIsLimitExceed) {
+                    mEventQueue.queueBoostLimitExceed(timestamp, boostModule);
+                    mIsLimitExceed = true;
+                }
+            } else {
+                mIsLimitExceed = false;
+            }
+        }
+    }
+
+    private static class BlackholeQueue implements AccelerometerEventQueue {
+
+        private final Blackhole mBlackhole;
+
+        BlackholeQueue(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            mBlackhole.consume(timestamp);
+            mBlackhole.consume(boostValue);
+        }
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        mSamples = SyntheticSamples.generate(profile, SAMPLE_COUNT, 42);
+
+        final AccelerometerEventQueue queue = new BlackholeQueue(blackhole);
+        mDetector = new BoostLimitDetector(queue, SyntheticSamples.BOOST_LIMIT);
+        mSqrtDetector = new SqrtDetector(queue, SyntheticSamples.BOOST_LIMIT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public void sqrtCompare() {
+        final SyntheticSamples samples = mSamples;
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            mSqrtDetector.onSample(samples.timestamps[i], samples.xBoosts[i],
+                    samples.yBoosts[i], samples.zBoosts[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public void squaredCompare() {
+        final SyntheticSamples samples = mSamples;
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            mDetector.onSample(samples.timestamps[i], samples.xBoosts[i], samples.yBoosts[i],
+                    samples.zBoosts[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public void squaredCompareBatch() {
+        final SyntheticSamples samples = mSamples;
+        mDetector.onSamples(samples.timestamps, samples.xBoosts, samples.yBoosts,
+                samples.zBoosts, 0, SAMPLE_COUNT);
+    }
+}
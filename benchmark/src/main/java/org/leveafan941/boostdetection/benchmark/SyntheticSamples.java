@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generated linear acceleration samples for the benchmarks, stored in columns like
+ * the sensor would deliver them.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SyntheticSamples {
+
+    /**
+     * Boost limit the profiles are built around, in m/s2.
+     */
+    public static final float BOOST_LIMIT = 5f;
+
+    // 200 Hz, about the fastest sensor rate.
+    public static final long SAMPLE_PERIOD_NS = 5000000L;
+
+    private static final int BURST_PERIOD = 200;
+    private static final int BURST_LENGTH = 12;
+
+    public enum Profile {
+        /**
+         * Device at rest, the boost module stays far below the limit.
+         */
+        STEADY,
+        /**
+         * Gaussian noise which crosses the limit now and then.
+         */
+        NOISY,
+        /**
+         * Quiet signal with short impacts well above the limit.
+         */
+        BURSTY
+    }
+
+    public final long[] timestamps;
+    public final float[] xBoosts;
+    public final float[] yBoosts;
+    public final float[] zBoosts;
+
+    private SyntheticSamples(int count) {
+        timestamps = new long[count];
+        xBoosts = new float[count];
+        yBoosts = new float[count];
+        zBoosts = new float[count];
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * @param count number of samples.
+     * @param seed seed of the noise, the same seed gives the same samples.
+     */
+    public static SyntheticSamples generate(Profile profile, int count, long seed) {
+        final SyntheticSamples samples = new SyntheticSamples(count);
+        final Random random = new Random(seed);
+
+        for (int i = 0; i < count; ++i) {
+            samples.timestamps[i] = i * SAMPLE_PERIOD_NS;
+
+            switch (profile) {
+                case STEADY:
+                    samples.setSample(i, 0.05f + 0.01f * (float) Math.sin(i * 0.01),
+                            0.02f, -0.03f);
+                    break;
+                case NOISY:
+                    samples.setSample(i, gaussian(random, 1.8f), gaussian(random, 1.8f),
+                            gaussian(random, 1.8f));
+                    break;
+                case BURSTY:
+                    final float impact = i % BURST_PERIOD < BURST_LENGTH
+                            ? BOOST_LIMIT * (1.5f + random.nextFloat()) : 0f;
+                    samples.setSample(i, gaussian(random, 0.2f) + impact,
+                            gaussian(random, 0.2f), gaussian(random, 0.2f) - impact / 2);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown profile: " + profile);
+            }
+        }
+        return samples;
+    }
+
+    private void setSample(int index, float xBoost, float yBoost, float zBoost) {
+        xBoosts[index] = xBoost;
+        yBoosts[index] = yBoost;
+        zBoosts[index] = zBoost;
+    }
+
+    private static float gaussian(Random random, float deviation) {
+        return (float) random.nextGaussian() * deviation;
+    }
+}
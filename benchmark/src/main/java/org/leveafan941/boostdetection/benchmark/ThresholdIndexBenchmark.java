@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.leveafan941.boostdetection.detection.ThresholdCrossingQueue;
+import org.leveafan941.boostdetection.detection.ThresholdIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of matching the squared module against many thresholds: the binary search
+ * of the {@link ThresholdIndex} against a loop over per-listener thresholds.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThresholdIndexBenchmark {
+
+    private static final int SAMPLE_COUNT = 1 << 12;
+    private static final float HYSTERESIS = 0.2f;
+    // Thresholds are spread evenly between these fractions of the benchmark limit.
+    private static final float LOWEST_THRESHOLD_FRACTION = 0.5f;
+    private static final float HIGHEST_THRESHOLD_FRACTION = 3f;
+
+    @Param({"1", "10", "100"})
+    public int thresholdCount;
+
+    private SyntheticSamples mSamples;
+    private float[] mSquaredModules;
+    private ThresholdIndex mIndex;
+    private LinearThresholds mLinearThresholds;
+    private BoostLimitDetector mDetector;
+    private BlackholeQueue mCrossingQueue;
+
+    private static class BlackholeQueue implements AccelerometerEventQueue,
+            ThresholdCrossingQueue {
+
+        private final Blackhole mBlackhole;
+
+        BlackholeQueue(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            mBlackhole.consume(boostValue);
+        }
+
+        @Override
+        public void queueThresholdCrossing(int thresholdId, long timestamp, float boostValue) {
+            mBlackhole.consume(thresholdId);
+            mBlackhole.consume(boostValue);
+        }
+    }
+
+    /**
+     * Every listener checks its own threshold with the same hysteresis, kept as the baseline.
+     */
+    private static final class LinearThresholds {
+
+        private final float[] mEnterSquared;
+        private final float[] mExitSquared;
+        private final boolean[] mIsCrossed;
+
+        LinearThresholds(float[] thresholds) {
+            mEnterSquared = new float[thresholds.length];
+            mExitSquared = new float[thresholds.length];
+            mIsCrossed = new boolean[thresholds.length];
+            for (int i = 0; i < thresholds.length; ++i) {
+                final float exit = thresholds[i] * (1 - HYSTERESIS);
+                mEnterSquared[i] = thresholds[i] * thresholds[i];
+                mExitSquared[i] = exit * exit;
+            }
+        }
+
+        void onSample(long timestamp, float squaredModule, ThresholdCrossingQueue queue) {
+            for (int i = 0; i < mEnterSquared.length; ++i) {
+                if (!mIsCrossed[i] && squaredModule >= mEnterSquared[i]) {
+                    mIsCrossed[i] = true;
+                    queue.queueThresholdCrossing(i, timestamp, (float) Math.sqrt(squaredModule));
+                } else if (mIsCrossed[i] && squaredModule < mExitSquared[i]) {
+                    mIsCrossed[i] = false;
+                }
+            }
+        }
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        mSamples = SyntheticSamples.generate(SyntheticSamples.Profile.BURSTY, SAMPLE_COUNT, 42);
+        mSquaredModules = new float[SAMPLE_COUNT];
+        BoostLimitDetector.calcSquaredModules(mSamples.xBoosts, mSamples.yBoosts,
+                mSamples.zBoosts, 0, mSquaredModules, SAMPLE_COUNT);
+
+        final float[] thresholds = new float[thresholdCount];
+        final float step = thresholdCount == 1 ? 0 : (HIGHEST_THRESHOLD_FRACTION
+                - LOWEST_THRESHOLD_FRACTION) / (thresholdCount - 1);
+        ThresholdIndex index = ThresholdIndex.empty(HYSTERESIS);
+        for (int i = 0; i < thresholdCount; ++i) {
+            thresholds[i] = SyntheticSamples.BOOST_LIMIT * (LOWEST_THRESHOLD_FRACTION + i * step);
+            index = index.withThreshold(i, thresholds[i]);
+        }
+        mIndex = index;
+        mLinearThresholds = new LinearThresholds(thresholds);
+
+        mCrossingQueue = new BlackholeQueue(blackhole);
+        mDetector = new BoostLimitDetector(mCrossingQueue, SyntheticSamples.BOOST_LIMIT);
+        mDetector.setThresholdIndex(mIndex, mCrossingQueue);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public int binarySearch() {
+        final long[] timestamps = mSamples.timestamps;
+        int level = 0;
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            level = mIndex.onSample(level, timestamps[i], mSquaredModules[i], mCrossingQueue);
+        }
+        return level;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public void linearScan() {
+        final long[] timestamps = mSamples.timestamps;
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            mLinearThresholds.onSample(timestamps[i], mSquaredModules[i], mCrossingQueue);
+        }
+    }
+
+    /**
+     * Whole batch detection with the limit and the thresholds.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public void detectorOnSamples() {
+        mDetector.onSamples(mSamples.timestamps, mSamples.xBoosts, mSamples.yBoosts,
+                mSamples.zBoosts, 0, SAMPLE_COUNT);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.replay.BinaryTraceWriter;
+import org.leveafan941.boostdetection.detection.replay.ColumnarTraceReader;
+import org.leveafan941.boostdetection.detection.replay.ColumnarTraceWriter;
+import org.leveafan941.boostdetection.detection.replay.CsvTraceReader;
+import org.leveafan941.boostdetection.detection.replay.TraceFiles;
+import org.leveafan941.boostdetection.detection.replay.TraceReader;
+import org.leveafan941.boostdetection.detection.replay.TraceSampleVisitor;
+import org.leveafan941.boostdetection.detection.replay.TraceWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of reading a trace file in the CSV, binary and memory-mapped columnar
+ * formats, and of finding the samples above the limit in the CSV and the columnar ones.
+ * The files are written once to the temporary directory, so they are read from the page cache.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraceFormatBenchmark {
+
+    private static final int SAMPLE_COUNT = 1 << 20;
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * STEADY lets the columnar scan skip every block, BURSTY has impacts in every block.
+     */
+    @Param({"STEADY", "BURSTY"})
+    public SyntheticSamples.Profile profile;
+
+    private File mCsvTrace;
+    private File mBinaryTrace;
+    private File mColumnarTrace;
+
+    private final long[] mTimestamps = new long[CHUNK_SIZE];
+    private final float[] mXBoosts = new float[CHUNK_SIZE];
+    private final float[] mYBoosts = new float[CHUNK_SIZE];
+    private final float[] mZBoosts = new float[CHUNK_SIZE];
+
+    private final CountingVisitor mVisitor = new CountingVisitor();
+
+    private static final class CountingVisitor implements TraceSampleVisitor {
+
+        long mCount;
+
+        @Override
+        public void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+            ++mCount;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final SyntheticSamples samples = SyntheticSamples.generate(profile, SAMPLE_COUNT, 42);
+
+        mCsvTrace = File.createTempFile("trace", TraceFiles.CSV_EXTENSION);
+        final Writer csvWriter = new OutputStreamWriter(new FileOutputStream(mCsvTrace),
+                "US-ASCII");
+        try {
+            for (int i = 0; i < SAMPLE_COUNT; ++i) {
+                csvWriter.write(samples.timestamps[i] + "," + samples.xBoosts[i] + ","
+                        + samples.yBoosts[i] + "," + samples.zBoosts[i] + "\n");
+            }
+        } finally {
+            csvWriter.close();
+        }
+
+        mBinaryTrace = File.createTempFile("trace", ".bin");
+        writeTrace(new BinaryTraceWriter(mBinaryTrace), samples);
+        mColumnarTrace = File.createTempFile("trace", TraceFiles.COLUMNAR_EXTENSION);
+        writeTrace(new ColumnarTraceWriter(mColumnarTrace,
+                ColumnarTraceWriter.DEFAULT_BLOCK_CAPACITY), samples);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mCsvTrace.delete();
+        mBinaryTrace.delete();
+        mColumnarTrace.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public double readCsv() throws IOException {
+        return readAll(TraceFiles.openReader(mCsvTrace));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public double readBinary() throws IOException {
+        return readAll(TraceFiles.openReader(mBinaryTrace));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public double readColumnar() throws IOException {
+        return readAll(TraceFiles.openReader(mColumnarTrace));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public long scanAboveCsv() throws IOException {
+        final float limitSquared = SyntheticSamples.BOOST_LIMIT * SyntheticSamples.BOOST_LIMIT;
+        final TraceReader reader = new CsvTraceReader(mCsvTrace);
+        long foundCount = 0;
+        try {
+            int count;
+            while ((count = reader.read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, CHUNK_SIZE))
+                    != TraceReader.END_OF_TRACE) {
+                for (int i = 0; i < count; ++i) {
+                    final float x = mXBoosts[i];
+                    final float y = mYBoosts[i];
+                    final float z = mZBoosts[i];
+                    if (x * x + y * y + z * z > limitSquared) {
+                        ++foundCount;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return foundCount;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public long scanAboveColumnar() throws IOException {
+        final ColumnarTraceReader reader = new ColumnarTraceReader(mColumnarTrace);
+        try {
+            mVisitor.mCount = 0;
+            reader.scanAbove(SyntheticSamples.BOOST_LIMIT, mVisitor);
+            return mVisitor.mCount;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private double readAll(TraceReader reader) throws IOException {
+        double sum = 0;
+        try {
+            int count;
+            while ((count = reader.read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, CHUNK_SIZE))
+                    != TraceReader.END_OF_TRACE) {
+                sum += mTimestamps[count - 1] + mXBoosts[0] + mYBoosts[count / 2]
+                        + mZBoosts[count - 1];
+            }
+        } finally {
+            reader.close();
+        }
+        return sum;
+    }
+
+    private static void writeTrace(TraceWriter writer, SyntheticSamples samples)
+            throws IOException {
+        try {
+            writer.write(samples.timestamps, samples.xBoosts, samples.yBoosts, samples.zBoosts,
+                    SAMPLE_COUNT);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.benchmark;
+
+import org.leveafan941.boostdetection.detection.AxisExceedQueue;
+import org.leveafan941.boostdetection.detection.AxisTriggerSettings;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+import org.leveafan941.boostdetection.detection.VehicleFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a gravity update of the {@link VehicleFrame}, when the device keeps still and when
+ * it turns, and the per-sample cost of the fused mode: projecting a sample onto the vehicle
+ * axes, checking the axis limits and a gravity update every {@link #SAMPLES_PER_GRAVITY}
+ * samples.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VehicleFrameBenchmark {
+
+    private static final int SAMPLE_COUNT = 1 << 16;
+    private static final int GRAVITY_COUNT = 1 << 10;
+    private static final float GRAVITY = 9.81f;
+    // The gravity sensor at the UI rate is about 16 times slower than the fastest samples.
+    private static final int SAMPLES_PER_GRAVITY = 16;
+
+    public enum Motion {
+        /**
+         * Device in a holder, the gravity direction jitters within half a degree.
+         */
+        STILL,
+        /**
+         * Gravity turns by 3 degrees between the updates, the rotation is always recalculated.
+         */
+        TURNING
+    }
+
+    @Param({"STILL", "TURNING"})
+    public Motion motion;
+
+    private SyntheticSamples mSamples;
+    private final float[] mGravityX = new float[GRAVITY_COUNT];
+    private final float[] mGravityY = new float[GRAVITY_COUNT];
+    private final float[] mGravityZ = new float[GRAVITY_COUNT];
+    private VehicleFrame mFrame;
+    private AxisTriggerSettings mSettings;
+    private int mSampleIndex;
+    private int mGravityIndex;
+    private long mExceedCount;
+
+    @Setup
+    public void setUp() {
+        mSamples = SyntheticSamples.generate(SyntheticSamples.Profile.NOISY, SAMPLE_COUNT, 42);
+
+        final Random random = new Random(7);
+        for (int i = 0; i < GRAVITY_COUNT; ++i) {
+            final double angle = motion == Motion.STILL
+                    ? Math.toRadians(0.5 * random.nextDouble()) : Math.toRadians(3 * i);
+            mGravityX[i] = 0;
+            mGravityY[i] = (float) (GRAVITY * Math.sin(angle));
+            mGravityZ[i] = (float) (GRAVITY * Math.cos(angle));
+        }
+
+        final TriggerSettings settings = new TriggerSettings(SyntheticSamples.BOOST_LIMIT, 0.2f,
+                0, 0);
+        mSettings = new AxisTriggerSettings(settings, settings, settings);
+        mFrame = new VehicleFrame(new AxisExceedQueue() {
+            @Override
+            public void queueAxisExceed(int axis, long timestamp, float boostValue) {
+                ++mExceedCount;
+            }
+        });
+        mFrame.onGravity(0, 0, GRAVITY);
+        mSampleIndex = 0;
+        mGravityIndex = 0;
+    }
+
+    @Benchmark
+    public boolean gravity() {
+        final int i = mGravityIndex;
+        mGravityIndex = (i + 1) & (GRAVITY_COUNT - 1);
+
+        return mFrame.onGravity(mGravityX[i], mGravityY[i], mGravityZ[i]);
+    }
+
+    @Benchmark
+    public long sample() {
+        final int i = mSampleIndex;
+        mSampleIndex = (i + 1) & (SAMPLE_COUNT - 1);
+        if (i % SAMPLES_PER_GRAVITY == 0) {
+            gravity();
+        }
+
+        mFrame.onSample(mSettings, mSamples.timestamps[i], mSamples.xBoosts[i],
+                mSamples.yBoosts[i], mSamples.zBoosts[i]);
+        return mExceedCount;
+    }
+}
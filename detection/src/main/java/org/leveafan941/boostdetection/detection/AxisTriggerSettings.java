@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Immutable limits of the {@link VehicleFrame} axes, every axis is debounced like the boost
+ * limit by its own {@link TriggerSettings}.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class AxisTriggerSettings {
+
+    private final TriggerSettings[] mAxisSettings;
+
+    /**
+     * @param longitudinal limit of the braking and the acceleration, null disables the axis.
+     * @param lateral limit of the cornering, null disables the axis.
+     * @param vertical limit of the bumps, null disables the axis.
+     */
+    public AxisTriggerSettings(TriggerSettings longitudinal, TriggerSettings lateral,
+                               TriggerSettings vertical) {
+        mAxisSettings = new TriggerSettings[] {longitudinal, lateral, vertical};
+    }
+
+    /**
+     * @param axis {@link VehicleFrame#AXIS_LONGITUDINAL}, {@link VehicleFrame#AXIS_LATERAL}
+     *             or {@link VehicleFrame#AXIS_VERTICAL}.
+     * @return settings of the axis, null if it is disabled.
+     */
+    public TriggerSettings getAxisSettings(int axis) {
+        return mAxisSettings[axis];
+    }
+
+    @Override
+    public String toString() {
+        return "AxisTriggerSettings{longitudinal=" + mAxisSettings[0] + ", lateral="
+                + mAxisSettings[1] + ", vertical=" + mAxisSettings[2] + "}";
+    }
+}
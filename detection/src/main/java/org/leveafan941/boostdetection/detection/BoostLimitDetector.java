@@ -0,0 +1,544 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.leveafan941.boostdetection.detection;
+
+import org.leveafan941.boostdetection.detection.filter.SampleFilter;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumAnalyzer;
+import org.leveafan941.boostdetection.detection.stats.RollingStats;
+import org.leveafan941.boostdetection.detection.stats.RollingStatsSnapshot;
+
+/**
+ * Compares every sample with the boost limit and queues the limit crossings. The samples are
+ * plain {@code (timestamp, x, y, z)} values, so the detector does not depend on a platform.
+ * <p>
+ * Squared modules are compared with the squared limits of the {@link TriggerSettings},
+ * the square root is taken only for the reported samples. An optional {@link SampleFilter}
+ * is applied ahead of the comparison, the raw sample buffer receives unfiltered samples.
+ * An optional {@link ThresholdIndex} reports crossings of more thresholds next to the limit.
+ * An optional {@link WindowCapture} captures the raw samples around every exceed.
+ * An optional {@link EpisodeSummaryQueue} receives the summary of every reported episode.
+ * Optional {@link VibrationSettings} keep {@link RollingStats} of the module and raise
+ * the sustained vibration alerts. An optional {@link SpectrumAnalyzer} receives the filtered
+ * samples to raise the band energy events, an optional {@link VehicleFrame} receives them to
+ * check the boost along the vehicle axes. An optional {@link SampleRateMonitor} tracks the
+ * sample timestamps and the exceeds detected while the sampling is degraded are passed
+ * to its {@link DegradedExceedQueue} too.
+ * <p>
+ * All of it is kept in an immutable {@link DetectionConfig}, which the sample thread reads
+ * once per sample or batch. Setters may be called from any thread, they publish a new
+ * snapshot and never block the sample thread. Samples must be passed from a single thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class BoostLimitDetector {
+
+    // Number of squared modules calculated at once by the batch processing.
+    private static final int BATCH_CHUNK_SIZE = 256;
+
+    // Held by the setters only, so concurrent changes are not lost.
+    private final Object mConfigLock = new Object();
+    private volatile DetectionConfig mConfig;
+    private final BoostTrigger mTrigger = new BoostTrigger();
+    private final AccelerometerEventQueue mEventQueue;
+    private final SampleRingBuffer mSampleBuffer;
+    private final float[] mSquaredModules = new float[BATCH_CHUNK_SIZE];
+
+    private final float[] mFilterValues = new float[SampleFilter.AXIS_COUNT];
+    private final float[] mFilteredXBoosts = new float[BATCH_CHUNK_SIZE];
+    private final float[] mFilteredYBoosts = new float[BATCH_CHUNK_SIZE];
+    private final float[] mFilteredZBoosts = new float[BATCH_CHUNK_SIZE];
+
+    // Index the level was calculated with, used by the sample thread only.
+    private ThresholdIndex mLevelIndex;
+    private int mThresholdLevel;
+
+    private final EpisodeSummarizer mSummarizer = new EpisodeSummarizer();
+
+    // Replaced by the sample thread only, when the window of the settings changes.
+    private volatile RollingStats mRollingStats;
+    private boolean mIsVibrationAlerted = false;
+
+    public BoostLimitDetector(AccelerometerEventQueue eventQueue, float boostLimit) {
+        this(eventQueue, TriggerSettings.forLimit(boostLimit), null);
+    }
+
+    public BoostLimitDetector(AccelerometerEventQueue eventQueue, TriggerSettings settings) {
+        this(eventQueue, settings, null);
+    }
+
+    /**
+     * @param sampleBuffer buffer which receives every raw sample, null if they are not captured.
+     */
+    public BoostLimitDetector(AccelerometerEventQueue eventQueue, TriggerSettings settings,
+                              SampleRingBuffer sampleBuffer) {
+        this(eventQueue, DetectionConfig.forSettings(settings), sampleBuffer);
+    }
+
+    /**
+     * @param sampleBuffer buffer which receives every raw sample, null if they are not captured.
+     *                     Its consumer is woken up on every exceed.
+     */
+    public BoostLimitDetector(AccelerometerEventQueue eventQueue, DetectionConfig config,
+                              SampleRingBuffer sampleBuffer) {
+        mConfig = config;
+        mEventQueue = eventQueue;
+        mSampleBuffer = sampleBuffer;
+    }
+
+    /**
+     * Processes a single sample. When the sensor is batched, events are flushed from the
+     * hardware FIFO in bursts, so the sample timestamp and not the delivery time is the moment
+     * of a limit crossing.
+     */
+    public void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+        if (mSampleBuffer != null) {
+            mSampleBuffer.offer(timestamp, xBoost, yBoost, zBoost);
+        }
+        final DetectionConfig config = mConfig;
+        final WindowCapture windowCapture = config.getWindowCapture();
+        if (windowCapture != null) {
+            windowCapture.onSample(timestamp, xBoost, yBoost, zBoost);
+        }
+        final SampleRateMonitor rateMonitor = config.getSampleRateMonitor();
+        if (rateMonitor != null) {
+            rateMonitor.onSample(timestamp);
+        }
+
+        final SampleFilter filter = config.getSampleFilter();
+        if (filter != null) {
+            final float[] values = mFilterValues;
+            values[0] = xBoost;
+            values[1] = yBoost;
+            values[2] = zBoost;
+            filter.filter(values);
+            xBoost = values[0];
+            yBoost = values[1];
+            zBoost = values[2];
+        }
+        final float squaredModule = calcSquaredModule(xBoost, yBoost, zBoost);
+        final SpectrumAnalyzer spectrumAnalyzer = config.getSpectrumAnalyzer();
+        if (spectrumAnalyzer != null) {
+            spectrumAnalyzer.onSample(timestamp, xBoost, yBoost, zBoost);
+        }
+        final VehicleFrame vehicleFrame = config.getVehicleFrame();
+        if (vehicleFrame != null) {
+            vehicleFrame.onSample(config.getAxisTriggerSettings(), timestamp, xBoost, yBoost,
+                    zBoost);
+        }
+
+        final TriggerSettings settings = config.getTriggerSettings();
+        final SamplingRateController rateController = config.getSamplingRateController();
+        if (rateController != null) {
+            rateController.onSample(settings, timestamp, squaredModule);
+        }
+
+        if (mTrigger.onSample(settings, timestamp, squaredModule)) {
+            queueTrigger(config);
+        }
+        final EpisodeSummaryQueue summaryQueue = config.getEpisodeSummaryQueue();
+        if (summaryQueue != null) {
+            mSummarizer.onSample(mTrigger, timestamp, xBoost, yBoost, zBoost, squaredModule,
+                    summaryQueue);
+        }
+
+        final ThresholdIndex thresholdIndex = config.getThresholdIndex();
+        if (thresholdIndex != null) {
+            updateThresholdLevel(config, thresholdIndex, timestamp, squaredModule);
+        }
+        final VibrationSettings vibrationSettings = config.getVibrationSettings();
+        if (vibrationSettings != null) {
+            updateVibration(config, vibrationSettings, timestamp, squaredModule);
+        }
+    }
+
+    /**
+     * Processes {@code count} samples starting at {@code offset} of the columns, the result is
+     * the same as passing them one by one to {@link #onSample}, the events of every stage are
+     * queued in the same order too. The configuration is read once
+     * per call and the squared modules are calculated in a plain loop over the columns, which
+     * the JIT can vectorize.
+     */
+    public void onSamples(long[] timestamps, float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                          int offset, int count) {
+        if (mSampleBuffer != null) {
+            for (int i = offset; i < offset + count; ++i) {
+                mSampleBuffer.offer(timestamps[i], xBoosts[i], yBoosts[i], zBoosts[i]);
+            }
+        }
+
+        final DetectionConfig config = mConfig;
+        final TriggerSettings settings = config.getTriggerSettings();
+        final SampleFilter filter = config.getSampleFilter();
+        final SamplingRateController rateController = config.getSamplingRateController();
+        final ThresholdIndex thresholdIndex = config.getThresholdIndex();
+        final WindowCapture windowCapture = config.getWindowCapture();
+        final EpisodeSummaryQueue summaryQueue = config.getEpisodeSummaryQueue();
+        final VibrationSettings vibrationSettings = config.getVibrationSettings();
+        final SpectrumAnalyzer spectrumAnalyzer = config.getSpectrumAnalyzer();
+        final VehicleFrame vehicleFrame = config.getVehicleFrame();
+        final AxisTriggerSettings axisSettings = config.getAxisTriggerSettings();
+        final SampleRateMonitor rateMonitor = config.getSampleRateMonitor();
+        final float[] squaredModules = mSquaredModules;
+
+        for (int chunkStart = offset; chunkStart < offset + count;
+             chunkStart += BATCH_CHUNK_SIZE) {
+            final int chunkSize = Math.min(BATCH_CHUNK_SIZE, offset + count - chunkStart);
+            // Columns and offset of the samples the modules are calculated from.
+            final float[] xValues;
+            final float[] yValues;
+            final float[] zValues;
+            final int valueOffset;
+            if (filter == null) {
+                xValues = xBoosts;
+                yValues = yBoosts;
+                zValues = zBoosts;
+                valueOffset = chunkStart;
+            } else {
+                filterChunk(filter, xBoosts, yBoosts, zBoosts, chunkStart, chunkSize);
+                xValues = mFilteredXBoosts;
+                yValues = mFilteredYBoosts;
+                zValues = mFilteredZBoosts;
+                valueOffset = 0;
+            }
+            calcSquaredModules(xValues, yValues, zValues, valueOffset, squaredModules,
+                    chunkSize);
+
+            for (int i = 0; i < chunkSize; ++i) {
+                final long timestamp = timestamps[chunkStart + i];
+                if (windowCapture != null) {
+                    windowCapture.onSample(timestamp, xBoosts[chunkStart + i],
+                            yBoosts[chunkStart + i], zBoosts[chunkStart + i]);
+                }
+                if (rateMonitor != null) {
+                    rateMonitor.onSample(timestamp);
+                }
+                // Stages which queue events run in the order of onSample, so the events are
+                // queued in the same order too.
+                final int valueIndex = valueOffset + i;
+                if (spectrumAnalyzer != null) {
+                    spectrumAnalyzer.onSample(timestamp, xValues[valueIndex],
+                            yValues[valueIndex], zValues[valueIndex]);
+                }
+                if (vehicleFrame != null) {
+                    vehicleFrame.onSample(axisSettings, timestamp, xValues[valueIndex],
+                            yValues[valueIndex], zValues[valueIndex]);
+                }
+                if (rateController != null) {
+                    rateController.onSample(settings, timestamp, squaredModules[i]);
+                }
+                if (mTrigger.onSample(settings, timestamp, squaredModules[i])) {
+                    queueTrigger(config);
+                }
+                if (summaryQueue != null) {
+                    mSummarizer.onSample(mTrigger, timestamp, xValues[valueIndex],
+                            yValues[valueIndex], zValues[valueIndex], squaredModules[i],
+                            summaryQueue);
+                }
+                if (thresholdIndex != null) {
+                    updateThresholdLevel(config, thresholdIndex, timestamp, squaredModules[i]);
+                }
+                if (vibrationSettings != null) {
+                    updateVibration(config, vibrationSettings, timestamp, squaredModules[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole configuration at once. May be called from any thread, the
+     * configuration is applied from the next sample or batch.
+     */
+    public void setConfig(DetectionConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Configuration is required");
+        }
+        synchronized (mConfigLock) {
+            mConfig = config;
+        }
+    }
+
+    public DetectionConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Changes the limit and keeps the rest of the settings. May be called from any thread.
+     */
+    public void setBoostLimit(float boostLimit) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.withBoostLimit(boostLimit);
+        }
+    }
+
+    /**
+     * May be called from any thread, the settings are applied from the next sample.
+     */
+    public void setTriggerSettings(TriggerSettings settings) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.withTriggerSettings(settings);
+        }
+    }
+
+    public TriggerSettings getTriggerSettings() {
+        return mConfig.getTriggerSettings();
+    }
+
+    /**
+     * May be called from any thread, the filter is applied from the next sample. The filter
+     * must not be used by anything else, null disables filtering.
+     */
+    public void setSampleFilter(SampleFilter filter) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.withSampleFilter(filter);
+        }
+    }
+
+    /**
+     * Sets the controller which receives the filtered squared modules to choose the sampling
+     * rate, null disables it. The controller must not be shared.
+     */
+    public void setSamplingRateController(SamplingRateController rateController) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setSamplingRateController(rateController).build();
+        }
+    }
+
+    /**
+     * Sets the capture of the raw samples around every exceed, null disables it. The capture
+     * must not be shared and should be set before the samples are passed, a capture set later
+     * starts with an empty history.
+     */
+    public void setWindowCapture(WindowCapture windowCapture) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setWindowCapture(windowCapture).build();
+        }
+    }
+
+    /**
+     * Sets the analyzer which receives the filtered samples, null disables it. The analyzer
+     * must not be shared and should be set before the samples are passed, an analyzer set
+     * later starts with an empty window.
+     */
+    public void setSpectrumAnalyzer(SpectrumAnalyzer spectrumAnalyzer) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setSpectrumAnalyzer(spectrumAnalyzer).build();
+        }
+    }
+
+    /**
+     * Sets the frame which receives the filtered samples, null disables it. The frame must not
+     * be shared, its gravity must be passed from the sample thread.
+     */
+    public void setVehicleFrame(VehicleFrame vehicleFrame) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setVehicleFrame(vehicleFrame).build();
+        }
+    }
+
+    /**
+     * Sets the limits of the vehicle frame axes, null disables them. May be called from any
+     * thread, the settings are applied from the next sample.
+     */
+    public void setAxisTriggerSettings(AxisTriggerSettings settings) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.withAxisTriggerSettings(settings);
+        }
+    }
+
+    /**
+     * Sets the monitor of the sample timestamps, null disables it. The monitor must not be
+     * shared, a monitor set while the samples are passed starts from the next one.
+     *
+     * @param degradedQueue receives the exceeds detected while the sampling is degraded, null
+     * if they are not reported.
+     */
+    public void setSampleRateMonitor(SampleRateMonitor rateMonitor,
+                                     DegradedExceedQueue degradedQueue) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setSampleRateMonitor(rateMonitor)
+                    .setDegradedExceedQueue(degradedQueue).build();
+        }
+    }
+
+    public SampleRateMonitor getSampleRateMonitor() {
+        return mConfig.getSampleRateMonitor();
+    }
+
+    /**
+     * Sets the thresholds checked next to the limit, null disables them. May be called from
+     * any thread, the index is applied from the next sample. Thresholds which the boost is
+     * already above when a new index is applied are not reported until they are re-armed.
+     *
+     * @param crossingQueue receives the crossings.
+     */
+    public void setThresholdIndex(ThresholdIndex index, ThresholdCrossingQueue crossingQueue) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setThresholdIndex(index)
+                    .setThresholdCrossingQueue(crossingQueue).build();
+        }
+    }
+
+    public ThresholdIndex getThresholdIndex() {
+        return mConfig.getThresholdIndex();
+    }
+
+    /**
+     * Sets the queue which receives the summary of every reported episode when it ends, null
+     * disables the summaries. Should be set before the samples are passed, an episode in
+     * progress when the queue is set is summarized from its next sample.
+     */
+    public void setEpisodeSummaryQueue(EpisodeSummaryQueue summaryQueue) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setEpisodeSummaryQueue(summaryQueue).build();
+        }
+    }
+
+    /**
+     * Sets the window statistics and the sustained vibration alert, null disables them.
+     * May be called from any thread, the settings are applied from the next sample.
+     * The statistics start anew when the window changes.
+     *
+     * @param alertQueue receives the alerts.
+     */
+    public void setVibrationSettings(VibrationSettings settings, VibrationAlertQueue alertQueue) {
+        synchronized (mConfigLock) {
+            mConfig = mConfig.toBuilder().setVibrationSettings(settings)
+                    .setVibrationAlertQueue(alertQueue).build();
+        }
+    }
+
+    public VibrationSettings getVibrationSettings() {
+        return mConfig.getVibrationSettings();
+    }
+
+    /**
+     * May be called from any thread.
+     *
+     * @return statistics of the latest complete window, null if they are disabled or no window
+     * has ended yet.
+     */
+    public RollingStatsSnapshot getVibrationStats() {
+        final RollingStats rollingStats = mRollingStats;
+        return mConfig.getVibrationSettings() == null || rollingStats == null
+                ? null : rollingStats.getSnapshot();
+    }
+
+    public static float calcDeviceBoost(float xBoost, float yBoost, float zBoost) {
+        return (float) Math.sqrt(calcSquaredModule(xBoost, yBoost, zBoost));
+    }
+
+    public static float calcSquaredModule(float xBoost, float yBoost, float zBoost) {
+        return xBoost * xBoost + yBoost * yBoost + zBoost * zBoost;
+    }
+
+    /**
+     * Calculates squared modules of {@code count} samples starting at {@code offset}
+     * of the columns into {@code squaredModules}, starting at its beginning.
+     */
+    public static void calcSquaredModules(float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                                          int offset, float[] squaredModules, int count) {
+        for (int i = 0; i < count; ++i) {
+            final float x = xBoosts[offset + i];
+            final float y = yBoosts[offset + i];
+            final float z = zBoosts[offset + i];
+            squaredModules[i] = x * x + y * y + z * z;
+        }
+    }
+
+    private void filterChunk(SampleFilter filter, float[] xBoosts, float[] yBoosts,
+                             float[] zBoosts, int offset, int count) {
+        final float[] values = mFilterValues;
+        for (int i = 0; i < count; ++i) {
+            values[0] = xBoosts[offset + i];
+            values[1] = yBoosts[offset + i];
+            values[2] = zBoosts[offset + i];
+            filter.filter(values);
+            mFilteredXBoosts[i] = values[0];
+            mFilteredYBoosts[i] = values[1];
+            mFilteredZBoosts[i] = values[2];
+        }
+    }
+
+    private void updateThresholdLevel(DetectionConfig config, ThresholdIndex index,
+                                      long timestamp, float squaredModule) {
+        if (index != mLevelIndex) {
+            mLevelIndex = index;
+            mThresholdLevel = index.levelOf(squaredModule);
+            return;
+        }
+
+        mThresholdLevel = index.onSample(mThresholdLevel, timestamp, squaredModule,
+                config.getThresholdCrossingQueue());
+    }
+
+    private void updateVibration(DetectionConfig config, VibrationSettings settings,
+                                 long timestamp, float squaredModule) {
+        RollingStats rollingStats = mRollingStats;
+        if (rollingStats == null || rollingStats.getWindowNs() != settings.getWindowNs()) {
+            rollingStats = new RollingStats(settings.getWindowNs(),
+                    RollingStats.DEFAULT_PANE_COUNT);
+            mRollingStats = rollingStats;
+            mIsVibrationAlerted = false;
+        }
+        if (!rollingStats.onSample(timestamp, squaredModule)) {
+            return;
+        }
+
+        final RollingStatsSnapshot snapshot = rollingStats.getSnapshot();
+        final float value = settings.getStatistic().valueOf(snapshot);
+        if (!mIsVibrationAlerted) {
+            if (value > settings.getLimit()) {
+                mIsVibrationAlerted = true;
+                config.getVibrationAlertQueue().queueVibrationAlert(
+                        snapshot.getWindowEndTimestamp(), value);
+            }
+        } else if (value < settings.getExitLimit()) {
+            mIsVibrationAlerted = false;
+        }
+    }
+
+    private void queueTrigger(DetectionConfig config) {
+        final long timestamp = mTrigger.getTriggerTimestamp();
+        final float boostValue = (float) Math.sqrt(mTrigger.getTriggerModuleSquared());
+        mEventQueue.queueBoostLimitExceed(timestamp, boostValue);
+        final WindowCapture windowCapture = config.getWindowCapture();
+        if (windowCapture != null) {
+            windowCapture.onTrigger(timestamp, boostValue);
+        }
+        if (mSampleBuffer != null) {
+            mSampleBuffer.wakeUpConsumer();
+        }
+        final SampleRateMonitor rateMonitor = config.getSampleRateMonitor();
+        final DegradedExceedQueue degradedQueue = config.getDegradedExceedQueue();
+        if (rateMonitor != null && degradedQueue != null && rateMonitor.isDegraded()) {
+            degradedQueue.queueDegradedExceed(timestamp, boostValue);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer single-consumer queue of limit exceed events. The sensor thread
+ * offers events and the listener thread drains them, no objects are created for an event.
+ * An event may carry an int tag, for example the id of a crossed {@link ThresholdIndex}
+ * threshold.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class BoostLimitEventRing {
+
+    private final long[] mTimestamps;
+    private final float[] mValues;
+    private final int[] mTags;
+    private final int mMask;
+
+    // Next slot to read, written by the consumer only.
+    private final AtomicLong mHead = new AtomicLong();
+    // Next slot to write, written by the producer only.
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * @param capacity max number of not drained events, must be a power of two.
+     */
+    public BoostLimitEventRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        mTimestamps = new long[capacity];
+        mValues = new float[capacity];
+        mTags = new int[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Called by the producer thread.
+     *
+     * @return false if the queue is full and the event is dropped.
+     */
+    public boolean offer(long timestamp, float value) {
+        return offer(timestamp, value, 0);
+    }
+
+    /**
+     * Called by the producer thread.
+     *
+     * @return false if the queue is full and the event is dropped.
+     */
+    public boolean offer(long timestamp, float value, int tag) {
+        final long tail = mTail.get();
+        if (tail - mHead.get() > mMask) {
+            mDroppedCount.incrementAndGet();
+            return false;
+        }
+
+        final int index = (int) tail & mMask;
+        mTimestamps[index] = timestamp;
+        mValues[index] = value;
+        mTags[index] = tag;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Called by the consumer thread. Passes all queued events to the target queue in order.
+     *
+     * @return number of drained events.
+     */
+    public int drain(AccelerometerEventQueue target) {
+        long head = mHead.get();
+        final long tail = mTail.get();
+        final int count = (int) (tail - head);
+
+        for (; head < tail; ++head) {
+            final int index = (int) head & mMask;
+            final long timestamp = mTimestamps[index];
+            final float value = mValues[index];
+            mHead.lazySet(head + 1);
+
+            target.queueBoostLimitExceed(timestamp, value);
+        }
+        return count;
+    }
+
+    /**
+     * Called by the consumer thread. Passes all queued events with their tags to the target
+     * queue in order.
+     *
+     * @return number of drained events.
+     */
+    public int drainTagged(ThresholdCrossingQueue target) {
+        long head = mHead.get();
+        final long tail = mTail.get();
+        final int count = (int) (tail - head);
+
+        for (; head < tail; ++head) {
+            final int index = (int) head & mMask;
+            final long timestamp = mTimestamps[index];
+            final float value = mValues[index];
+            final int tag = mTags[index];
+            mHead.lazySet(head + 1);
+
+            target.queueThresholdCrossing(tag, timestamp, value);
+        }
+        return count;
+    }
+
+    /**
+     * Can be called from any thread, the result may be stale by the time it is returned.
+     *
+     * @return number of not drained events.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Decides when a stream of squared modules starts an exceed episode. An episode starts when
+ * the module rises above the limit and has stayed above the exit limit for the min dwell time,
+ * it ends when the module falls to the exit limit. A new episode is not started during
+ * the refractory period after the end of the previous one. All times are sample timestamps.
+ * <p>
+ * A sample stands for the signal since the previous one, so when the sample crossing the limit
+ * comes later than the min dwell time after the previous sample the dwell cannot be observed
+ * and is taken as satisfied. Slow sampling then still reports isolated spikes, while fast
+ * sampling keeps filtering them out.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+final class BoostTrigger {
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_PENDING = 1;
+    private static final int STATE_TRIGGERED = 2;
+
+    private int mState = STATE_IDLE;
+    private long mPendingTimestamp;
+    private float mPendingPeakSquared;
+    private long mPendingIntervalNs;
+    private long mRefractoryEndTimestamp = Long.MIN_VALUE;
+    private long mPreviousTimestamp;
+    private boolean mHasPreviousSample = false;
+    private boolean mHasEpisodeEnded = false;
+
+    private long mTriggerTimestamp;
+    private float mTriggerModuleSquared;
+
+    /**
+     * @return true if an exceed episode starts with this sample, its timestamp and module
+     * are available through {@link #getTriggerTimestamp} and {@link #getTriggerModuleSquared}.
+     */
+    boolean onSample(TriggerSettings settings, long timestamp, float squaredModule) {
+        mHasEpisodeEnded = false;
+        final long intervalNs = mHasPreviousSample ? timestamp - mPreviousTimestamp : 0;
+        mPreviousTimestamp = timestamp;
+        mHasPreviousSample = true;
+
+        switch (mState) {
+            case STATE_IDLE:
+                if (squaredModule > settings.getEnterLimitSquared()
+                        && timestamp >= mRefractoryEndTimestamp) {
+                    mState = STATE_PENDING;
+                    mPendingTimestamp = timestamp;
+                    mPendingPeakSquared = squaredModule;
+                    mPendingIntervalNs = intervalNs;
+                    return checkDwell(settings, timestamp);
+                }
+                return false;
+
+            case STATE_PENDING:
+                if (squaredModule <= settings.getExitLimitSquared()) {
+                    // Too short to be reported, it is not an episode and starts no refractory.
+                    mState = STATE_IDLE;
+                    return false;
+                }
+                if (squaredModule > mPendingPeakSquared) {
+                    mPendingPeakSquared = squaredModule;
+                }
+                return checkDwell(settings, timestamp);
+
+            case STATE_TRIGGERED:
+                if (squaredModule <= settings.getExitLimitSquared()) {
+                    mState = STATE_IDLE;
+                    mRefractoryEndTimestamp = timestamp + settings.getRefractoryNs();
+                    mHasEpisodeEnded = true;
+                }
+                return false;
+
+            default:
+                throw new IllegalStateException("Unknown trigger state: " + mState);
+        }
+    }
+
+    /**
+     * Records the timestamp of a sample the caller skipped while the trigger was idle because
+     * it was not above the limit, so the interval to the next sample is still known.
+     */
+    void onSkippedSample(long timestamp) {
+        mPreviousTimestamp = timestamp;
+        mHasPreviousSample = true;
+    }
+
+    /**
+     * @return timestamp of the sample which started the last reported episode.
+     */
+    long getTriggerTimestamp() {
+        return mTriggerTimestamp;
+    }
+
+    /**
+     * @return max squared module of the last reported episode up to the moment it was reported.
+     */
+    float getTriggerModuleSquared() {
+        return mTriggerModuleSquared;
+    }
+
+    boolean isTriggered() {
+        return mState == STATE_TRIGGERED;
+    }
+
+    /**
+     * @return true if an episode is pending or reported.
+     */
+    boolean isInEpisode() {
+        return mState != STATE_IDLE;
+    }
+
+    /**
+     * @return true if the last sample ended a reported episode.
+     */
+    boolean hasEpisodeEnded() {
+        return mHasEpisodeEnded;
+    }
+
+    private boolean checkDwell(TriggerSettings settings, long timestamp) {
+        final long minDwellNs = settings.getMinDwellNs();
+        if (timestamp - mPendingTimestamp < minDwellNs && mPendingIntervalNs < minDwellNs) {
+            return false;
+        }
+
+        mState = STATE_TRIGGERED;
+        mTriggerTimestamp = mPendingTimestamp;
+        mTriggerModuleSquared = mPendingPeakSquared;
+        return true;
+    }
+}
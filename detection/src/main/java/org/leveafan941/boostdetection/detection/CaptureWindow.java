@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Raw samples around an exceed: the samples before the first one above the limit, that event
+ * sample and the samples after it. A window flushed when the samples stop has fewer samples
+ * after the event one. Windows are preallocated by the {@link WindowCapture}
+ * and reused, a window must be released once it is not needed. The columns must not be
+ * modified and only their first {@link #getSampleCount()} elements are valid.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class CaptureWindow {
+
+    final long[] mTimestamps;
+    final float[] mXBoosts;
+    final float[] mYBoosts;
+    final float[] mZBoosts;
+
+    int mSampleCount;
+    int mTriggerIndex;
+    int mPostSamplesLeft;
+    long mEventTimestamp;
+    float mBoostValue;
+
+    // Written false by the owner thread on release, true by the capture on acquire.
+    volatile boolean mIsInUse = false;
+
+    CaptureWindow(int capacity) {
+        mTimestamps = new long[capacity];
+        mXBoosts = new float[capacity];
+        mYBoosts = new float[capacity];
+        mZBoosts = new float[capacity];
+    }
+
+    /**
+     * Returns the window to the pool. It must not be used afterwards.
+     */
+    public void release() {
+        mIsInUse = false;
+    }
+
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return index of the event sample, its timestamp is {@link #getEventTimestamp()} unless
+     * the dwell time outlasted the capture history, the trigger sample is used then. Fewer
+     * samples precede it than configured when the history was not filled yet.
+     */
+    public int getTriggerIndex() {
+        return mTriggerIndex;
+    }
+
+    /**
+     * @return timestamp of the exceed event, in nanoseconds.
+     */
+    public long getEventTimestamp() {
+        return mEventTimestamp;
+    }
+
+    /**
+     * @return boost module of the exceed event.
+     */
+    public float getBoostValue() {
+        return mBoostValue;
+    }
+
+    public long[] getTimestamps() {
+        return mTimestamps;
+    }
+
+    public float[] getXBoosts() {
+        return mXBoosts;
+    }
+
+    public float[] getYBoosts() {
+        return mYBoosts;
+    }
+
+    public float[] getZBoosts() {
+        return mZBoosts;
+    }
+
+    /**
+     * @return size of the sample columns, in bytes.
+     */
+    long getMemoryBytes() {
+        return (long) mTimestamps.length * WindowCapture.SAMPLE_BYTES;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer single-consumer queue of {@link CaptureWindow}s, it passes
+ * the filled windows from the sample thread to the listener thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class CaptureWindowRing implements CaptureWindowQueue {
+
+    private final CaptureWindow[] mWindows;
+    private final int mMask;
+
+    // Next slot to read, written by the consumer only.
+    private final AtomicLong mHead = new AtomicLong();
+    // Next slot to write, written by the producer only.
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * @param capacity max number of not drained windows, must be a power of two. A capacity
+     *                 not less than the window pool size never drops windows.
+     */
+    public CaptureWindowRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        mWindows = new CaptureWindow[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Called by the producer thread. A window which does not fit is released.
+     */
+    @Override
+    public void queueCaptureWindow(CaptureWindow window) {
+        offer(window);
+    }
+
+    /**
+     * Called by the producer thread.
+     *
+     * @return false if the queue is full and the window is released.
+     */
+    public boolean offer(CaptureWindow window) {
+        final long tail = mTail.get();
+        if (tail - mHead.get() > mMask) {
+            mDroppedCount.incrementAndGet();
+            window.release();
+            return false;
+        }
+
+        mWindows[(int) tail & mMask] = window;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Called by the consumer thread. Passes all queued windows to the target in order,
+     * the target becomes their owner.
+     *
+     * @return number of drained windows.
+     */
+    public int drain(CaptureWindowQueue target) {
+        long head = mHead.get();
+        final long tail = mTail.get();
+        final int count = (int) (tail - head);
+
+        for (; head < tail; ++head) {
+            final int index = (int) head & mMask;
+            final CaptureWindow window = mWindows[index];
+            mWindows[index] = null;
+            mHead.lazySet(head + 1);
+
+            target.queueCaptureWindow(window);
+        }
+        return count;
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import org.leveafan941.boostdetection.detection.filter.SampleFilter;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumAnalyzer;
+
+/**
+ * Immutable snapshot of everything the {@link BoostLimitDetector} is configured with. A change
+ * makes a new snapshot, so the detector reads all of it with a single volatile load and never
+ * sees a half applied change. Values derived from the settings, like the squared limits of
+ * the {@link TriggerSettings} and the filter coefficients, are computed before the snapshot is
+ * built. Several changes are published at once through a {@link Builder}, a single one through
+ * a {@code with} method.
+ * <p>
+ * Stages are the objects which keep the state of the sample stream, they must not be shared
+ * with another detector. Null stage or settings disable the stage.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class DetectionConfig {
+
+    private final TriggerSettings mSettings;
+    private final SampleFilter mFilter;
+    private final SamplingRateController mRateController;
+    private final WindowCapture mWindowCapture;
+    private final SpectrumAnalyzer mSpectrumAnalyzer;
+    private final VehicleFrame mVehicleFrame;
+    private final AxisTriggerSettings mAxisSettings;
+    private final SampleRateMonitor mRateMonitor;
+    private final DegradedExceedQueue mDegradedQueue;
+    private final ThresholdIndex mThresholdIndex;
+    private final ThresholdCrossingQueue mCrossingQueue;
+    private final EpisodeSummaryQueue mSummaryQueue;
+    private final VibrationSettings mVibrationSettings;
+    private final VibrationAlertQueue mVibrationQueue;
+
+    /**
+     * Collects the changes of a configuration, may be used from a single thread.
+     */
+    public static final class Builder {
+
+        private TriggerSettings mSettings;
+        private SampleFilter mFilter;
+        private SamplingRateController mRateController;
+        private WindowCapture mWindowCapture;
+        private SpectrumAnalyzer mSpectrumAnalyzer;
+        private VehicleFrame mVehicleFrame;
+        private AxisTriggerSettings mAxisSettings;
+        private SampleRateMonitor mRateMonitor;
+        private DegradedExceedQueue mDegradedQueue;
+        private ThresholdIndex mThresholdIndex;
+        private ThresholdCrossingQueue mCrossingQueue;
+        private EpisodeSummaryQueue mSummaryQueue;
+        private VibrationSettings mVibrationSettings;
+        private VibrationAlertQueue mVibrationQueue;
+
+        /**
+         * Starts a configuration which checks the limit of the settings only.
+         */
+        public Builder(TriggerSettings settings) {
+            mSettings = settings;
+        }
+
+        private Builder(DetectionConfig config) {
+            mSettings = config.mSettings;
+            mFilter = config.mFilter;
+            mRateController = config.mRateController;
+            mWindowCapture = config.mWindowCapture;
+            mSpectrumAnalyzer = config.mSpectrumAnalyzer;
+            mVehicleFrame = config.mVehicleFrame;
+            mAxisSettings = config.mAxisSettings;
+            mRateMonitor = config.mRateMonitor;
+            mDegradedQueue = config.mDegradedQueue;
+            mThresholdIndex = config.mThresholdIndex;
+            mCrossingQueue = config.mCrossingQueue;
+            mSummaryQueue = config.mSummaryQueue;
+            mVibrationSettings = config.mVibrationSettings;
+            mVibrationQueue = config.mVibrationQueue;
+        }
+
+        public Builder setTriggerSettings(TriggerSettings settings) {
+            mSettings = settings;
+            return this;
+        }
+
+        public Builder setSampleFilter(SampleFilter filter) {
+            mFilter = filter;
+            return this;
+        }
+
+        /**
+         * @param rateController receives the filtered squared modules to choose the sampling
+         *                       rate.
+         */
+        public Builder setSamplingRateController(SamplingRateController rateController) {
+            mRateController = rateController;
+            return this;
+        }
+
+        /**
+         * @param windowCapture captures the raw samples around every exceed, a capture set
+         *                      while the samples are passed starts with an empty history.
+         */
+        public Builder setWindowCapture(WindowCapture windowCapture) {
+            mWindowCapture = windowCapture;
+            return this;
+        }
+
+        /**
+         * @param spectrumAnalyzer receives the filtered samples, an analyzer set while
+         *                         the samples are passed starts with an empty window.
+         */
+        public Builder setSpectrumAnalyzer(SpectrumAnalyzer spectrumAnalyzer) {
+            mSpectrumAnalyzer = spectrumAnalyzer;
+            return this;
+        }
+
+        /**
+         * @param vehicleFrame receives the filtered samples, its gravity must be passed from
+         *                     the sample thread.
+         */
+        public Builder setVehicleFrame(VehicleFrame vehicleFrame) {
+            mVehicleFrame = vehicleFrame;
+            return this;
+        }
+
+        /**
+         * @param settings limits of the vehicle frame axes.
+         */
+        public Builder setAxisTriggerSettings(AxisTriggerSettings settings) {
+            mAxisSettings = settings;
+            return this;
+        }
+
+        /**
+         * @param rateMonitor tracks the sample timestamps, a monitor set while the samples are
+         *                    passed starts from the next one.
+         */
+        public Builder setSampleRateMonitor(SampleRateMonitor rateMonitor) {
+            mRateMonitor = rateMonitor;
+            return this;
+        }
+
+        /**
+         * @param degradedQueue receives the exceeds detected while the sampling is degraded,
+         *                      null if they are not reported.
+         */
+        public Builder setDegradedExceedQueue(DegradedExceedQueue degradedQueue) {
+            mDegradedQueue = degradedQueue;
+            return this;
+        }
+
+        /**
+         * @param index thresholds checked next to the limit. Thresholds which the boost is
+         *              already above when a new index is applied are not reported until they
+         *              are re-armed.
+         */
+        public Builder setThresholdIndex(ThresholdIndex index) {
+            mThresholdIndex = index;
+            return this;
+        }
+
+        public Builder setThresholdCrossingQueue(ThresholdCrossingQueue crossingQueue) {
+            mCrossingQueue = crossingQueue;
+            return this;
+        }
+
+        /**
+         * @param summaryQueue receives the summary of every reported episode when it ends,
+         *                     an episode in progress is summarized from its next sample.
+         */
+        public Builder setEpisodeSummaryQueue(EpisodeSummaryQueue summaryQueue) {
+            mSummaryQueue = summaryQueue;
+            return this;
+        }
+
+        /**
+         * @param settings window statistics and the sustained vibration alert, the statistics
+         *                 start anew when the window changes.
+         */
+        public Builder setVibrationSettings(VibrationSettings settings) {
+            mVibrationSettings = settings;
+            return this;
+        }
+
+        public Builder setVibrationAlertQueue(VibrationAlertQueue alertQueue) {
+            mVibrationQueue = alertQueue;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if there are no trigger settings or a stage which
+         * queues events has no queue.
+         */
+        public DetectionConfig build() {
+            if (mSettings == null) {
+                throw new IllegalStateException("Trigger settings are required");
+            }
+            if (mThresholdIndex != null && mCrossingQueue == null) {
+                throw new IllegalStateException("Threshold index requires a crossing queue");
+            }
+            if (mVibrationSettings != null && mVibrationQueue == null) {
+                throw new IllegalStateException("Vibration settings require an alert queue");
+            }
+            return new DetectionConfig(this);
+        }
+    }
+
+    private DetectionConfig(Builder builder) {
+        mSettings = builder.mSettings;
+        mFilter = builder.mFilter;
+        mRateController = builder.mRateController;
+        mWindowCapture = builder.mWindowCapture;
+        mSpectrumAnalyzer = builder.mSpectrumAnalyzer;
+        mVehicleFrame = builder.mVehicleFrame;
+        mAxisSettings = builder.mAxisSettings;
+        mRateMonitor = builder.mRateMonitor;
+        mDegradedQueue = builder.mDegradedQueue;
+        mThresholdIndex = builder.mThresholdIndex;
+        mCrossingQueue = builder.mCrossingQueue;
+        mSummaryQueue = builder.mSummaryQueue;
+        mVibrationSettings = builder.mVibrationSettings;
+        mVibrationQueue = builder.mVibrationQueue;
+    }
+
+    /**
+     * @return configuration which checks the limit of the settings only.
+     */
+    public static DetectionConfig forSettings(TriggerSettings settings) {
+        return new Builder(settings).build();
+    }
+
+    /**
+     * @return builder which starts with this configuration.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public DetectionConfig withTriggerSettings(TriggerSettings settings) {
+        return toBuilder().setTriggerSettings(settings).build();
+    }
+
+    /**
+     * Changes the limit and keeps the rest of the trigger settings.
+     */
+    public DetectionConfig withBoostLimit(float boostLimit) {
+        return withTriggerSettings(mSettings.withBoostLimit(boostLimit));
+    }
+
+    public DetectionConfig withSampleFilter(SampleFilter filter) {
+        return toBuilder().setSampleFilter(filter).build();
+    }
+
+    public DetectionConfig withAxisTriggerSettings(AxisTriggerSettings settings) {
+        return toBuilder().setAxisTriggerSettings(settings).build();
+    }
+
+    public DetectionConfig withThresholdIndex(ThresholdIndex index) {
+        return toBuilder().setThresholdIndex(index).build();
+    }
+
+    public DetectionConfig withVibrationSettings(VibrationSettings settings) {
+        return toBuilder().setVibrationSettings(settings).build();
+    }
+
+    public TriggerSettings getTriggerSettings() {
+        return mSettings;
+    }
+
+    public SampleFilter getSampleFilter() {
+        return mFilter;
+    }
+
+    public SamplingRateController getSamplingRateController() {
+        return mRateController;
+    }
+
+    public WindowCapture getWindowCapture() {
+        return mWindowCapture;
+    }
+
+    public SpectrumAnalyzer getSpectrumAnalyzer() {
+        return mSpectrumAnalyzer;
+    }
+
+    public VehicleFrame getVehicleFrame() {
+        return mVehicleFrame;
+    }
+
+    public AxisTriggerSettings getAxisTriggerSettings() {
+        return mAxisSettings;
+    }
+
+    public SampleRateMonitor getSampleRateMonitor() {
+        return mRateMonitor;
+    }
+
+    public DegradedExceedQueue getDegradedExceedQueue() {
+        return mDegradedQueue;
+    }
+
+    public ThresholdIndex getThresholdIndex() {
+        return mThresholdIndex;
+    }
+
+    public ThresholdCrossingQueue getThresholdCrossingQueue() {
+        return mCrossingQueue;
+    }
+
+    public EpisodeSummaryQueue getEpisodeSummaryQueue() {
+        return mSummaryQueue;
+    }
+
+    public VibrationSettings getVibrationSettings() {
+        return mVibrationSettings;
+    }
+
+    public VibrationAlertQueue getVibrationAlertQueue() {
+        return mVibrationQueue;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionConfig{" + mSettings + ", filter=" + mFilter + ", thresholds="
+                + (mThresholdIndex == null ? 0 : mThresholdIndex.size()) + ", vibration="
+                + mVibrationSettings + ", axes=" + mAxisSettings + "}";
+    }
+}
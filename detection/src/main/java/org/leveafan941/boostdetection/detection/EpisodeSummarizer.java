@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Accumulates the {@link EpisodeSummary} of the current episode sample by sample. The work
+ * per sample is constant and nothing is allocated. The square root is taken only when
+ * the episode ends. Must be used from the sample thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+final class EpisodeSummarizer {
+
+    private static final double SECONDS_IN_NANO = 1e-9;
+
+    private final EpisodeSummary mSummary = new EpisodeSummary();
+
+    private boolean mHasPrevious = false;
+    private long mPreviousTimestamp;
+    private float mPreviousX;
+    private float mPreviousY;
+    private float mPreviousZ;
+    private float mPreviousSquared;
+
+    private boolean mIsActive = false;
+    private long mStartTimestamp;
+    private long mPeakTimestamp;
+    private float mPeakSquared;
+    private int mPeakAxis;
+    private double mEnergy;
+    private float mPeakJerkSquared;
+    private int mSampleCount;
+
+    /**
+     * Must be called after the trigger has processed the sample.
+     */
+    void onSample(BoostTrigger trigger, long timestamp, float xBoost, float yBoost,
+                  float zBoost, float squaredModule, EpisodeSummaryQueue queue) {
+        if (trigger.isInEpisode()) {
+            if (!mIsActive) {
+                start(timestamp);
+            } else {
+                addEnergy(timestamp);
+            }
+            // The change from the sample before the start is the onset of the episode.
+            addJerk(timestamp, xBoost, yBoost, zBoost);
+            ++mSampleCount;
+            if (squaredModule > mPeakSquared) {
+                mPeakSquared = squaredModule;
+                mPeakTimestamp = timestamp;
+                mPeakAxis = calcLargestAxis(xBoost, yBoost, zBoost);
+            }
+        } else if (mIsActive) {
+            mIsActive = false;
+            // An episode which ended pending was too short to be reported.
+            if (trigger.hasEpisodeEnded()) {
+                addEnergy(timestamp);
+                addJerk(timestamp, xBoost, yBoost, zBoost);
+                ++mSampleCount;
+                mSummary.set(mStartTimestamp, timestamp - mStartTimestamp, mPeakTimestamp,
+                        (float) Math.sqrt(mPeakSquared), mPeakAxis, (float) mEnergy,
+                        (float) Math.sqrt(mPeakJerkSquared), mSampleCount);
+                queue.queueEpisodeSummary(mSummary);
+            }
+        }
+
+        mHasPrevious = true;
+        mPreviousTimestamp = timestamp;
+        mPreviousX = xBoost;
+        mPreviousY = yBoost;
+        mPreviousZ = zBoost;
+        mPreviousSquared = squaredModule;
+    }
+
+    private void start(long timestamp) {
+        mIsActive = true;
+        mStartTimestamp = timestamp;
+        mPeakSquared = Float.NEGATIVE_INFINITY;
+        mEnergy = 0;
+        mPeakJerkSquared = 0;
+        mSampleCount = 0;
+    }
+
+    /**
+     * Adds the squared module of the previous sample over the interval to this one.
+     */
+    private void addEnergy(long timestamp) {
+        mEnergy += mPreviousSquared * ((timestamp - mPreviousTimestamp) * SECONDS_IN_NANO);
+    }
+
+    private void addJerk(long timestamp, float xBoost, float yBoost, float zBoost) {
+        final long intervalNs = timestamp - mPreviousTimestamp;
+        if (!mHasPrevious || intervalNs <= 0) {
+            return;
+        }
+
+        final double intervalS = intervalNs * SECONDS_IN_NANO;
+        final float dx = xBoost - mPreviousX;
+        final float dy = yBoost - mPreviousY;
+        final float dz = zBoost - mPreviousZ;
+        final float jerkSquared = (float) ((dx * dx + dy * dy + dz * dz)
+                / (intervalS * intervalS));
+        if (jerkSquared > mPeakJerkSquared) {
+            mPeakJerkSquared = jerkSquared;
+        }
+    }
+
+    private static int calcLargestAxis(float xBoost, float yBoost, float zBoost) {
+        final float x = Math.abs(xBoost);
+        final float y = Math.abs(yBoost);
+        final float z = Math.abs(zBoost);
+        if (x >= y && x >= z) {
+            return EpisodeSummary.AXIS_X;
+        }
+        return y >= z ? EpisodeSummary.AXIS_Y : EpisodeSummary.AXIS_Z;
+    }
+}
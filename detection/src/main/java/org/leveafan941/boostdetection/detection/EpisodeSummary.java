@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Summary of an exceed episode, from the sample which started it to the one which ended it.
+ * Instances are reused, a summary is valid only until the call which received it returns.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class EpisodeSummary {
+
+    public static final int AXIS_X = 0;
+    public static final int AXIS_Y = 1;
+    public static final int AXIS_Z = 2;
+
+    private long mStartTimestamp;
+    private long mDurationNs;
+    private long mPeakTimestamp;
+    private float mPeakBoost;
+    private int mPeakAxis;
+    private float mEnergy;
+    private float mPeakJerk;
+    private int mSampleCount;
+
+    void set(long startTimestamp, long durationNs, long peakTimestamp, float peakBoost,
+             int peakAxis, float energy, float peakJerk, int sampleCount) {
+        mStartTimestamp = startTimestamp;
+        mDurationNs = durationNs;
+        mPeakTimestamp = peakTimestamp;
+        mPeakBoost = peakBoost;
+        mPeakAxis = peakAxis;
+        mEnergy = energy;
+        mPeakJerk = peakJerk;
+        mSampleCount = sampleCount;
+    }
+
+    /**
+     * @return timestamp of the sample which started the episode, in nanoseconds.
+     */
+    public long getStartTimestamp() {
+        return mStartTimestamp;
+    }
+
+    /**
+     * @return time from the start of the episode to the sample which ended it, in nanoseconds.
+     */
+    public long getDurationNs() {
+        return mDurationNs;
+    }
+
+    public long getPeakTimestamp() {
+        return mPeakTimestamp;
+    }
+
+    /**
+     * @return max boost module of the episode, in m/s2.
+     */
+    public float getPeakBoost() {
+        return mPeakBoost;
+    }
+
+    /**
+     * @return {@link #AXIS_X}, {@link #AXIS_Y} or {@link #AXIS_Z}, the axis with the largest
+     * absolute boost at the peak.
+     */
+    public int getPeakAxis() {
+        return mPeakAxis;
+    }
+
+    /**
+     * @return squared boost module integrated over the episode time, in m2/s3.
+     */
+    public float getEnergy() {
+        return mEnergy;
+    }
+
+    /**
+     * @return max module of the boost change rate between adjacent samples, in m/s3.
+     */
+    public float getPeakJerk() {
+        return mPeakJerk;
+    }
+
+    /**
+     * @return number of samples from the start to the end of the episode, both included.
+     */
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    @Override
+    public String toString() {
+        return "EpisodeSummary{start=" + mStartTimestamp + ", durationNs=" + mDurationNs
+                + ", peakBoost=" + mPeakBoost + ", peakAxis=" + mPeakAxis
+                + ", energy=" + mEnergy + ", peakJerk=" + mPeakJerk
+                + ", samples=" + mSampleCount + "}";
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer single-consumer queue of episode summaries. The summary fields
+ * are copied into columns, so the producer's summary can be reused right after the offer.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class EpisodeSummaryRing implements EpisodeSummaryQueue {
+
+    private final long[] mStartTimestamps;
+    private final long[] mDurations;
+    private final long[] mPeakTimestamps;
+    private final float[] mPeakBoosts;
+    private final int[] mPeakAxes;
+    private final float[] mEnergies;
+    private final float[] mPeakJerks;
+    private final int[] mSampleCounts;
+    private final int mMask;
+
+    // Summary passed to the target of the drain, used by the consumer only.
+    private final EpisodeSummary mDrained = new EpisodeSummary();
+
+    // Next slot to read, written by the consumer only.
+    private final AtomicLong mHead = new AtomicLong();
+    // Next slot to write, written by the producer only.
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * @param capacity max number of not drained summaries, must be a power of two.
+     */
+    public EpisodeSummaryRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        mStartTimestamps = new long[capacity];
+        mDurations = new long[capacity];
+        mPeakTimestamps = new long[capacity];
+        mPeakBoosts = new float[capacity];
+        mPeakAxes = new int[capacity];
+        mEnergies = new float[capacity];
+        mPeakJerks = new float[capacity];
+        mSampleCounts = new int[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Called by the producer thread, the summary is dropped if the queue is full.
+     */
+    @Override
+    public void queueEpisodeSummary(EpisodeSummary summary) {
+        offer(summary);
+    }
+
+    /**
+     * Called by the producer thread.
+     *
+     * @return false if the queue is full and the summary is dropped.
+     */
+    public boolean offer(EpisodeSummary summary) {
+        final long tail = mTail.get();
+        if (tail - mHead.get() > mMask) {
+            mDroppedCount.incrementAndGet();
+            return false;
+        }
+
+        final int index = (int) tail & mMask;
+        mStartTimestamps[index] = summary.getStartTimestamp();
+        mDurations[index] = summary.getDurationNs();
+        mPeakTimestamps[index] = summary.getPeakTimestamp();
+        mPeakBoosts[index] = summary.getPeakBoost();
+        mPeakAxes[index] = summary.getPeakAxis();
+        mEnergies[index] = summary.getEnergy();
+        mPeakJerks[index] = summary.getPeakJerk();
+        mSampleCounts[index] = summary.getSampleCount();
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Called by the consumer thread. Passes all queued summaries to the target queue in order,
+     * the same summary object is reused for each of them.
+     *
+     * @return number of drained summaries.
+     */
+    public int drain(EpisodeSummaryQueue target) {
+        long head = mHead.get();
+        final long tail = mTail.get();
+        final int count = (int) (tail - head);
+        final EpisodeSummary summary = mDrained;
+
+        for (; head < tail; ++head) {
+            final int index = (int) head & mMask;
+            summary.set(mStartTimestamps[index], mDurations[index], mPeakTimestamps[index],
+                    mPeakBoosts[index], mPeakAxes[index], mEnergies[index], mPeakJerks[index],
+                    mSampleCounts[index]);
+            mHead.lazySet(head + 1);
+
+            target.queueEpisodeSummary(summary);
+        }
+        return count;
+    }
+
+    /**
+     * Can be called from any thread, the result may be stale by the time it is returned.
+     *
+     * @return number of not drained summaries.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Counts the exceed episodes {@link BoostLimitDetector} would report for precalculated squared
+ * modules, without queuing the events. It is meant for offline evaluation of many settings
+ * over the same samples: the samples can be passed in chunks, the trigger state is kept
+ * between them. Must be used from a single thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class ExceedCounter {
+
+    private final TriggerSettings mSettings;
+    private final BoostTrigger mTrigger = new BoostTrigger();
+    private long mExceedCount = 0;
+
+    public ExceedCounter(TriggerSettings settings) {
+        mSettings = settings;
+    }
+
+    /**
+     * Processes {@code count} samples starting at {@code offset} of the columns.
+     */
+    public void onSquaredModules(long[] timestamps, float[] squaredModules, int offset,
+                                 int count) {
+        final TriggerSettings settings = mSettings;
+        final float enterLimitSquared = settings.getEnterLimitSquared();
+        final BoostTrigger trigger = mTrigger;
+        final int end = offset + count;
+        long exceedCount = mExceedCount;
+
+        int i = offset;
+        while (i < end) {
+            if (!trigger.isInEpisode()) {
+                // An idle trigger ignores the samples up to the limit, only the rest is passed.
+                final int skipStart = i;
+                while (i < end && squaredModules[i] <= enterLimitSquared) {
+                    ++i;
+                }
+                if (i > skipStart) {
+                    trigger.onSkippedSample(timestamps[i - 1]);
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+
+            if (trigger.onSample(settings, timestamps[i], squaredModules[i])) {
+                ++exceedCount;
+            }
+            ++i;
+        }
+        mExceedCount = exceedCount;
+    }
+
+    public TriggerSettings getSettings() {
+        return mSettings;
+    }
+
+    public long getExceedCount() {
+        return mExceedCount;
+    }
+}
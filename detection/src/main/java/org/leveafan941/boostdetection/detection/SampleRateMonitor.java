@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the intervals between the sample timestamps, so throttled delivery and dropped
+ * samples are noticed. The interval and the jitter, the mean deviation of the intervals from
+ * it, are running averages with the 1/16 gain of the RTP interarrival jitter.
+ * <p>
+ * An interval longer than {@link #GAP_FACTOR} reference intervals is a gap, the samples which
+ * should have been within it are counted as dropped. An interval shorter than
+ * {@link #BURST_FRACTION} of the reference is a burst. The reference is the nominal interval
+ * of the requested rate if it is known and the running average otherwise. Sampling is degraded
+ * within {@link #DEGRADED_HOLD_NS} after a gap and while the average interval is longer than
+ * {@link #THROTTLE_FACTOR} nominal ones.
+ * <p>
+ * Samples are passed from a single thread, statistics may be read from any thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SampleRateMonitor {
+
+    public static final float GAP_FACTOR = 1.5f;
+    public static final float BURST_FRACTION = 0.5f;
+    public static final float THROTTLE_FACTOR = 1.25f;
+    public static final long DEGRADED_HOLD_NS = 1000000000L;
+    private static final double AVERAGE_GAIN = 1.0 / 16;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private volatile long mNominalIntervalNs;
+    // Nominal interval the samples were checked with, used by the sample thread only.
+    private long mCheckedNominalIntervalNs;
+
+    private long mLastTimestamp;
+    private boolean mHasSamples = false;
+    private double mIntervalNs;
+    private double mJitterNs;
+    private long mLastGapTimestamp;
+    private boolean mHasGaps = false;
+
+    // Statistics, written by the sample thread only.
+    private final AtomicLong mPublishedIntervalNs = new AtomicLong();
+    private final AtomicLong mPublishedJitterNs = new AtomicLong();
+    private final AtomicLong mSampleCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mGapCount = new AtomicLong();
+    private final AtomicLong mBurstCount = new AtomicLong();
+
+    /**
+     * Sets the interval of the requested rate, 0 if the rate is not guaranteed. May be called
+     * from any thread, the interval which spans the change is not checked and the averages
+     * start anew from the new interval.
+     */
+    public void setNominalIntervalNs(long nominalIntervalNs) {
+        mNominalIntervalNs = nominalIntervalNs;
+    }
+
+    public void onSample(long timestamp) {
+        mSampleCount.lazySet(mSampleCount.get() + 1);
+        final long nominalIntervalNs = mNominalIntervalNs;
+        if (!mHasSamples || nominalIntervalNs != mCheckedNominalIntervalNs) {
+            mHasSamples = true;
+            mCheckedNominalIntervalNs = nominalIntervalNs;
+            mLastTimestamp = timestamp;
+            // The averages of the previous rate would make the new one look throttled.
+            mIntervalNs = nominalIntervalNs;
+            mJitterNs = 0;
+            return;
+        }
+
+        final long intervalNs = timestamp - mLastTimestamp;
+        mLastTimestamp = timestamp;
+        if (mIntervalNs == 0) {
+            mIntervalNs = intervalNs;
+        }
+
+        final double referenceNs = nominalIntervalNs > 0 ? nominalIntervalNs : mIntervalNs;
+        if (intervalNs > GAP_FACTOR * referenceNs) {
+            mGapCount.lazySet(mGapCount.get() + 1);
+            mDroppedCount.lazySet(mDroppedCount.get() + Math.round(intervalNs / referenceNs) - 1);
+            mLastGapTimestamp = timestamp;
+            mHasGaps = true;
+        } else if (intervalNs < BURST_FRACTION * referenceNs) {
+            mBurstCount.lazySet(mBurstCount.get() + 1);
+        }
+
+        mJitterNs += (Math.abs(intervalNs - mIntervalNs) - mJitterNs) * AVERAGE_GAIN;
+        mIntervalNs += (intervalNs - mIntervalNs) * AVERAGE_GAIN;
+        mPublishedIntervalNs.lazySet(Math.round(mIntervalNs));
+        mPublishedJitterNs.lazySet(Math.round(mJitterNs));
+    }
+
+    /**
+     * Called from the sample thread.
+     *
+     * @return true if the last sample was taken while the sampling was degraded.
+     */
+    public boolean isDegraded() {
+        if (mHasGaps && mLastTimestamp - mLastGapTimestamp <= DEGRADED_HOLD_NS) {
+            return true;
+        }
+        return mCheckedNominalIntervalNs > 0
+                && mIntervalNs > THROTTLE_FACTOR * mCheckedNominalIntervalNs;
+    }
+
+    /**
+     * May be called from any thread.
+     */
+    public SampleRateStats getStats() {
+        final long intervalNs = mPublishedIntervalNs.get();
+        return new SampleRateStats(intervalNs == 0 ? 0 : NANOS_PER_SECOND / intervalNs,
+                mPublishedJitterNs.get(), mSampleCount.get(), mDroppedCount.get(),
+                mGapCount.get(), mBurstCount.get());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Immutable statistics of a {@link SampleRateMonitor}.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SampleRateStats {
+
+    private final double mEffectiveRateHz;
+    private final long mJitterNs;
+    private final long mSampleCount;
+    private final long mDroppedCount;
+    private final long mGapCount;
+    private final long mBurstCount;
+
+    SampleRateStats(double effectiveRateHz, long jitterNs, long sampleCount, long droppedCount,
+                    long gapCount, long burstCount) {
+        mEffectiveRateHz = effectiveRateHz;
+        mJitterNs = jitterNs;
+        mSampleCount = sampleCount;
+        mDroppedCount = droppedCount;
+        mGapCount = gapCount;
+        mBurstCount = burstCount;
+    }
+
+    /**
+     * @return rate of the sample timestamps averaged over the last few dozens of samples,
+     * 0 before the second sample.
+     */
+    public double getEffectiveRateHz() {
+        return mEffectiveRateHz;
+    }
+
+    /**
+     * @return mean deviation of the intervals between the samples, in nanoseconds.
+     */
+    public long getJitterNs() {
+        return mJitterNs;
+    }
+
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return estimated number of samples missing within the gaps.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public long getGapCount() {
+        return mGapCount;
+    }
+
+    public long getBurstCount() {
+        return mBurstCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SampleRateStats{rate=" + (float) mEffectiveRateHz + " Hz, jitterNs=" + mJitterNs
+                + ", samples=" + mSampleCount + ", dropped=" + mDroppedCount + ", gaps="
+                + mGapCount + ", bursts=" + mBurstCount + "}";
+    }
+}
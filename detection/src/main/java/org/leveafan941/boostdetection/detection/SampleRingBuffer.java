@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single-producer single-consumer buffer of raw sensor samples. Samples are stored
+ * in preallocated columns, the producer never blocks: when the buffer is full a new sample
+ * is dropped and counted as an overflow.
+ * <p>
+ * The consumer may park in {@link #awaitSamples} instead of polling, the producer unparks it
+ * once the given number of samples is waiting or when {@link #wakeUpConsumer} is called.
+ * A waiting consumer costs the producer a volatile read of the head per sample.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SampleRingBuffer {
+
+    private final long[] mTimestamps;
+    private final float[] mXBoosts;
+    private final float[] mYBoosts;
+    private final float[] mZBoosts;
+    private final int mMask;
+
+    // Next slot to read, written by the consumer only.
+    private final AtomicLong mHead = new AtomicLong();
+    // Next slot to write, written by the producer only.
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mOverflowCount = new AtomicLong();
+    // Consumer parked in awaitSamples, cleared by the one who unparks it.
+    private final AtomicReference<Thread> mWaitingConsumer = new AtomicReference<>();
+    // Published to the producer by the write of mWaitingConsumer.
+    private int mWakeUpCount;
+
+    // Producer's copy of mHead, it is refreshed only when the buffer looks full.
+    private long mCachedHead;
+
+    /**
+     * @param capacity max number of not drained samples, must be a power of two.
+     */
+    public SampleRingBuffer(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        mTimestamps = new long[capacity];
+        mXBoosts = new float[capacity];
+        mYBoosts = new float[capacity];
+        mZBoosts = new float[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Called by the producer thread.
+     *
+     * @return false if the buffer is full and the sample is dropped.
+     */
+    public boolean offer(long timestamp, float xBoost, float yBoost, float zBoost) {
+        final long tail = mTail.get();
+        if (tail - mCachedHead > mMask) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead > mMask) {
+                mOverflowCount.incrementAndGet();
+                return false;
+            }
+        }
+
+        final int index = (int) tail & mMask;
+        mTimestamps[index] = timestamp;
+        mXBoosts[index] = xBoost;
+        mYBoosts[index] = yBoost;
+        mZBoosts[index] = zBoost;
+        mTail.lazySet(tail + 1);
+
+        // A wake-up missed because the tail is not visible yet is made by the next sample.
+        final Thread consumer = mWaitingConsumer.get();
+        if (consumer != null && tail + 1 - mHead.get() >= mWakeUpCount
+                && mWaitingConsumer.compareAndSet(consumer, null)) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Called by the consumer thread. Parks it until at least {@code minCount} samples are
+     * waiting, {@link #wakeUpConsumer} is called or the thread is interrupted.
+     *
+     * @param minCount number of samples the producer wakes the consumer up at, it should be
+     *                 well below the capacity so the buffer is drained before it overflows.
+     */
+    public void awaitSamples(int minCount) {
+        final Thread thread = Thread.currentThread();
+        mWakeUpCount = minCount;
+        mWaitingConsumer.set(thread);
+        while (size() < minCount && mWaitingConsumer.get() == thread
+                && !thread.isInterrupted()) {
+            LockSupport.park(this);
+        }
+        mWaitingConsumer.set(null);
+    }
+
+    /**
+     * Called by the producer thread, for example on an exceed, so the samples reach
+     * the consumer without waiting for the count of {@link #awaitSamples}.
+     */
+    public void wakeUpConsumer() {
+        final Thread consumer = mWaitingConsumer.getAndSet(null);
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Called by the consumer thread. Passes all available samples to the consumer in order,
+     * slots are released to the producer once the whole batch is passed.
+     *
+     * @return number of drained samples.
+     */
+    public int drain(RawSampleConsumer consumer) {
+        final long head = mHead.get();
+        final long tail = mTail.get();
+
+        for (long i = head; i < tail; ++i) {
+            final int index = (int) i & mMask;
+            consumer.onRawSample(mTimestamps[index], mXBoosts[index], mYBoosts[index],
+                    mZBoosts[index]);
+        }
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * @return number of samples waiting for the consumer.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * @return number of samples written to the buffer since it was created.
+     */
+    public long getWrittenCount() {
+        return mTail.get();
+    }
+
+    /**
+     * @return number of samples dropped because the buffer was full.
+     */
+    public long getOverflowCount() {
+        return mOverflowCount.get();
+    }
+}
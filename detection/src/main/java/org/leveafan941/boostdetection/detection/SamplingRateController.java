@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chooses the sensor sampling rate from the boost module. The slow rate is used while
+ * the module stays far below the limit, the fast one as soon as it approaches the limit.
+ * The rate goes back to slow only after the module has stayed below the release level for
+ * the hold time, so it does not switch back and forth. Times are sample timestamps.
+ * <p>
+ * Samples are passed from a single thread, statistics may be read from any thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SamplingRateController {
+
+    public static final int RATE_SLOW = 0;
+    public static final int RATE_FAST = 1;
+    private static final int RATE_COUNT = 2;
+
+    public interface Listener {
+        /**
+         * Called from the sampling thread when the rate should be changed.
+         *
+         * @param rate {@link #RATE_SLOW} or {@link #RATE_FAST}.
+         */
+        void onSamplingRateChange(int rate);
+    }
+
+    private final float mApproachFractionSquared;
+    private final float mReleaseFractionSquared;
+    private final long mHoldNs;
+    private final Listener mListener;
+
+    private int mRate = RATE_SLOW;
+    private long mBelowReleaseTimestamp;
+    private boolean mIsBelowRelease;
+    private boolean mHasSamples;
+
+    // Statistics, written by the sampling thread only.
+    private final AtomicInteger mPublishedRate = new AtomicInteger(RATE_SLOW);
+    private final AtomicLongArray mClosedTimeAtRateNs = new AtomicLongArray(RATE_COUNT);
+    private final AtomicLong mRateStartTimestamp = new AtomicLong();
+    private final AtomicLong mLastTimestamp = new AtomicLong();
+    private final AtomicInteger mSwitchCount = new AtomicInteger();
+
+    /**
+     * @param approachFraction fraction of the limit which switches to the fast rate.
+     * @param releaseFraction fraction of the limit the module must stay below to switch to
+     *                        the slow rate, not above {@code approachFraction}.
+     * @param holdNs time the module must stay below the release level, in nanoseconds.
+     */
+    public SamplingRateController(float approachFraction, float releaseFraction, long holdNs,
+                                  Listener listener) {
+        if (!(releaseFraction >= 0 && releaseFraction <= approachFraction)) {
+            throw new IllegalArgumentException("Invalid fractions: approach = "
+                    + approachFraction + ", release = " + releaseFraction);
+        }
+        if (holdNs < 0) {
+            throw new IllegalArgumentException("Invalid hold time: " + holdNs);
+        }
+
+        mApproachFractionSquared = approachFraction * approachFraction;
+        mReleaseFractionSquared = releaseFraction * releaseFraction;
+        mHoldNs = holdNs;
+        mListener = listener;
+    }
+
+    public void onSample(TriggerSettings settings, long timestamp, float squaredModule) {
+        if (!mHasSamples) {
+            mHasSamples = true;
+            mRateStartTimestamp.lazySet(timestamp);
+        }
+        mLastTimestamp.lazySet(timestamp);
+
+        final float limitSquared = settings.getEnterLimitSquared();
+        if (mRate == RATE_SLOW) {
+            if (squaredModule >= limitSquared * mApproachFractionSquared) {
+                switchRate(RATE_FAST, timestamp);
+            }
+        } else if (squaredModule >= limitSquared * mReleaseFractionSquared) {
+            mIsBelowRelease = false;
+        } else if (!mIsBelowRelease) {
+            mIsBelowRelease = true;
+            mBelowReleaseTimestamp = timestamp;
+        } else if (timestamp - mBelowReleaseTimestamp >= mHoldNs) {
+            switchRate(RATE_SLOW, timestamp);
+        }
+    }
+
+    /**
+     * @return {@link #RATE_SLOW} or {@link #RATE_FAST}.
+     */
+    public int getRate() {
+        return mPublishedRate.get();
+    }
+
+    /**
+     * @return time of the sample stream spent at the rate, in nanoseconds.
+     */
+    public long getTimeAtRateNs(int rate) {
+        final long closedTime = mClosedTimeAtRateNs.get(rate);
+        if (rate != mPublishedRate.get()) {
+            return closedTime;
+        }
+        return closedTime + Math.max(0, mLastTimestamp.get() - mRateStartTimestamp.get());
+    }
+
+    public int getSwitchCount() {
+        return mSwitchCount.get();
+    }
+
+    private void switchRate(int rate, long timestamp) {
+        final int previousRate = mRate;
+        mClosedTimeAtRateNs.lazySet(previousRate, mClosedTimeAtRateNs.get(previousRate)
+                + timestamp - mRateStartTimestamp.get());
+        mRateStartTimestamp.lazySet(timestamp);
+
+        mRate = rate;
+        mIsBelowRelease = false;
+        mPublishedRate.lazySet(rate);
+        mSwitchCount.lazySet(mSwitchCount.get() + 1);
+
+        mListener.onSamplingRateChange(rate);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of alert thresholds, each one registered with an id. Squared thresholds are
+ * kept in a sorted primitive array, so a sample is matched against all of them with a binary
+ * search. Registration creates a new index, which is published to the detector as a whole and
+ * never blocks the sample thread.
+ * <p>
+ * The detector keeps a level: the number of thresholds the boost is above. A threshold is
+ * crossed when the level rises over it, and it is re-armed when the boost falls to its
+ * exit value, the threshold reduced by the hysteresis fraction. The boundaries are the same
+ * as the ones of the boost limit.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class ThresholdIndex {
+
+    private final float mHysteresis;
+
+    // Sorted by the threshold, the arrays are never modified.
+    private final float[] mThresholds;
+    private final float[] mEnterSquared;
+    private final float[] mExitSquared;
+    private final int[] mIds;
+
+    /**
+     * @param hysteresis fraction of a threshold the module must fall below to re-arm it,
+     *                   from 0 inclusive to 1 exclusive.
+     */
+    public static ThresholdIndex empty(float hysteresis) {
+        if (hysteresis < 0 || hysteresis >= 1) {
+            throw new IllegalArgumentException("Invalid hysteresis: " + hysteresis);
+        }
+
+        return new ThresholdIndex(hysteresis, new float[0], new int[0]);
+    }
+
+    private ThresholdIndex(float hysteresis, float[] thresholds, int[] ids) {
+        mHysteresis = hysteresis;
+        mThresholds = thresholds;
+        mIds = ids;
+
+        mEnterSquared = new float[thresholds.length];
+        mExitSquared = new float[thresholds.length];
+        for (int i = 0; i < thresholds.length; ++i) {
+            final float exit = thresholds[i] * (1 - hysteresis);
+            mEnterSquared[i] = thresholds[i] * thresholds[i];
+            mExitSquared[i] = exit * exit;
+        }
+    }
+
+    /**
+     * @param threshold boost module in m/s2, must not be negative.
+     * @return new index with the threshold added after the equal ones.
+     */
+    public ThresholdIndex withThreshold(int id, float threshold) {
+        if (!(threshold >= 0)) {
+            throw new IllegalArgumentException("Invalid threshold: " + threshold);
+        }
+
+        final int position = upperBound(mThresholds, mThresholds.length, threshold);
+        final int size = mThresholds.length;
+        final float[] thresholds = new float[size + 1];
+        final int[] ids = new int[size + 1];
+
+        System.arraycopy(mThresholds, 0, thresholds, 0, position);
+        System.arraycopy(mIds, 0, ids, 0, position);
+        thresholds[position] = threshold;
+        ids[position] = id;
+        System.arraycopy(mThresholds, position, thresholds, position + 1, size - position);
+        System.arraycopy(mIds, position, ids, position + 1, size - position);
+
+        return new ThresholdIndex(mHysteresis, thresholds, ids);
+    }
+
+    /**
+     * @return new index without the thresholds registered with the id, or this one if there
+     * are none.
+     */
+    public ThresholdIndex withoutId(int id) {
+        final float[] thresholds = new float[mThresholds.length];
+        final int[] ids = new int[mIds.length];
+        int size = 0;
+
+        for (int i = 0; i < mIds.length; ++i) {
+            if (mIds[i] != id) {
+                thresholds[size] = mThresholds[i];
+                ids[size] = mIds[i];
+                ++size;
+            }
+        }
+
+        return size == mIds.length ? this : new ThresholdIndex(mHysteresis,
+                Arrays.copyOf(thresholds, size), Arrays.copyOf(ids, size));
+    }
+
+    public int size() {
+        return mThresholds.length;
+    }
+
+    /**
+     * @param position from 0 to {@link #size()} exclusive, in the ascending threshold order.
+     */
+    public float getThreshold(int position) {
+        return mThresholds[position];
+    }
+
+    public int getId(int position) {
+        return mIds[position];
+    }
+
+    public float getHysteresis() {
+        return mHysteresis;
+    }
+
+    /**
+     * @return level of a sample seen for the first time: the number of thresholds below it.
+     */
+    public int levelOf(float squaredModule) {
+        return countBelow(mEnterSquared, mEnterSquared.length, squaredModule);
+    }
+
+    /**
+     * Updates the level with the next sample and queues the crossed thresholds, in
+     * the ascending order.
+     *
+     * @param level level after the previous sample.
+     * @return level after this sample.
+     */
+    public int onSample(int level, long timestamp, float squaredModule,
+                        ThresholdCrossingQueue queue) {
+        final int enterLevel = countBelow(mEnterSquared, mEnterSquared.length, squaredModule);
+        if (enterLevel > level) {
+            final float boostValue = (float) Math.sqrt(squaredModule);
+            for (int i = level; i < enterLevel; ++i) {
+                queue.queueThresholdCrossing(mIds[i], timestamp, boostValue);
+            }
+            return enterLevel;
+        }
+
+        // Only the thresholds below the level can be re-armed.
+        if (level > 0 && squaredModule <= mExitSquared[level - 1]) {
+            return countBelow(mExitSquared, level, squaredModule);
+        }
+        return level;
+    }
+
+    /**
+     * @return number of the first {@code size} elements not greater than the key.
+     */
+    private static int upperBound(float[] sorted, int size, float key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (sorted[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Like the {@link BoostTrigger}, a module exceeds a threshold only when it is greater than
+     * it, and falls below its exit limit when it is not greater than the exit limit.
+     *
+     * @return number of the first {@code size} elements less than the key.
+     */
+    private static int countBelow(float[] sorted, int size, float key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (sorted[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "ThresholdIndex{hysteresis=" + mHysteresis + ", thresholds="
+                + Arrays.toString(mThresholds) + ", ids=" + Arrays.toString(mIds) + "}";
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Immutable settings of the {@link BoostTrigger}. Squared limits are precomputed, so
+ * the detection compares squared modules only.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class TriggerSettings {
+
+    private final float mBoostLimit;
+    private final float mHysteresis;
+    private final long mMinDwellNs;
+    private final long mRefractoryNs;
+
+    private final float mEnterLimitSquared;
+    private final float mExitLimitSquared;
+
+    /**
+     * @param boostLimit module which starts an exceed episode, in m/s2.
+     * @param hysteresis fraction of the limit the module must fall below to end the episode,
+     *                   from 0 inclusive to 1 exclusive.
+     * @param minDwellNs time the module must stay above the exit limit before the exceed
+     *                   is reported, in nanoseconds.
+     * @param refractoryNs time after the end of an episode during which a new one is not
+     *                     started, in nanoseconds.
+     */
+    public TriggerSettings(float boostLimit, float hysteresis, long minDwellNs,
+                           long refractoryNs) {
+        if (hysteresis < 0 || hysteresis >= 1) {
+            throw new IllegalArgumentException("Invalid hysteresis: " + hysteresis);
+        }
+        if (minDwellNs < 0) {
+            throw new IllegalArgumentException("Invalid min dwell time: " + minDwellNs);
+        }
+        if (refractoryNs < 0) {
+            throw new IllegalArgumentException("Invalid refractory period: " + refractoryNs);
+        }
+
+        mBoostLimit = boostLimit;
+        mHysteresis = hysteresis;
+        mMinDwellNs = minDwellNs;
+        mRefractoryNs = refractoryNs;
+
+        mEnterLimitSquared = calcLimitSquared(boostLimit);
+        mExitLimitSquared = calcLimitSquared(boostLimit * (1 - hysteresis));
+    }
+
+    /**
+     * @return settings which report every crossing of the limit, without hysteresis,
+     * dwell time and refractory period.
+     */
+    public static TriggerSettings forLimit(float boostLimit) {
+        return new TriggerSettings(boostLimit, 0, 0, 0);
+    }
+
+    public TriggerSettings withBoostLimit(float boostLimit) {
+        return new TriggerSettings(boostLimit, mHysteresis, mMinDwellNs, mRefractoryNs);
+    }
+
+    public float getBoostLimit() {
+        return mBoostLimit;
+    }
+
+    public float getHysteresis() {
+        return mHysteresis;
+    }
+
+    public long getMinDwellNs() {
+        return mMinDwellNs;
+    }
+
+    public long getRefractoryNs() {
+        return mRefractoryNs;
+    }
+
+    float getEnterLimitSquared() {
+        return mEnterLimitSquared;
+    }
+
+    float getExitLimitSquared() {
+        return mExitLimitSquared;
+    }
+
+    private static float calcLimitSquared(float boostLimit) {
+        // Every module exceeds a negative limit, a negative square keeps it so.
+        return boostLimit < 0 ? -1f : boostLimit * boostLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "TriggerSettings{limit=" + mBoostLimit + ", hysteresis=" + mHysteresis
+                + ", minDwellNs=" + mMinDwellNs + ", refractoryNs=" + mRefractoryNs + "}";
+    }
+}
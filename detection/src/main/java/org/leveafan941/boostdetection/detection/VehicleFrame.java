@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+/**
+ * Projects the linear acceleration onto the axes of a vehicle, so braking, cornering and
+ * vertical bumps are told apart and checked against their own limits.
+ * <p>
+ * The vertical axis is the direction of the gravity, the longitudinal one is the horizontal
+ * projection of the top of the device when it lies rather flat, or of its back when it stands
+ * rather upright in portrait or landscape, and the lateral axis points to the right of it.
+ * So the device is expected to stay in a holder with the screen facing the driver, or to lie
+ * with its top forward.
+ * The sign of the longitudinal boost is lost, braking and acceleration share the limit.
+ * <p>
+ * The rotation is recalculated only when the gravity direction turns by more than
+ * {@link #MIN_ROTATION_DEGREES}, a gravity sample within it costs a normalization and a dot
+ * product. A sample costs three dot products and a trigger per enabled axis. The gravity and
+ * the samples must be passed from a single thread, the axis limits are passed with every
+ * sample like the settings of a {@link BoostTrigger}.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class VehicleFrame {
+
+    public static final int AXIS_LONGITUDINAL = 0;
+    public static final int AXIS_LATERAL = 1;
+    public static final int AXIS_VERTICAL = 2;
+    public static final int AXIS_COUNT = 3;
+
+    public static final float MIN_ROTATION_DEGREES = 2f;
+    private static final float MIN_ROTATION_COS =
+            (float) Math.cos(Math.toRadians(MIN_ROTATION_DEGREES));
+    /**
+     * The device lies rather flat when its screen is within 45 degrees from facing up or down.
+     */
+    private static final float MIN_FLAT_UP_Z = (float) Math.cos(Math.toRadians(45));
+
+    private final AxisExceedQueue mQueue;
+    private final BoostTrigger[] mTriggers = new BoostTrigger[AXIS_COUNT];
+
+    // Rows of the rotation from the device axes to the vehicle ones.
+    private float mForwardX;
+    private float mForwardY;
+    private float mForwardZ;
+    private float mRightX;
+    private float mRightY;
+    private float mRightZ;
+    private float mUpX;
+    private float mUpY;
+    private float mUpZ;
+    private boolean mHasRotation = false;
+    private long mRotationUpdateCount;
+
+    public VehicleFrame(AxisExceedQueue queue) {
+        mQueue = queue;
+        for (int axis = 0; axis < AXIS_COUNT; ++axis) {
+            mTriggers[axis] = new BoostTrigger();
+        }
+    }
+
+    /**
+     * @param x gravity along the device x axis, pointing up like the Android gravity sensor.
+     * @return true if the rotation is recalculated.
+     */
+    public boolean onGravity(float x, float y, float z) {
+        final float norm = (float) Math.sqrt(x * x + y * y + z * z);
+        if (norm == 0) {
+            return false;
+        }
+        final float upX = x / norm;
+        final float upY = y / norm;
+        final float upZ = z / norm;
+        if (mHasRotation && upX * mUpX + upY * mUpY + upZ * mUpZ > MIN_ROTATION_COS) {
+            return false;
+        }
+
+        // Horizontal projections of the device top (0, 1, 0) and back (0, 0, -1). The choice
+        // depends on the screen tilt only: in a landscape holder the gravity is along x, both
+        // upY and upZ are close to zero and comparing them would follow the noise.
+        float forwardX;
+        float forwardY;
+        float forwardZ;
+        if (Math.abs(upZ) >= MIN_FLAT_UP_Z) {
+            forwardX = -upY * upX;
+            forwardY = 1 - upY * upY;
+            forwardZ = -upY * upZ;
+        } else {
+            forwardX = upZ * upX;
+            forwardY = upZ * upY;
+            forwardZ = upZ * upZ - 1;
+        }
+        final float forwardNorm = (float) Math.sqrt(forwardX * forwardX + forwardY * forwardY
+                + forwardZ * forwardZ);
+        forwardX /= forwardNorm;
+        forwardY /= forwardNorm;
+        forwardZ /= forwardNorm;
+
+        mForwardX = forwardX;
+        mForwardY = forwardY;
+        mForwardZ = forwardZ;
+        // Right = forward x up.
+        mRightX = forwardY * upZ - forwardZ * upY;
+        mRightY = forwardZ * upX - forwardX * upZ;
+        mRightZ = forwardX * upY - forwardY * upX;
+        mUpX = upX;
+        mUpY = upY;
+        mUpZ = upZ;
+        mHasRotation = true;
+        ++mRotationUpdateCount;
+        return true;
+    }
+
+    /**
+     * Samples passed before the first gravity are ignored.
+     *
+     * @param settings limits of the axes, null disables all of them.
+     */
+    public void onSample(AxisTriggerSettings settings, long timestamp, float xBoost,
+                         float yBoost, float zBoost) {
+        if (!mHasRotation || settings == null) {
+            return;
+        }
+
+        onAxisSample(settings, AXIS_LONGITUDINAL, timestamp,
+                mForwardX * xBoost + mForwardY * yBoost + mForwardZ * zBoost);
+        onAxisSample(settings, AXIS_LATERAL, timestamp,
+                mRightX * xBoost + mRightY * yBoost + mRightZ * zBoost);
+        onAxisSample(settings, AXIS_VERTICAL, timestamp,
+                mUpX * xBoost + mUpY * yBoost + mUpZ * zBoost);
+    }
+
+    /**
+     * @return number of the rotation recalculations, called from the sample thread.
+     */
+    public long getRotationUpdateCount() {
+        return mRotationUpdateCount;
+    }
+
+    private void onAxisSample(AxisTriggerSettings settings, int axis, long timestamp,
+                              float boost) {
+        final TriggerSettings axisSettings = settings.getAxisSettings(axis);
+        if (axisSettings == null) {
+            return;
+        }
+
+        final BoostTrigger trigger = mTriggers[axis];
+        if (trigger.onSample(axisSettings, timestamp, boost * boost)) {
+            mQueue.queueAxisExceed(axis, trigger.getTriggerTimestamp(),
+                    (float) Math.sqrt(trigger.getTriggerModuleSquared()));
+        }
+    }
+}
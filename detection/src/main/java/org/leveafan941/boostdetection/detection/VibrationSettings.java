@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import org.leveafan941.boostdetection.detection.stats.RollingStatistic;
+import org.leveafan941.boostdetection.detection.stats.RollingStats;
+
+/**
+ * Immutable settings of the sustained vibration detection: a statistic of the boost module
+ * over a sliding window and the limit it is compared with whenever the window slides.
+ * An alert is raised when the statistic rises above the limit and re-armed when it falls
+ * below the limit reduced by the hysteresis fraction.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class VibrationSettings {
+
+    private final long mWindowNs;
+    private final RollingStatistic mStatistic;
+    private final float mLimit;
+    private final float mHysteresis;
+    private final float mExitLimit;
+
+    /**
+     * @param windowNs duration of the window, in nanoseconds. The window slides by
+     *                 1/{@link RollingStats#DEFAULT_PANE_COUNT} of it.
+     * @param limit value of the statistic in m/s2.
+     * @param hysteresis fraction of the limit the statistic must fall below to re-arm
+     *                   the alert, from 0 inclusive to 1 exclusive.
+     */
+    public VibrationSettings(long windowNs, RollingStatistic statistic, float limit,
+                             float hysteresis) {
+        if (windowNs < RollingStats.DEFAULT_PANE_COUNT) {
+            throw new IllegalArgumentException("Invalid window: " + windowNs);
+        }
+        if (statistic == null) {
+            throw new IllegalArgumentException("No statistic");
+        }
+        if (hysteresis < 0 || hysteresis >= 1) {
+            throw new IllegalArgumentException("Invalid hysteresis: " + hysteresis);
+        }
+
+        mWindowNs = windowNs;
+        mStatistic = statistic;
+        mLimit = limit;
+        mHysteresis = hysteresis;
+        mExitLimit = limit * (1 - hysteresis);
+    }
+
+    /**
+     * @return settings which only keep the statistics of the window and never raise alerts.
+     */
+    public static VibrationSettings forWindow(long windowNs) {
+        return new VibrationSettings(windowNs, RollingStatistic.RMS, Float.POSITIVE_INFINITY, 0);
+    }
+
+    public long getWindowNs() {
+        return mWindowNs;
+    }
+
+    public RollingStatistic getStatistic() {
+        return mStatistic;
+    }
+
+    public float getLimit() {
+        return mLimit;
+    }
+
+    public float getHysteresis() {
+        return mHysteresis;
+    }
+
+    float getExitLimit() {
+        return mExitLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "VibrationSettings{windowNs=" + mWindowNs + ", statistic=" + mStatistic
+                + ", limit=" + mLimit + ", hysteresis=" + mHysteresis + "}";
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captures the raw samples around every exceed into pooled {@link CaptureWindow}s.
+ * <p>
+ * A circular history of the last samples is kept continuously. A window is centred on the
+ * sample of the exceed event, the first one above the limit, and not on the sample which
+ * triggered it after the dwell time. On a trigger the pre-trigger samples, the event sample and
+ * the samples seen after it are copied from the history to a free window, the rest of
+ * the post-trigger samples are appended as they arrive and the filled window is passed to
+ * the queue. Nothing is
+ * allocated after the construction: when all windows are in use, the exceed is not captured
+ * and it is counted as dropped. Must be used from the sample thread, except the statistics.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class WindowCapture {
+
+    // Timestamp and three axes.
+    static final int SAMPLE_BYTES = 20;
+
+    private final int mPreTriggerSamples;
+    private final int mPostTriggerSamples;
+    private final CaptureWindowQueue mQueue;
+
+    private final long[] mHistoryTimestamps;
+    private final float[] mHistoryXBoosts;
+    private final float[] mHistoryYBoosts;
+    private final float[] mHistoryZBoosts;
+    private final int mHistoryMask;
+    private long mHistoryCount = 0;
+
+    private final CaptureWindow[] mPool;
+    // Windows waiting for their post-trigger samples, in the trigger order.
+    private final CaptureWindow[] mFilling;
+    private int mFillingCount = 0;
+
+    private final AtomicLong mCapturedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * @param preTriggerSamples number of samples captured before the trigger one.
+     * @param postTriggerSamples number of samples captured after the trigger one.
+     * @param poolSize number of windows, it limits the windows being filled or processed
+     *                 at a time.
+     */
+    public WindowCapture(int preTriggerSamples, int postTriggerSamples, int poolSize,
+                         CaptureWindowQueue queue) {
+        if (preTriggerSamples < 0 || postTriggerSamples < 0) {
+            throw new IllegalArgumentException("Invalid window: " + preTriggerSamples + ", "
+                    + postTriggerSamples);
+        }
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+        }
+
+        mPreTriggerSamples = preTriggerSamples;
+        mPostTriggerSamples = postTriggerSamples;
+        mQueue = queue;
+
+        // The history holds the whole window, the dwell time may delay the trigger until
+        // the post-trigger samples are seen.
+        final int historyCapacity = Math.max(1,
+                Integer.highestOneBit(preTriggerSamples + postTriggerSamples) << 1);
+        mHistoryTimestamps = new long[historyCapacity];
+        mHistoryXBoosts = new float[historyCapacity];
+        mHistoryYBoosts = new float[historyCapacity];
+        mHistoryZBoosts = new float[historyCapacity];
+        mHistoryMask = historyCapacity - 1;
+
+        mPool = new CaptureWindow[poolSize];
+        for (int i = 0; i < poolSize; ++i) {
+            mPool[i] = new CaptureWindow(preTriggerSamples + 1 + postTriggerSamples);
+        }
+        mFilling = new CaptureWindow[poolSize];
+    }
+
+    /**
+     * Must be called for every raw sample before the trigger check of the sample.
+     */
+    public void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+        final int index = (int) mHistoryCount & mHistoryMask;
+        mHistoryTimestamps[index] = timestamp;
+        mHistoryXBoosts[index] = xBoost;
+        mHistoryYBoosts[index] = yBoost;
+        mHistoryZBoosts[index] = zBoost;
+        ++mHistoryCount;
+
+        if (mFillingCount == 0) {
+            return;
+        }
+
+        for (int i = 0; i < mFillingCount; ++i) {
+            final CaptureWindow window = mFilling[i];
+            final int sample = window.mSampleCount++;
+            window.mTimestamps[sample] = timestamp;
+            window.mXBoosts[sample] = xBoost;
+            window.mYBoosts[sample] = yBoost;
+            window.mZBoosts[sample] = zBoost;
+            --window.mPostSamplesLeft;
+        }
+
+        // Windows are filled in the trigger order, so the filled ones are at the beginning.
+        int filledCount = 0;
+        while (filledCount < mFillingCount && mFilling[filledCount].mPostSamplesLeft == 0) {
+            deliver(mFilling[filledCount]);
+            ++filledCount;
+        }
+        if (filledCount > 0) {
+            System.arraycopy(mFilling, filledCount, mFilling, 0, mFillingCount - filledCount);
+            mFillingCount -= filledCount;
+            for (int i = mFillingCount; i < mFillingCount + filledCount; ++i) {
+                mFilling[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Starts a window around the sample of the event. When the event sample is older than
+     * the history, the window is centred on the last sample, the trigger one.
+     *
+     * @param eventTimestamp timestamp of the exceed event, in nanoseconds.
+     * @param boostValue boost module of the exceed event.
+     */
+    public void onTrigger(long eventTimestamp, float boostValue) {
+        final CaptureWindow window = acquire();
+        if (window == null) {
+            mDroppedCount.lazySet(mDroppedCount.get() + 1);
+            return;
+        }
+
+        final int historySize = (int) Math.min(mHistoryCount, mHistoryMask + 1);
+        final int eventAge = findEventAge(eventTimestamp, historySize);
+        final int postCount = Math.min(eventAge, mPostTriggerSamples);
+        final int preCount = Math.min(historySize - 1 - eventAge, mPreTriggerSamples);
+        final int count = preCount + 1 + postCount;
+        final long first = mHistoryCount - 1 - eventAge - preCount;
+        for (int i = 0; i < count; ++i) {
+            final int index = (int) (first + i) & mHistoryMask;
+            window.mTimestamps[i] = mHistoryTimestamps[index];
+            window.mXBoosts[i] = mHistoryXBoosts[index];
+            window.mYBoosts[i] = mHistoryYBoosts[index];
+            window.mZBoosts[i] = mHistoryZBoosts[index];
+        }
+        window.mSampleCount = count;
+        window.mTriggerIndex = preCount;
+        window.mPostSamplesLeft = mPostTriggerSamples - postCount;
+        window.mEventTimestamp = eventTimestamp;
+        window.mBoostValue = boostValue;
+
+        if (window.mPostSamplesLeft == 0) {
+            deliver(window);
+        } else {
+            mFilling[mFillingCount++] = window;
+        }
+    }
+
+    /**
+     * Passes the windows still waiting for their post-trigger samples to the queue, they end
+     * with the last passed sample. Called when the samples stop, so no exceed loses its window.
+     */
+    public void flush() {
+        for (int i = 0; i < mFillingCount; ++i) {
+            final CaptureWindow window = mFilling[i];
+            window.mPostSamplesLeft = 0;
+            mFilling[i] = null;
+            deliver(window);
+        }
+        mFillingCount = 0;
+    }
+
+    /**
+     * @return memory used by the history and all windows, in bytes. It does not change after
+     * the construction.
+     */
+    public long getMemoryBytes() {
+        long bytes = (long) mHistoryTimestamps.length * SAMPLE_BYTES;
+        for (CaptureWindow window : mPool) {
+            bytes += window.getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return number of windows passed to the queue.
+     */
+    public long getCapturedCount() {
+        return mCapturedCount.get();
+    }
+
+    /**
+     * @return number of exceeds not captured because all windows were in use.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * @return number of the history samples after the event one, 0 if it is not in
+     * the history.
+     */
+    private int findEventAge(long eventTimestamp, int historySize) {
+        for (int age = 0; age < historySize; ++age) {
+            final long timestamp = mHistoryTimestamps[(int) (mHistoryCount - 1 - age)
+                    & mHistoryMask];
+            if (timestamp <= eventTimestamp) {
+                return timestamp == eventTimestamp ? age : 0;
+            }
+        }
+        return 0;
+    }
+
+    private CaptureWindow acquire() {
+        for (CaptureWindow window : mPool) {
+            if (!window.mIsInUse) {
+                window.mIsInUse = true;
+                return window;
+            }
+        }
+        return null;
+    }
+
+    private void deliver(CaptureWindow window) {
+        mCapturedCount.lazySet(mCapturedCount.get() + 1);
+        mQueue.queueCaptureWindow(window);
+    }
+}
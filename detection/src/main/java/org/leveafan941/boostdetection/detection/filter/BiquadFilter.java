@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.filter;
+
+/**
+ * Second order IIR filter in the transposed direct form II. Coefficients of the low-pass and
+ * high-pass filters are taken from the Audio EQ Cookbook by R. Bristow-Johnson.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class BiquadFilter implements SampleFilter {
+
+    /**
+     * Quality factor of the Butterworth response, flat in the pass band.
+     */
+    public static final float BUTTERWORTH_Q = 0.70710677f;
+
+    // Coefficients normalized by a0.
+    private final float mB0;
+    private final float mB1;
+    private final float mB2;
+    private final float mA1;
+    private final float mA2;
+
+    private final float[] mState1 = new float[AXIS_COUNT];
+    private final float[] mState2 = new float[AXIS_COUNT];
+
+    public BiquadFilter(float b0, float b1, float b2, float a0, float a1, float a2) {
+        if (a0 == 0) {
+            throw new IllegalArgumentException("a0 must not be zero");
+        }
+
+        mB0 = b0 / a0;
+        mB1 = b1 / a0;
+        mB2 = b2 / a0;
+        mA1 = a1 / a0;
+        mA2 = a2 / a0;
+    }
+
+    public static BiquadFilter lowPass(float sampleRateHz, float cutoffHz, float q) {
+        final double cosW = Math.cos(calcAngularFrequency(sampleRateHz, cutoffHz));
+        final double alpha = calcAlpha(sampleRateHz, cutoffHz, q);
+
+        return new BiquadFilter((float) ((1 - cosW) / 2), (float) (1 - cosW),
+                (float) ((1 - cosW) / 2), (float) (1 + alpha), (float) (-2 * cosW),
+                (float) (1 - alpha));
+    }
+
+    public static BiquadFilter highPass(float sampleRateHz, float cutoffHz, float q) {
+        final double cosW = Math.cos(calcAngularFrequency(sampleRateHz, cutoffHz));
+        final double alpha = calcAlpha(sampleRateHz, cutoffHz, q);
+
+        return new BiquadFilter((float) ((1 + cosW) / 2), (float) -(1 + cosW),
+                (float) ((1 + cosW) / 2), (float) (1 + alpha), (float) (-2 * cosW),
+                (float) (1 - alpha));
+    }
+
+    @Override
+    public void filter(float[] values) {
+        for (int axis = 0; axis < AXIS_COUNT; ++axis) {
+            final float input = values[axis];
+            final float output = mB0 * input + mState1[axis];
+            mState1[axis] = mB1 * input - mA1 * output + mState2[axis];
+            mState2[axis] = mB2 * input - mA2 * output;
+            values[axis] = output;
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (int axis = 0; axis < AXIS_COUNT; ++axis) {
+            mState1[axis] = 0;
+            mState2[axis] = 0;
+        }
+    }
+
+    private static double calcAngularFrequency(float sampleRateHz, float cutoffHz) {
+        if (!(cutoffHz > 0 && cutoffHz < sampleRateHz / 2)) {
+            throw new IllegalArgumentException("Cutoff " + cutoffHz
+                    + " Hz is out of the Nyquist range of " + sampleRateHz + " Hz");
+        }
+
+        return 2 * Math.PI * cutoffHz / sampleRateHz;
+    }
+
+    private static double calcAlpha(float sampleRateHz, float cutoffHz, float q) {
+        if (!(q > 0)) {
+            throw new IllegalArgumentException("Invalid Q: " + q);
+        }
+
+        return Math.sin(calcAngularFrequency(sampleRateHz, cutoffHz)) / (2 * q);
+    }
+}
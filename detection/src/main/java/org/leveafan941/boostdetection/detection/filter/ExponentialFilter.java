@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.filter;
+
+/**
+ * Exponential moving average, the simplest low-pass filter:
+ * {@code y[n] = y[n-1] + alpha * (x[n] - y[n-1])}.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class ExponentialFilter implements SampleFilter {
+
+    private final float mAlpha;
+    private final float[] mAverages = new float[AXIS_COUNT];
+    private boolean mIsEmpty = true;
+
+    /**
+     * @param alpha weight of a new sample, from 0 exclusive to 1 inclusive.
+     */
+    public ExponentialFilter(float alpha) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Invalid alpha: " + alpha);
+        }
+
+        mAlpha = alpha;
+    }
+
+    /**
+     * @return filter whose time constant is {@code timeConstantS} at the sample rate.
+     */
+    public static ExponentialFilter forTimeConstant(float sampleRateHz, float timeConstantS) {
+        final double samplePeriod = 1.0 / sampleRateHz;
+        return new ExponentialFilter((float) (samplePeriod / (timeConstantS + samplePeriod)));
+    }
+
+    @Override
+    public void filter(float[] values) {
+        if (mIsEmpty) {
+            System.arraycopy(values, 0, mAverages, 0, AXIS_COUNT);
+            mIsEmpty = false;
+            return;
+        }
+
+        for (int axis = 0; axis < AXIS_COUNT; ++axis) {
+            mAverages[axis] += mAlpha * (values[axis] - mAverages[axis]);
+            values[axis] = mAverages[axis];
+        }
+    }
+
+    @Override
+    public void reset() {
+        mIsEmpty = true;
+    }
+}
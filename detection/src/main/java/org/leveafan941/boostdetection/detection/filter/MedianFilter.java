@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.filter;
+
+/**
+ * Median of the last N samples, per axis. It removes single sample spikes without smoothing
+ * the edges of longer impacts. Every axis keeps its window in arrival order and sorted,
+ * so a sample costs O(N).
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class MedianFilter implements SampleFilter {
+
+    public static final int MAX_WINDOW_SIZE = 63;
+
+    private final int mWindowSize;
+    // Windows of all axes in one array, axis window starts at axis * mWindowSize.
+    private final float[] mHistory;
+    private final float[] mSorted;
+    private int mNextIndex = 0;
+    private int mCount = 0;
+
+    /**
+     * @param windowSize number of samples, odd and not above {@link #MAX_WINDOW_SIZE}.
+     */
+    public MedianFilter(int windowSize) {
+        if (windowSize <= 0 || windowSize % 2 == 0 || windowSize > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+
+        mWindowSize = windowSize;
+        mHistory = new float[AXIS_COUNT * windowSize];
+        mSorted = new float[AXIS_COUNT * windowSize];
+    }
+
+    @Override
+    public void filter(float[] values) {
+        final boolean isFull = mCount == mWindowSize;
+
+        for (int axis = 0; axis < AXIS_COUNT; ++axis) {
+            final int start = axis * mWindowSize;
+            final float value = values[axis];
+
+            final int size;
+            if (isFull) {
+                replaceSorted(start, mHistory[start + mNextIndex], value);
+                size = mWindowSize;
+            } else {
+                insertSorted(start, mCount, value);
+                size = mCount + 1;
+            }
+            mHistory[start + mNextIndex] = value;
+
+            // Until the window is full it may hold an even number of samples, the upper
+            // median is taken then.
+            values[axis] = mSorted[start + size / 2];
+        }
+
+        mNextIndex = (mNextIndex + 1) % mWindowSize;
+        if (!isFull) {
+            ++mCount;
+        }
+    }
+
+    @Override
+    public void reset() {
+        mNextIndex = 0;
+        mCount = 0;
+    }
+
+    /**
+     * Replaces the oldest value of the sorted window with the new one and moves it to keep
+     * the window sorted.
+     */
+    private void replaceSorted(int start, float oldValue, float newValue) {
+        // Bit exact comparison, so a NaN is found as well.
+        int index = start;
+        while (Float.compare(mSorted[index], oldValue) != 0) {
+            ++index;
+        }
+
+        final int end = start + mWindowSize;
+        while (index + 1 < end && mSorted[index + 1] < newValue) {
+            mSorted[index] = mSorted[index + 1];
+            ++index;
+        }
+        while (index > start && mSorted[index - 1] > newValue) {
+            mSorted[index] = mSorted[index - 1];
+            --index;
+        }
+        mSorted[index] = newValue;
+    }
+
+    private void insertSorted(int start, int size, float value) {
+        int index = start + size;
+        while (index > start && mSorted[index - 1] > value) {
+            mSorted[index] = mSorted[index - 1];
+            --index;
+        }
+        mSorted[index] = value;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of exceed events, each one with a window of raw samples around it.
+ * <p>
+ * Records are encoded into a preallocated buffer and written to the segment file with a single
+ * write and sync per group commit: when the buffer is full or the oldest buffered record waited
+ * for the commit interval. A segment is rotated when it reaches the max size, the oldest ones
+ * are deleted above the max segment count.
+ * <p>
+ * A segment starts with the magic and the version. A record is its payload length and CRC32
+ * followed by the payload: event timestamp, boost value, sample count and the sample columns.
+ * When the journal is opened, the last segment is truncated after its last valid record,
+ * so a record torn by a crash is dropped and the appending continues after the valid ones.
+ * <p>
+ * The methods are synchronized, but the journal is meant to be written by a single
+ * background thread. Appending does no file I/O until a commit.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class EventJournal implements Closeable {
+
+    static final int MAGIC = 0x42444A31;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    // Payload length and CRC32.
+    static final int RECORD_HEADER_SIZE = 8;
+    // Event timestamp, boost value and sample count.
+    static final int PAYLOAD_HEADER_SIZE = 16;
+    // Timestamp and three axes.
+    static final int SAMPLE_SIZE = 20;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private final File mDirectory;
+    private final long mMaxSegmentBytes;
+    private final int mMaxSegmentCount;
+    private final long mGroupCommitIntervalNs;
+    private final ByteBuffer mStaging;
+    private final CRC32 mCrc = new CRC32();
+
+    private FileChannel mChannel;
+    private long mSegmentIndex;
+    // Committed size of the current segment.
+    private long mSegmentSize;
+    private long mFirstStagedNs;
+    private boolean mIsClosed = false;
+
+    private final long mRecoveredCount;
+    private final long mTruncatedBytes;
+    private long mAppendedCount = 0;
+    private long mCommitCount = 0;
+
+    /**
+     * Opens the journal in the directory, creating it if needed, and recovers its last segment.
+     *
+     * @param maxSegmentBytes size after which a new segment is started, it must hold at least
+     *                        the group commit buffer.
+     * @param maxSegmentCount max number of segments kept, the oldest ones are deleted.
+     * @param groupCommitBytes size of the buffer collecting records between commits, it limits
+     *                         the size of a single record.
+     * @param groupCommitIntervalNs max time a record waits in the buffer, in nanoseconds.
+     */
+    public EventJournal(File directory, long maxSegmentBytes, int maxSegmentCount,
+                        int groupCommitBytes, long groupCommitIntervalNs) throws IOException {
+        if (groupCommitBytes < RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid group commit size: " + groupCommitBytes);
+        }
+        if (maxSegmentBytes < SEGMENT_HEADER_SIZE + groupCommitBytes) {
+            throw new IllegalArgumentException("Invalid segment size: " + maxSegmentBytes);
+        }
+        if (maxSegmentCount < 1) {
+            throw new IllegalArgumentException("Invalid segment count: " + maxSegmentCount);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create journal directory " + directory);
+        }
+
+        mDirectory = directory;
+        mMaxSegmentBytes = maxSegmentBytes;
+        mMaxSegmentCount = maxSegmentCount;
+        mGroupCommitIntervalNs = groupCommitIntervalNs;
+        mStaging = ByteBuffer.allocate(groupCommitBytes);
+
+        final List<Long> indexes = listSegmentIndexes(directory);
+        final SegmentScanner scanner = new SegmentScanner();
+        for (int i = 0; i < indexes.size() - 1; ++i) {
+            scanSegment(segmentFile(directory, indexes.get(i)), scanner, null);
+        }
+
+        if (indexes.isEmpty()) {
+            openSegment(0);
+            mTruncatedBytes = 0;
+        } else {
+            mTruncatedBytes = recoverSegment(indexes.get(indexes.size() - 1), scanner);
+        }
+        mRecoveredCount = scanner.getRecordCount();
+        deleteOldSegments();
+    }
+
+    /**
+     * Reads the committed records of all segments in the directory, in the append order.
+     * A segment is read up to its first torn or corrupted record.
+     *
+     * @return number of records read.
+     */
+    public static long read(File directory, JournalRecordVisitor visitor) throws IOException {
+        final SegmentScanner scanner = new SegmentScanner();
+        for (long index : listSegmentIndexes(directory)) {
+            scanSegment(segmentFile(directory, index), scanner, visitor);
+        }
+        return scanner.getRecordCount();
+    }
+
+    /**
+     * Appends the event with {@code count} samples starting at {@code offset} of the columns.
+     * The record is durable after the next commit.
+     */
+    public synchronized void append(long timestamp, float boostValue, long[] sampleTimestamps,
+                                    float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                                    int offset, int count) throws IOException {
+        checkOpen();
+
+        final int payloadLength = PAYLOAD_HEADER_SIZE + count * SAMPLE_SIZE;
+        final int recordLength = RECORD_HEADER_SIZE + payloadLength;
+        if (recordLength > mStaging.capacity()) {
+            throw new IllegalArgumentException("Record of " + count
+                    + " samples exceeds the group commit buffer");
+        }
+
+        if (recordLength > mStaging.remaining()) {
+            commit();
+        }
+        if (mSegmentSize + mStaging.position() + recordLength > mMaxSegmentBytes) {
+            commit();
+            rotate();
+        }
+
+        final long nowNs = System.nanoTime();
+        if (mStaging.position() == 0) {
+            mFirstStagedNs = nowNs;
+        }
+
+        final ByteBuffer staging = mStaging;
+        final int recordStart = staging.position();
+        final int payloadStart = recordStart + RECORD_HEADER_SIZE;
+        staging.position(payloadStart);
+        staging.putLong(timestamp);
+        staging.putFloat(boostValue);
+        staging.putInt(count);
+        for (int i = offset; i < offset + count; ++i) {
+            staging.putLong(sampleTimestamps[i]);
+        }
+        for (int i = offset; i < offset + count; ++i) {
+            staging.putFloat(xBoosts[i]);
+        }
+        for (int i = offset; i < offset + count; ++i) {
+            staging.putFloat(yBoosts[i]);
+        }
+        for (int i = offset; i < offset + count; ++i) {
+            staging.putFloat(zBoosts[i]);
+        }
+
+        mCrc.reset();
+        mCrc.update(staging.array(), payloadStart, payloadLength);
+        staging.putInt(recordStart, payloadLength);
+        staging.putInt(recordStart + 4, (int) mCrc.getValue());
+        ++mAppendedCount;
+
+        if (nowNs - mFirstStagedNs >= mGroupCommitIntervalNs) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the buffered records if the oldest one waited for the commit interval.
+     * Should be called periodically when records are appended rarely.
+     */
+    public synchronized void commitIfDue() throws IOException {
+        if (!mIsClosed && mStaging.position() > 0
+                && System.nanoTime() - mFirstStagedNs >= mGroupCommitIntervalNs) {
+            commit();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the segment and syncs it.
+     */
+    public synchronized void commit() throws IOException {
+        checkOpen();
+        if (mStaging.position() == 0) {
+            return;
+        }
+
+        mStaging.flip();
+        while (mStaging.hasRemaining()) {
+            mSegmentSize += mChannel.write(mStaging);
+        }
+        mStaging.clear();
+        mChannel.force(false);
+        ++mCommitCount;
+    }
+
+    /**
+     * @return number of valid records found when the journal was opened.
+     */
+    public long getRecoveredCount() {
+        return mRecoveredCount;
+    }
+
+    /**
+     * @return size of the torn tail removed from the last segment when the journal was opened.
+     */
+    public long getTruncatedBytes() {
+        return mTruncatedBytes;
+    }
+
+    public synchronized long getAppendedCount() {
+        return mAppendedCount;
+    }
+
+    public synchronized long getCommitCount() {
+        return mCommitCount;
+    }
+
+    /**
+     * Commits the buffered records and closes the segment.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (mIsClosed) {
+            return;
+        }
+
+        try {
+            commit();
+        } finally {
+            mIsClosed = true;
+            mChannel.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (mIsClosed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    private void rotate() throws IOException {
+        mChannel.close();
+        openSegment(mSegmentIndex + 1);
+        deleteOldSegments();
+    }
+
+    private void openSegment(long index) throws IOException {
+        mSegmentIndex = index;
+        mChannel = new RandomAccessFile(segmentFile(mDirectory, index), "rw").getChannel();
+        mChannel.truncate(0);
+        writeSegmentHeader();
+    }
+
+    /**
+     * @return number of bytes truncated.
+     */
+    private long recoverSegment(long index, SegmentScanner scanner) throws IOException {
+        mSegmentIndex = index;
+        mChannel = new RandomAccessFile(segmentFile(mDirectory, index), "rw").getChannel();
+
+        final long size = mChannel.size();
+        final long validEnd = scanner.scan(mChannel, null);
+        if (validEnd == SegmentScanner.INVALID_SEGMENT) {
+            mChannel.truncate(0);
+            writeSegmentHeader();
+            return size;
+        }
+
+        if (validEnd < size) {
+            mChannel.truncate(validEnd);
+            mChannel.force(false);
+        }
+        mChannel.position(validEnd);
+        mSegmentSize = validEnd;
+        return size - validEnd;
+    }
+
+    private void writeSegmentHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        mChannel.position(0);
+        while (header.hasRemaining()) {
+            mChannel.write(header);
+        }
+        mChannel.force(false);
+        mSegmentSize = SEGMENT_HEADER_SIZE;
+    }
+
+    private void deleteOldSegments() {
+        for (long index : listSegmentIndexes(mDirectory)) {
+            if (index <= mSegmentIndex - mMaxSegmentCount) {
+                // A segment failed to be deleted is retried after the next rotation.
+                segmentFile(mDirectory, index).delete();
+            }
+        }
+    }
+
+    private static void scanSegment(File file, SegmentScanner scanner,
+                                    JournalRecordVisitor visitor) throws IOException {
+        final RandomAccessFile segment = new RandomAccessFile(file, "r");
+        try {
+            scanner.scan(segment.getChannel(), visitor);
+        } finally {
+            segment.close();
+        }
+    }
+
+    private static File segmentFile(File directory, long index) {
+        return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, index,
+                SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> listSegmentIndexes(File directory) {
+        final List<Long> indexes = new ArrayList<>();
+        final String[] names = directory.list();
+        if (names == null) {
+            return indexes;
+        }
+
+        for (String name : names) {
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+            try {
+                indexes.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                // Not a segment.
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Validates and decodes the records of a journal segment. Scratch buffers grow to the largest
+ * record seen and are reused, so a scanner should be kept for all the segments.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+final class SegmentScanner {
+
+    /**
+     * Returned by {@link #scan} when the segment header is torn or not a journal one.
+     */
+    static final long INVALID_SEGMENT = -1;
+
+    private final CRC32 mCrc = new CRC32();
+    private final ByteBuffer mHeader = ByteBuffer.allocate(EventJournal.RECORD_HEADER_SIZE);
+    private byte[] mPayload = new byte[0];
+    private ByteBuffer mPayloadBuffer = ByteBuffer.wrap(mPayload);
+    private long[] mTimestamps = new long[0];
+    private float[] mXBoosts = new float[0];
+    private float[] mYBoosts = new float[0];
+    private float[] mZBoosts = new float[0];
+    private long mRecordCount;
+
+    /**
+     * Scans the records from the beginning of the segment up to the first torn or corrupted one.
+     *
+     * @param visitor receives the valid records, null if they are only counted.
+     * @return position after the last valid record or {@link #INVALID_SEGMENT}.
+     */
+    long scan(FileChannel channel, JournalRecordVisitor visitor) throws IOException {
+        final long size = channel.size();
+        if (size < EventJournal.SEGMENT_HEADER_SIZE) {
+            return INVALID_SEGMENT;
+        }
+
+        readFully(channel, mHeader, 0, EventJournal.SEGMENT_HEADER_SIZE);
+        if (mHeader.getInt(0) != EventJournal.MAGIC || mHeader.getInt(4) != EventJournal.VERSION) {
+            return INVALID_SEGMENT;
+        }
+
+        long position = EventJournal.SEGMENT_HEADER_SIZE;
+        while (size - position >= EventJournal.RECORD_HEADER_SIZE) {
+            readFully(channel, mHeader, position, EventJournal.RECORD_HEADER_SIZE);
+            final int payloadLength = mHeader.getInt(0);
+            final int crc = mHeader.getInt(4);
+            if (!isValidPayloadLength(payloadLength)
+                    || payloadLength > size - position - EventJournal.RECORD_HEADER_SIZE) {
+                break;
+            }
+
+            if (mPayload.length < payloadLength) {
+                mPayload = new byte[payloadLength];
+                mPayloadBuffer = ByteBuffer.wrap(mPayload);
+            }
+            final ByteBuffer payload = mPayloadBuffer;
+            readFully(channel, payload, position + EventJournal.RECORD_HEADER_SIZE,
+                    payloadLength);
+
+            mCrc.reset();
+            mCrc.update(mPayload, 0, payloadLength);
+            if ((int) mCrc.getValue() != crc) {
+                break;
+            }
+
+            if (visitor != null) {
+                decode(payload, visitor);
+            }
+            ++mRecordCount;
+            position += EventJournal.RECORD_HEADER_SIZE + payloadLength;
+        }
+
+        return position;
+    }
+
+    /**
+     * @return number of valid records found by all the scans.
+     */
+    long getRecordCount() {
+        return mRecordCount;
+    }
+
+    private void decode(ByteBuffer payload, JournalRecordVisitor visitor) {
+        payload.position(0);
+        final long timestamp = payload.getLong();
+        final float boostValue = payload.getFloat();
+        final int count = payload.getInt();
+
+        if (mTimestamps.length < count) {
+            mTimestamps = new long[count];
+            mXBoosts = new float[count];
+            mYBoosts = new float[count];
+            mZBoosts = new float[count];
+        }
+        for (int i = 0; i < count; ++i) {
+            mTimestamps[i] = payload.getLong();
+        }
+        for (int i = 0; i < count; ++i) {
+            mXBoosts[i] = payload.getFloat();
+        }
+        for (int i = 0; i < count; ++i) {
+            mYBoosts[i] = payload.getFloat();
+        }
+        for (int i = 0; i < count; ++i) {
+            mZBoosts[i] = payload.getFloat();
+        }
+
+        visitor.onRecord(timestamp, boostValue, mTimestamps, mXBoosts, mYBoosts, mZBoosts,
+                count);
+    }
+
+    private static boolean isValidPayloadLength(int payloadLength) {
+        return payloadLength >= EventJournal.PAYLOAD_HEADER_SIZE
+                && (payloadLength - EventJournal.PAYLOAD_HEADER_SIZE)
+                % EventJournal.SAMPLE_SIZE == 0;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position,
+                                  int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the segment at " + position);
+            }
+        }
+    }
+}
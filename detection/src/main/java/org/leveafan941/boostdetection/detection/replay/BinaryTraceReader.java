@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a trace written by {@link BinaryTraceWriter}. The file is read in large blocks through
+ * a preallocated buffer, there is no per sample parsing.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class BinaryTraceReader implements TraceReader {
+
+    private static final int BUFFER_SAMPLES = 4096;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer =
+            ByteBuffer.allocateDirect(BUFFER_SAMPLES * BinaryTraceWriter.SAMPLE_SIZE);
+
+    public BinaryTraceReader(File file) throws IOException {
+        mChannel = new FileInputStream(file).getChannel();
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(BinaryTraceWriter.HEADER_SIZE);
+            if (!fill(header) || header.getInt(0) != BinaryTraceWriter.MAGIC) {
+                throw new IOException("Not a binary trace: " + file);
+            }
+            if (header.getInt(4) != BinaryTraceWriter.VERSION) {
+                throw new IOException("Unsupported trace version " + header.getInt(4));
+            }
+        } catch (IOException e) {
+            mChannel.close();
+            throw e;
+        }
+        mBuffer.flip();
+    }
+
+    @Override
+    public int read(long[] timestamps, float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                    int maxCount) throws IOException {
+        final ByteBuffer buffer = mBuffer;
+        if (buffer.remaining() < BinaryTraceWriter.SAMPLE_SIZE) {
+            buffer.compact();
+            fill(buffer);
+            buffer.flip();
+            if (!buffer.hasRemaining()) {
+                return END_OF_TRACE;
+            }
+            if (buffer.remaining() < BinaryTraceWriter.SAMPLE_SIZE) {
+                throw new IOException("Trace ends with a truncated sample");
+            }
+        }
+
+        final int count = Math.min(maxCount, buffer.remaining() / BinaryTraceWriter.SAMPLE_SIZE);
+        for (int i = 0; i < count; ++i) {
+            timestamps[i] = buffer.getLong();
+            xBoosts[i] = buffer.getFloat();
+            yBoosts[i] = buffer.getFloat();
+            zBoosts[i] = buffer.getFloat();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    /**
+     * Reads until the buffer is full or the file ends.
+     *
+     * @return true if the buffer is full.
+     */
+    private boolean fill(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a compact binary trace: the magic and the version followed by fixed size samples,
+ * each one the timestamp and three axes. A sample takes 20 bytes, about a third of a CSV line.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class BinaryTraceWriter implements TraceWriter {
+
+    static final int MAGIC = 0x42445431;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    // Timestamp and three axes.
+    static final int SAMPLE_SIZE = 20;
+
+    private static final int BUFFER_SAMPLES = 4096;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer =
+            ByteBuffer.allocateDirect(BUFFER_SAMPLES * SAMPLE_SIZE);
+    private long mSampleCount = 0;
+
+    public BinaryTraceWriter(File file) throws IOException {
+        mChannel = new FileOutputStream(file).getChannel();
+        mBuffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    @Override
+    public void write(long timestamp, float xBoost, float yBoost, float zBoost)
+            throws IOException {
+        if (mBuffer.remaining() < SAMPLE_SIZE) {
+            flush();
+        }
+        mBuffer.putLong(timestamp).putFloat(xBoost).putFloat(yBoost).putFloat(zBoost);
+        ++mSampleCount;
+    }
+
+    @Override
+    public void write(long[] timestamps, float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                      int count) throws IOException {
+        for (int i = 0; i < count; ++i) {
+            write(timestamps[i], xBoosts[i], yBoosts[i], zBoosts[i]);
+        }
+    }
+
+    @Override
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mChannel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a trace written by {@link ColumnarTraceWriter} through a memory mapping of the file,
+ * so there are no read calls and no intermediate buffers. Files larger than a single mapping
+ * are mapped in windows which start at a block.
+ * <p>
+ * Besides reading all samples, {@link #scanAbove} finds the samples above a boost limit right
+ * in the mapped columns and skips the blocks whose max module is not above the limit without
+ * touching their columns.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class ColumnarTraceReader implements TraceReader {
+
+    private static final long MAX_MAPPING_BYTES = 1L << 30;
+
+    private final FileChannel mChannel;
+    private final long mFileSize;
+    private final int mBlockCapacity;
+
+    private MappedByteBuffer mMapping;
+    private long mMappingStart;
+
+    private long mNextBlockOffset = ColumnarTraceWriter.HEADER_SIZE;
+    // Positions of the current block columns within the mapping.
+    private int mDeltasPosition;
+    private int mXPosition;
+    private int mYPosition;
+    private int mZPosition;
+    private int mBlockSampleCount = 0;
+    private int mBlockSampleIndex = 0;
+    private float mBlockMaxModule;
+    private long mLastTimestamp;
+
+    private long mBlockCount = 0;
+    private long mSkippedBlockCount = 0;
+
+    public ColumnarTraceReader(File file) throws IOException {
+        mChannel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            mFileSize = mChannel.size();
+            if (mFileSize < ColumnarTraceWriter.HEADER_SIZE) {
+                throw new IOException("Not a columnar trace: " + file);
+            }
+            map(0);
+            if (mMapping.getInt(0) != ColumnarTraceWriter.MAGIC) {
+                throw new IOException("Not a columnar trace: " + file);
+            }
+            if (mMapping.getInt(4) != ColumnarTraceWriter.VERSION) {
+                throw new IOException("Unsupported trace version " + mMapping.getInt(4));
+            }
+            mBlockCapacity = mMapping.getInt(8);
+            if (mBlockCapacity <= 0) {
+                throw new IOException("Invalid block capacity " + mBlockCapacity);
+            }
+        } catch (IOException e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(long[] timestamps, float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                    int maxCount) throws IOException {
+        if (mBlockSampleIndex == mBlockSampleCount && !openNextBlock()) {
+            return END_OF_TRACE;
+        }
+
+        final MappedByteBuffer mapping = mMapping;
+        final int start = mBlockSampleIndex;
+        final int count = Math.min(maxCount, mBlockSampleCount - start);
+
+        long timestamp = mLastTimestamp;
+        final int deltasPosition = mDeltasPosition + start * 4;
+        for (int i = 0; i < count; ++i) {
+            timestamp += mapping.getInt(deltasPosition + i * 4);
+            timestamps[i] = timestamp;
+        }
+        mLastTimestamp = timestamp;
+
+        copyColumn(mXPosition + start * 4, xBoosts, count);
+        copyColumn(mYPosition + start * 4, yBoosts, count);
+        copyColumn(mZPosition + start * 4, zBoosts, count);
+
+        mBlockSampleIndex = start + count;
+        return count;
+    }
+
+    /**
+     * Finds the samples whose boost module is above the limit, from the current position
+     * to the end of the trace.
+     *
+     * @return number of found samples.
+     */
+    public long scanAbove(float boostLimit, TraceSampleVisitor visitor) throws IOException {
+        final float limitSquared = boostLimit * boostLimit;
+        long foundCount = 0;
+
+        while (mBlockSampleIndex < mBlockSampleCount || openNextBlock()) {
+            if (mBlockMaxModule <= boostLimit) {
+                ++mSkippedBlockCount;
+                mBlockSampleIndex = mBlockSampleCount;
+                continue;
+            }
+
+            final MappedByteBuffer mapping = mMapping;
+            long timestamp = mLastTimestamp;
+            for (int i = mBlockSampleIndex; i < mBlockSampleCount; ++i) {
+                timestamp += mapping.getInt(mDeltasPosition + i * 4);
+                final float x = mapping.getFloat(mXPosition + i * 4);
+                final float y = mapping.getFloat(mYPosition + i * 4);
+                final float z = mapping.getFloat(mZPosition + i * 4);
+                if (x * x + y * y + z * z > limitSquared) {
+                    visitor.onSample(timestamp, x, y, z);
+                    ++foundCount;
+                }
+            }
+            mLastTimestamp = timestamp;
+            mBlockSampleIndex = mBlockSampleCount;
+        }
+        return foundCount;
+    }
+
+    public int getBlockCapacity() {
+        return mBlockCapacity;
+    }
+
+    /**
+     * @return number of blocks read or scanned so far.
+     */
+    public long getBlockCount() {
+        return mBlockCount;
+    }
+
+    /**
+     * @return number of blocks {@link #scanAbove} skipped by their max module.
+     */
+    public long getSkippedBlockCount() {
+        return mSkippedBlockCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mMapping = null;
+        mChannel.close();
+    }
+
+    /**
+     * @return false if there are no more blocks.
+     */
+    private boolean openNextBlock() throws IOException {
+        final long offset = mNextBlockOffset;
+        if (offset == mFileSize) {
+            return false;
+        }
+        if (mFileSize - offset < ColumnarTraceWriter.BLOCK_HEADER_SIZE) {
+            throw new IOException("Trace ends with a truncated block");
+        }
+
+        ensureMapped(offset, ColumnarTraceWriter.BLOCK_HEADER_SIZE);
+        int position = (int) (offset - mMappingStart);
+        final int count = mMapping.getInt(position);
+        if (count <= 0 || count > mBlockCapacity) {
+            throw new IOException("Invalid block of " + count + " samples at " + offset);
+        }
+        final long blockSize = ColumnarTraceWriter.BLOCK_HEADER_SIZE
+                + (long) count * ColumnarTraceWriter.SAMPLE_SIZE;
+        if (mFileSize - offset < blockSize) {
+            throw new IOException("Trace ends with a truncated block");
+        }
+        ensureMapped(offset, blockSize);
+        position = (int) (offset - mMappingStart);
+
+        mLastTimestamp = mMapping.getLong(position + 4);
+        mBlockMaxModule = mMapping.getFloat(position + 16);
+        mDeltasPosition = position + ColumnarTraceWriter.BLOCK_HEADER_SIZE;
+        mXPosition = mDeltasPosition + count * 4;
+        mYPosition = mXPosition + count * 4;
+        mZPosition = mYPosition + count * 4;
+        mBlockSampleCount = count;
+        mBlockSampleIndex = 0;
+
+        mNextBlockOffset = offset + blockSize;
+        ++mBlockCount;
+        return true;
+    }
+
+    private void ensureMapped(long offset, long length) throws IOException {
+        if (offset < mMappingStart || offset + length > mMappingStart + mMapping.capacity()) {
+            map(offset);
+        }
+    }
+
+    private void map(long offset) throws IOException {
+        mMappingStart = offset;
+        mMapping = mChannel.map(FileChannel.MapMode.READ_ONLY, offset,
+                Math.min(MAX_MAPPING_BYTES, mFileSize - offset));
+        mMapping.order(ColumnarTraceWriter.BYTE_ORDER);
+    }
+
+    private void copyColumn(int position, float[] column, int count) {
+        final ByteBuffer mapping = mMapping;
+        mapping.position(position);
+        mapping.asFloatBuffer().get(column, 0, count);
+    }
+}
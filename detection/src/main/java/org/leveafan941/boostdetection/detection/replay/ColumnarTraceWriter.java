@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a columnar trace for bulk storage and scanning. After the file header, the samples
+ * are stored in blocks: a block header followed by the timestamp, x, y and z columns of the
+ * block samples. Each timestamp is stored as an int delta from the previous one, a gap which
+ * does not fit an int starts a new block. A sample takes 16 bytes.
+ * <p>
+ * The block header holds the sample count, the timestamp of the first sample, whose delta is
+ * zero, and the min and max boost module of the block.
+ * A query for the samples above a limit skips the blocks whose max is not above it.
+ * The values are little-endian, the native order of the devices and the desktops, so a
+ * memory-mapped column is copied with no conversion.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class ColumnarTraceWriter implements TraceWriter {
+
+    static final int MAGIC = 0x42444331;
+    static final int VERSION = 1;
+    // Magic, version and block capacity.
+    static final int HEADER_SIZE = 12;
+    // Sample count, base timestamp, min and max module.
+    static final int BLOCK_HEADER_SIZE = 20;
+    // Timestamp delta and three axes.
+    static final int SAMPLE_SIZE = 16;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final int DEFAULT_BLOCK_CAPACITY = 4096;
+
+    private final FileChannel mChannel;
+    private final int mBlockCapacity;
+    private final ByteBuffer mBlock;
+
+    private final int[] mDeltas;
+    private final float[] mXBoosts;
+    private final float[] mYBoosts;
+    private final float[] mZBoosts;
+    private int mBlockCount = 0;
+    private long mBaseTimestamp;
+    private long mLastTimestamp;
+    private float mMinSquared;
+    private float mMaxSquared;
+
+    private long mSampleCount = 0;
+    private boolean mIsClosed = false;
+
+    /**
+     * @param blockCapacity max number of samples in a block. Smaller blocks let a query skip
+     *                      more samples, larger ones have less overhead.
+     */
+    public ColumnarTraceWriter(File file, int blockCapacity) throws IOException {
+        if (blockCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid block capacity: " + blockCapacity);
+        }
+
+        mBlockCapacity = blockCapacity;
+        mBlock = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE + blockCapacity * SAMPLE_SIZE)
+                .order(BYTE_ORDER);
+        mDeltas = new int[blockCapacity];
+        mXBoosts = new float[blockCapacity];
+        mYBoosts = new float[blockCapacity];
+        mZBoosts = new float[blockCapacity];
+
+        mChannel = new FileOutputStream(file).getChannel();
+        mBlock.putInt(MAGIC).putInt(VERSION).putInt(blockCapacity);
+        writeBlockBuffer();
+    }
+
+    @Override
+    public void write(long timestamp, float xBoost, float yBoost, float zBoost)
+            throws IOException {
+        long delta = timestamp - mLastTimestamp;
+        if (mBlockCount == mBlockCapacity
+                || (mBlockCount > 0 && (int) delta != delta)) {
+            writeBlock();
+        }
+        if (mBlockCount == 0) {
+            // The first delta is zero, the base is the first timestamp itself.
+            mBaseTimestamp = timestamp;
+            mMinSquared = Float.POSITIVE_INFINITY;
+            mMaxSquared = Float.NEGATIVE_INFINITY;
+            delta = 0;
+        }
+
+        final float squaredModule = xBoost * xBoost + yBoost * yBoost + zBoost * zBoost;
+        if (squaredModule < mMinSquared) {
+            mMinSquared = squaredModule;
+        }
+        if (squaredModule > mMaxSquared) {
+            mMaxSquared = squaredModule;
+        }
+
+        mDeltas[mBlockCount] = (int) delta;
+        mXBoosts[mBlockCount] = xBoost;
+        mYBoosts[mBlockCount] = yBoost;
+        mZBoosts[mBlockCount] = zBoost;
+        ++mBlockCount;
+        mLastTimestamp = timestamp;
+        ++mSampleCount;
+    }
+
+    @Override
+    public void write(long[] timestamps, float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                      int count) throws IOException {
+        for (int i = 0; i < count; ++i) {
+            write(timestamps[i], xBoosts[i], yBoosts[i], zBoosts[i]);
+        }
+    }
+
+    @Override
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mIsClosed) {
+            return;
+        }
+
+        try {
+            if (mBlockCount > 0) {
+                writeBlock();
+            }
+        } finally {
+            mIsClosed = true;
+            mChannel.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        final ByteBuffer block = mBlock;
+        final int count = mBlockCount;
+        // The modules are rounded outwards, so they bound the squared modules of the samples
+        // and a block is never skipped by mistake.
+        final float minModule = Math.max(0f,
+                Math.nextAfter((float) Math.sqrt(mMinSquared), Double.NEGATIVE_INFINITY));
+        final float maxModule = Math.nextUp((float) Math.sqrt(mMaxSquared));
+        block.putInt(count)
+                .putLong(mBaseTimestamp)
+                .putFloat(minModule)
+                .putFloat(maxModule);
+        block.asIntBuffer().put(mDeltas, 0, count);
+        block.position(block.position() + count * 4);
+        block.asFloatBuffer().put(mXBoosts, 0, count);
+        block.position(block.position() + count * 4);
+        block.asFloatBuffer().put(mYBoosts, 0, count);
+        block.position(block.position() + count * 4);
+        block.asFloatBuffer().put(mZBoosts, 0, count);
+        block.position(block.position() + count * 4);
+
+        writeBlockBuffer();
+        mBlockCount = 0;
+    }
+
+    private void writeBlockBuffer() throws IOException {
+        mBlock.flip();
+        while (mBlock.hasRemaining()) {
+            mChannel.write(mBlock);
+        }
+        mBlock.clear();
+    }
+}
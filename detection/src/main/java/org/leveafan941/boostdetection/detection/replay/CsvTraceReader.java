@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads a trace of {@code timestamp,x,y,z} lines, the timestamp in nanoseconds and the boosts
+ * in m/s2. Empty lines and lines starting with {@code #} or a letter, like a column header,
+ * are skipped.
+ * <p>
+ * The bytes are parsed in place without creating strings. Values with at most 7 significant
+ * digits and a decimal exponent within 10 are calculated exactly in float arithmetic, longer
+ * ones are passed to {@link Float#parseFloat}, so the result is always the same as its one.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class CsvTraceReader implements TraceReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_LINE_SIZE = 128;
+
+    // Integers up to 2^24 and powers of ten up to 10^10 are exact floats.
+    private static final int MAX_FAST_DIGITS = 7;
+    private static final float[] POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final InputStream mInput;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mBufferPosition = 0;
+    private int mBufferLimit = 0;
+
+    private byte[] mLine = new byte[INITIAL_LINE_SIZE];
+    private int mLineLength;
+    private int mLinePosition;
+    private long mLineNumber = 0;
+
+    public CsvTraceReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public CsvTraceReader(InputStream input) {
+        mInput = input;
+    }
+
+    @Override
+    public int read(long[] timestamps, float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                    int maxCount) throws IOException {
+        int count = 0;
+        while (count < maxCount && readLine()) {
+            if (isSkippedLine()) {
+                continue;
+            }
+
+            timestamps[count] = parseLong();
+            skipSeparator();
+            xBoosts[count] = parseFloat();
+            skipSeparator();
+            yBoosts[count] = parseFloat();
+            skipSeparator();
+            zBoosts[count] = parseFloat();
+            skipSpaces();
+            if (mLinePosition != mLineLength) {
+                throw formatError("Unexpected data after the samples");
+            }
+            ++count;
+        }
+        return count == 0 ? END_OF_TRACE : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+
+    /**
+     * Copies the next line without the line break into the line buffer.
+     *
+     * @return false if there are no more lines.
+     */
+    private boolean readLine() throws IOException {
+        mLineLength = 0;
+        mLinePosition = 0;
+        boolean hasData = false;
+
+        while (true) {
+            if (mBufferPosition == mBufferLimit) {
+                mBufferLimit = mInput.read(mBuffer, 0, BUFFER_SIZE);
+                mBufferPosition = 0;
+                if (mBufferLimit <= 0) {
+                    mBufferLimit = 0;
+                    break;
+                }
+            }
+            hasData = true;
+
+            final byte value = mBuffer[mBufferPosition++];
+            if (value == '\n') {
+                break;
+            }
+            if (mLineLength == mLine.length) {
+                final byte[] line = new byte[mLine.length * 2];
+                System.arraycopy(mLine, 0, line, 0, mLineLength);
+                mLine = line;
+            }
+            mLine[mLineLength++] = value;
+        }
+
+        if (mLineLength > 0 && mLine[mLineLength - 1] == '\r') {
+            --mLineLength;
+        }
+        if (hasData) {
+            ++mLineNumber;
+        }
+        return hasData;
+    }
+
+    private boolean isSkippedLine() {
+        skipSpaces();
+        if (mLinePosition == mLineLength) {
+            return true;
+        }
+
+        final byte first = mLine[mLinePosition];
+        return first == '#' || (first >= 'a' && first <= 'z') || (first >= 'A' && first <= 'Z');
+    }
+
+    private void skipSpaces() {
+        while (mLinePosition < mLineLength
+                && (mLine[mLinePosition] == ' ' || mLine[mLinePosition] == '\t')) {
+            ++mLinePosition;
+        }
+    }
+
+    private void skipSeparator() throws IOException {
+        skipSpaces();
+        if (mLinePosition == mLineLength || mLine[mLinePosition] != ',') {
+            throw formatError("Expected 4 comma separated values");
+        }
+        ++mLinePosition;
+    }
+
+    private long parseLong() throws IOException {
+        skipSpaces();
+        final byte[] line = mLine;
+        int position = mLinePosition;
+        final boolean isNegative = position < mLineLength && line[position] == '-';
+        if (isNegative) {
+            ++position;
+        }
+
+        final int digitsStart = position;
+        long value = 0;
+        for (; position < mLineLength && isDigit(line[position]); ++position) {
+            if (value > (Long.MAX_VALUE - 9) / 10) {
+                throw formatError("Timestamp is too large");
+            }
+            value = value * 10 + (line[position] - '0');
+        }
+        if (position == digitsStart) {
+            throw formatError("Invalid timestamp");
+        }
+
+        mLinePosition = position;
+        return isNegative ? -value : value;
+    }
+
+    private float parseFloat() throws IOException {
+        skipSpaces();
+        final byte[] line = mLine;
+        final int start = mLinePosition;
+        int end = start;
+        while (end < mLineLength && line[end] != ',' && line[end] != ' ' && line[end] != '\t') {
+            ++end;
+        }
+        mLinePosition = end;
+
+        int position = start;
+        final boolean isNegative = position < end && line[position] == '-';
+        if (isNegative || (position < end && line[position] == '+')) {
+            ++position;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        int digitCount = 0;
+        for (; position < end && isDigit(line[position]); ++position, ++digitCount) {
+            mantissa = mantissa * 10 + (line[position] - '0');
+            if (mantissa != 0) {
+                ++significantDigits;
+            }
+        }
+        if (position < end && line[position] == '.') {
+            for (++position; position < end && isDigit(line[position]);
+                 ++position, ++digitCount) {
+                mantissa = mantissa * 10 + (line[position] - '0');
+                if (mantissa != 0) {
+                    ++significantDigits;
+                }
+                --exponent;
+            }
+        }
+        if (position < end && (line[position] == 'e' || line[position] == 'E')) {
+            ++position;
+            final boolean isExponentNegative = position < end && line[position] == '-';
+            if (isExponentNegative || (position < end && line[position] == '+')) {
+                ++position;
+            }
+            int exponentValue = 0;
+            final int exponentStart = position;
+            for (; position < end && isDigit(line[position]) && exponentValue < 1000;
+                 ++position) {
+                exponentValue = exponentValue * 10 + (line[position] - '0');
+            }
+            if (position == exponentStart) {
+                return parseFloatSlow(start, end);
+            }
+            exponent += isExponentNegative ? -exponentValue : exponentValue;
+        }
+
+        if (position != end || digitCount == 0 || significantDigits > MAX_FAST_DIGITS) {
+            return parseFloatSlow(start, end);
+        }
+        if (mantissa == 0) {
+            return isNegative ? -0f : 0f;
+        }
+        if (exponent < -POWERS_OF_TEN.length + 1 || exponent > POWERS_OF_TEN.length - 1) {
+            return parseFloatSlow(start, end);
+        }
+
+        final float value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+                : mantissa / POWERS_OF_TEN[-exponent];
+        return isNegative ? -value : value;
+    }
+
+    private float parseFloatSlow(int start, int end) throws IOException {
+        try {
+            return Float.parseFloat(new String(mLine, start, end - start, ASCII));
+        } catch (NumberFormatException e) {
+            throw formatError("Invalid boost value");
+        }
+    }
+
+    private IOException formatError(String message) {
+        return new IOException(message + " at line " + mLineNumber);
+    }
+
+    private static boolean isDigit(byte value) {
+        return value >= '0' && value <= '9';
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+/**
+ * Outcome of a {@link TraceReplayer#replay} call.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class ReplayResult {
+
+    private static final double NANOS_IN_SECOND = 1e9;
+
+    private final long mSampleCount;
+    private final long mEventCount;
+    private final long mElapsedNs;
+    private final long mTraceDurationNs;
+
+    public ReplayResult(long sampleCount, long eventCount, long elapsedNs,
+                        long traceDurationNs) {
+        mSampleCount = sampleCount;
+        mEventCount = eventCount;
+        mElapsedNs = elapsedNs;
+        mTraceDurationNs = traceDurationNs;
+    }
+
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return number of limit exceed events found in the trace.
+     */
+    public long getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * @return wall clock time of the replay, in nanoseconds.
+     */
+    public long getElapsedNs() {
+        return mElapsedNs;
+    }
+
+    /**
+     * @return time from the first to the last sample of the trace, in nanoseconds.
+     */
+    public long getTraceDurationNs() {
+        return mTraceDurationNs;
+    }
+
+    public double getSamplesPerSecond() {
+        return mElapsedNs == 0 ? 0 : mSampleCount * NANOS_IN_SECOND / mElapsedNs;
+    }
+
+    /**
+     * @return times the replay was faster than the recording.
+     */
+    public double getSpeedup() {
+        return mElapsedNs == 0 ? 0 : (double) mTraceDurationNs / mElapsedNs;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayResult{samples=" + mSampleCount + ", events=" + mEventCount
+                + ", elapsedNs=" + mElapsedNs + ", traceDurationNs=" + mTraceDurationNs
+                + ", samplesPerSecond=" + (long) getSamplesPerSecond()
+                + ", speedup=" + getSpeedup() + "}";
+    }
+}
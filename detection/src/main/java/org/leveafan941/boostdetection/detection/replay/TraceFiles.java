@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens the trace readers and writers by the file name.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class TraceFiles {
+
+    public static final String CSV_EXTENSION = ".csv";
+    public static final String COLUMNAR_EXTENSION = ".bdc";
+
+    private TraceFiles() {
+    }
+
+    /**
+     * @return {@link CsvTraceReader} for a {@code .csv} file, {@link ColumnarTraceReader}
+     * for a {@code .bdc} one and {@link BinaryTraceReader} for any other one.
+     */
+    public static TraceReader openReader(File file) throws IOException {
+        if (file.getName().endsWith(CSV_EXTENSION)) {
+            return new CsvTraceReader(file);
+        }
+        if (file.getName().endsWith(COLUMNAR_EXTENSION)) {
+            return new ColumnarTraceReader(file);
+        }
+        return new BinaryTraceReader(file);
+    }
+
+    /**
+     * @return {@link ColumnarTraceWriter} for a {@code .bdc} file and {@link BinaryTraceWriter}
+     * for any other one.
+     */
+    public static TraceWriter createWriter(File file) throws IOException {
+        if (file.getName().endsWith(COLUMNAR_EXTENSION)) {
+            return new ColumnarTraceWriter(file, ColumnarTraceWriter.DEFAULT_BLOCK_CAPACITY);
+        }
+        return new BinaryTraceWriter(file);
+    }
+}
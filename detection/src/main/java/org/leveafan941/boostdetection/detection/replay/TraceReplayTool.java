@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+import org.leveafan941.boostdetection.detection.sweep.SweepResult;
+import org.leveafan941.boostdetection.detection.sweep.ThresholdSweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line entry of the trace replay, it runs on any JVM:
+ * <pre>
+ *     replay &lt;trace&gt; &lt;boost limit&gt; [speed] [-v]
+ *     convert &lt;input trace&gt; &lt;output trace&gt;
+ *     scan &lt;columnar trace&gt; &lt;boost limit&gt;
+ *     sweep &lt;min limit&gt; &lt;max limit&gt; &lt;limit count&gt; &lt;hysteresis,...&gt;
+ *           &lt;min dwell ms&gt; &lt;refractory ms&gt; &lt;trace&gt;...
+ * </pre>
+ * The speed is 0 for as fast as possible replay, the default, 1 for the real time or the times
+ * the replay is faster than the real time. {@code -v} prints every exceed event. The formats
+ * are chosen by {@link TraceFiles}. The scan counts the samples above the limit. The sweep
+ * prints the exceed count of every combination of the limits and the hysteresis values
+ * as CSV, see {@link ThresholdSweep}.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class TraceReplayTool {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private TraceReplayTool() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && "replay".equals(args[0])) {
+            final boolean isVerbose = "-v".equals(args[args.length - 1]);
+            final int argCount = isVerbose ? args.length - 1 : args.length;
+            final double speed = argCount > 3 ? Double.parseDouble(args[3])
+                    : TraceReplayer.AS_FAST_AS_POSSIBLE;
+            replay(new File(args[1]), Float.parseFloat(args[2]), speed, isVerbose);
+        } else if (args.length == 3 && "convert".equals(args[0])) {
+            convert(new File(args[1]), new File(args[2]));
+        } else if (args.length == 3 && "scan".equals(args[0])) {
+            scan(new File(args[1]), Float.parseFloat(args[2]));
+        } else if (args.length >= 8 && "sweep".equals(args[0])) {
+            sweep(args);
+        } else {
+            System.err.println("Usage: replay <trace> <boost limit> [speed] [-v]");
+            System.err.println("       convert <input trace> <output trace>");
+            System.err.println("       scan <columnar trace> <boost limit>");
+            System.err.println("       sweep <min limit> <max limit> <limit count>"
+                    + " <hysteresis,...> <min dwell ms> <refractory ms> <trace>...");
+            System.exit(2);
+        }
+    }
+
+    private static void replay(File trace, float boostLimit, double speed, boolean isVerbose)
+            throws IOException, InterruptedException {
+        final AccelerometerEventQueue printer = !isVerbose ? null : new AccelerometerEventQueue() {
+            @Override
+            public void queueBoostLimitExceed(long timestamp, float boostValue) {
+                System.out.println("Exceed at " + timestamp + ": " + boostValue);
+            }
+        };
+        final TraceReplayer replayer = new TraceReplayer(TriggerSettings.forLimit(boostLimit),
+                printer, speed);
+
+        final TraceReader reader = TraceFiles.openReader(trace);
+        try {
+            System.out.println(replayer.replay(reader));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void convert(File inputTrace, File outputTrace) throws IOException {
+        final long[] timestamps = new long[CHUNK_SIZE];
+        final float[] xBoosts = new float[CHUNK_SIZE];
+        final float[] yBoosts = new float[CHUNK_SIZE];
+        final float[] zBoosts = new float[CHUNK_SIZE];
+
+        final TraceReader reader = TraceFiles.openReader(inputTrace);
+        try {
+            final TraceWriter writer = TraceFiles.createWriter(outputTrace);
+            try {
+                int count;
+                while ((count = reader.read(timestamps, xBoosts, yBoosts, zBoosts, CHUNK_SIZE))
+                        != TraceReader.END_OF_TRACE) {
+                    writer.write(timestamps, xBoosts, yBoosts, zBoosts, count);
+                }
+                System.out.println("Converted " + writer.getSampleCount() + " samples");
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void scan(File trace, float boostLimit) throws IOException {
+        final long startNs = System.nanoTime();
+        final ColumnarTraceReader reader = new ColumnarTraceReader(trace);
+        try {
+            final long foundCount = reader.scanAbove(boostLimit, new TraceSampleVisitor() {
+                @Override
+                public void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+                    // Only counted.
+                }
+            });
+            System.out.println("Found " + foundCount + " samples above the limit, skipped "
+                    + reader.getSkippedBlockCount() + " of " + reader.getBlockCount()
+                    + " blocks in " + (System.nanoTime() - startNs) / 1000000 + " ms");
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void sweep(String[] args) throws IOException {
+        final String[] hysteresisArgs = args[4].split(",");
+        final float[] hysteresisValues = new float[hysteresisArgs.length];
+        for (int i = 0; i < hysteresisArgs.length; ++i) {
+            hysteresisValues[i] = Float.parseFloat(hysteresisArgs[i]);
+        }
+        final List<TriggerSettings> settings = ThresholdSweep.grid(Float.parseFloat(args[1]),
+                Float.parseFloat(args[2]), Integer.parseInt(args[3]), hysteresisValues,
+                TimeUnit.MILLISECONDS.toNanos(Long.parseLong(args[5])),
+                TimeUnit.MILLISECONDS.toNanos(Long.parseLong(args[6])));
+
+        final List<File> traces = new ArrayList<>();
+        for (int i = 7; i < args.length; ++i) {
+            traces.add(new File(args[i]));
+        }
+
+        final ThresholdSweep sweep = new ThresholdSweep();
+        try {
+            final SweepResult result = sweep.run(traces, settings);
+            result.writeCsv(System.out);
+            System.err.println(result);
+        } finally {
+            sweep.shutdown();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.replay;
+
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+
+import java.io.IOException;
+
+/**
+ * Streams recorded traces through a {@link BoostLimitDetector}, the same detection path
+ * the sensor samples take. The samples are read and detected in chunks, so as fast as possible
+ * replay is limited mostly by the reading. Paced replay passes each sample when its time from
+ * the start of the trace, divided by the speed, has passed.
+ * <p>
+ * The detector can be configured through {@link #getDetector()} before the replay, e.g. with
+ * a filter. A replayer must be used from a single thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class TraceReplayer {
+
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+    public static final double REAL_TIME = 1;
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final long NANOS_IN_MILLI = 1000000L;
+
+    private final BoostLimitDetector mDetector;
+    private final double mSpeed;
+
+    private final long[] mTimestamps = new long[CHUNK_SIZE];
+    private final float[] mXBoosts = new float[CHUNK_SIZE];
+    private final float[] mYBoosts = new float[CHUNK_SIZE];
+    private final float[] mZBoosts = new float[CHUNK_SIZE];
+
+    private long mEventCount = 0;
+
+    /**
+     * @param eventQueue receives the exceed events, null if they are only counted.
+     * @param speed {@link #AS_FAST_AS_POSSIBLE}, {@link #REAL_TIME} or the times the replay
+     *              is faster than the real time.
+     */
+    public TraceReplayer(TriggerSettings settings, final AccelerometerEventQueue eventQueue,
+                         double speed) {
+        if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("Invalid replay speed: " + speed);
+        }
+
+        mSpeed = speed;
+        mDetector = new BoostLimitDetector(new AccelerometerEventQueue() {
+            @Override
+            public void queueBoostLimitExceed(long timestamp, float boostValue) {
+                ++mEventCount;
+                if (eventQueue != null) {
+                    eventQueue.queueBoostLimitExceed(timestamp, boostValue);
+                }
+            }
+        }, settings);
+    }
+
+    public BoostLimitDetector getDetector() {
+        return mDetector;
+    }
+
+    /**
+     * Replays all samples of the trace. The detector state is kept between the calls, so
+     * several traces are replayed as a single continuous one.
+     */
+    public ReplayResult replay(TraceReader reader) throws IOException, InterruptedException {
+        final long startNs = System.nanoTime();
+        final long eventCountBefore = mEventCount;
+        long sampleCount = 0;
+        long firstTimestamp = 0;
+        long lastTimestamp = 0;
+
+        int count;
+        while ((count = reader.read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, CHUNK_SIZE))
+                != TraceReader.END_OF_TRACE) {
+            if (sampleCount == 0) {
+                firstTimestamp = mTimestamps[0];
+            }
+
+            if (mSpeed == AS_FAST_AS_POSSIBLE) {
+                mDetector.onSamples(mTimestamps, mXBoosts, mYBoosts, mZBoosts, 0, count);
+            } else {
+                replayPaced(startNs, firstTimestamp, count);
+            }
+            sampleCount += count;
+            lastTimestamp = mTimestamps[count - 1];
+        }
+
+        return new ReplayResult(sampleCount, mEventCount - eventCountBefore,
+                System.nanoTime() - startNs, lastTimestamp - firstTimestamp);
+    }
+
+    /**
+     * Passes the due samples of the chunk at once and sleeps until the next one is due.
+     */
+    private void replayPaced(long startNs, long firstTimestamp, int count)
+            throws InterruptedException {
+        int start = 0;
+        while (start < count) {
+            final long elapsedNs = System.nanoTime() - startNs;
+            int end = start;
+            while (end < count && calcDueNs(firstTimestamp, mTimestamps[end]) <= elapsedNs) {
+                ++end;
+            }
+
+            if (end > start) {
+                mDetector.onSamples(mTimestamps, mXBoosts, mYBoosts, mZBoosts, start,
+                        end - start);
+                start = end;
+            } else {
+                final long sleepNs = calcDueNs(firstTimestamp, mTimestamps[start]) - elapsedNs;
+                Thread.sleep(sleepNs / NANOS_IN_MILLI, (int) (sleepNs % NANOS_IN_MILLI));
+            }
+        }
+    }
+
+    private long calcDueNs(long firstTimestamp, long timestamp) {
+        return (long) ((timestamp - firstTimestamp) / mSpeed);
+    }
+}
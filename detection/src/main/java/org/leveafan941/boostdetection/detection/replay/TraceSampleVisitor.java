@@ -28,12 +28,14 @@
  * THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-package org.leveafan941.boostdetection.accelerometer;
+package org.leveafan941.boostdetection.detection.replay;
 
 /**
+ * Receives the samples found by a trace query.
+ *
  * @author Alexey Kuzin (amkuzink@gmail.com)
  */
-interface AccelerometerEventQueue {
+public interface TraceSampleVisitor {
 
-    void queueBoostLimitExceed(float boostValue);
+    void onSample(long timestamp, float xBoost, float yBoost, float zBoost);
 }
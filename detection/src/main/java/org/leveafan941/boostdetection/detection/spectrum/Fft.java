@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.spectrum;
+
+/**
+ * In-place radix-2 complex FFT. The twiddle factors and the bit reversal permutation are
+ * precomputed, so a transform allocates nothing and calls no trigonometric functions.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class Fft {
+
+    private final int mSize;
+    // Twiddle factors e^(-2 pi i k / size) for k below size / 2.
+    private final float[] mTwiddleRe;
+    private final float[] mTwiddleIm;
+    private final int[] mReversedIndexes;
+
+    /**
+     * @param size number of points, a power of two not below 2.
+     */
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of two: " + size);
+        }
+
+        mSize = size;
+        mTwiddleRe = new float[size / 2];
+        mTwiddleIm = new float[size / 2];
+        for (int k = 0; k < size / 2; ++k) {
+            final double angle = -2 * Math.PI * k / size;
+            mTwiddleRe[k] = (float) Math.cos(angle);
+            mTwiddleIm[k] = (float) Math.sin(angle);
+        }
+
+        final int bits = Integer.numberOfTrailingZeros(size);
+        mReversedIndexes = new int[size];
+        for (int i = 0; i < size; ++i) {
+            mReversedIndexes[i] = Integer.reverse(i) >>> (Integer.SIZE - bits);
+        }
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Replaces the samples with their discrete Fourier transform,
+     * {@code X[k] = sum of x[n] * e^(-2 pi i k n / size)}.
+     *
+     * @param re real parts, at least {@link #getSize()} long.
+     * @param im imaginary parts, at least {@link #getSize()} long.
+     */
+    public void transform(float[] re, float[] im) {
+        final int size = mSize;
+        for (int i = 0; i < size; ++i) {
+            final int j = mReversedIndexes[i];
+            if (j > i) {
+                final float tempRe = re[i];
+                re[i] = re[j];
+                re[j] = tempRe;
+                final float tempIm = im[i];
+                im[i] = im[j];
+                im[j] = tempIm;
+            }
+        }
+
+        // The first stage has the trivial twiddle factor 1.
+        for (int a = 0; a < size; a += 2) {
+            final float tRe = re[a + 1];
+            final float tIm = im[a + 1];
+            re[a + 1] = re[a] - tRe;
+            im[a + 1] = im[a] - tIm;
+            re[a] += tRe;
+            im[a] += tIm;
+        }
+
+        for (int length = 4; length <= size; length <<= 1) {
+            final int half = length >>> 1;
+            final int twiddleStep = size / length;
+            for (int k = 0; k < half; ++k) {
+                final float wRe = mTwiddleRe[k * twiddleStep];
+                final float wIm = mTwiddleIm[k * twiddleStep];
+                for (int a = k; a < size; a += length) {
+                    final int b = a + half;
+                    final float tRe = wRe * re[b] - wIm * im[b];
+                    final float tIm = wRe * im[b] + wIm * re[b];
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+    }
+}
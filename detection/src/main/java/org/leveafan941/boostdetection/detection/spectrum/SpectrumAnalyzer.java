@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.spectrum;
+
+/**
+ * Sliding-window spectrum of the samples which raises an event when the vibration within
+ * a frequency band exceeds the band limit, so a resonance is told apart from a single impact
+ * of the same boost. Windows of {@code windowSize} samples overlap by half and are weighted
+ * with the Hann window, every sample is analyzed in two windows.
+ * <p>
+ * The spectra of the three axes are summed, so the band energy does not depend on the device
+ * orientation. The x and y axes are packed into a single complex FFT, the z axis takes one
+ * more. The mean of every axis is removed ahead of the transform, so a sensor offset does not
+ * leak into the lowest bands. Frequencies are mapped to the bins with the sample rate measured
+ * over the window timestamps.
+ * <p>
+ * An event is raised when the band RMS rises above its limit and the band is re-armed when
+ * the RMS falls below the limit reduced by the hysteresis fraction. All buffers are
+ * preallocated: a sample costs a few stores and every {@code windowSize / 2} samples two FFTs
+ * are calculated. Samples must be passed from a single thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SpectrumAnalyzer {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final int mWindowSize;
+    private final int mHopSize;
+    private final Fft mFft;
+    private final float[] mWindowWeights;
+    // Converts the sum of the one-sided bin powers to the mean square of the samples.
+    private final float mPowerScale;
+
+    private final SpectrumBand[] mBands;
+    private final float[] mEnterSquared;
+    private final float[] mExitSquared;
+    private final boolean[] mIsBandAlerted;
+    private final BandEnergyQueue mQueue;
+
+    // Last samples in a circular buffer, the oldest one is at mHistoryPosition.
+    private final long[] mTimestamps;
+    private final float[] mXHistory;
+    private final float[] mYHistory;
+    private final float[] mZHistory;
+    private int mHistoryPosition;
+    private int mSamplesToAnalysis;
+
+    // Transform buffers: x + iy in the first pair, z in the second one.
+    private final float[] mXyRe;
+    private final float[] mXyIm;
+    private final float[] mZRe;
+    private final float[] mZIm;
+    private final float[] mBinPowers;
+
+    private long mAnalysisCount;
+
+    /**
+     * @param windowSize number of samples in a window, a power of two not below 4.
+     * @param hysteresis fraction of a band limit the RMS must fall below to re-arm the band,
+     *                   from 0 inclusive to 1 exclusive.
+     * @param queue receives the events of the bands.
+     */
+    public SpectrumAnalyzer(int windowSize, float hysteresis, BandEnergyQueue queue,
+                            SpectrumBand... bands) {
+        if (windowSize < 4 || Integer.bitCount(windowSize) != 1) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+        if (hysteresis < 0 || hysteresis >= 1) {
+            throw new IllegalArgumentException("Invalid hysteresis: " + hysteresis);
+        }
+
+        mWindowSize = windowSize;
+        mHopSize = windowSize / 2;
+        mFft = new Fft(windowSize);
+        mWindowWeights = new float[windowSize];
+        double weightSquareSum = 0;
+        for (int i = 0; i < windowSize; ++i) {
+            // Periodic Hann window, overlapping halves sum up to one.
+            mWindowWeights[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / windowSize));
+            weightSquareSum += mWindowWeights[i] * mWindowWeights[i];
+        }
+        mPowerScale = (float) (2 / (windowSize * weightSquareSum));
+
+        mBands = bands.clone();
+        mEnterSquared = new float[bands.length];
+        mExitSquared = new float[bands.length];
+        for (int i = 0; i < bands.length; ++i) {
+            final float limit = bands[i].getLimit();
+            final float exit = limit * (1 - hysteresis);
+            mEnterSquared[i] = limit * limit;
+            mExitSquared[i] = exit * exit;
+        }
+        mIsBandAlerted = new boolean[bands.length];
+        mQueue = queue;
+
+        mTimestamps = new long[windowSize];
+        mXHistory = new float[windowSize];
+        mYHistory = new float[windowSize];
+        mZHistory = new float[windowSize];
+        mSamplesToAnalysis = windowSize;
+
+        mXyRe = new float[windowSize];
+        mXyIm = new float[windowSize];
+        mZRe = new float[windowSize];
+        mZIm = new float[windowSize];
+        mBinPowers = new float[windowSize / 2 + 1];
+    }
+
+    public int getWindowSize() {
+        return mWindowSize;
+    }
+
+    /**
+     * @return number of analyzed windows.
+     */
+    public long getAnalysisCount() {
+        return mAnalysisCount;
+    }
+
+    public void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+        final int position = mHistoryPosition;
+        mTimestamps[position] = timestamp;
+        mXHistory[position] = xBoost;
+        mYHistory[position] = yBoost;
+        mZHistory[position] = zBoost;
+        mHistoryPosition = (position + 1) & (mWindowSize - 1);
+
+        if (--mSamplesToAnalysis == 0) {
+            mSamplesToAnalysis = mHopSize;
+            analyze();
+        }
+    }
+
+    private void analyze() {
+        ++mAnalysisCount;
+        final int size = mWindowSize;
+        final int oldest = mHistoryPosition;
+        final long spanNs = mTimestamps[(oldest + size - 1) & (size - 1)] - mTimestamps[oldest];
+        if (spanNs <= 0) {
+            return;
+        }
+
+        float xSum = 0;
+        float ySum = 0;
+        float zSum = 0;
+        for (int i = 0; i < size; ++i) {
+            xSum += mXHistory[i];
+            ySum += mYHistory[i];
+            zSum += mZHistory[i];
+        }
+        final float xMean = xSum / size;
+        final float yMean = ySum / size;
+        final float zMean = zSum / size;
+
+        for (int i = 0; i < size; ++i) {
+            final int index = (oldest + i) & (size - 1);
+            final float weight = mWindowWeights[i];
+            mXyRe[i] = (mXHistory[index] - xMean) * weight;
+            mXyIm[i] = (mYHistory[index] - yMean) * weight;
+            mZRe[i] = (mZHistory[index] - zMean) * weight;
+            mZIm[i] = 0;
+        }
+        mFft.transform(mXyRe, mXyIm);
+        mFft.transform(mZRe, mZIm);
+
+        // For the packed real x and y, |X[k]|^2 + |Y[k]|^2 = (|P[k]|^2 + |P[size - k]|^2) / 2.
+        final int half = size / 2;
+        for (int k = 1; k <= half; ++k) {
+            final int mirror = size - k;
+            final float xyPower = (mXyRe[k] * mXyRe[k] + mXyIm[k] * mXyIm[k]
+                    + mXyRe[mirror] * mXyRe[mirror] + mXyIm[mirror] * mXyIm[mirror]) / 2;
+            final float zPower = mZRe[k] * mZRe[k] + mZIm[k] * mZIm[k];
+            // The Nyquist bin has no mirror in the one-sided spectrum.
+            mBinPowers[k] = k == half ? (xyPower + zPower) / 2 : xyPower + zPower;
+        }
+
+        final double binHz = (size - 1) * NANOS_PER_SECOND / spanNs / size;
+        final long timestamp = mTimestamps[(oldest + size - 1) & (size - 1)];
+        for (int band = 0; band < mBands.length; ++band) {
+            final int lowBin = Math.max(1, (int) Math.ceil(mBands[band].getLowHz() / binHz));
+            final int highBin = (int) Math.min(half, Math.floor(mBands[band].getHighHz() / binHz));
+            float power = 0;
+            for (int k = lowBin; k <= highBin; ++k) {
+                power += mBinPowers[k];
+            }
+            updateBand(band, timestamp, power * mPowerScale);
+        }
+    }
+
+    private void updateBand(int band, long timestamp, float meanSquare) {
+        if (!mIsBandAlerted[band]) {
+            if (meanSquare > mEnterSquared[band]) {
+                mIsBandAlerted[band] = true;
+                mQueue.queueBandEnergyExceed(band, timestamp, (float) Math.sqrt(meanSquare));
+            }
+        } else if (meanSquare < mExitSquared[band]) {
+            mIsBandAlerted[band] = false;
+        }
+    }
+}
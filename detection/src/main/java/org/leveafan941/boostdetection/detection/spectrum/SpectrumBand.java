@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.spectrum;
+
+/**
+ * Immutable frequency band watched by the {@link SpectrumAnalyzer}.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SpectrumBand {
+
+    private final float mLowHz;
+    private final float mHighHz;
+    private final float mLimit;
+
+    /**
+     * @param lowHz lowest frequency of the band, inclusive.
+     * @param highHz highest frequency of the band, inclusive.
+     * @param limit RMS boost of the vibration within the band which raises an event, in m/s2.
+     */
+    public SpectrumBand(float lowHz, float highHz, float limit) {
+        if (!(lowHz >= 0) || !(highHz > lowHz)) {
+            throw new IllegalArgumentException("Invalid band: " + lowHz + " - " + highHz);
+        }
+
+        mLowHz = lowHz;
+        mHighHz = highHz;
+        mLimit = limit;
+    }
+
+    public float getLowHz() {
+        return mLowHz;
+    }
+
+    public float getHighHz() {
+        return mHighHz;
+    }
+
+    public float getLimit() {
+        return mLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "SpectrumBand{" + mLowHz + " - " + mHighHz + " Hz, limit=" + mLimit + "}";
+    }
+}
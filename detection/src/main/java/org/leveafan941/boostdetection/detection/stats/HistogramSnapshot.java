@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.stats;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}. Percentiles are reported as the highest value
+ * of the bucket they fall into, so they are never understated.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class HistogramSnapshot {
+
+    private final long[] mCounts;
+    private final long mTotalCount;
+    private final long mSum;
+    private final long mMax;
+
+    HistogramSnapshot(long[] counts, long totalCount, long sum, long max) {
+        mCounts = counts;
+        mTotalCount = totalCount;
+        mSum = sum;
+        mMax = max;
+    }
+
+    public long getCount() {
+        return mTotalCount;
+    }
+
+    public double getMean() {
+        return mTotalCount == 0 ? 0 : (double) mSum / mTotalCount;
+    }
+
+    /**
+     * @return exact max recorded value.
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return value which {@code percentile} percent of the recorded values do not exceed,
+     * 0 if nothing is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (mTotalCount == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mTotalCount));
+        long count = 0;
+        for (int i = 0; i < mCounts.length; ++i) {
+            count += mCounts[i];
+            if (count >= rank) {
+                return Math.min(LatencyHistogram.highestValueAt(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + mTotalCount + ", mean=" + (long) getMean()
+                + ", p50=" + getValueAtPercentile(50) + ", p90=" + getValueAtPercentile(90)
+                + ", p99=" + getValueAtPercentile(99) + ", p99.9=" + getValueAtPercentile(99.9)
+                + ", max=" + mMax + "}";
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values with log-linear buckets, like HdrHistogram: values below 64
+ * have a bucket each, larger ones 32 buckets per power of two, so a recorded value is off by
+ * at most 1/32 of it. Values up to 2^40, about 18 minutes in nanoseconds, are tracked, larger
+ * ones are counted in the last bucket. The buckets take about 9 KB.
+ * <p>
+ * Recording is a few arithmetic operations and an ordered store with no allocation, locks or
+ * atomic read-modify-write: a histogram must be recorded by a single thread. Snapshots can be
+ * taken from any thread, a snapshot taken during recording may miss the latest values.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class LatencyHistogram {
+
+    // Values below 2^SUB_BUCKET_BITS are exact, then each power of two has half as many buckets.
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_VALUE_BITS = 40;
+    static final long MAX_TRACKED_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    static final int BUCKET_COUNT = indexOf(MAX_TRACKED_VALUE) + 1;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a value, negative values are recorded as zero. Must be called by a single thread.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        final int index = indexOf(Math.min(value, MAX_TRACKED_VALUE));
+        mCounts.lazySet(index, mCounts.get(index) + 1);
+        mSum.lazySet(mSum.get() + value);
+        if (value > mMax.get()) {
+            mMax.lazySet(value);
+        }
+        mTotalCount.lazySet(mTotalCount.get() + 1);
+    }
+
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    /**
+     * Can be called from any thread.
+     */
+    public HistogramSnapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        long totalCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts[i] = mCounts.get(i);
+            totalCount += counts[i];
+        }
+        return new HistogramSnapshot(counts, totalCount, mSum.get(), mMax.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // The shift leaves the top SUB_BUCKET_BITS bits, the highest of them is always set.
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_BITS;
+        return (shift + 1) * SUB_BUCKET_HALF_COUNT
+                + (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    /**
+     * @return the lowest value counted in the bucket.
+     */
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        final long subBucket = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return subBucket << shift;
+    }
+
+    /**
+     * @return the highest value counted in the bucket.
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        return lowestValueAt(index + 1) - 1;
+    }
+}
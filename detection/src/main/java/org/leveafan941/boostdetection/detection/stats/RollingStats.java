@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.stats;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of the boost module over a sliding time window, updated in O(1) per sample with
+ * fixed memory. The window is split into panes: each pane keeps its count, Welford mean and
+ * variance, sum of squares, max and a sketch of the modules, and the window is the last
+ * {@code paneCount} complete panes. When a pane ends the panes are merged into a new
+ * {@link RollingStatsSnapshot}, so the window slides by one pane at a time and the cost of
+ * the merge is spread over the samples of the pane.
+ * <p>
+ * The sketch counts the modules in {@link LatencyHistogram} buckets of 1/100 m/s2, so the
+ * percentiles are off by at most 1/32 of the value or 0.01 m/s2. With the default pane count
+ * the statistics take about 15 KB. Samples must be passed from a single thread, the snapshot
+ * can be read from any thread.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class RollingStats {
+
+    public static final int DEFAULT_PANE_COUNT = 8;
+
+    private static final float SKETCH_UNITS_PER_BOOST = 100f;
+    private static final long MAX_SKETCH_VALUE = (1L << 16) - 1;
+    static final int SKETCH_BUCKET_COUNT = LatencyHistogram.indexOf(MAX_SKETCH_VALUE) + 1;
+
+    private final long mWindowNs;
+    private final long mPaneNs;
+    private final int mPaneCount;
+
+    // Columns of the complete panes and of the current one at mPaneIndex.
+    private final long[] mCounts;
+    private final double[] mMeans;
+    private final double[] mM2s;
+    private final double[] mSquareSums;
+    private final float[] mMaxes;
+    private final int[] mBuckets;
+    // Bucket counts of the complete panes summed up.
+    private final int[] mWindowBuckets = new int[SKETCH_BUCKET_COUNT];
+
+    private int mPaneIndex;
+    private long mPaneEndTimestamp;
+    private boolean mHasSamples = false;
+
+    private volatile RollingStatsSnapshot mSnapshot;
+
+    /**
+     * @param windowNs duration of the window, in nanoseconds.
+     * @param paneCount number of panes in the window, the window slides by
+     *                  {@code windowNs / paneCount}.
+     */
+    public RollingStats(long windowNs, int paneCount) {
+        if (paneCount <= 0) {
+            throw new IllegalArgumentException("Invalid pane count: " + paneCount);
+        }
+        if (windowNs < paneCount) {
+            throw new IllegalArgumentException("Invalid window: " + windowNs);
+        }
+
+        mWindowNs = windowNs;
+        mPaneNs = windowNs / paneCount;
+        mPaneCount = paneCount;
+
+        final int slotCount = paneCount + 1;
+        mCounts = new long[slotCount];
+        mMeans = new double[slotCount];
+        mM2s = new double[slotCount];
+        mSquareSums = new double[slotCount];
+        mMaxes = new float[slotCount];
+        mBuckets = new int[slotCount * SKETCH_BUCKET_COUNT];
+    }
+
+    public long getWindowNs() {
+        return mWindowNs;
+    }
+
+    /**
+     * @return true if a pane ended before the sample and the snapshot is updated.
+     */
+    public boolean onSample(long timestamp, float squaredModule) {
+        boolean isUpdated = false;
+        if (!mHasSamples) {
+            mHasSamples = true;
+            mPaneEndTimestamp = timestamp + mPaneNs;
+        } else if (timestamp >= mPaneEndTimestamp) {
+            endPanes(timestamp);
+            isUpdated = true;
+        }
+
+        final float module = (float) Math.sqrt(squaredModule);
+        final int pane = mPaneIndex;
+        final long count = ++mCounts[pane];
+        final double delta = module - mMeans[pane];
+        mMeans[pane] += delta / count;
+        mM2s[pane] += delta * (module - mMeans[pane]);
+        mSquareSums[pane] += squaredModule;
+        if (module > mMaxes[pane]) {
+            mMaxes[pane] = module;
+        }
+
+        final long sketchValue = (long) (module * SKETCH_UNITS_PER_BOOST + 0.5f);
+        ++mBuckets[pane * SKETCH_BUCKET_COUNT
+                + LatencyHistogram.indexOf(Math.min(sketchValue, MAX_SKETCH_VALUE))];
+        return isUpdated;
+    }
+
+    /**
+     * @return statistics of the latest complete window, null if no pane has ended yet.
+     */
+    public RollingStatsSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    private void endPanes(long timestamp) {
+        final long endedPaneCount = (timestamp - mPaneEndTimestamp) / mPaneNs + 1;
+        if (endedPaneCount > mPaneCount) {
+            // Nothing of the window is left after the gap.
+            for (int pane = 0; pane <= mPaneCount; ++pane) {
+                clearPane(pane);
+            }
+            Arrays.fill(mWindowBuckets, 0);
+        } else {
+            for (int i = 0; i < endedPaneCount; ++i) {
+                endPane();
+            }
+        }
+
+        mPaneEndTimestamp += endedPaneCount * mPaneNs;
+        mSnapshot = mergePanes(mPaneEndTimestamp - mPaneNs);
+    }
+
+    private void endPane() {
+        final int endedPane = mPaneIndex;
+        // The oldest complete pane leaves the window and becomes the current one.
+        final int nextPane = endedPane == mPaneCount ? 0 : endedPane + 1;
+
+        final int endedOffset = endedPane * SKETCH_BUCKET_COUNT;
+        final int nextOffset = nextPane * SKETCH_BUCKET_COUNT;
+        for (int i = 0; i < SKETCH_BUCKET_COUNT; ++i) {
+            mWindowBuckets[i] += mBuckets[endedOffset + i] - mBuckets[nextOffset + i];
+        }
+        clearPane(nextPane);
+        mPaneIndex = nextPane;
+    }
+
+    private void clearPane(int pane) {
+        mCounts[pane] = 0;
+        mMeans[pane] = 0;
+        mM2s[pane] = 0;
+        mSquareSums[pane] = 0;
+        mMaxes[pane] = 0;
+        Arrays.fill(mBuckets, pane * SKETCH_BUCKET_COUNT,
+                (pane + 1) * SKETCH_BUCKET_COUNT, 0);
+    }
+
+    private RollingStatsSnapshot mergePanes(long windowEndTimestamp) {
+        long count = 0;
+        double mean = 0;
+        double m2 = 0;
+        double squareSum = 0;
+        float max = 0;
+        for (int pane = 0; pane <= mPaneCount; ++pane) {
+            final long paneCount = mCounts[pane];
+            if (pane == mPaneIndex || paneCount == 0) {
+                continue;
+            }
+
+            // Chan's formula merges the Welford states of two sample sets.
+            final long mergedCount = count + paneCount;
+            final double delta = mMeans[pane] - mean;
+            mean += delta * paneCount / mergedCount;
+            m2 += mM2s[pane] + delta * delta * count * paneCount / mergedCount;
+            count = mergedCount;
+            squareSum += mSquareSums[pane];
+            max = Math.max(max, mMaxes[pane]);
+        }
+
+        if (count == 0) {
+            return new RollingStatsSnapshot(windowEndTimestamp, mWindowNs, 0, 0, 0, 0, 0, 0, 0);
+        }
+        return new RollingStatsSnapshot(windowEndTimestamp, mWindowNs, count, (float) mean,
+                (float) (m2 / count), (float) Math.sqrt(squareSum / count), max,
+                valueAtPercentile(95, count, max), valueAtPercentile(99, count, max));
+    }
+
+    private float valueAtPercentile(double percentile, long count, float max) {
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long bucketCount = 0;
+        for (int i = 0; i < SKETCH_BUCKET_COUNT; ++i) {
+            bucketCount += mWindowBuckets[i];
+            if (bucketCount >= rank) {
+                return Math.min(LatencyHistogram.highestValueAt(i) / SKETCH_UNITS_PER_BOOST,
+                        max);
+            }
+        }
+        return max;
+    }
+}
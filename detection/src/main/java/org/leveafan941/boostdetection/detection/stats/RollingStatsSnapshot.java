@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.stats;
+
+/**
+ * Immutable statistics of the boost module over a window of {@link RollingStats}.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class RollingStatsSnapshot {
+
+    private final long mWindowEndTimestamp;
+    private final long mWindowNs;
+    private final long mCount;
+    private final float mMean;
+    private final float mVariance;
+    private final float mRms;
+    private final float mMax;
+    private final float mP95;
+    private final float mP99;
+
+    RollingStatsSnapshot(long windowEndTimestamp, long windowNs, long count, float mean,
+                         float variance, float rms, float max, float p95, float p99) {
+        mWindowEndTimestamp = windowEndTimestamp;
+        mWindowNs = windowNs;
+        mCount = count;
+        mMean = mean;
+        mVariance = variance;
+        mRms = rms;
+        mMax = max;
+        mP95 = p95;
+        mP99 = p99;
+    }
+
+    /**
+     * @return sensor timestamp the window ends at, in nanoseconds.
+     */
+    public long getWindowEndTimestamp() {
+        return mWindowEndTimestamp;
+    }
+
+    public long getWindowNs() {
+        return mWindowNs;
+    }
+
+    /**
+     * @return number of samples in the window, the statistics are zero if there are none.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    public float getMean() {
+        return mMean;
+    }
+
+    public float getVariance() {
+        return mVariance;
+    }
+
+    public float getStandardDeviation() {
+        return (float) Math.sqrt(mVariance);
+    }
+
+    public float getRms() {
+        return mRms;
+    }
+
+    public float getMax() {
+        return mMax;
+    }
+
+    /**
+     * @return approximate 95th percentile, never below the exact one.
+     */
+    public float getP95() {
+        return mP95;
+    }
+
+    /**
+     * @return approximate 99th percentile, never below the exact one.
+     */
+    public float getP99() {
+        return mP99;
+    }
+
+    @Override
+    public String toString() {
+        return "RollingStatsSnapshot{end=" + mWindowEndTimestamp + ", windowNs=" + mWindowNs
+                + ", count=" + mCount + ", mean=" + mMean + ", sd=" + getStandardDeviation()
+                + ", rms=" + mRms + ", p95=" + mP95 + ", p99=" + mP99 + ", max=" + mMax + "}";
+    }
+}
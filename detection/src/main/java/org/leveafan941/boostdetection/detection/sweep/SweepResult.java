@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.sweep;
+
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Exceed counts of a {@link ThresholdSweep}, summed over all traces, in the order
+ * of the settings.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class SweepResult {
+
+    private static final double NANOS_IN_SECOND = 1e9;
+
+    private final List<TriggerSettings> mSettings;
+    private final long[] mExceedCounts;
+    private final int mTraceCount;
+    private final long mSampleCount;
+    private final long mElapsedNs;
+
+    SweepResult(List<TriggerSettings> settings, long[] exceedCounts, int traceCount,
+                long sampleCount, long elapsedNs) {
+        mSettings = settings;
+        mExceedCounts = exceedCounts;
+        mTraceCount = traceCount;
+        mSampleCount = sampleCount;
+        mElapsedNs = elapsedNs;
+    }
+
+    public int size() {
+        return mExceedCounts.length;
+    }
+
+    public TriggerSettings getSettings(int index) {
+        return mSettings.get(index);
+    }
+
+    public long getExceedCount(int index) {
+        return mExceedCounts[index];
+    }
+
+    public int getTraceCount() {
+        return mTraceCount;
+    }
+
+    /**
+     * @return number of samples in all traces, each one is evaluated against every setting.
+     */
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    public long getElapsedNs() {
+        return mElapsedNs;
+    }
+
+    /**
+     * @return samples evaluated against a setting per second.
+     */
+    public double getEvaluationsPerSecond() {
+        return mElapsedNs == 0 ? 0
+                : (double) mSampleCount * size() * NANOS_IN_SECOND / mElapsedNs;
+    }
+
+    /**
+     * Writes a line of the limit, hysteresis, min dwell time, refractory period and exceed
+     * count for every setting, after a header line.
+     */
+    public void writeCsv(Appendable output) throws IOException {
+        output.append("boost_limit,hysteresis,min_dwell_ns,refractory_ns,exceeds\n");
+        for (int i = 0; i < size(); ++i) {
+            final TriggerSettings settings = mSettings.get(i);
+            output.append(String.valueOf(settings.getBoostLimit())).append(',')
+                    .append(String.valueOf(settings.getHysteresis())).append(',')
+                    .append(String.valueOf(settings.getMinDwellNs())).append(',')
+                    .append(String.valueOf(settings.getRefractoryNs())).append(',')
+                    .append(String.valueOf(mExceedCounts[i])).append('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SweepResult{settings=" + size() + ", traces=" + mTraceCount
+                + ", samples=" + mSampleCount + ", elapsedNs=" + mElapsedNs
+                + ", evaluationsPerSecond=" + (long) getEvaluationsPerSecond() + "}";
+    }
+}
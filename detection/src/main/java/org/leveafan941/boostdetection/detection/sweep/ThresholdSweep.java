@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.sweep;
+
+import org.leveafan941.boostdetection.detection.ExceedCounter;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the exceed episodes of many trigger settings over a corpus of traces, to choose
+ * the limit and the hysteresis from recorded data.
+ * <p>
+ * The work is split with fork/join: a task per trace loads it once as squared modules and
+ * forks tasks over ranges of the settings. A range task walks the trace in chunks small enough
+ * to stay in the core cache and runs every setting of the range over a chunk before moving to
+ * the next one, so the memory bandwidth does not limit the scaling with the core count. A trace
+ * is not split between tasks, the trigger state of a sample depends on all samples before it.
+ * The samples of the traces being evaluated are held in memory, 12 bytes per sample.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+public final class ThresholdSweep {
+
+    // 96 KB of timestamps and squared modules.
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int SETTINGS_PER_TASK = 16;
+
+    private final ForkJoinPool mPool;
+
+    /**
+     * Thrown from the tasks to pass a failed trace load to {@link #run}.
+     */
+    private static final class TraceLoadException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        TraceLoadException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    public ThresholdSweep() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ThresholdSweep(int parallelism) {
+        mPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @return settings for every combination of {@code limitCount} limits spread evenly from
+     * {@code minLimit} to {@code maxLimit} and the hysteresis values, ordered by the limit.
+     */
+    public static List<TriggerSettings> grid(float minLimit, float maxLimit, int limitCount,
+                                             float[] hysteresisValues, long minDwellNs,
+                                             long refractoryNs) {
+        if (limitCount < 1) {
+            throw new IllegalArgumentException("Invalid limit count: " + limitCount);
+        }
+
+        final List<TriggerSettings> settings =
+                new ArrayList<>(limitCount * hysteresisValues.length);
+        for (int i = 0; i < limitCount; ++i) {
+            final float limit = limitCount == 1 ? minLimit
+                    : minLimit + (maxLimit - minLimit) * i / (limitCount - 1);
+            for (float hysteresis : hysteresisValues) {
+                settings.add(new TriggerSettings(limit, hysteresis, minDwellNs, refractoryNs));
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Evaluates every setting over every trace, each trace from the idle state.
+     */
+    public SweepResult run(final List<File> traces, List<TriggerSettings> settings)
+            throws IOException {
+        final AtomicLongArray exceedCounts = new AtomicLongArray(settings.size());
+        final AtomicLongArray sampleCount = new AtomicLongArray(1);
+        final TriggerSettings[] settingsArray = settings.toArray(new TriggerSettings[0]);
+        final long startNs = System.nanoTime();
+
+        try {
+            mPool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    final List<TraceTask> tasks = new ArrayList<>(traces.size());
+                    for (File trace : traces) {
+                        tasks.add(new TraceTask(trace, settingsArray, exceedCounts,
+                                sampleCount));
+                    }
+                    invokeAll(tasks);
+                }
+            });
+        } catch (TraceLoadException e) {
+            throw (IOException) e.getCause();
+        }
+
+        final long[] counts = new long[settings.size()];
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = exceedCounts.get(i);
+        }
+        return new SweepResult(Collections.unmodifiableList(new ArrayList<>(settings)),
+                counts, traces.size(), sampleCount.get(0), System.nanoTime() - startNs);
+    }
+
+    public void shutdown() {
+        mPool.shutdown();
+    }
+
+    private static final class TraceTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File mTrace;
+        private final TriggerSettings[] mSettings;
+        private final AtomicLongArray mExceedCounts;
+        private final AtomicLongArray mSampleCount;
+
+        TraceTask(File trace, TriggerSettings[] settings, AtomicLongArray exceedCounts,
+                  AtomicLongArray sampleCount) {
+            mTrace = trace;
+            mSettings = settings;
+            mExceedCounts = exceedCounts;
+            mSampleCount = sampleCount;
+        }
+
+        @Override
+        protected void compute() {
+            final TraceSamples samples;
+            try {
+                samples = TraceSamples.load(mTrace);
+            } catch (IOException e) {
+                throw new TraceLoadException(e);
+            }
+
+            mSampleCount.addAndGet(0, samples.mSize);
+            new SettingsRangeTask(samples, mSettings, 0, mSettings.length, mExceedCounts)
+                    .compute();
+        }
+    }
+
+    private static final class SettingsRangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TraceSamples mSamples;
+        private final TriggerSettings[] mSettings;
+        private final int mStart;
+        private final int mEnd;
+        private final AtomicLongArray mExceedCounts;
+
+        SettingsRangeTask(TraceSamples samples, TriggerSettings[] settings, int start, int end,
+                          AtomicLongArray exceedCounts) {
+            mSamples = samples;
+            mSettings = settings;
+            mStart = start;
+            mEnd = end;
+            mExceedCounts = exceedCounts;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart > SETTINGS_PER_TASK) {
+                final int middle = (mStart + mEnd) >>> 1;
+                invokeAll(new SettingsRangeTask(mSamples, mSettings, mStart, middle,
+                                mExceedCounts),
+                        new SettingsRangeTask(mSamples, mSettings, middle, mEnd,
+                                mExceedCounts));
+                return;
+            }
+
+            final ExceedCounter[] counters = new ExceedCounter[mEnd - mStart];
+            for (int i = 0; i < counters.length; ++i) {
+                counters[i] = new ExceedCounter(mSettings[mStart + i]);
+            }
+
+            final long[] timestamps = mSamples.mTimestamps;
+            final float[] squaredModules = mSamples.mSquaredModules;
+            final int size = mSamples.mSize;
+            for (int chunkStart = 0; chunkStart < size; chunkStart += CHUNK_SIZE) {
+                final int chunkSize = Math.min(CHUNK_SIZE, size - chunkStart);
+                for (ExceedCounter counter : counters) {
+                    counter.onSquaredModules(timestamps, squaredModules, chunkStart, chunkSize);
+                }
+            }
+
+            for (int i = 0; i < counters.length; ++i) {
+                mExceedCounts.addAndGet(mStart + i, counters[i].getExceedCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016 Alexey Kuzin <amkuzink@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.leveafan941.boostdetection.detection.sweep;
+
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.leveafan941.boostdetection.detection.replay.TraceFiles;
+import org.leveafan941.boostdetection.detection.replay.TraceReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Timestamps and squared boost modules of a whole trace, loaded once to be evaluated against
+ * many settings.
+ *
+ * @author Alexey Kuzin (amkuzink@gmail.com)
+ */
+final class TraceSamples {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int CHUNK_SIZE = 1024;
+
+    long[] mTimestamps = new long[INITIAL_CAPACITY];
+    float[] mSquaredModules = new float[INITIAL_CAPACITY];
+    int mSize = 0;
+
+    static TraceSamples load(File trace) throws IOException {
+        final TraceSamples samples = new TraceSamples();
+        final long[] timestamps = new long[CHUNK_SIZE];
+        final float[] xBoosts = new float[CHUNK_SIZE];
+        final float[] yBoosts = new float[CHUNK_SIZE];
+        final float[] zBoosts = new float[CHUNK_SIZE];
+        final float[] squaredModules = new float[CHUNK_SIZE];
+
+        final TraceReader reader = TraceFiles.openReader(trace);
+        try {
+            int count;
+            while ((count = reader.read(timestamps, xBoosts, yBoosts, zBoosts, CHUNK_SIZE))
+                    != TraceReader.END_OF_TRACE) {
+                samples.ensureCapacity(samples.mSize + count);
+                System.arraycopy(timestamps, 0, samples.mTimestamps, samples.mSize, count);
+                BoostLimitDetector.calcSquaredModules(xBoosts, yBoosts, zBoosts, 0,
+                        squaredModules, count);
+                System.arraycopy(squaredModules, 0, samples.mSquaredModules, samples.mSize,
+                        count);
+                samples.mSize += count;
+            }
+        } finally {
+            reader.close();
+        }
+        return samples;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mTimestamps.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, mTimestamps.length * 2);
+        mTimestamps = Arrays.copyOf(mTimestamps, newCapacity);
+        mSquaredModules = Arrays.copyOf(mSquaredModules, newCapacity);
+    }
+}
@@ -0,0 +1,400 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.leveafan941.boostdetection.detection.filter.ExponentialFilter;
+import org.leveafan941.boostdetection.detection.filter.FilterPipeline;
+import org.leveafan941.boostdetection.detection.filter.MedianFilter;
+import org.leveafan941.boostdetection.detection.filter.SampleFilter;
+import org.leveafan941.boostdetection.detection.spectrum.BandEnergyQueue;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumAnalyzer;
+import org.leveafan941.boostdetection.detection.spectrum.SpectrumBand;
+import org.leveafan941.boostdetection.detection.stats.RollingStatistic;
+import org.leveafan941.boostdetection.detection.stats.RollingStatsSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic bursts of samples, as they are flushed from a batched sensor FIFO,
+ * through {@link BoostLimitDetector}.
+ */
+public class BoostLimitDetectorTest {
+
+    private static final float BOOST_LIMIT = 5f;
+    private static final long SAMPLE_PERIOD_NS = 20000000L;
+
+    private RecordingEventQueue mEventQueue;
+    private BoostLimitDetector mDetector;
+    private long mNextTimestamp;
+
+    private static class RecordingEventQueue implements AccelerometerEventQueue {
+
+        final List<Long> mTimestamps = new ArrayList<>();
+        final List<Float> mValues = new ArrayList<>();
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            mTimestamps.add(timestamp);
+            mValues.add(boostValue);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mEventQueue = new RecordingEventQueue();
+        mDetector = new BoostLimitDetector(mEventQueue, BOOST_LIMIT);
+        mNextTimestamp = 1000000000L;
+    }
+
+    @Test
+    public void burst_crossingHasSampleTimestamp() throws Exception {
+        final long lastTimestamp = replayBurst(new float[] {1f, 2f, 3f, 6f, 7f, 2f});
+        final long expected = lastTimestamp - 2 * SAMPLE_PERIOD_NS;
+
+        assertEquals(1, mEventQueue.mTimestamps.size());
+        assertEquals(expected, mEventQueue.mTimestamps.get(0).longValue());
+        assertEquals(6f, mEventQueue.mValues.get(0), 1e-6f);
+    }
+
+    @Test
+    public void burst_everyCrossingIsQueued() throws Exception {
+        replayBurst(new float[] {6f, 1f, 6f, 1f, 6f, 6f, 6f, 1f});
+
+        assertEquals(3, mEventQueue.mTimestamps.size());
+        assertEquals(SAMPLE_PERIOD_NS * 2,
+                mEventQueue.mTimestamps.get(1) - mEventQueue.mTimestamps.get(0));
+        assertEquals(SAMPLE_PERIOD_NS * 2,
+                mEventQueue.mTimestamps.get(2) - mEventQueue.mTimestamps.get(1));
+    }
+
+    @Test
+    public void exceedSpanningBursts_queuedOnce() throws Exception {
+        replayBurst(new float[] {1f, 6f, 7f});
+        replayBurst(new float[] {8f, 7f, 6f});
+        replayBurst(new float[] {6f, 1f});
+
+        assertEquals(1, mEventQueue.mTimestamps.size());
+    }
+
+    @Test
+    public void largeBursts_crossingsMatchSampleCount() throws Exception {
+        final int burstCount = 100;
+        final int burstSize = 64;
+        final float[] burst = new float[burstSize];
+        for (int i = 0; i < burstSize; ++i) {
+            burst[i] = (i % 8 == 0) ? 10f : 0.5f;
+        }
+
+        for (int i = 0; i < burstCount; ++i) {
+            replayBurst(burst);
+        }
+
+        assertEquals(burstCount * burstSize / 8, mEventQueue.mTimestamps.size());
+        for (int i = 1; i < mEventQueue.mTimestamps.size(); ++i) {
+            assertEquals(8 * SAMPLE_PERIOD_NS,
+                    mEventQueue.mTimestamps.get(i) - mEventQueue.mTimestamps.get(i - 1));
+        }
+    }
+
+    @Test
+    public void limitChangedBetweenBursts_appliedToNextSample() throws Exception {
+        replayBurst(new float[] {4f, 4f});
+        mDetector.setBoostLimit(3f);
+        replayBurst(new float[] {4f});
+
+        assertEquals(1, mEventQueue.mTimestamps.size());
+    }
+
+    @Test
+    public void negativeLimit_everySampleExceeds() throws Exception {
+        mDetector.setBoostLimit(-1f);
+        replayBurst(new float[] {0f, 0f});
+
+        assertEquals(1, mEventQueue.mTimestamps.size());
+    }
+
+    @Test
+    public void batch_sameEventsAsSingleSamples() throws Exception {
+        assertBatchMatchesSingleSamples(null, null);
+    }
+
+    @Test
+    public void batchWithFilter_sameEventsAsSingleSamples() throws Exception {
+        assertBatchMatchesSingleSamples(
+                new FilterPipeline(new MedianFilter(3), new ExponentialFilter(0.5f)),
+                new FilterPipeline(new MedianFilter(3), new ExponentialFilter(0.5f)));
+    }
+
+    @Test
+    public void medianFilter_spikeIgnored() throws Exception {
+        mDetector.setSampleFilter(new MedianFilter(3));
+        replayBurst(new float[] {1f, 1f, 9f, 1f, 1f, 6f, 6f, 1f});
+
+        assertEquals(1, mEventQueue.mTimestamps.size());
+    }
+
+    @Test
+    public void thresholdIndex_tiersCrossedNextToLimit() throws Exception {
+        final List<Integer> crossedIds = new ArrayList<>();
+        final ThresholdCrossingQueue crossingQueue = new ThresholdCrossingQueue() {
+            @Override
+            public void queueThresholdCrossing(int thresholdId, long timestamp,
+                                               float boostValue) {
+                crossedIds.add(thresholdId);
+            }
+        };
+        replayBurst(new float[] {3f});
+        mDetector.setThresholdIndex(ThresholdIndex.empty(0f).withThreshold(1, 2f)
+                .withThreshold(2, 8f), crossingQueue);
+
+        // The first tier is already crossed when the index is applied, it is not reported.
+        replayBurst(new float[] {3f, 9f, 1f, 3f});
+
+        assertEquals(1, mEventQueue.mTimestamps.size());
+        assertEquals(Arrays.asList(2, 1), crossedIds);
+    }
+
+    @Test
+    public void sustainedVibration_alertedOnceUntilCalm() throws Exception {
+        final List<Float> alertValues = new ArrayList<>();
+        final VibrationAlertQueue alertQueue = new VibrationAlertQueue() {
+            @Override
+            public void queueVibrationAlert(long timestamp, float value) {
+                alertValues.add(value);
+            }
+        };
+        // Panes of 4 samples.
+        mDetector.setVibrationSettings(new VibrationSettings(32 * SAMPLE_PERIOD_NS,
+                RollingStatistic.RMS, 3f, 0.2f), alertQueue);
+
+        final float[] calm = new float[64];
+        Arrays.fill(calm, 1f);
+        final float[] rough = new float[64];
+        for (int i = 0; i < rough.length; ++i) {
+            rough[i] = i % 2 == 0 ? 0f : 4.5f;
+        }
+        replayBurst(calm);
+        replayBurst(rough);
+        replayBurst(rough);
+        assertEquals(1, alertValues.size());
+        assertTrue(alertValues.get(0) > 3f);
+
+        replayBurst(calm);
+        replayBurst(rough);
+        assertEquals(2, alertValues.size());
+        assertTrue(mEventQueue.mTimestamps.isEmpty());
+
+        final RollingStatsSnapshot stats = mDetector.getVibrationStats();
+        assertEquals(32, stats.getCount());
+        assertEquals(Math.sqrt(4.5 * 4.5 / 2), stats.getRms(), 1e-4);
+
+        mDetector.setVibrationSettings(null, null);
+        assertNull(mDetector.getVibrationStats());
+    }
+
+    @Test
+    public void gapInSamples_exceedMarkedDegraded() throws Exception {
+        final List<Long> degradedTimestamps = new ArrayList<>();
+        final SampleRateMonitor rateMonitor = new SampleRateMonitor();
+        rateMonitor.setNominalIntervalNs(SAMPLE_PERIOD_NS);
+        mDetector.setSampleRateMonitor(rateMonitor, new DegradedExceedQueue() {
+            @Override
+            public void queueDegradedExceed(long timestamp, float boostValue) {
+                degradedTimestamps.add(timestamp);
+            }
+        });
+
+        replayBurst(new float[] {1f, 6f, 1f, 1f});
+        // The FIFO overflowed and 10 samples were lost.
+        mNextTimestamp += 10 * SAMPLE_PERIOD_NS;
+        final long degradedTimestamp = replayBurst(new float[] {6f});
+
+        assertEquals(2, mEventQueue.mTimestamps.size());
+        assertEquals(Arrays.asList(degradedTimestamp), degradedTimestamps);
+        assertEquals(10, rateMonitor.getStats().getDroppedCount());
+    }
+
+    @Test
+    public void samplingRateSwitch_evenSamplesNotDegraded() throws Exception {
+        final List<Long> degradedTimestamps = new ArrayList<>();
+        final SampleRateMonitor rateMonitor = new SampleRateMonitor();
+        mDetector.setSampleRateMonitor(rateMonitor, new DegradedExceedQueue() {
+            @Override
+            public void queueDegradedExceed(long timestamp, float boostValue) {
+                degradedTimestamps.add(timestamp);
+            }
+        });
+
+        // Slow rate, then the fast one requested as the boost approaches the limit.
+        final long slowIntervalNs = 200000000L;
+        final long fastIntervalNs = 5000000L;
+        rateMonitor.setNominalIntervalNs(slowIntervalNs);
+        long timestamp = 0;
+        for (int i = 0; i < 50; ++i) {
+            timestamp += slowIntervalNs;
+            mDetector.onSample(timestamp, 0f, 1f, 0f);
+        }
+        rateMonitor.setNominalIntervalNs(fastIntervalNs);
+        for (int i = 0; i < 200; ++i) {
+            timestamp += fastIntervalNs;
+            mDetector.onSample(timestamp, 0f, i % 10 == 5 ? 6f : 1f, 0f);
+        }
+
+        assertEquals(20, mEventQueue.mTimestamps.size());
+        assertTrue(degradedTimestamps.isEmpty());
+        assertEquals(200.0, rateMonitor.getStats().getEffectiveRateHz(), 0.01);
+    }
+
+    @Test
+    public void detectionConfig_changesKeepOtherStagesAndOldSnapshot() throws Exception {
+        final SampleFilter filter = new MedianFilter(3);
+        final SampleRateMonitor rateMonitor = new SampleRateMonitor();
+        mDetector.setSampleFilter(filter);
+        final DetectionConfig filtered = mDetector.getConfig();
+        mDetector.setSampleRateMonitor(rateMonitor, null);
+        mDetector.setBoostLimit(7f);
+
+        final DetectionConfig config = mDetector.getConfig();
+        assertSame(filter, config.getSampleFilter());
+        assertSame(rateMonitor, config.getSampleRateMonitor());
+        assertEquals(7f, config.getTriggerSettings().getBoostLimit(), 0f);
+        // Published snapshots are never changed.
+        assertNull(filtered.getSampleRateMonitor());
+        assertEquals(BOOST_LIMIT, filtered.getTriggerSettings().getBoostLimit(), 0f);
+
+        mDetector.setConfig(mDetector.getConfig().toBuilder()
+                .setTriggerSettings(TriggerSettings.forLimit(2f)).setSampleFilter(null).build());
+        replayBurst(new float[] {1f, 3f});
+        assertEquals(1, mEventQueue.mTimestamps.size());
+        assertNull(mDetector.getConfig().getSampleFilter());
+        assertSame(rateMonitor, mDetector.getSampleRateMonitor());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void detectionConfig_thresholdsWithoutQueueRejected() throws Exception {
+        new DetectionConfig.Builder(TriggerSettings.forLimit(BOOST_LIMIT))
+                .setThresholdIndex(ThresholdIndex.empty(0.2f).withThreshold(0, 4f))
+                .build();
+    }
+
+    @Test
+    public void batch_eventsOfAllStagesInSampleOrder() throws Exception {
+        final int count = 600;
+        final long[] timestamps = new long[count];
+        final float[] xBoosts = new float[count];
+        final float[] yBoosts = new float[count];
+        final float[] zBoosts = new float[count];
+        for (int i = 0; i < count; ++i) {
+            timestamps[i] = i * SAMPLE_PERIOD_NS;
+            // Bumps along the vertical axis on top of a 20 Hz vibration along the longitudinal.
+            yBoosts[i] = (float) (4 * Math.sin(2 * Math.PI * 20 * i * SAMPLE_PERIOD_NS / 1e9));
+            zBoosts[i] = i % 100 < 3 ? 8f : 0f;
+        }
+
+        final List<String> singleEvents = new ArrayList<>();
+        final BoostLimitDetector singleDetector = createAllEventsDetector(singleEvents);
+        for (int i = 0; i < count; ++i) {
+            singleDetector.onSample(timestamps[i], xBoosts[i], yBoosts[i], zBoosts[i]);
+        }
+        final List<String> batchEvents = new ArrayList<>();
+        final BoostLimitDetector batchDetector = createAllEventsDetector(batchEvents);
+        batchDetector.onSamples(timestamps, xBoosts, yBoosts, zBoosts, 0, 300);
+        batchDetector.onSamples(timestamps, xBoosts, yBoosts, zBoosts, 300, count - 300);
+
+        assertTrue(singleEvents.contains("band 0"));
+        assertTrue(singleEvents.contains("axis " + VehicleFrame.AXIS_VERTICAL));
+        assertTrue(singleEvents.contains("limit"));
+        assertEquals(singleEvents, batchEvents);
+    }
+
+    @Test
+    public void squaredModule_matchesModule() throws Exception {
+        assertEquals(25f, BoostLimitDetector.calcSquaredModule(3f, 0f, 4f), 0f);
+        assertEquals(5f, BoostLimitDetector.calcDeviceBoost(3f, 0f, 4f), 0f);
+    }
+
+    private void assertBatchMatchesSingleSamples(SampleFilter singleFilter,
+                                                 SampleFilter batchFilter) {
+        final int count = 1000;
+        final long[] timestamps = new long[count];
+        final float[] xBoosts = new float[count];
+        final float[] yBoosts = new float[count];
+        final float[] zBoosts = new float[count];
+        final Random random = new Random(1);
+        for (int i = 0; i < count; ++i) {
+            timestamps[i] = i * SAMPLE_PERIOD_NS;
+            xBoosts[i] = (float) random.nextGaussian() * 3f;
+            yBoosts[i] = (float) random.nextGaussian() * 3f;
+            zBoosts[i] = (float) random.nextGaussian() * 3f;
+        }
+
+        mDetector.setSampleFilter(singleFilter);
+        for (int i = 0; i < count; ++i) {
+            mDetector.onSample(timestamps[i], xBoosts[i], yBoosts[i], zBoosts[i]);
+        }
+
+        final RecordingEventQueue batchQueue = new RecordingEventQueue();
+        final BoostLimitDetector batchDetector = new BoostLimitDetector(batchQueue, BOOST_LIMIT);
+        batchDetector.setSampleFilter(batchFilter);
+        // Uneven batches, so the state is carried between calls and chunks.
+        batchDetector.onSamples(timestamps, xBoosts, yBoosts, zBoosts, 0, 7);
+        batchDetector.onSamples(timestamps, xBoosts, yBoosts, zBoosts, 7, 600);
+        batchDetector.onSamples(timestamps, xBoosts, yBoosts, zBoosts, 607, count - 607);
+
+        assertFalse(mEventQueue.mTimestamps.isEmpty());
+        assertEquals(mEventQueue.mTimestamps, batchQueue.mTimestamps);
+        assertEquals(mEventQueue.mValues, batchQueue.mValues);
+    }
+
+    /**
+     * Delivers the samples back to back with evenly spaced sensor timestamps.
+     *
+     * @return timestamp of the last sample in the burst.
+     */
+    /**
+     * @return detector which records the limit, band energy and axis events to the list.
+     */
+    private static BoostLimitDetector createAllEventsDetector(final List<String> events) {
+        final BoostLimitDetector detector = new BoostLimitDetector(
+                new AccelerometerEventQueue() {
+                    @Override
+                    public void queueBoostLimitExceed(long timestamp, float boostValue) {
+                        events.add("limit");
+                    }
+                }, BOOST_LIMIT);
+        detector.setSpectrumAnalyzer(new SpectrumAnalyzer(16, 0.2f, new BandEnergyQueue() {
+            @Override
+            public void queueBandEnergyExceed(int band, long timestamp, float rmsBoost) {
+                events.add("band " + band);
+            }
+        }, new SpectrumBand(15, 25, 1f)));
+
+        final TriggerSettings axisSettings = TriggerSettings.forLimit(6f);
+        final VehicleFrame vehicleFrame = new VehicleFrame(new AxisExceedQueue() {
+            @Override
+            public void queueAxisExceed(int axis, long timestamp, float boostValue) {
+                events.add("axis " + axis);
+            }
+        });
+        vehicleFrame.onGravity(0f, 0f, 9.81f);
+        detector.setVehicleFrame(vehicleFrame);
+        detector.setAxisTriggerSettings(
+                new AxisTriggerSettings(axisSettings, axisSettings, axisSettings));
+        return detector;
+    }
+
+    private long replayBurst(float[] boostModules) {
+        long timestamp = 0;
+        for (float boostModule : boostModules) {
+            timestamp = mNextTimestamp;
+            mDetector.onSample(timestamp, 0f, boostModule, 0f);
+            mNextTimestamp += SAMPLE_PERIOD_NS;
+        }
+        return timestamp;
+    }
+}
@@ -0,0 +1,98 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks ordering, overflow and that the steady state hand-off allocates nothing.
+ */
+public class BoostLimitEventRingTest {
+
+    private static class CountingListener implements AccelerometerEventQueue {
+
+        long mCount;
+        long mLastTimestamp = -1;
+        float mValueSum;
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float value) {
+            assertTrue(timestamp > mLastTimestamp);
+            mLastTimestamp = timestamp;
+            mValueSum += value;
+            ++mCount;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityNotPowerOfTwo_throws() throws Exception {
+        new BoostLimitEventRing(3);
+    }
+
+    @Test
+    public void drain_preservesOrderAndValues() throws Exception {
+        final BoostLimitEventRing ring = new BoostLimitEventRing(4);
+        final CountingListener listener = new CountingListener();
+
+        assertTrue(ring.offer(1, 1f));
+        assertTrue(ring.offer(2, 2f));
+        assertTrue(ring.offer(3, 3f));
+
+        assertEquals(3, ring.drain(listener));
+        assertEquals(3, listener.mLastTimestamp);
+        assertEquals(6f, listener.mValueSum, 1e-6f);
+        assertEquals(0, ring.drain(listener));
+    }
+
+    @Test
+    public void fullRing_dropsAndCounts() throws Exception {
+        final BoostLimitEventRing ring = new BoostLimitEventRing(2);
+
+        assertTrue(ring.offer(1, 1f));
+        assertTrue(ring.offer(2, 1f));
+        assertFalse(ring.offer(3, 1f));
+        assertEquals(1, ring.getDroppedCount());
+
+        ring.drain(new CountingListener());
+        assertTrue(ring.offer(4, 1f));
+    }
+
+    @Test
+    public void steadyState_allocatesNothing() throws Exception {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocBean =
+                (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(allocBean.isThreadAllocatedMemorySupported());
+        allocBean.setThreadAllocatedMemoryEnabled(true);
+
+        final BoostLimitEventRing ring = new BoostLimitEventRing(64);
+        final CountingListener listener = new CountingListener();
+        final long threadId = Thread.currentThread().getId();
+
+        // Warm up, so class loading and compilation are not counted.
+        runHandOff(ring, listener, 0, 100000);
+
+        final long allocatedBefore = allocBean.getThreadAllocatedBytes(threadId);
+        runHandOff(ring, listener, 100000, 1000000);
+        final long allocatedAfter = allocBean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(1100000, listener.mCount);
+        assertEquals(0, allocatedAfter - allocatedBefore);
+    }
+
+    private static void runHandOff(BoostLimitEventRing ring, CountingListener listener,
+                                   long firstTimestamp, int eventCount) {
+        for (int i = 0; i < eventCount; ++i) {
+            ring.offer(firstTimestamp + i, 1f);
+            if (i % 16 == 15) {
+                ring.drain(listener);
+            }
+        }
+        ring.drain(listener);
+    }
+}
@@ -0,0 +1,138 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks hysteresis, dwell time and refractory period, and replays noisy traces to compare
+ * the number of reported exceeds with the plain limit crossing.
+ */
+public class BoostTriggerTest {
+
+    private static final float BOOST_LIMIT = 5f;
+    private static final long SAMPLE_PERIOD_NS = 5000000L;
+
+    private BoostTrigger mTrigger;
+    private long mTimestamp;
+
+    @Before
+    public void setUp() throws Exception {
+        mTrigger = new BoostTrigger();
+        mTimestamp = 0;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidHysteresis_throws() throws Exception {
+        new TriggerSettings(BOOST_LIMIT, 1f, 0, 0);
+    }
+
+    @Test
+    public void plainLimit_everyCrossingReported() throws Exception {
+        final TriggerSettings settings = TriggerSettings.forLimit(BOOST_LIMIT);
+
+        assertEquals(3, replay(settings, 6f, 4f, 6f, 6f, 4f, 6f));
+    }
+
+    @Test
+    public void hysteresis_oscillationAroundLimitReportedOnce() throws Exception {
+        final TriggerSettings settings = new TriggerSettings(BOOST_LIMIT, 0.2f, 0, 0);
+
+        assertEquals(1, replay(settings, 6f, 4.5f, 5.5f, 4.1f, 6f));
+        assertEquals(1, replay(settings, 3.9f, 6f));
+    }
+
+    @Test
+    public void minDwell_shortSpikeIgnored() throws Exception {
+        final TriggerSettings settings = new TriggerSettings(BOOST_LIMIT, 0f,
+                2 * SAMPLE_PERIOD_NS, 0);
+
+        assertEquals(0, replay(settings, 9f, 9f, 1f));
+        assertEquals(1, replay(settings, 6f, 6f, 7f, 1f));
+    }
+
+    @Test
+    public void minDwell_reportsEpisodeStartAndPeak() throws Exception {
+        final TriggerSettings settings = new TriggerSettings(BOOST_LIMIT, 0f,
+                2 * SAMPLE_PERIOD_NS, 0);
+
+        replay(settings, 1f);
+        final long startTimestamp = mTimestamp + SAMPLE_PERIOD_NS;
+        assertEquals(1, replay(settings, 6f, 8f, 7f));
+
+        assertEquals(startTimestamp, mTrigger.getTriggerTimestamp());
+        assertEquals(64f, mTrigger.getTriggerModuleSquared(), 1e-4f);
+    }
+
+    @Test
+    public void minDwell_isolatedSpikeReportedAtSlowRate() throws Exception {
+        final long slowPeriodNs = 200000000L;
+        final TriggerSettings settings = new TriggerSettings(BOOST_LIMIT, 0.2f, 20000000L,
+                1000000000L);
+
+        assertEquals(0, replay(settings, SAMPLE_PERIOD_NS, 1f, 9f, 1f));
+        assertEquals(1, replay(settings, slowPeriodNs, 1f, 1f, 9f, 1f, 1f));
+        assertEquals(mTimestamp - 2 * slowPeriodNs, mTrigger.getTriggerTimestamp());
+        assertEquals(81f, mTrigger.getTriggerModuleSquared(), 1e-4f);
+        // Past the refractory period the next isolated spike is reported as well.
+        assertEquals(1, replay(settings, slowPeriodNs, 1f, 1f, 1f, 1f, 9f, 1f));
+    }
+
+    @Test
+    public void refractory_newEpisodeSuppressed() throws Exception {
+        final TriggerSettings settings = new TriggerSettings(BOOST_LIMIT, 0f, 0,
+                3 * SAMPLE_PERIOD_NS);
+
+        assertEquals(1, replay(settings, 6f, 1f, 6f, 6f, 1f));
+        // Refractory period ended while the module was below the limit.
+        assertEquals(1, replay(settings, 1f, 1f, 6f));
+    }
+
+    @Test
+    public void noisyTrace_fewerExceedsThanPlainLimit() throws Exception {
+        final TriggerSettings plain = TriggerSettings.forLimit(BOOST_LIMIT);
+        final TriggerSettings debounced = new TriggerSettings(BOOST_LIMIT, 0.2f,
+                4 * SAMPLE_PERIOD_NS, 200 * SAMPLE_PERIOD_NS);
+
+        final float[] trace = createNoisyTrace(20000, 7);
+        final int plainExceeds = replay(plain, trace);
+        mTrigger = new BoostTrigger();
+        final int debouncedExceeds = replay(debounced, trace);
+
+        assertTrue(plainExceeds > 0);
+        assertTrue(debouncedExceeds > 0);
+        assertTrue("plain " + plainExceeds + ", debounced " + debouncedExceeds,
+                debouncedExceeds * 10 < plainExceeds);
+    }
+
+    /**
+     * Noise around a level close to the limit, with rare impacts well above it.
+     */
+    private static float[] createNoisyTrace(int count, long seed) {
+        final Random random = new Random(seed);
+        final float[] trace = new float[count];
+        for (int i = 0; i < count; ++i) {
+            final float impact = i % 2000 < 30 ? 4f : 0f;
+            trace[i] = Math.abs(4.5f + impact + (float) random.nextGaussian() * 0.6f);
+        }
+        return trace;
+    }
+
+    private int replay(TriggerSettings settings, float... modules) {
+        return replay(settings, SAMPLE_PERIOD_NS, modules);
+    }
+
+    private int replay(TriggerSettings settings, long periodNs, float... modules) {
+        int triggerCount = 0;
+        for (float module : modules) {
+            mTimestamp += periodNs;
+            if (mTrigger.onSample(settings, mTimestamp, module * module)) {
+                ++triggerCount;
+            }
+        }
+        return triggerCount;
+    }
+}
@@ -0,0 +1,134 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the episode summaries produced by {@link BoostLimitDetector}.
+ */
+public class EpisodeSummarizerTest {
+
+    private static final float BOOST_LIMIT = 5f;
+    private static final long SAMPLE_PERIOD_NS = 20000000L;
+    private static final long START_TIMESTAMP = 1000000000L;
+
+    // The peak is along y, the rest of the samples along x.
+    private static final float[] X_BOOSTS = {1f, 6f, 7f, 0f, 6f, 1f};
+    private static final float[] Y_BOOSTS = {0f, 0f, 0f, 9f, 0f, 0f};
+    private static final float[] Z_BOOSTS = {0f, 0f, 0f, 0f, 0f, 0f};
+
+    private RecordingSummaryQueue mSummaryQueue;
+
+    private static class RecordingSummaryQueue implements EpisodeSummaryQueue {
+
+        final List<String> mSummaries = new ArrayList<>();
+        final EpisodeSummaryRing mRing = new EpisodeSummaryRing(4);
+
+        @Override
+        public void queueEpisodeSummary(EpisodeSummary summary) {
+            mSummaries.add(summary.toString());
+            mRing.offer(summary);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mSummaryQueue = new RecordingSummaryQueue();
+    }
+
+    @Test
+    public void episode_peakDurationEnergyAndJerk() throws Exception {
+        final BoostLimitDetector detector = createDetector(TriggerSettings.forLimit(BOOST_LIMIT));
+        for (int i = 0; i < X_BOOSTS.length; ++i) {
+            detector.onSample(timestampOf(i), X_BOOSTS[i], Y_BOOSTS[i], Z_BOOSTS[i]);
+        }
+
+        assertEquals(1, mSummaryQueue.mSummaries.size());
+        final EpisodeSummary[] drained = new EpisodeSummary[1];
+        mSummaryQueue.mRing.drain(new EpisodeSummaryQueue() {
+            @Override
+            public void queueEpisodeSummary(EpisodeSummary summary) {
+                drained[0] = summary;
+            }
+        });
+        final EpisodeSummary summary = drained[0];
+
+        assertEquals(timestampOf(1), summary.getStartTimestamp());
+        assertEquals(4 * SAMPLE_PERIOD_NS, summary.getDurationNs());
+        assertEquals(5, summary.getSampleCount());
+        assertEquals(timestampOf(3), summary.getPeakTimestamp());
+        assertEquals(9f, summary.getPeakBoost(), 1e-6f);
+        assertEquals(EpisodeSummary.AXIS_Y, summary.getPeakAxis());
+        // Squared modules 36, 49, 81 and 36 over a period each.
+        assertEquals(202 * 0.02f, summary.getEnergy(), 1e-4f);
+        // The largest change is from 7 along x to 9 along y.
+        assertEquals((float) Math.sqrt(130) / 0.02f, summary.getPeakJerk(), 1e-2f);
+    }
+
+    @Test
+    public void batch_sameSummaryAsSingleSamples() throws Exception {
+        final BoostLimitDetector detector = createDetector(TriggerSettings.forLimit(BOOST_LIMIT));
+        for (int i = 0; i < X_BOOSTS.length; ++i) {
+            detector.onSample(timestampOf(i), X_BOOSTS[i], Y_BOOSTS[i], Z_BOOSTS[i]);
+        }
+
+        final RecordingSummaryQueue batchQueue = new RecordingSummaryQueue();
+        final BoostLimitDetector batchDetector = new BoostLimitDetector(
+                new NoEventQueue(), TriggerSettings.forLimit(BOOST_LIMIT));
+        batchDetector.setEpisodeSummaryQueue(batchQueue);
+        final long[] timestamps = new long[X_BOOSTS.length];
+        for (int i = 0; i < timestamps.length; ++i) {
+            timestamps[i] = timestampOf(i);
+        }
+        batchDetector.onSamples(timestamps, X_BOOSTS, Y_BOOSTS, Z_BOOSTS, 0, timestamps.length);
+
+        assertEquals(mSummaryQueue.mSummaries, batchQueue.mSummaries);
+    }
+
+    @Test
+    public void pendingEpisodeAborted_notSummarized() throws Exception {
+        final BoostLimitDetector detector = createDetector(
+                new TriggerSettings(BOOST_LIMIT, 0f, 3 * SAMPLE_PERIOD_NS, 0));
+        final float[] boosts = {1f, 6f, 7f, 1f, 1f};
+        for (int i = 0; i < boosts.length; ++i) {
+            detector.onSample(timestampOf(i), boosts[i], 0f, 0f);
+        }
+
+        assertTrue(mSummaryQueue.mSummaries.isEmpty());
+    }
+
+    @Test
+    public void summaryRing_fullRingDropsSummary() throws Exception {
+        final EpisodeSummaryRing ring = new EpisodeSummaryRing(2);
+        final EpisodeSummary summary = new EpisodeSummary();
+        summary.set(1, 2, 1, 6f, EpisodeSummary.AXIS_Z, 1f, 100f, 2);
+
+        assertTrue(ring.offer(summary));
+        assertTrue(ring.offer(summary));
+        assertFalse(ring.offer(summary));
+        assertEquals(1, ring.getDroppedCount());
+        assertEquals(2, ring.drain(mSummaryQueue));
+        assertEquals(0, ring.size());
+    }
+
+    private BoostLimitDetector createDetector(TriggerSettings settings) {
+        final BoostLimitDetector detector = new BoostLimitDetector(new NoEventQueue(), settings);
+        detector.setEpisodeSummaryQueue(mSummaryQueue);
+        return detector;
+    }
+
+    private static long timestampOf(int sampleIndex) {
+        return START_TIMESTAMP + sampleIndex * SAMPLE_PERIOD_NS;
+    }
+
+    private static class NoEventQueue implements AccelerometerEventQueue {
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+        }
+    }
+}
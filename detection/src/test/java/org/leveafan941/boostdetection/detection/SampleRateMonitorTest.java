@@ -0,0 +1,90 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Passes evenly spaced timestamps with gaps and bursts and checks the rate statistics.
+ */
+public class SampleRateMonitorTest {
+
+    private static final long INTERVAL_NS = 5000000L;
+
+    private SampleRateMonitor mMonitor;
+    private long mTimestamp;
+
+    @Before
+    public void setUp() throws Exception {
+        mMonitor = new SampleRateMonitor();
+        mMonitor.setNominalIntervalNs(INTERVAL_NS);
+        mTimestamp = 1000000000L;
+    }
+
+    @Test
+    public void evenSamples_nominalRateWithoutJitter() throws Exception {
+        passSamples(100, INTERVAL_NS);
+
+        final SampleRateStats stats = mMonitor.getStats();
+        assertEquals(200.0, stats.getEffectiveRateHz(), 0.01);
+        assertEquals(0, stats.getJitterNs());
+        assertEquals(100, stats.getSampleCount());
+        assertEquals(0, stats.getDroppedCount());
+        assertFalse(mMonitor.isDegraded());
+    }
+
+    @Test
+    public void gap_countsDroppedSamplesAndDegradesForHoldTime() throws Exception {
+        passSamples(100, INTERVAL_NS);
+        // Four samples are missing.
+        passSamples(1, 5 * INTERVAL_NS);
+        assertTrue(mMonitor.isDegraded());
+
+        final SampleRateStats stats = mMonitor.getStats();
+        assertEquals(1, stats.getGapCount());
+        assertEquals(4, stats.getDroppedCount());
+        assertTrue(stats.getJitterNs() > 0);
+
+        passSamples((int) (SampleRateMonitor.DEGRADED_HOLD_NS / INTERVAL_NS) + 1, INTERVAL_NS);
+        assertFalse(mMonitor.isDegraded());
+    }
+
+    @Test
+    public void burst_countedWithoutDrops() throws Exception {
+        passSamples(100, INTERVAL_NS);
+        passSamples(3, INTERVAL_NS / 10);
+
+        final SampleRateStats stats = mMonitor.getStats();
+        assertEquals(3, stats.getBurstCount());
+        assertEquals(0, stats.getGapCount());
+        assertFalse(mMonitor.isDegraded());
+    }
+
+    @Test
+    public void throttledRate_degradedWithoutGaps() throws Exception {
+        // Slower than requested, but no interval is long enough to be a gap.
+        passSamples(200, 7 * INTERVAL_NS / 5);
+
+        assertTrue(mMonitor.isDegraded());
+        assertEquals(0, mMonitor.getStats().getGapCount());
+        assertEquals(142.86, mMonitor.getStats().getEffectiveRateHz(), 0.1);
+    }
+
+    @Test
+    public void nominalIntervalChange_spanningIntervalNotChecked() throws Exception {
+        mMonitor.setNominalIntervalNs(0);
+        passSamples(100, 4 * INTERVAL_NS);
+        mMonitor.setNominalIntervalNs(INTERVAL_NS);
+        passSamples(1, INTERVAL_NS);
+
+        assertEquals(0, mMonitor.getStats().getBurstCount());
+    }
+
+    private void passSamples(int count, long intervalNs) {
+        for (int i = 0; i < count; ++i) {
+            mTimestamp += intervalNs;
+            mMonitor.onSample(mTimestamp);
+        }
+    }
+}
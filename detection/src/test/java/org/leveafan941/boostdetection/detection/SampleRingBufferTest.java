@@ -0,0 +1,132 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the raw sample buffer with one producer and one consumer thread.
+ */
+public class SampleRingBufferTest {
+
+    private static class CheckingConsumer implements RawSampleConsumer {
+
+        long mCount;
+        long mLastTimestamp = -1;
+
+        @Override
+        public void onRawSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+            assertTrue(timestamp > mLastTimestamp);
+            assertEquals((float) (timestamp % 100), xBoost, 0f);
+            assertEquals(-xBoost, yBoost, 0f);
+            assertEquals(2 * xBoost, zBoost, 0f);
+            mLastTimestamp = timestamp;
+            ++mCount;
+        }
+    }
+
+    @Test
+    public void drain_preservesColumns() throws Exception {
+        final SampleRingBuffer buffer = new SampleRingBuffer(8);
+        final CheckingConsumer consumer = new CheckingConsumer();
+
+        for (long i = 0; i < 5; ++i) {
+            assertTrue(offer(buffer, i));
+        }
+
+        assertEquals(5, buffer.size());
+        assertEquals(5, buffer.drain(consumer));
+        assertEquals(0, buffer.size());
+        assertEquals(5, consumer.mCount);
+    }
+
+    @Test
+    public void fullBuffer_dropsNewestAndCounts() throws Exception {
+        final SampleRingBuffer buffer = new SampleRingBuffer(4);
+        final CheckingConsumer consumer = new CheckingConsumer();
+
+        for (long i = 0; i < 6; ++i) {
+            offer(buffer, i);
+        }
+
+        assertEquals(4, buffer.getWrittenCount());
+        assertEquals(2, buffer.getOverflowCount());
+        buffer.drain(consumer);
+        assertEquals(3, consumer.mLastTimestamp);
+
+        assertTrue(offer(buffer, 10));
+    }
+
+    @Test
+    public void concurrentProducer_noSampleLostOrTorn() throws Exception {
+        final int sampleCount = 200000;
+        final SampleRingBuffer buffer = new SampleRingBuffer(1024);
+        final CheckingConsumer consumer = new CheckingConsumer();
+
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (long i = 0; i < sampleCount; ) {
+                    if (offer(buffer, i)) {
+                        ++i;
+                    }
+                }
+            }
+        };
+        producer.start();
+
+        while (consumer.mCount < sampleCount) {
+            buffer.drain(consumer);
+        }
+        producer.join();
+
+        assertEquals(sampleCount - 1, consumer.mLastTimestamp);
+    }
+
+    @Test
+    public void waitingConsumer_wokenUpAtCount() throws Exception {
+        final SampleRingBuffer buffer = new SampleRingBuffer(16);
+        final Thread consumer = startAwaiting(buffer, 4);
+
+        for (long i = 0; i < 3; ++i) {
+            offer(buffer, i);
+        }
+        consumer.join(50);
+        assertTrue(consumer.isAlive());
+
+        offer(buffer, 3);
+        consumer.join(5000);
+        assertFalse(consumer.isAlive());
+    }
+
+    @Test
+    public void waitingConsumer_wokenUpByProducer() throws Exception {
+        final SampleRingBuffer buffer = new SampleRingBuffer(16);
+        final Thread consumer = startAwaiting(buffer, 8);
+        offer(buffer, 0);
+
+        // The wake-up is lost if it comes before the consumer parks, so it is repeated.
+        for (int i = 0; i < 100 && consumer.isAlive(); ++i) {
+            buffer.wakeUpConsumer();
+            consumer.join(50);
+        }
+        assertFalse(consumer.isAlive());
+        assertEquals(1, buffer.size());
+    }
+
+    private static Thread startAwaiting(final SampleRingBuffer buffer, final int minCount) {
+        final Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                buffer.awaitSamples(minCount);
+            }
+        };
+        consumer.start();
+        return consumer;
+    }
+
+    private static boolean offer(SampleRingBuffer buffer, long timestamp) {
+        final float value = timestamp % 100;
+        return buffer.offer(timestamp, value, -value, 2 * value);
+    }
+}
@@ -0,0 +1,104 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays simulated traces through the controller and checks the switching policy and
+ * the time spent at every rate.
+ */
+public class SamplingRateControllerTest {
+
+    private static final float BOOST_LIMIT = 10f;
+    private static final long SAMPLE_PERIOD_NS = 10000000L;
+    private static final long HOLD_NS = 100 * SAMPLE_PERIOD_NS;
+
+    private final TriggerSettings mSettings = TriggerSettings.forLimit(BOOST_LIMIT);
+    private final List<Integer> mRateChanges = new ArrayList<>();
+    private SamplingRateController mController;
+    private long mTimestamp;
+
+    @Before
+    public void setUp() throws Exception {
+        mController = new SamplingRateController(0.5f, 0.3f, HOLD_NS,
+                new SamplingRateController.Listener() {
+                    @Override
+                    public void onSamplingRateChange(int rate) {
+                        mRateChanges.add(rate);
+                    }
+                });
+        mTimestamp = 0;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releaseAboveApproach_throws() throws Exception {
+        new SamplingRateController(0.3f, 0.5f, 0, null);
+    }
+
+    @Test
+    public void quietSignal_staysSlow() throws Exception {
+        replay(1f, 1000);
+
+        assertTrue(mRateChanges.isEmpty());
+        assertEquals(SamplingRateController.RATE_SLOW, mController.getRate());
+    }
+
+    @Test
+    public void approachingLimit_switchesFastImmediately() throws Exception {
+        replay(1f, 10);
+        replay(5f, 1);
+
+        assertEquals(SamplingRateController.RATE_FAST, mController.getRate());
+        assertEquals(1, mRateChanges.size());
+    }
+
+    @Test
+    public void fast_returnsSlowOnlyAfterHold() throws Exception {
+        replay(8f, 1);
+        replay(1f, 50);
+        // Back between the release and approach levels, the hold starts anew.
+        replay(4f, 1);
+        replay(1f, 99);
+        assertEquals(SamplingRateController.RATE_FAST, mController.getRate());
+
+        replay(1f, 2);
+        assertEquals(SamplingRateController.RATE_SLOW, mController.getRate());
+        assertEquals(2, mRateChanges.size());
+    }
+
+    @Test
+    public void noiseAroundApproachLevel_doesNotThrash() throws Exception {
+        final Random random = new Random(5);
+        for (int i = 0; i < 10000; ++i) {
+            replay(5f + (float) random.nextGaussian(), 1);
+        }
+
+        assertEquals(1, mController.getSwitchCount());
+    }
+
+    @Test
+    public void timeAtRate_followsTimestamps() throws Exception {
+        replay(1f, 101);
+        replay(9f, 50);
+        replay(1f, 201);
+
+        final long slowNs = mController.getTimeAtRateNs(SamplingRateController.RATE_SLOW);
+        final long fastNs = mController.getTimeAtRateNs(SamplingRateController.RATE_FAST);
+        assertEquals(SamplingRateController.RATE_SLOW, mController.getRate());
+        assertEquals(150 * SAMPLE_PERIOD_NS, fastNs);
+        assertEquals(351 * SAMPLE_PERIOD_NS, slowNs + fastNs);
+    }
+
+    private void replay(float module, int count) {
+        for (int i = 0; i < count; ++i) {
+            mController.onSample(mSettings, mTimestamp, module * module);
+            mTimestamp += SAMPLE_PERIOD_NS;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the sorted copy-on-write registration and the level updates of the threshold index.
+ */
+public class ThresholdIndexTest {
+
+    private static class RecordingQueue implements ThresholdCrossingQueue {
+
+        final List<Integer> mIds = new ArrayList<>();
+
+        @Override
+        public void queueThresholdCrossing(int thresholdId, long timestamp, float boostValue) {
+            mIds.add(thresholdId);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThreshold_throws() throws Exception {
+        ThresholdIndex.empty(0f).withThreshold(0, -1f);
+    }
+
+    @Test
+    public void withThreshold_keepsSortedAndOriginalIntact() throws Exception {
+        final ThresholdIndex empty = ThresholdIndex.empty(0f);
+        final ThresholdIndex index = empty.withThreshold(0, 10f).withThreshold(1, 2f)
+                .withThreshold(2, 5f).withThreshold(3, 5f);
+
+        assertEquals(0, empty.size());
+        assertEquals(4, index.size());
+        assertEquals(2f, index.getThreshold(0), 0f);
+        assertEquals(1, index.getId(0));
+        assertEquals(2, index.getId(1));
+        assertEquals(3, index.getId(2));
+        assertEquals(0, index.getId(3));
+    }
+
+    @Test
+    public void withoutId_removesAllItsThresholds() throws Exception {
+        final ThresholdIndex index = ThresholdIndex.empty(0f).withThreshold(0, 1f)
+                .withThreshold(1, 2f).withThreshold(0, 3f);
+
+        final ThresholdIndex removed = index.withoutId(0);
+        assertEquals(1, removed.size());
+        assertEquals(1, removed.getId(0));
+        assertSame(removed, removed.withoutId(7));
+    }
+
+    @Test
+    public void onSample_crossedTiersQueuedInOrder() throws Exception {
+        final ThresholdIndex index = ThresholdIndex.empty(0f).withThreshold(0, 2f)
+                .withThreshold(1, 4f).withThreshold(2, 8f);
+        final RecordingQueue queue = new RecordingQueue();
+
+        int level = index.onSample(0, 0, 1f, queue);
+        assertEquals(0, level);
+        level = index.onSample(level, 1, 25f, queue);
+        assertEquals(2, level);
+        level = index.onSample(level, 2, 100f, queue);
+        assertEquals(3, level);
+
+        assertEquals(3, queue.mIds.size());
+        assertEquals(0, queue.mIds.get(0).intValue());
+        assertEquals(2, queue.mIds.get(2).intValue());
+    }
+
+    @Test
+    public void onSample_rearmedBelowExitValue() throws Exception {
+        final ThresholdIndex index = ThresholdIndex.empty(0.5f).withThreshold(0, 4f);
+        final RecordingQueue queue = new RecordingQueue();
+
+        int level = index.onSample(0, 0, 17f, queue);
+        // Exit value is 2, so 3 keeps the threshold crossed.
+        level = index.onSample(level, 1, 9f, queue);
+        level = index.onSample(level, 2, 17f, queue);
+        assertEquals(1, queue.mIds.size());
+
+        level = index.onSample(level, 3, 3f, queue);
+        assertEquals(0, level);
+        index.onSample(level, 4, 17f, queue);
+        assertEquals(2, queue.mIds.size());
+    }
+
+    @Test
+    public void moduleAtThreshold_notCrossedLikeBoostLimit() throws Exception {
+        final ThresholdIndex index = ThresholdIndex.empty(0f).withThreshold(0, 2f);
+        final TriggerSettings settings = TriggerSettings.forLimit(2f);
+        final BoostTrigger trigger = new BoostTrigger();
+        final RecordingQueue queue = new RecordingQueue();
+        final float[] squaredModules = {4f, 4.41f, 4f, 4.41f, 4f};
+        final boolean[] expected = {false, true, false, true, false};
+
+        assertEquals(0, index.levelOf(4f));
+        int level = 0;
+        for (int i = 0; i < squaredModules.length; ++i) {
+            final int crossingCount = queue.mIds.size();
+            level = index.onSample(level, i, squaredModules[i], queue);
+            assertEquals(expected[i], queue.mIds.size() > crossingCount);
+            assertEquals(expected[i], trigger.onSample(settings, i, squaredModules[i]));
+        }
+    }
+
+    @Test
+    public void levelOf_countsThresholdsBelow() throws Exception {
+        final ThresholdIndex index = ThresholdIndex.empty(0f).withThreshold(0, 1f)
+                .withThreshold(1, 2f).withThreshold(2, 3f);
+
+        assertEquals(0, index.levelOf(0.5f));
+        assertEquals(1, index.levelOf(4f));
+        assertEquals(2, index.levelOf(4.41f));
+        assertEquals(3, index.levelOf(100f));
+    }
+}
@@ -0,0 +1,142 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Orients the device in a few typical ways and checks the axes the boost is reported along.
+ */
+public class VehicleFrameTest {
+
+    private static final float GRAVITY = 9.81f;
+
+    private final List<Integer> mAxes = new ArrayList<>();
+    private final List<Float> mValues = new ArrayList<>();
+    private VehicleFrame mFrame;
+    private AxisTriggerSettings mSettings;
+    private long mNextTimestamp;
+
+    @Before
+    public void setUp() throws Exception {
+        final TriggerSettings settings = TriggerSettings.forLimit(3f);
+        mSettings = new AxisTriggerSettings(settings, settings, settings);
+        mFrame = createFrame();
+        mNextTimestamp = 1000000000L;
+    }
+
+    @Test
+    public void flatDevice_topIsForward() throws Exception {
+        assertTrue(mFrame.onGravity(0, 0, GRAVITY));
+
+        replayPulse(0, -4f, 0);
+        replayPulse(5f, 0, 0);
+        replayPulse(0, 0, -6f);
+
+        assertAxes(VehicleFrame.AXIS_LONGITUDINAL, VehicleFrame.AXIS_LATERAL,
+                VehicleFrame.AXIS_VERTICAL);
+        assertEquals(4f, mValues.get(0), 1e-5f);
+        assertEquals(6f, mValues.get(2), 1e-5f);
+    }
+
+    @Test
+    public void uprightDevice_backIsForward() throws Exception {
+        assertTrue(mFrame.onGravity(0, GRAVITY, 0));
+
+        replayPulse(0, 0, -4f);
+        replayPulse(0, 4f, 0);
+        replayPulse(2f, 0, 0);
+
+        assertAxes(VehicleFrame.AXIS_LONGITUDINAL, VehicleFrame.AXIS_VERTICAL);
+    }
+
+    @Test
+    public void landscapeDevice_backIsForwardDespiteNoise() throws Exception {
+        // Gravity along x with noise that flips which of y and z is larger.
+        final float[][] gravities = {
+                {GRAVITY, 0.02f, -0.01f},
+                {GRAVITY, -0.01f, 0.02f},
+                {-GRAVITY, 0.03f, 0.01f},
+        };
+        for (float[] gravity : gravities) {
+            mAxes.clear();
+            mValues.clear();
+            mFrame = createFrame();
+            assertTrue(mFrame.onGravity(gravity[0], gravity[1], gravity[2]));
+
+            replayPulse(0, 0, -4f);
+            replayPulse(0, 5f, 0);
+            replayPulse(6f, 0, 0);
+
+            assertAxes(VehicleFrame.AXIS_LONGITUDINAL, VehicleFrame.AXIS_LATERAL,
+                    VehicleFrame.AXIS_VERTICAL);
+            assertEquals(4f, mValues.get(0), 1e-2f);
+            assertEquals(5f, Math.abs(mValues.get(1)), 1e-2f);
+            assertEquals(6f, Math.abs(mValues.get(2)), 1e-2f);
+        }
+    }
+
+    @Test
+    public void tiltedDevice_boostSplitByAxes() throws Exception {
+        // Upright device leaning back by 30 degrees.
+        final float sin = 0.5f;
+        final float cos = (float) Math.sqrt(0.75);
+        mFrame.onGravity(0, GRAVITY * cos, GRAVITY * sin);
+
+        // 4 m/s2 forward and 3.5 m/s2 up in the device axes.
+        replayPulse(0, 4f * sin + 3.5f * cos, -4f * cos + 3.5f * sin);
+
+        assertAxes(VehicleFrame.AXIS_LONGITUDINAL, VehicleFrame.AXIS_VERTICAL);
+        assertEquals(4f, mValues.get(0), 1e-4f);
+        assertEquals(3.5f, mValues.get(1), 1e-4f);
+    }
+
+    @Test
+    public void smallTurn_rotationKept() throws Exception {
+        assertTrue(mFrame.onGravity(0, 0, GRAVITY));
+        final double small = Math.toRadians(VehicleFrame.MIN_ROTATION_DEGREES / 2);
+        assertFalse(mFrame.onGravity(0, (float) (GRAVITY * Math.sin(small)),
+                (float) (GRAVITY * Math.cos(small))));
+        final double large = Math.toRadians(VehicleFrame.MIN_ROTATION_DEGREES * 2);
+        assertTrue(mFrame.onGravity(0, (float) (GRAVITY * Math.sin(large)),
+                (float) (GRAVITY * Math.cos(large))));
+        assertEquals(2, mFrame.getRotationUpdateCount());
+    }
+
+    @Test
+    public void noGravity_samplesIgnored() throws Exception {
+        replayPulse(0, 10f, 0);
+        mSettings = new AxisTriggerSettings(null, null, TriggerSettings.forLimit(3f));
+        mFrame.onGravity(0, 0, GRAVITY);
+        replayPulse(0, 10f, 0);
+
+        assertTrue(mAxes.isEmpty());
+    }
+
+    private VehicleFrame createFrame() {
+        return new VehicleFrame(new AxisExceedQueue() {
+            @Override
+            public void queueAxisExceed(int axis, long timestamp, float boostValue) {
+                mAxes.add(axis);
+                mValues.add(boostValue);
+            }
+        });
+    }
+
+    private void assertAxes(Integer... axes) {
+        assertEquals(Arrays.asList(axes), mAxes);
+    }
+
+    /**
+     * Passes a sample with the boost followed by a quiet one.
+     */
+    private void replayPulse(float xBoost, float yBoost, float zBoost) {
+        mFrame.onSample(mSettings, mNextTimestamp++, xBoost, yBoost, zBoost);
+        mFrame.onSample(mSettings, mNextTimestamp++, 0, 0, 0);
+    }
+}
@@ -0,0 +1,221 @@
+package org.leveafan941.boostdetection.detection;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the window contents, the pool reuse and that the steady state allocates nothing.
+ */
+public class WindowCaptureTest {
+
+    private static class RecordingQueue implements CaptureWindowQueue {
+
+        final List<CaptureWindow> mWindows = new ArrayList<>();
+        final List<long[]> mTimestamps = new ArrayList<>();
+        boolean mIsReleasing = false;
+
+        @Override
+        public void queueCaptureWindow(CaptureWindow window) {
+            final long[] timestamps = new long[window.getSampleCount()];
+            System.arraycopy(window.getTimestamps(), 0, timestamps, 0, timestamps.length);
+            mTimestamps.add(timestamps);
+            mWindows.add(window);
+            if (mIsReleasing) {
+                window.release();
+            }
+        }
+    }
+
+    @Test
+    public void trigger_preAndPostSamplesCaptured() throws Exception {
+        final RecordingQueue queue = new RecordingQueue();
+        final WindowCapture capture = new WindowCapture(3, 2, 2, queue);
+
+        // The event sample 9 is one sample older than the trigger one.
+        feed(capture, 1, 10);
+        capture.onTrigger(9, 7f);
+        assertTrue(queue.mWindows.isEmpty());
+        feed(capture, 11, 13);
+
+        assertEquals(1, queue.mWindows.size());
+        final CaptureWindow window = queue.mWindows.get(0);
+        assertArrayEquals(new long[] {6, 7, 8, 9, 10, 11}, queue.mTimestamps.get(0));
+        assertEquals(3, window.getTriggerIndex());
+        assertEquals(9, window.getEventTimestamp());
+        assertEquals(7f, window.getBoostValue(), 0f);
+        assertEquals(9f, window.getXBoosts()[3], 0f);
+    }
+
+    @Test
+    public void shortHistory_fewerPreSamples() throws Exception {
+        final RecordingQueue queue = new RecordingQueue();
+        final WindowCapture capture = new WindowCapture(5, 0, 1, queue);
+
+        feed(capture, 1, 2);
+        capture.onTrigger(2, 7f);
+
+        assertArrayEquals(new long[] {1, 2}, queue.mTimestamps.get(0));
+        assertEquals(1, queue.mWindows.get(0).getTriggerIndex());
+    }
+
+    @Test
+    public void overlappingTriggers_filledInOrder() throws Exception {
+        final RecordingQueue queue = new RecordingQueue();
+        final WindowCapture capture = new WindowCapture(1, 3, 2, queue);
+
+        feed(capture, 1, 2);
+        capture.onTrigger(2, 7f);
+        feed(capture, 3, 3);
+        capture.onTrigger(3, 8f);
+        feed(capture, 4, 6);
+
+        assertEquals(2, queue.mWindows.size());
+        assertArrayEquals(new long[] {1, 2, 3, 4, 5}, queue.mTimestamps.get(0));
+        assertArrayEquals(new long[] {2, 3, 4, 5, 6}, queue.mTimestamps.get(1));
+    }
+
+    @Test
+    public void flush_partialWindowDelivered() throws Exception {
+        final RecordingQueue queue = new RecordingQueue();
+        final WindowCapture capture = new WindowCapture(2, 5, 2, queue);
+
+        feed(capture, 1, 4);
+        capture.onTrigger(4, 7f);
+        feed(capture, 5, 6);
+        capture.flush();
+
+        assertEquals(1, queue.mWindows.size());
+        assertArrayEquals(new long[] {2, 3, 4, 5, 6}, queue.mTimestamps.get(0));
+        assertEquals(4, queue.mWindows.get(0).getEventTimestamp());
+        feed(capture, 7, 12);
+        assertEquals(1, queue.mWindows.size());
+    }
+
+    @Test
+    public void poolExhausted_droppedUntilReleased() throws Exception {
+        final RecordingQueue queue = new RecordingQueue();
+        final WindowCapture capture = new WindowCapture(1, 0, 1, queue);
+
+        feed(capture, 1, 2);
+        capture.onTrigger(2, 7f);
+        capture.onTrigger(2, 7f);
+        assertEquals(1, capture.getDroppedCount());
+
+        queue.mWindows.get(0).release();
+        capture.onTrigger(2, 7f);
+        assertEquals(2, capture.getCapturedCount());
+        assertSame(queue.mWindows.get(0), queue.mWindows.get(1));
+    }
+
+    @Test
+    public void memoryBytes_historyAndPool() throws Exception {
+        final WindowCapture capture = new WindowCapture(3, 4, 2, new RecordingQueue());
+
+        // History and two windows of 8 samples, 20 bytes each.
+        assertEquals((8 + 2 * 8) * 20, capture.getMemoryBytes());
+    }
+
+    @Test
+    public void detector_windowAroundTriggerSample() throws Exception {
+        final RecordingQueue queue = new RecordingQueue();
+        final BoostLimitDetector detector = new BoostLimitDetector(
+                new AccelerometerEventQueue() {
+                    @Override
+                    public void queueBoostLimitExceed(long timestamp, float boostValue) {
+                    }
+                }, 5f);
+        detector.setWindowCapture(new WindowCapture(2, 1, 1, queue));
+
+        final float[] modules = {1f, 2f, 6f, 3f, 1f};
+        for (int i = 0; i < modules.length; ++i) {
+            detector.onSample(i, modules[i], 0f, 0f);
+        }
+
+        assertArrayEquals(new long[] {0, 1, 2, 3}, queue.mTimestamps.get(0));
+        assertEquals(6f, queue.mWindows.get(0).getBoostValue(), 1e-6f);
+    }
+
+    @Test
+    public void dwellTime_windowCentredOnEventSample() throws Exception {
+        final RecordingQueue queue = new RecordingQueue();
+        final BoostLimitDetector detector = new BoostLimitDetector(
+                new AccelerometerEventQueue() {
+                    @Override
+                    public void queueBoostLimitExceed(long timestamp, float boostValue) {
+                    }
+                }, new TriggerSettings(5f, 0f, 20, 0));
+        detector.setWindowCapture(new WindowCapture(2, 2, 1, queue));
+
+        // Above the limit from 20, the dwell time is over at 40.
+        final float[] modules = {1f, 2f, 6f, 7f, 6f, 3f, 1f, 1f};
+        for (int i = 0; i < modules.length; ++i) {
+            detector.onSample(i * 10, modules[i], 0f, 0f);
+        }
+
+        final CaptureWindow window = queue.mWindows.get(0);
+        assertArrayEquals(new long[] {0, 10, 20, 30, 40}, queue.mTimestamps.get(0));
+        assertEquals(20, window.getEventTimestamp());
+        assertEquals(window.getEventTimestamp(),
+                window.getTimestamps()[window.getTriggerIndex()]);
+    }
+
+    @Test
+    public void steadyState_allocatesNothing() throws Exception {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocBean =
+                (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(allocBean.isThreadAllocatedMemorySupported());
+        allocBean.setThreadAllocatedMemoryEnabled(true);
+
+        final CaptureWindowRing ring = new CaptureWindowRing(4);
+        final WindowCapture capture = new WindowCapture(64, 64, 4, ring);
+        final CaptureWindowQueue releasingQueue = new CaptureWindowQueue() {
+            @Override
+            public void queueCaptureWindow(CaptureWindow window) {
+                window.release();
+            }
+        };
+        final long threadId = Thread.currentThread().getId();
+
+        // Warm up, so class loading and compilation are not counted.
+        runCapture(capture, ring, releasingQueue, 0, 100000);
+
+        final long allocatedBefore = allocBean.getThreadAllocatedBytes(threadId);
+        runCapture(capture, ring, releasingQueue, 100000, 1000000);
+        final long allocatedAfter = allocBean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, capture.getDroppedCount());
+        assertEquals(0, allocatedAfter - allocatedBefore);
+    }
+
+    private static void runCapture(WindowCapture capture, CaptureWindowRing ring,
+                                   CaptureWindowQueue consumer, long firstTimestamp,
+                                   int sampleCount) {
+        for (int i = 0; i < sampleCount; ++i) {
+            final long timestamp = firstTimestamp + i;
+            capture.onSample(timestamp, 1f, 2f, 3f);
+            if (i % 100 == 0) {
+                capture.onTrigger(timestamp, 10f);
+            }
+            ring.drain(consumer);
+        }
+    }
+
+    /**
+     * Feeds samples with timestamps from {@code first} to {@code last} inclusive, the x axis
+     * equals the timestamp.
+     */
+    private static void feed(WindowCapture capture, long first, long last) {
+        for (long timestamp = first; timestamp <= last; ++timestamp) {
+            capture.onSample(timestamp, timestamp, 0f, 0f);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.leveafan941.boostdetection.detection.filter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the filter stages on constant, alternating, spiky and random signals.
+ */
+public class SampleFilterTest {
+
+    private static final float SAMPLE_RATE_HZ = 200f;
+
+    @Test
+    public void exponential_firstSamplePassedAndConverges() throws Exception {
+        final ExponentialFilter filter = new ExponentialFilter(0.5f);
+
+        assertArrayEquals(new float[] {4f, 4f, 4f}, filterConstant(filter, 4f, 1), 0f);
+        assertArrayEquals(new float[] {2f, 2f, 2f}, filterConstant(filter, 0f, 1), 0f);
+        assertArrayEquals(new float[] {0f, 0f, 0f}, filterConstant(filter, 0f, 100), 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exponential_invalidAlpha_throws() throws Exception {
+        new ExponentialFilter(0f);
+    }
+
+    @Test
+    public void biquadLowPass_passesConstantAndDampsNyquist() throws Exception {
+        final BiquadFilter filter = BiquadFilter.lowPass(SAMPLE_RATE_HZ, 10f,
+                BiquadFilter.BUTTERWORTH_Q);
+
+        assertEquals(3f, filterConstant(filter, 3f, 500)[0], 1e-3f);
+        assertTrue(Math.abs(filterAlternating(filter, 3f, 500)) < 0.01f);
+    }
+
+    @Test
+    public void biquadHighPass_removesConstantAndPassesNyquist() throws Exception {
+        final BiquadFilter filter = BiquadFilter.highPass(SAMPLE_RATE_HZ, 10f,
+                BiquadFilter.BUTTERWORTH_Q);
+
+        assertEquals(0f, filterConstant(filter, 3f, 500)[0], 1e-3f);
+        assertEquals(3f, Math.abs(filterAlternating(filter, 3f, 500)), 0.05f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void biquad_cutoffAboveNyquist_throws() throws Exception {
+        BiquadFilter.lowPass(SAMPLE_RATE_HZ, SAMPLE_RATE_HZ, BiquadFilter.BUTTERWORTH_Q);
+    }
+
+    @Test
+    public void median_singleSpikeRemoved() throws Exception {
+        final MedianFilter filter = new MedianFilter(3);
+        final float[] values = new float[3];
+
+        filterConstant(filter, 1f, 3);
+        values[0] = 50f;
+        filter.filter(values);
+        assertEquals(1f, values[0], 0f);
+    }
+
+    @Test
+    public void median_matchesSortedWindow() throws Exception {
+        final int windowSize = 7;
+        final MedianFilter filter = new MedianFilter(windowSize);
+        final Random random = new Random(3);
+        final float[] input = new float[1000];
+        for (int i = 0; i < input.length; ++i) {
+            input[i] = random.nextInt(20) - 10;
+        }
+
+        final float[] values = new float[3];
+        for (int i = 0; i < input.length; ++i) {
+            values[0] = input[i];
+            values[1] = -input[i];
+            values[2] = 0;
+            filter.filter(values);
+
+            final int start = Math.max(0, i - windowSize + 1);
+            final float[] window = Arrays.copyOfRange(input, start, i + 1);
+            Arrays.sort(window);
+            assertEquals(window[window.length / 2], values[0], 0f);
+        }
+    }
+
+    @Test
+    public void pipeline_appliesStagesInOrder() throws Exception {
+        final MedianFilter median = new MedianFilter(3);
+        final ExponentialFilter average = new ExponentialFilter(1f);
+        final FilterPipeline pipeline = new FilterPipeline(median, average);
+
+        filterConstant(pipeline, 1f, 3);
+        final float[] values = {50f, 50f, 50f};
+        pipeline.filter(values);
+        assertEquals(1f, values[0], 0f);
+
+        pipeline.reset();
+        assertEquals(50f, filterConstant(pipeline, 50f, 1)[0], 0f);
+    }
+
+    private static float[] filterConstant(SampleFilter filter, float value, int count) {
+        final float[] values = new float[3];
+        for (int i = 0; i < count; ++i) {
+            Arrays.fill(values, value);
+            filter.filter(values);
+        }
+        return values;
+    }
+
+    /**
+     * @return x of the last output for the input alternating at the Nyquist frequency.
+     */
+    private static float filterAlternating(SampleFilter filter, float amplitude, int count) {
+        final float[] values = new float[3];
+        for (int i = 0; i < count; ++i) {
+            Arrays.fill(values, i % 2 == 0 ? amplitude : -amplitude);
+            filter.filter(values);
+        }
+        return values[0];
+    }
+}
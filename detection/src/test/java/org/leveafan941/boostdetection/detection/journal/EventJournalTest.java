@@ -0,0 +1,203 @@
+package org.leveafan941.boostdetection.detection.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes, rotates and recovers journals in a temporary directory.
+ */
+public class EventJournalTest {
+
+    private static final long MAX_SEGMENT_BYTES = 4096;
+    private static final int MAX_SEGMENT_COUNT = 3;
+    private static final int GROUP_COMMIT_BYTES = 1024;
+    private static final long NEVER_NS = Long.MAX_VALUE;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static class RecordingVisitor implements JournalRecordVisitor {
+
+        final List<Long> mTimestamps = new ArrayList<>();
+        final List<Integer> mSampleCounts = new ArrayList<>();
+
+        @Override
+        public void onRecord(long timestamp, float boostValue, long[] sampleTimestamps,
+                             float[] xBoosts, float[] yBoosts, float[] zBoosts,
+                             int sampleCount) {
+            mTimestamps.add(timestamp);
+            mSampleCounts.add(sampleCount);
+            if (sampleCount > 0) {
+                assertEquals(timestamp, sampleTimestamps[0]);
+                assertEquals(sampleCount - 1, zBoosts[sampleCount - 1], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void appendAndRead_recordsRoundTrip() throws Exception {
+        final File directory = mFolder.newFolder();
+        final EventJournal journal = openJournal(directory);
+        appendEvent(journal, 100, 5);
+        appendEvent(journal, 200, 0);
+        journal.close();
+
+        final RecordingVisitor visitor = new RecordingVisitor();
+        assertEquals(2, EventJournal.read(directory, visitor));
+        assertEquals(Long.valueOf(100), visitor.mTimestamps.get(0));
+        assertEquals(Integer.valueOf(5), visitor.mSampleCounts.get(0));
+        assertEquals(Integer.valueOf(0), visitor.mSampleCounts.get(1));
+    }
+
+    @Test
+    public void groupCommit_recordsInvisibleUntilCommitted() throws Exception {
+        final File directory = mFolder.newFolder();
+        final EventJournal journal = openJournal(directory);
+        appendEvent(journal, 100, 5);
+        appendEvent(journal, 200, 5);
+
+        assertEquals(0, EventJournal.read(directory, new RecordingVisitor()));
+        journal.commit();
+        assertEquals(2, EventJournal.read(directory, new RecordingVisitor()));
+        assertEquals(1, journal.getCommitCount());
+        journal.close();
+    }
+
+    @Test
+    public void zeroCommitInterval_everyRecordCommitted() throws Exception {
+        final File directory = mFolder.newFolder();
+        final EventJournal journal = new EventJournal(directory, MAX_SEGMENT_BYTES,
+                MAX_SEGMENT_COUNT, GROUP_COMMIT_BYTES, 0);
+        appendEvent(journal, 100, 1);
+        appendEvent(journal, 200, 1);
+
+        assertEquals(2, journal.getCommitCount());
+        assertEquals(2, EventJournal.read(directory, new RecordingVisitor()));
+        journal.close();
+    }
+
+    @Test
+    public void rotation_oldSegmentsDeleted() throws Exception {
+        final File directory = mFolder.newFolder();
+        final EventJournal journal = openJournal(directory);
+        // Each record is 24 + 10 * 20 bytes, a segment holds 18 of them.
+        for (int i = 0; i < 100; ++i) {
+            appendEvent(journal, i + 1, 10);
+        }
+        journal.close();
+
+        assertEquals(MAX_SEGMENT_COUNT, directory.list().length);
+        final RecordingVisitor visitor = new RecordingVisitor();
+        final long count = EventJournal.read(directory, visitor);
+        assertTrue(count < 100 && count > 2 * 18);
+        assertEquals(Long.valueOf(100), visitor.mTimestamps.get((int) count - 1));
+    }
+
+    @Test
+    public void tornTail_truncatedAndAppendingContinues() throws Exception {
+        final File directory = mFolder.newFolder();
+        EventJournal journal = openJournal(directory);
+        appendEvent(journal, 100, 5);
+        appendEvent(journal, 200, 5);
+        journal.close();
+
+        final File segment = new File(directory, directory.list()[0]);
+        final long validSize = segment.length();
+        // A record whose payload was not completely written before a crash.
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(validSize);
+        file.writeInt(EventJournal.PAYLOAD_HEADER_SIZE + 5 * EventJournal.SAMPLE_SIZE);
+        file.writeInt(0);
+        file.writeLong(300);
+        file.close();
+
+        journal = openJournal(directory);
+        assertEquals(2, journal.getRecoveredCount());
+        assertEquals(16, journal.getTruncatedBytes());
+        appendEvent(journal, 400, 5);
+        journal.close();
+
+        final RecordingVisitor visitor = new RecordingVisitor();
+        assertEquals(3, EventJournal.read(directory, visitor));
+        assertEquals(Long.valueOf(400), visitor.mTimestamps.get(2));
+    }
+
+    @Test
+    public void corruptedRecord_laterRecordsDropped() throws Exception {
+        final File directory = mFolder.newFolder();
+        EventJournal journal = openJournal(directory);
+        appendEvent(journal, 100, 5);
+        appendEvent(journal, 200, 5);
+        appendEvent(journal, 300, 5);
+        journal.close();
+
+        final File segment = new File(directory, directory.list()[0]);
+        final long recordSize = EventJournal.RECORD_HEADER_SIZE
+                + EventJournal.PAYLOAD_HEADER_SIZE + 5 * EventJournal.SAMPLE_SIZE;
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        // Flips a sample byte of the second record.
+        final long position = EventJournal.SEGMENT_HEADER_SIZE + recordSize + recordSize / 2;
+        file.seek(position);
+        final int value = file.read();
+        file.seek(position);
+        file.write(value ^ 0xFF);
+        file.close();
+
+        journal = openJournal(directory);
+        assertEquals(1, journal.getRecoveredCount());
+        assertEquals(2 * recordSize, journal.getTruncatedBytes());
+        journal.close();
+    }
+
+    @Test
+    public void tornSegmentHeader_segmentRewritten() throws Exception {
+        final File directory = mFolder.newFolder();
+        openJournal(directory).close();
+        final File segment = new File(directory, directory.list()[0]);
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(3);
+        file.close();
+
+        final EventJournal journal = openJournal(directory);
+        assertEquals(0, journal.getRecoveredCount());
+        appendEvent(journal, 100, 1);
+        journal.close();
+
+        assertEquals(1, EventJournal.read(directory, new RecordingVisitor()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordLargerThanCommitBuffer_throws() throws Exception {
+        final EventJournal journal = openJournal(mFolder.newFolder());
+        appendEvent(journal, 100, GROUP_COMMIT_BYTES / EventJournal.SAMPLE_SIZE);
+    }
+
+    private static EventJournal openJournal(File directory) throws Exception {
+        return new EventJournal(directory, MAX_SEGMENT_BYTES, MAX_SEGMENT_COUNT,
+                GROUP_COMMIT_BYTES, NEVER_NS);
+    }
+
+    /**
+     * Appends an event with the window of samples starting at the event timestamp.
+     */
+    private static void appendEvent(EventJournal journal, long timestamp, int sampleCount)
+            throws Exception {
+        final long[] timestamps = new long[sampleCount];
+        final float[] xBoosts = new float[sampleCount];
+        final float[] yBoosts = new float[sampleCount];
+        final float[] zBoosts = new float[sampleCount];
+        for (int i = 0; i < sampleCount; ++i) {
+            timestamps[i] = timestamp + i;
+            zBoosts[i] = i;
+        }
+        journal.append(timestamp, 10f, timestamps, xBoosts, yBoosts, zBoosts, 0, sampleCount);
+    }
+}
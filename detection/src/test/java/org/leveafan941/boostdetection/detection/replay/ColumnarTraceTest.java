@@ -0,0 +1,140 @@
+package org.leveafan941.boostdetection.detection.replay;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes columnar traces to a temporary directory, reads them back and queries them.
+ */
+public class ColumnarTraceTest {
+
+    private static final int BLOCK_CAPACITY = 64;
+    private static final int SAMPLE_COUNT = 1000;
+    private static final float BOOST_LIMIT = 5f;
+    // Index of the sample after a gap of an hour, in the middle of a block.
+    private static final int GAP_INDEX = 480;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final long[] mTimestamps = new long[SAMPLE_COUNT];
+    private final float[] mXBoosts = new float[SAMPLE_COUNT];
+    private final float[] mYBoosts = new float[SAMPLE_COUNT];
+    private final float[] mZBoosts = new float[SAMPLE_COUNT];
+
+    @Test
+    public void writeAndRead_samplesRoundTrip() throws Exception {
+        generateSamples();
+        final File trace = writeTrace();
+
+        final long[] timestamps = new long[SAMPLE_COUNT];
+        final float[] xBoosts = new float[SAMPLE_COUNT];
+        final float[] yBoosts = new float[SAMPLE_COUNT];
+        final float[] zBoosts = new float[SAMPLE_COUNT];
+        final ColumnarTraceReader reader = (ColumnarTraceReader) TraceFiles.openReader(trace);
+        int total = 0;
+        int count;
+        // Reads of 50 samples cross the block boundaries.
+        final long[] chunkTimestamps = new long[50];
+        final float[] chunkX = new float[50];
+        final float[] chunkY = new float[50];
+        final float[] chunkZ = new float[50];
+        while ((count = reader.read(chunkTimestamps, chunkX, chunkY, chunkZ, 50))
+                != TraceReader.END_OF_TRACE) {
+            System.arraycopy(chunkTimestamps, 0, timestamps, total, count);
+            System.arraycopy(chunkX, 0, xBoosts, total, count);
+            System.arraycopy(chunkY, 0, yBoosts, total, count);
+            System.arraycopy(chunkZ, 0, zBoosts, total, count);
+            total += count;
+        }
+        reader.close();
+
+        assertEquals(SAMPLE_COUNT, total);
+        assertArrayEquals(mTimestamps, timestamps);
+        assertArrayEquals(mXBoosts, xBoosts, 0f);
+        assertArrayEquals(mYBoosts, yBoosts, 0f);
+        assertArrayEquals(mZBoosts, zBoosts, 0f);
+        // The gap does not fit an int delta, so it starts a new block: 8 blocks of the 480
+        // samples before it and 9 of the 520 ones after it, instead of 16 without the gap.
+        assertEquals(17, reader.getBlockCount());
+        assertEquals(12 + reader.getBlockCount() * 20 + SAMPLE_COUNT * 16, trace.length());
+    }
+
+    @Test
+    public void scanAbove_sameSamplesAsFullScanWithBlocksSkipped() throws Exception {
+        generateSamples();
+        final List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            final float x = mXBoosts[i];
+            final float y = mYBoosts[i];
+            final float z = mZBoosts[i];
+            if (x * x + y * y + z * z > BOOST_LIMIT * BOOST_LIMIT) {
+                expected.add(mTimestamps[i]);
+            }
+        }
+
+        final List<Long> found = new ArrayList<>();
+        final ColumnarTraceReader reader = new ColumnarTraceReader(writeTrace());
+        final long foundCount = reader.scanAbove(BOOST_LIMIT, new TraceSampleVisitor() {
+            @Override
+            public void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+                found.add(timestamp);
+            }
+        });
+        reader.close();
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, found);
+        assertEquals(expected.size(), foundCount);
+        assertTrue(reader.getSkippedBlockCount() > 0);
+        assertTrue(reader.getSkippedBlockCount() < reader.getBlockCount());
+    }
+
+    @Test
+    public void scanAbove_sampleAtBlockMaxFound() throws Exception {
+        final File trace = mFolder.newFile("max.bdc");
+        final ColumnarTraceWriter writer = new ColumnarTraceWriter(trace, BLOCK_CAPACITY);
+        // The squared module is just above the squared limit.
+        final float x = Math.nextUp(BOOST_LIMIT);
+        writer.write(1, x, 0f, 0f);
+        writer.close();
+
+        final ColumnarTraceReader reader = new ColumnarTraceReader(trace);
+        assertEquals(1, reader.scanAbove(BOOST_LIMIT, new TraceSampleVisitor() {
+            @Override
+            public void onSample(long timestamp, float xBoost, float yBoost, float zBoost) {
+            }
+        }));
+        reader.close();
+    }
+
+    private void generateSamples() {
+        final Random random = new Random(3);
+        long timestamp = 1000000000L;
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            // A quiet signal with impacts in a few blocks.
+            timestamp += i == GAP_INDEX ? 3600000000000L : 5000000L;
+            final float impact = i % 300 < 5 ? 8f : 0f;
+            mTimestamps[i] = timestamp;
+            mXBoosts[i] = (float) random.nextGaussian() * 0.3f + impact;
+            mYBoosts[i] = (float) random.nextGaussian() * 0.3f;
+            mZBoosts[i] = (float) random.nextGaussian() * 0.3f - impact / 2;
+        }
+    }
+
+    private File writeTrace() throws Exception {
+        final File trace = mFolder.newFile("trace-" + System.nanoTime() + ".bdc");
+        final ColumnarTraceWriter writer = new ColumnarTraceWriter(trace, BLOCK_CAPACITY);
+        writer.write(mTimestamps, mXBoosts, mYBoosts, mZBoosts, SAMPLE_COUNT);
+        writer.close();
+        return trace;
+    }
+}
@@ -0,0 +1,89 @@
+package org.leveafan941.boostdetection.detection.replay;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parses CSV traces from memory and compares the values with {@link Float#parseFloat}.
+ */
+public class CsvTraceReaderTest {
+
+    private final long[] mTimestamps = new long[16];
+    private final float[] mXBoosts = new float[16];
+    private final float[] mYBoosts = new float[16];
+    private final float[] mZBoosts = new float[16];
+
+    @Test
+    public void headerCommentsAndBlankLines_skipped() throws Exception {
+        final CsvTraceReader reader = open("timestamp,x,y,z\n# comment\n\n"
+                + "100,1.5,-2,0.25\r\n  200 , 3e1 ,4.,.5\n");
+
+        assertEquals(2, reader.read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, 16));
+        assertEquals(100, mTimestamps[0]);
+        assertEquals(-2f, mYBoosts[0], 0f);
+        assertEquals(200, mTimestamps[1]);
+        assertEquals(30f, mXBoosts[1], 0f);
+        assertEquals(4f, mYBoosts[1], 0f);
+        assertEquals(0.5f, mZBoosts[1], 0f);
+        assertEquals(TraceReader.END_OF_TRACE,
+                reader.read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, 16));
+    }
+
+    @Test
+    public void values_sameAsParseFloat() throws Exception {
+        final Random random = new Random(7);
+        final StringBuilder builder = new StringBuilder();
+        final String[] values = new String[300];
+        for (int i = 0; i < values.length; ++i) {
+            switch (i % 3) {
+                case 0:
+                    values[i] = Float.toString((random.nextFloat() - 0.5f) * 40f);
+                    break;
+                case 1:
+                    values[i] = String.valueOf((random.nextDouble() - 0.5) * 40);
+                    break;
+                default:
+                    values[i] = String.format("%.5f", random.nextFloat() * 10f);
+                    break;
+            }
+        }
+        for (int i = 0; i < values.length; i += 3) {
+            builder.append(i).append(',').append(values[i]).append(',').append(values[i + 1])
+                    .append(',').append(values[i + 2]).append('\n');
+        }
+
+        final CsvTraceReader reader = open(builder.toString());
+        int valueIndex = 0;
+        int count;
+        while ((count = reader.read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, 16))
+                != TraceReader.END_OF_TRACE) {
+            for (int i = 0; i < count; ++i) {
+                assertEquals(Float.parseFloat(values[valueIndex++]), mXBoosts[i], 0f);
+                assertEquals(Float.parseFloat(values[valueIndex++]), mYBoosts[i], 0f);
+                assertEquals(Float.parseFloat(values[valueIndex++]), mZBoosts[i], 0f);
+            }
+        }
+        assertEquals(values.length, valueIndex);
+    }
+
+    @Test(expected = IOException.class)
+    public void missingValue_fails() throws Exception {
+        open("100,1,2\n").read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, 16);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidValue_fails() throws Exception {
+        open("100,1,2,x3\n").read(mTimestamps, mXBoosts, mYBoosts, mZBoosts, 16);
+    }
+
+    private static CsvTraceReader open(String content) {
+        return new CsvTraceReader(new ByteArrayInputStream(
+                content.getBytes(Charset.forName("US-ASCII"))));
+    }
+}
@@ -0,0 +1,128 @@
+package org.leveafan941.boostdetection.detection.replay;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays CSV and binary traces written to a temporary directory.
+ */
+public class TraceReplayerTest {
+
+    private static final float BOOST_LIMIT = 5f;
+    private static final long SAMPLE_PERIOD_NS = 5000000L;
+    private static final int SAMPLE_COUNT = 3000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static class RecordingEventQueue implements AccelerometerEventQueue {
+
+        final List<Long> mTimestamps = new ArrayList<>();
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            mTimestamps.add(timestamp);
+        }
+    }
+
+    @Test
+    public void csvAndBinary_sameEventsAsDirectDetection() throws Exception {
+        final RecordingEventQueue direct = new RecordingEventQueue();
+        final BoostLimitDetector detector = new BoostLimitDetector(direct, BOOST_LIMIT);
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            detector.onSample(timestampOf(i), boostOf(i), 0.5f, -0.25f);
+        }
+
+        final File csvTrace = writeCsvTrace();
+        final File binaryTrace = mFolder.newFile("trace.bin");
+        TraceReplayTool.main(new String[] {"convert", csvTrace.getPath(), binaryTrace.getPath()});
+
+        for (File trace : new File[] {csvTrace, binaryTrace}) {
+            final RecordingEventQueue replayed = new RecordingEventQueue();
+            final TraceReplayer replayer = new TraceReplayer(
+                    TriggerSettings.forLimit(BOOST_LIMIT), replayed,
+                    TraceReplayer.AS_FAST_AS_POSSIBLE);
+            final TraceReader reader = TraceFiles.openReader(trace);
+            final ReplayResult result = replayer.replay(reader);
+            reader.close();
+
+            assertEquals(SAMPLE_COUNT, result.getSampleCount());
+            assertEquals(direct.mTimestamps.size(), result.getEventCount());
+            assertEquals(direct.mTimestamps, replayed.mTimestamps);
+            assertEquals((SAMPLE_COUNT - 1) * SAMPLE_PERIOD_NS, result.getTraceDurationNs());
+            assertTrue(result.getSamplesPerSecond() > 0);
+        }
+        assertEquals(8 + SAMPLE_COUNT * 20, binaryTrace.length());
+    }
+
+    @Test
+    public void pacedReplay_takesTraceTimeBySpeed() throws Exception {
+        final TraceReplayer replayer = new TraceReplayer(TriggerSettings.forLimit(BOOST_LIMIT),
+                null, 10);
+        final TraceReader reader = TraceFiles.openReader(writeCsvTrace());
+        final ReplayResult result = replayer.replay(reader);
+        reader.close();
+
+        // 15 seconds of the trace at 10 times the real time.
+        assertTrue(result.getElapsedNs() >= result.getTraceDurationNs() / 10);
+        assertTrue(result.getSpeedup() <= 10);
+        assertTrue(result.getEventCount() > 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedBinaryTrace_fails() throws Exception {
+        final File trace = mFolder.newFile("truncated.bin");
+        final BinaryTraceWriter writer = new BinaryTraceWriter(trace);
+        writer.write(1, 1f, 2f, 3f);
+        writer.close();
+        final FileOutputStream output = new FileOutputStream(trace, true);
+        output.write(new byte[] {1, 2, 3});
+        output.close();
+
+        final long[] timestamps = new long[4];
+        final float[] values = new float[4];
+        final TraceReader reader = TraceFiles.openReader(trace);
+        try {
+            while (reader.read(timestamps, values, values, values, 4)
+                    != TraceReader.END_OF_TRACE) {
+                assertEquals(1, timestamps[0]);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File writeCsvTrace() throws IOException {
+        final File trace = mFolder.newFile("trace-" + System.nanoTime() + ".csv");
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(trace), "US-ASCII");
+        writer.write("timestamp,x,y,z\n");
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            writer.write(timestampOf(i) + "," + boostOf(i) + ",0.5,-0.25\n");
+        }
+        writer.close();
+        return trace;
+    }
+
+    private static long timestampOf(int sampleIndex) {
+        return 1000000000L + sampleIndex * SAMPLE_PERIOD_NS;
+    }
+
+    // A spike above the limit every 100 samples.
+    private static float boostOf(int sampleIndex) {
+        return sampleIndex % 100 < 3 ? 6.5f + sampleIndex % 3 : 1.25f * (sampleIndex % 4);
+    }
+}
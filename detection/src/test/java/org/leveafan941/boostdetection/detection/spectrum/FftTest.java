@@ -0,0 +1,44 @@
+package org.leveafan941.boostdetection.detection.spectrum;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the FFT with the discrete Fourier transform by definition.
+ */
+public class FftTest {
+
+    @Test
+    public void transform_matchesDft() throws Exception {
+        final Random random = new Random(5);
+        for (int size = 2; size <= 256; size *= 2) {
+            final float[] re = new float[size];
+            final float[] im = new float[size];
+            for (int i = 0; i < size; ++i) {
+                re[i] = (float) random.nextGaussian();
+                im[i] = (float) random.nextGaussian();
+            }
+            final float[] expectedRe = new float[size];
+            final float[] expectedIm = new float[size];
+            for (int k = 0; k < size; ++k) {
+                for (int n = 0; n < size; ++n) {
+                    final double angle = -2 * Math.PI * k * n / size;
+                    expectedRe[k] += re[n] * Math.cos(angle) - im[n] * Math.sin(angle);
+                    expectedIm[k] += re[n] * Math.sin(angle) + im[n] * Math.cos(angle);
+                }
+            }
+
+            new Fft(size).transform(re, im);
+            assertArrayEquals(expectedRe, re, 1e-3f);
+            assertArrayEquals(expectedIm, im, 1e-3f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notPowerOfTwo_rejected() throws Exception {
+        new Fft(384);
+    }
+}
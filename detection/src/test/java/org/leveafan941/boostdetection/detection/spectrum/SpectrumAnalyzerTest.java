@@ -0,0 +1,93 @@
+package org.leveafan941.boostdetection.detection.spectrum;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds sine vibrations through the {@link SpectrumAnalyzer} and checks the band events.
+ */
+public class SpectrumAnalyzerTest {
+
+    private static final int WINDOW_SIZE = 256;
+    // 200 Hz.
+    private static final long SAMPLE_PERIOD_NS = 5000000L;
+    private static final double SAMPLE_RATE_HZ = 200;
+
+    private final List<Integer> mBands = new ArrayList<>();
+    private final List<Float> mRmsBoosts = new ArrayList<>();
+    private final BandEnergyQueue mQueue = new BandEnergyQueue() {
+        @Override
+        public void queueBandEnergyExceed(int band, long timestamp, float rmsBoost) {
+            mBands.add(band);
+            mRmsBoosts.add(rmsBoost);
+        }
+    };
+    private long mNextTimestamp;
+
+    @Before
+    public void setUp() throws Exception {
+        mNextTimestamp = 1000000000L;
+    }
+
+    @Test
+    public void sineInBand_rmsOfSine() throws Exception {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(WINDOW_SIZE, 0.2f, mQueue,
+                new SpectrumBand(5, 15, 100f), new SpectrumBand(15, 30, 1f),
+                new SpectrumBand(40, 60, 0.1f));
+
+        // Diagonal vibration on top of an offset, the band sees the whole amplitude.
+        final float amplitude = 2f;
+        final float axisAmplitude = (float) (amplitude / Math.sqrt(3));
+        for (int i = 0; i < 4 * WINDOW_SIZE; ++i) {
+            final float value = (float) (axisAmplitude * Math.sin(2 * Math.PI * 21.3 * i
+                    / SAMPLE_RATE_HZ));
+            analyzer.onSample(nextTimestamp(), 0.5f + value, value, -value);
+        }
+
+        assertEquals(7, analyzer.getAnalysisCount());
+        assertEquals(1, mBands.size());
+        assertEquals(1, mBands.get(0).intValue());
+        assertEquals(amplitude / Math.sqrt(2), mRmsBoosts.get(0), 0.05);
+    }
+
+    @Test
+    public void bandReArmed_afterCalm() throws Exception {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(WINDOW_SIZE, 0.2f, mQueue,
+                new SpectrumBand(15, 30, 1f));
+
+        feedSine(analyzer, 20, 3f, 3 * WINDOW_SIZE);
+        feedSine(analyzer, 20, 0f, 3 * WINDOW_SIZE);
+        feedSine(analyzer, 20, 3f, 3 * WINDOW_SIZE);
+        assertEquals(2, mBands.size());
+    }
+
+    @Test
+    public void impact_doesNotLookLikeResonance() throws Exception {
+        final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(WINDOW_SIZE, 0.2f, mQueue,
+                new SpectrumBand(15, 30, 1f));
+
+        for (int i = 0; i < 4 * WINDOW_SIZE; ++i) {
+            analyzer.onSample(nextTimestamp(), 0f, i == WINDOW_SIZE ? 20f : 0f, 0f);
+        }
+        assertTrue(mBands.isEmpty());
+    }
+
+    private void feedSine(SpectrumAnalyzer analyzer, double frequencyHz, float amplitude,
+                          int count) {
+        for (int i = 0; i < count; ++i) {
+            analyzer.onSample(nextTimestamp(), 0f, 0f, (float) (amplitude
+                    * Math.sin(2 * Math.PI * frequencyHz * i / SAMPLE_RATE_HZ)));
+        }
+    }
+
+    private long nextTimestamp() {
+        final long timestamp = mNextTimestamp;
+        mNextTimestamp += SAMPLE_PERIOD_NS;
+        return timestamp;
+    }
+}
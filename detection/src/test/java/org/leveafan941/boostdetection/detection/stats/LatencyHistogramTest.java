@@ -0,0 +1,76 @@
+package org.leveafan941.boostdetection.detection.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bucket layout and the percentile error of the latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_continuousAndBounded() throws Exception {
+        assertEquals(0, LatencyHistogram.lowestValueAt(0));
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; ++i) {
+            final long lowest = LatencyHistogram.lowestValueAt(i);
+            final long highest = LatencyHistogram.highestValueAt(i);
+            assertEquals(i, LatencyHistogram.indexOf(lowest));
+            assertEquals(i, LatencyHistogram.indexOf(highest));
+            assertTrue(highest - lowest <= lowest / 32);
+            if (i > 0) {
+                assertEquals(LatencyHistogram.highestValueAt(i - 1) + 1, lowest);
+            }
+        }
+        assertEquals(LatencyHistogram.MAX_TRACKED_VALUE,
+                LatencyHistogram.highestValueAt(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void percentiles_withinBucketError() throws Exception {
+        final Random random = new Random(42);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] values = new long[10000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (long) (Math.exp(random.nextDouble() * 20));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        final HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            final long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            final long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact);
+            assertTrue(reported - exact <= exact / 32);
+        }
+    }
+
+    @Test
+    public void record_negativeAndHugeValuesClamped() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(10);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        final HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(1));
+        assertEquals(10, snapshot.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE / 2, snapshot.getMax());
+        assertEquals(LatencyHistogram.MAX_TRACKED_VALUE, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void emptySnapshot_zeroes() throws Exception {
+        final HistogramSnapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean(), 0);
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+}
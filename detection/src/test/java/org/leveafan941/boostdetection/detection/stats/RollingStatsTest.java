@@ -0,0 +1,107 @@
+package org.leveafan941.boostdetection.detection.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the rolling window statistics with the ones calculated over the window samples.
+ */
+public class RollingStatsTest {
+
+    private static final long SAMPLE_PERIOD_NS = 10000000L;
+    // Panes of 10 samples.
+    private static final int PANE_COUNT = 8;
+    private static final int WINDOW_SAMPLES = 80;
+    private static final long WINDOW_NS = WINDOW_SAMPLES * SAMPLE_PERIOD_NS;
+
+    @Test
+    public void slidingWindow_matchesWindowSamples() throws Exception {
+        final Random random = new Random(3);
+        final float[] modules = new float[1000];
+        final RollingStats stats = new RollingStats(WINDOW_NS, PANE_COUNT);
+        int updateCount = 0;
+        for (int i = 0; i < modules.length; ++i) {
+            modules[i] = Math.abs((float) random.nextGaussian() * (1 + i / 200));
+            if (!stats.onSample(i * SAMPLE_PERIOD_NS, modules[i] * modules[i])) {
+                continue;
+            }
+
+            ++updateCount;
+            assertEquals(0, i % 10);
+            assertWindow(stats.getSnapshot(), Arrays.copyOfRange(modules,
+                    Math.max(0, i - WINDOW_SAMPLES), i));
+            assertEquals(i * SAMPLE_PERIOD_NS, stats.getSnapshot().getWindowEndTimestamp());
+        }
+        assertEquals(99, updateCount);
+    }
+
+    @Test
+    public void gapLongerThanWindow_statsRestart() throws Exception {
+        final RollingStats stats = new RollingStats(WINDOW_NS, PANE_COUNT);
+        for (int i = 0; i < 100; ++i) {
+            stats.onSample(i * SAMPLE_PERIOD_NS, 100f);
+        }
+        assertEquals(10f, stats.getSnapshot().getRms(), 1e-4f);
+
+        final long resumeTimestamp = 100 * SAMPLE_PERIOD_NS + 2 * WINDOW_NS;
+        assertTrue(stats.onSample(resumeTimestamp, 4f));
+        assertEquals(0, stats.getSnapshot().getCount());
+        assertEquals(0f, stats.getSnapshot().getRms(), 0f);
+
+        for (int i = 1; i <= 10; ++i) {
+            stats.onSample(resumeTimestamp + i * SAMPLE_PERIOD_NS, 4f);
+        }
+        assertEquals(10, stats.getSnapshot().getCount());
+        assertEquals(2f, stats.getSnapshot().getMax(), 0f);
+    }
+
+    @Test
+    public void constantModule_noVariance() throws Exception {
+        final RollingStats stats = new RollingStats(WINDOW_NS, PANE_COUNT);
+        assertNull(stats.getSnapshot());
+        for (int i = 0; i <= WINDOW_SAMPLES; ++i) {
+            stats.onSample(i * SAMPLE_PERIOD_NS, 9f);
+        }
+
+        final RollingStatsSnapshot snapshot = stats.getSnapshot();
+        assertEquals(WINDOW_SAMPLES, snapshot.getCount());
+        assertEquals(3f, snapshot.getMean(), 1e-5f);
+        assertEquals(0f, snapshot.getStandardDeviation(), 1e-3f);
+        assertEquals(3f, snapshot.getP99(), 0f);
+        assertEquals(3f, RollingStatistic.RMS.valueOf(snapshot), 1e-5f);
+    }
+
+    private static void assertWindow(RollingStatsSnapshot snapshot, float[] window) {
+        double sum = 0;
+        double squareSum = 0;
+        for (float module : window) {
+            sum += module;
+            squareSum += module * module;
+        }
+        final double mean = sum / window.length;
+        double m2 = 0;
+        for (float module : window) {
+            m2 += (module - mean) * (module - mean);
+        }
+
+        final float[] sorted = window.clone();
+        Arrays.sort(sorted);
+        assertEquals(window.length, snapshot.getCount());
+        assertEquals(mean, snapshot.getMean(), 1e-4);
+        assertEquals(m2 / window.length, snapshot.getVariance(), 1e-4);
+        assertEquals(Math.sqrt(squareSum / window.length), snapshot.getRms(), 1e-4);
+        assertEquals(sorted[sorted.length - 1], snapshot.getMax(), 0f);
+        assertPercentile(sorted, 95, snapshot.getP95());
+        assertPercentile(sorted, 99, snapshot.getP99());
+    }
+
+    private static void assertPercentile(float[] sorted, double percentile, float value) {
+        final float exact = sorted[(int) Math.ceil(percentile / 100 * sorted.length) - 1];
+        assertTrue(value + 0.005f >= exact);
+        assertTrue(value - exact <= exact / 32 + 0.01f);
+    }
+}
@@ -0,0 +1,117 @@
+package org.leveafan941.boostdetection.detection.sweep;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.leveafan941.boostdetection.detection.AccelerometerEventQueue;
+import org.leveafan941.boostdetection.detection.BoostLimitDetector;
+import org.leveafan941.boostdetection.detection.TriggerSettings;
+import org.leveafan941.boostdetection.detection.replay.ColumnarTraceWriter;
+import org.leveafan941.boostdetection.detection.replay.TraceWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sweeps settings over generated traces and compares the counts with the detector.
+ */
+public class ThresholdSweepTest {
+
+    private static final int SAMPLE_COUNT = 20000;
+    private static final long SAMPLE_PERIOD_NS = 5000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static class CountingEventQueue implements AccelerometerEventQueue {
+
+        long mCount;
+
+        @Override
+        public void queueBoostLimitExceed(long timestamp, float boostValue) {
+            ++mCount;
+        }
+    }
+
+    @Test
+    public void grid_everyCombinationInLimitOrder() throws Exception {
+        final List<TriggerSettings> settings = ThresholdSweep.grid(5f, 7f, 3,
+                new float[] {0f, 0.2f}, 10, 20);
+
+        assertEquals(6, settings.size());
+        assertEquals(5f, settings.get(0).getBoostLimit(), 0f);
+        assertEquals(0.2f, settings.get(1).getHysteresis(), 0f);
+        assertEquals(6f, settings.get(2).getBoostLimit(), 0f);
+        assertEquals(7f, settings.get(5).getBoostLimit(), 0f);
+        assertEquals(20, settings.get(5).getRefractoryNs());
+    }
+
+    @Test
+    public void sweep_sameCountsAsDetector() throws Exception {
+        final List<File> traces = Arrays.asList(writeTrace(1), writeTrace(2), writeTrace(3));
+        final List<TriggerSettings> settings = ThresholdSweep.grid(2f, 8f, 25,
+                new float[] {0f, 0.1f, 0.3f}, 2 * SAMPLE_PERIOD_NS, 10 * SAMPLE_PERIOD_NS);
+
+        final ThresholdSweep sweep = new ThresholdSweep(4);
+        final SweepResult result = sweep.run(traces, settings);
+        sweep.shutdown();
+
+        assertEquals(3 * SAMPLE_COUNT, result.getSampleCount());
+        assertEquals(settings.size(), result.size());
+        for (int i = 0; i < settings.size(); ++i) {
+            long expected = 0;
+            for (long seed = 1; seed <= 3; ++seed) {
+                expected += detectExceeds(settings.get(i), seed);
+            }
+            assertEquals("Settings " + settings.get(i), expected, result.getExceedCount(i));
+        }
+        assertTrue(result.getExceedCount(0) > result.getExceedCount(settings.size() - 1));
+
+        final StringBuilder csv = new StringBuilder();
+        result.writeCsv(csv);
+        assertEquals(settings.size() + 1, csv.toString().split("\n").length);
+    }
+
+    @Test(expected = IOException.class)
+    public void missingTrace_fails() throws Exception {
+        final ThresholdSweep sweep = new ThresholdSweep(2);
+        try {
+            sweep.run(Arrays.asList(new File(mFolder.getRoot(), "missing.bdc")),
+                    ThresholdSweep.grid(5f, 5f, 1, new float[] {0f}, 0, 0));
+        } finally {
+            sweep.shutdown();
+        }
+    }
+
+    private File writeTrace(long seed) throws IOException {
+        final File trace = mFolder.newFile("trace-" + seed + ".bdc");
+        final TraceWriter writer = new ColumnarTraceWriter(trace, 1000);
+        final Random random = new Random(seed);
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            writer.write(i * SAMPLE_PERIOD_NS, gaussian(random), gaussian(random),
+                    gaussian(random));
+        }
+        writer.close();
+        return trace;
+    }
+
+    private static long detectExceeds(TriggerSettings settings, long seed) {
+        final CountingEventQueue queue = new CountingEventQueue();
+        final BoostLimitDetector detector = new BoostLimitDetector(queue, settings);
+        final Random random = new Random(seed);
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            detector.onSample(i * SAMPLE_PERIOD_NS, gaussian(random), gaussian(random),
+                    gaussian(random));
+        }
+        return queue.mCount;
+    }
+
+    private static float gaussian(Random random) {
+        return (float) random.nextGaussian() * 2f;
+    }
+}